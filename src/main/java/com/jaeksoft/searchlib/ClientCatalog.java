@@ -52,6 +52,7 @@ import javax.xml.xpath.XPathExpressionException;
 import java.io.*;
 import java.net.URI;
 import java.util.*;
+import java.util.zip.CRC32;
 
 /**
  * This class handles a list of indexes stored in a given directory.
@@ -610,23 +611,40 @@ public class ClientCatalog {
 		return true;
 	}
 
-	public static final void receive_file(Client client, String filePath, long lastModified, InputStream is)
-			throws IOException {
+	/**
+	 * Write a received file in the temporary directory
+	 *
+	 * @param client       the target index
+	 * @param filePath     the path of the file, relative to the index directory
+	 * @param lastModified the last modification time of the source file
+	 * @param checksum     the CRC32 checksum of the source file, or null
+	 * @param is           the content of the file
+	 * @throws IOException if the content does not match the checksum
+	 */
+	public static final void receive_file(Client client, String filePath, long lastModified, Long checksum,
+			InputStream is) throws IOException {
 		File rootDir = getTempReceiveDir(client);
 		File targetFile = new File(rootDir, filePath);
 		targetFile.createNewFile();
 		FileOutputStream fos = null;
+		CRC32 crc32 = new CRC32();
 		try {
 			fos = new FileOutputStream(targetFile);
 			int len;
 			byte[] buffer = new byte[131072];
-			while ((len = is.read(buffer)) != -1)
+			while ((len = is.read(buffer)) != -1) {
 				fos.write(buffer, 0, len);
+				crc32.update(buffer, 0, len);
+			}
 		} catch (IOException e) {
 			throw e;
 		} finally {
 			IOUtils.close(fos);
 		}
+		if (checksum != null && checksum != crc32.getValue()) {
+			targetFile.delete();
+			throw new IOException("Checksum error: " + filePath);
+		}
 		targetFile.setLastModified(lastModified);
 	}
 
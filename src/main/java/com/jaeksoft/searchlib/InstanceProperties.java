@@ -24,6 +24,7 @@
 
 package com.jaeksoft.searchlib;
 
+import com.jaeksoft.searchlib.logreport.DailyLogger;
 import com.jaeksoft.searchlib.util.*;
 import com.jaeksoft.searchlib.web.StartStopListener;
 import com.jaeksoft.searchlib.webservice.ApiIdentifier;
@@ -86,6 +87,12 @@ public class InstanceProperties {
 
 	private final String silentBackupUrl;
 
+	private final int logReportQueueSize;
+
+	private final DailyLogger.OverflowPolicy logReportOverflow;
+
+	private final boolean logReportArchive;
+
 	private final static String REPLICATION_NODEPATH = "/instanceProperties/replication";
 
 	private final static String LIMIT_NODEPATH = "/instanceProperties/limit";
@@ -112,6 +119,14 @@ public class InstanceProperties {
 
 	private final static String SILENT_BACKUP_URL = "silentBackupUrl";
 
+	private final static String LOG_REPORT_NODEPATH = "/instanceProperties/logReport";
+
+	private final static String LOG_REPORT_QUEUE_SIZE_ATTR = "queueSize";
+
+	private final static String LOG_REPORT_OVERFLOW_ATTR = "overflow";
+
+	private final static String LOG_REPORT_ARCHIVE_ATTR = "archive";
+
 	private final static String REDIS_API_NODE = "/instanceProperties/redisApi";
 
 	private final static String REDIS_API_HOSTNAME_ATTR = "hostname";
@@ -166,6 +181,18 @@ public class InstanceProperties {
 				silentBackupUrl = null;
 			}
 
+			node = xpp.getNode(LOG_REPORT_NODEPATH);
+			if (node != null) {
+				logReportQueueSize = XPathParser.getAttributeValue(node, LOG_REPORT_QUEUE_SIZE_ATTR);
+				logReportOverflow =
+						DailyLogger.OverflowPolicy.find(XPathParser.getAttributeString(node, LOG_REPORT_OVERFLOW_ATTR));
+				logReportArchive = "yes".equalsIgnoreCase(XPathParser.getAttributeString(node, LOG_REPORT_ARCHIVE_ATTR));
+			} else {
+				logReportQueueSize = 0;
+				logReportOverflow = DailyLogger.OverflowPolicy.BLOCK;
+				logReportArchive = false;
+			}
+
 			node = xpp.getNode(REDIS_API_NODE);
 			if (node != null) {
 				redisApiServerHostname = XPathParser.getAttributeString(node, REDIS_API_HOSTNAME_ATTR);
@@ -194,6 +221,9 @@ public class InstanceProperties {
 			disableWebCrawler = false;
 			disableFileCrawler = false;
 			silentBackupUrl = null;
+			logReportQueueSize = 0;
+			logReportOverflow = DailyLogger.OverflowPolicy.BLOCK;
+			logReportArchive = false;
 		}
 	}
 
@@ -478,4 +508,26 @@ public class InstanceProperties {
 	public String getSilentBackupUrl() {
 		return silentBackupUrl;
 	}
+
+	/**
+	 * @return the number of query log lines waiting to be written, 0 for the
+	 *         default size
+	 */
+	public int getLogReportQueueSize() {
+		return logReportQueueSize;
+	}
+
+	/**
+	 * @return what to do when the query log queue is full
+	 */
+	public DailyLogger.OverflowPolicy getLogReportOverflow() {
+		return logReportOverflow;
+	}
+
+	/**
+	 * @return true if the query log files are archived when a new day starts
+	 */
+	public boolean isLogReportArchive() {
+		return logReportArchive;
+	}
 }
@@ -27,13 +27,17 @@ package com.jaeksoft.searchlib.analysis;
 import java.io.IOException;
 import java.io.Reader;
 import java.io.StringReader;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 
+import org.apache.lucene.analysis.TokenFilter;
 import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.Tokenizer;
 import org.apache.lucene.search.BooleanClause.Occur;
 import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.store.AlreadyClosedException;
 
 import com.jaeksoft.searchlib.SearchLibException;
 import com.jaeksoft.searchlib.analysis.tokenizer.TokenizerFactory;
@@ -43,8 +47,11 @@ import com.jaeksoft.searchlib.util.IOUtils;
 
 public class CompiledAnalyzer extends AbstractAnalyzer {
 
+	private final static int MAX_IDLE_CHAINS = 16;
+
 	private TokenizerFactory tokenizer;
 	private FilterFactory[] filters;
+	private boolean reusable;
 
 	protected CompiledAnalyzer(TokenizerFactory sourceTokenizer,
 			List<FilterFactory> sourceFilters, FilterScope scopeTarget)
@@ -58,6 +65,10 @@ public class CompiledAnalyzer extends AbstractAnalyzer {
 			buildQueryList(sourceFilters, ff);
 		filters = new FilterFactory[ff.size()];
 		ff.toArray(filters);
+		reusable = true;
+		for (FilterFactory filter : filters)
+			if (!filter.isReusable())
+				reusable = false;
 	}
 
 	private static void buildQueryList(List<FilterFactory> source,
@@ -108,11 +119,81 @@ public class CompiledAnalyzer extends AbstractAnalyzer {
 		}
 	}
 
+	/**
+	 * Return an analysis chain of the current thread. The chains are reused
+	 * when every filter is reusable: closing the token stream gives the chain
+	 * back to the thread.
+	 */
+	@Override
+	@SuppressWarnings("unchecked")
+	public final TokenStream reusableTokenStream(final String fieldName,
+			final Reader reader) throws IOException {
+		if (!reusable)
+			return tokenStream(fieldName, reader);
+		ArrayDeque<ReusableChain> idleChains;
+		try {
+			idleChains = (ArrayDeque<ReusableChain>) getPreviousTokenStream();
+		} catch (AlreadyClosedException e) {
+			// The analyzer has been recompiled
+			return tokenStream(fieldName, reader);
+		}
+		if (idleChains == null) {
+			idleChains = new ArrayDeque<ReusableChain>();
+			setPreviousTokenStream(idleChains);
+		}
+		ReusableChain chain = idleChains.poll();
+		if (chain == null) {
+			try {
+				Tokenizer source = tokenizer.create(reader);
+				TokenStream ts = source;
+				for (FilterFactory filter : filters)
+					ts = filter.create(ts);
+				return new ReusableChain(source, ts, idleChains);
+			} catch (SearchLibException e) {
+				throw new IOException(e);
+			}
+		}
+		chain.reuse(reader);
+		return chain;
+	}
+
 	public boolean isAnyToken(String fieldName, String value)
 			throws IOException {
 		if (tokenizer == null)
 			return false;
-		return tokenStream(fieldName, new StringReader(value)).incrementToken();
+		TokenStream ts = reusableTokenStream(fieldName,
+				new StringReader(value));
+		try {
+			return ts.incrementToken();
+		} finally {
+			IOUtils.closeQuietly(ts);
+		}
+	}
+
+	/**
+	 * Analyze a value for the index. The first token is read to check that
+	 * the value is not empty, it is then returned again by the token stream,
+	 * so the value is analyzed only once.
+	 * 
+	 * @param fieldName
+	 *            the name of the field
+	 * @param value
+	 *            the value to analyze
+	 * @return the token stream, or null if the value does not contain any
+	 *         token
+	 * @throws IOException
+	 *             inherited error
+	 */
+	public TokenStream getIndexTokenStream(String fieldName, String value)
+			throws IOException {
+		if (tokenizer == null)
+			return null;
+		TokenStream ts = reusableTokenStream(fieldName,
+				new StringReader(value));
+		if (ts.incrementToken())
+			return new FirstTokenFilter(ts);
+		IOUtils.closeQuietly(ts);
+		return null;
 	}
 
 	public List<DebugTokenFilter> test(String text) throws IOException,
@@ -143,7 +224,7 @@ public class CompiledAnalyzer extends AbstractAnalyzer {
 		if (text == null)
 			return;
 		StringReader reader = new StringReader(text);
-		TokenStream ts = tokenStream(null, reader);
+		TokenStream ts = reusableTokenStream(null, reader);
 		try {
 			ts = new TermSetTokenFilter(termSet, ts);
 			while (ts.incrementToken())
@@ -158,7 +239,7 @@ public class CompiledAnalyzer extends AbstractAnalyzer {
 		if (text == null)
 			return;
 		StringReader reader = new StringReader(text);
-		TokenStream ts = tokenStream(null, reader);
+		TokenStream ts = reusableTokenStream(null, reader);
 		ts = new NamedEntityPopulateFilter(result, ts);
 		try {
 			while (ts.incrementToken())
@@ -173,7 +254,7 @@ public class CompiledAnalyzer extends AbstractAnalyzer {
 		if (text == null)
 			return;
 		StringReader reader = new StringReader(text);
-		TokenStream ts = tokenStream(null, reader);
+		TokenStream ts = reusableTokenStream(null, reader);
 		ts = new FieldContentPopulateFilter(fieldContent, ts);
 		try {
 			while (ts.incrementToken())
@@ -188,7 +269,7 @@ public class CompiledAnalyzer extends AbstractAnalyzer {
 		if (text == null)
 			return;
 		StringReader reader = new StringReader(text);
-		TokenStream ts = tokenStream(null, reader);
+		TokenStream ts = reusableTokenStream(null, reader);
 		ts = new TokenTermPopulateFilter(tokenTerms, ts);
 		try {
 			while (ts.incrementToken())
@@ -204,7 +285,7 @@ public class CompiledAnalyzer extends AbstractAnalyzer {
 			return 0;
 		int termCount = 0;
 		StringReader reader = new StringReader(text);
-		TokenStream ts = tokenStream(null, reader);
+		TokenStream ts = reusableTokenStream(null, reader);
 		TokenQueryFilter ttqf = null;
 		try {
 			ttqf = new TokenQueryFilter.BooleanQueryFilter(query, occur, field,
@@ -217,4 +298,74 @@ public class CompiledAnalyzer extends AbstractAnalyzer {
 		return termCount;
 	}
 
+	/**
+	 * The end of a reusable analysis chain. Closing it gives the chain back
+	 * to the idle chains of the thread.
+	 */
+	private final static class ReusableChain extends TokenFilter {
+
+		private final Tokenizer source;
+		private final ArrayDeque<ReusableChain> idleChains;
+		private final Thread owner;
+		private boolean closed;
+
+		private ReusableChain(final Tokenizer source, final TokenStream input,
+				final ArrayDeque<ReusableChain> idleChains) {
+			super(input);
+			this.source = source;
+			this.idleChains = idleChains;
+			this.owner = Thread.currentThread();
+			this.closed = false;
+		}
+
+		private void reuse(final Reader reader) throws IOException {
+			source.reset(reader);
+			reset();
+			closed = false;
+		}
+
+		@Override
+		public final boolean incrementToken() throws IOException {
+			return input.incrementToken();
+		}
+
+		@Override
+		public void close() throws IOException {
+			if (closed)
+				return;
+			closed = true;
+			super.close();
+			if (owner == Thread.currentThread()
+					&& idleChains.size() < MAX_IDLE_CHAINS)
+				idleChains.push(this);
+		}
+	}
+
+	/**
+	 * Return again the first token, which has already been read
+	 */
+	private final static class FirstTokenFilter extends TokenFilter {
+
+		private boolean first;
+
+		private FirstTokenFilter(final TokenStream input) {
+			super(input);
+			first = true;
+		}
+
+		@Override
+		public final boolean incrementToken() throws IOException {
+			if (first) {
+				first = false;
+				return true;
+			}
+			return input.incrementToken();
+		}
+
+		@Override
+		public void reset() {
+			// The stream is already positioned on its first token
+		}
+	}
+
 }
@@ -39,6 +39,17 @@ public abstract class FilterFactory extends ClassFactory {
 
 	public abstract TokenStream create(TokenStream tokenStream) throws SearchLibException;
 
+	/**
+	 * A reusable filter keeps no state from one token stream to the next: it
+	 * can be reset and fed with a new text. The filters which buffer tokens or
+	 * keep state between two texts override this method.
+	 *
+	 * @return true if the filters created by this factory can be reused
+	 */
+	public boolean isReusable() {
+		return true;
+	}
+
 	public void writeXmlConfig(XmlWriter writer) throws SAXException {
 		writer.startElement("filter", getXmlAttributes());
 		writeXmlNodeAttributes(writer, "attributes");
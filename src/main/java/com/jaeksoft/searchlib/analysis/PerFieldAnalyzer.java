@@ -24,6 +24,7 @@
 
 package com.jaeksoft.searchlib.analysis;
 
+import java.io.IOException;
 import java.io.Reader;
 import java.util.Map;
 
@@ -51,6 +52,15 @@ public class PerFieldAnalyzer extends AbstractAnalyzer {
 		return analyzer.tokenStream(fieldName, reader);
 	}
 
+	@Override
+	public final TokenStream reusableTokenStream(final String fieldName,
+			final Reader reader) throws IOException {
+		CompiledAnalyzer analyzer = analyzerMap.get(fieldName);
+		if (analyzer == null)
+			return getKeywordAnalyzer().tokenStream(fieldName, reader);
+		return analyzer.reusableTokenStream(fieldName, reader);
+	}
+
 	public KeywordAnalyzer getKeywordAnalyzer() {
 		return new KeywordAnalyzer();
 	}
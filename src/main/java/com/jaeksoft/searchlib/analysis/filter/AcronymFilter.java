@@ -112,4 +112,9 @@ public class AcronymFilter extends FilterFactory {
 		}
 	}
 
+	@Override
+	public boolean isReusable() {
+		return false;
+	}
+
 }
@@ -77,4 +77,9 @@ public class CryptFilter extends FilterFactory {
 		return new CryptTokenFilter(tokenStream, salt);
 	}
 
+	@Override
+	public boolean isReusable() {
+		return false;
+	}
+
 }
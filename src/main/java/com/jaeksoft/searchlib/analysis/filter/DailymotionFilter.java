@@ -73,4 +73,10 @@ public class DailymotionFilter extends FilterFactory {
 			throw new RuntimeException(e);
 		}
 	}
+
+	@Override
+	public boolean isReusable() {
+		return false;
+	}
+
 }
@@ -61,4 +61,10 @@ public class DeduplicateTokenFilter extends FilterFactory {
 	public TokenStream create(TokenStream tokenStream) {
 		return new DedupAllTokenFilter(tokenStream);
 	}
+
+	@Override
+	public boolean isReusable() {
+		return false;
+	}
+
 }
@@ -77,4 +77,10 @@ public class DeduplicateTokenPositionsFilter extends FilterFactory {
 	public Map<String, List<Position>> getLastTokenMap() {
 		return lastTokenMap;
 	}
+
+	@Override
+	public boolean isReusable() {
+		return false;
+	}
+
 }
@@ -239,4 +239,9 @@ public class DegreesRadiansFilter extends FilterFactory {
 		}
 	}
 
+	@Override
+	public boolean isReusable() {
+		return false;
+	}
+
 }
@@ -79,4 +79,10 @@ public class DomainFilter extends FilterFactory {
 			return new AllDomainsTokenFilter(tokenStream, silent);
 		return null;
 	}
+
+	@Override
+	public boolean isReusable() {
+		return false;
+	}
+
 }
@@ -74,4 +74,9 @@ public class EdgeNGramFilter extends FilterFactory {
 		return new EdgeNGramTokenFilter(input, side, min, max);
 	}
 
+	@Override
+	public boolean isReusable() {
+		return false;
+	}
+
 }
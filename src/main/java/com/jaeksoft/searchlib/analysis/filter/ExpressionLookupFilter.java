@@ -84,4 +84,9 @@ public class ExpressionLookupFilter extends FilterFactory {
 		}
 	}
 
+	@Override
+	public boolean isReusable() {
+		return false;
+	}
+
 }
@@ -89,4 +89,10 @@ public class GroupAllTokensFilter extends FilterFactory {
 	public TokenStream create(TokenStream tokenStream) {
 		return new GroupAllTokenFilter(tokenStream);
 	}
+
+	@Override
+	public boolean isReusable() {
+		return false;
+	}
+
 }
@@ -119,4 +119,9 @@ public class HunspellStemFilter extends FilterFactory {
 		}
 	}
 
+	@Override
+	public boolean isReusable() {
+		return false;
+	}
+
 }
@@ -219,4 +219,9 @@ public class IndexLookupFilter extends FilterFactory {
 		}
 	}
 
+	@Override
+	public boolean isReusable() {
+		return false;
+	}
+
 }
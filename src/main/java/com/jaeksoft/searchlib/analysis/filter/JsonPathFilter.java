@@ -150,4 +150,10 @@ public class JsonPathFilter extends FilterFactory {
 	public TokenStream create(TokenStream tokenStream) {
 		return new JsonPathTokenFilter(tokenStream, jsonPath);
 	}
+
+	@Override
+	public boolean isReusable() {
+		return false;
+	}
+
 }
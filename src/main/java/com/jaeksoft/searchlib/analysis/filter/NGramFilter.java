@@ -61,4 +61,9 @@ public class NGramFilter extends FilterFactory {
 		return new NGramTokenFilter(input, min, max);
 	}
 
+	@Override
+	public boolean isReusable() {
+		return false;
+	}
+
 }
@@ -78,4 +78,9 @@ public class NamedEntityExtractionFilter extends FilterFactory {
 		return tokenStream;
 	}
 
+	@Override
+	public boolean isReusable() {
+		return false;
+	}
+
 }
@@ -153,4 +153,10 @@ public class NumberFormatFilter extends FilterFactory {
 			return true;
 		}
 	}
+
+	@Override
+	public boolean isReusable() {
+		return false;
+	}
+
 }
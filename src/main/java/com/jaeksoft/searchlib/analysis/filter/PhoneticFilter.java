@@ -99,4 +99,9 @@ public class PhoneticFilter extends FilterFactory {
 		return null;
 	}
 
+	@Override
+	public boolean isReusable() {
+		return false;
+	}
+
 }
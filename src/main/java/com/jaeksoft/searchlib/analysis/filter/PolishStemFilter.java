@@ -70,4 +70,9 @@ public class PolishStemFilter extends FilterFactory {
 				minLength);
 	}
 
+	@Override
+	public boolean isReusable() {
+		return false;
+	}
+
 }
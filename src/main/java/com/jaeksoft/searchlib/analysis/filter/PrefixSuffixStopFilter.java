@@ -83,4 +83,10 @@ public class PrefixSuffixStopFilter extends FilterFactory {
 		return new PrefixSuffixFilter(tokenStream, prefixArray, suffixArray,
 				ignoreCase);
 	}
+
+	@Override
+	public boolean isReusable() {
+		return false;
+	}
+
 }
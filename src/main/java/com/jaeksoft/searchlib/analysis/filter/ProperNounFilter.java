@@ -151,4 +151,10 @@ public class ProperNounFilter extends FilterFactory {
 		joinInitial(input, output, input.size(), '.', true);
 		System.out.println(output);
 	}
+
+	@Override
+	public boolean isReusable() {
+		return false;
+	}
+
 }
@@ -119,4 +119,10 @@ public class RegularExpressionFilter extends FilterFactory {
 			termQueue.add(content);
 		}
 	}
+
+	@Override
+	public boolean isReusable() {
+		return false;
+	}
+
 }
@@ -67,4 +67,9 @@ public class RemoveDuplicateCharactersFilter extends FilterFactory {
 				removeDuplicateWhiteSpaces);
 	}
 
+	@Override
+	public boolean isReusable() {
+		return false;
+	}
+
 }
@@ -133,4 +133,10 @@ public class RemoveIncludedTermFilter extends FilterFactory {
 		return new RemoveIncludedTokenFilter(tokenStream, type,
 				removeMatchingFlags);
 	}
+
+	@Override
+	public boolean isReusable() {
+		return false;
+	}
+
 }
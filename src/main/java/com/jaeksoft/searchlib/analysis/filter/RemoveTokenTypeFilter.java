@@ -78,4 +78,10 @@ public class RemoveTokenTypeFilter extends FilterFactory {
 			}
 		}
 	}
+
+	@Override
+	public boolean isReusable() {
+		return false;
+	}
+
 }
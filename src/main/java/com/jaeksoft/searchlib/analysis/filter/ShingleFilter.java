@@ -77,4 +77,9 @@ public class ShingleFilter extends FilterFactory {
 				minShingleSize, maxShingleSize);
 	}
 
+	@Override
+	public boolean isReusable() {
+		return false;
+	}
+
 }
@@ -75,4 +75,10 @@ public class StopFilter extends FilterFactory {
 			wordArray = stopWordsManager.getWordArray(wordList, ignoreCase);
 		return new StopWordFilter(tokenStream, wordArray, ignoreCase);
 	}
+
+	@Override
+	public boolean isReusable() {
+		return false;
+	}
+
 }
@@ -67,4 +67,9 @@ public class SynonymFilter extends FilterFactory {
 		return new SynonymTokenFilter(tokenStream, synonyms);
 	}
 
+	@Override
+	public boolean isReusable() {
+		return false;
+	}
+
 }
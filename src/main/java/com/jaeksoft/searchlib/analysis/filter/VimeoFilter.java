@@ -73,4 +73,10 @@ public class VimeoFilter extends FilterFactory {
 			throw new RuntimeException(e);
 		}
 	}
+
+	@Override
+	public boolean isReusable() {
+		return false;
+	}
+
 }
@@ -180,4 +180,10 @@ public class XPathFilter extends FilterFactory {
 	public TokenStream create(TokenStream tokenStream) {
 		return new XPathTokenFilter(tokenStream, xPathExpression);
 	}
+
+	@Override
+	public boolean isReusable() {
+		return false;
+	}
+
 }
@@ -72,4 +72,10 @@ public class YouTubeFilter extends FilterFactory {
 			throw new RuntimeException(e);
 		}
 	}
+
+	@Override
+	public boolean isReusable() {
+		return false;
+	}
+
 }
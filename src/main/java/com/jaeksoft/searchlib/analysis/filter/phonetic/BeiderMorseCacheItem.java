@@ -51,6 +51,20 @@ public class BeiderMorseCacheItem extends LRUItemAbstract<BeiderMorseCacheItem>
 		return StringUtils.compareNullString(term, key.term);
 	}
 
+	@Override
+	public int hashCode() {
+		return 31 * (31 * encoderKey.type.ordinal() + encoderKey.maxPhonemes) + (term == null ? 0 : term.hashCode());
+	}
+
+	@Override
+	protected long estimateWeight() {
+		long weight = 64 + (term == null ? 0 : term.length() * 2);
+		if (tokens != null)
+			for (String token : tokens)
+				weight += 48 + token.length() * 2;
+		return weight;
+	}
+
 	@Override
 	protected void populate(Timer timer) throws Exception {
 		PhoneticEngine encoder = BeiderMorseCache.INSTANCE
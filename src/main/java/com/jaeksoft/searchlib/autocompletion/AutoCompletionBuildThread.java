@@ -26,11 +26,7 @@ package com.jaeksoft.searchlib.autocompletion;
 
 import java.io.IOException;
 import java.lang.Thread.State;
-import java.net.URISyntaxException;
-import java.security.NoSuchAlgorithmException;
-import java.util.ArrayList;
 import java.util.Collection;
-import java.util.List;
 
 import org.apache.lucene.index.Term;
 import org.apache.lucene.index.TermDocs;
@@ -40,7 +36,6 @@ import org.roaringbitmap.RoaringBitmap;
 import com.jaeksoft.searchlib.Client;
 import com.jaeksoft.searchlib.Logging;
 import com.jaeksoft.searchlib.SearchLibException;
-import com.jaeksoft.searchlib.index.IndexDocument;
 import com.jaeksoft.searchlib.process.ThreadAbstract;
 import com.jaeksoft.searchlib.request.AbstractRequest;
 import com.jaeksoft.searchlib.request.AbstractSearchRequest;
@@ -52,20 +47,21 @@ import com.jaeksoft.searchlib.util.InfoCallback;
 public class AutoCompletionBuildThread extends ThreadAbstract<AutoCompletionBuildThread> {
 
 	private volatile Client sourceClient;
-	private volatile Client autoCompClient;
+	private volatile AutoCompletionItem autoCompItem;
 	private volatile String searchRequest;
 	private volatile String[] fieldNames;
 	private volatile TermEnum termEnum;
 	private volatile int bufferSize;
 
-	protected AutoCompletionBuildThread(Client sourceClient, Client autoCompClient, InfoCallback infoCallBack) {
+	protected AutoCompletionBuildThread(Client sourceClient, AutoCompletionItem autoCompItem,
+			InfoCallback infoCallBack) {
 		super(sourceClient, null, null, infoCallBack);
 		this.sourceClient = sourceClient;
-		this.autoCompClient = autoCompClient;
+		this.autoCompItem = autoCompItem;
 		this.fieldNames = null;
 		this.searchRequest = null;
 		this.termEnum = null;
-		this.bufferSize = 50;
+		this.bufferSize = 1000;
 	}
 
 	public String getStatus() {
@@ -75,41 +71,19 @@ public class AutoCompletionBuildThread extends ThreadAbstract<AutoCompletionBuil
 		return state.toString();
 	}
 
-	public int getIndexNumDocs() throws IOException, SearchLibException {
-		return autoCompClient.getStatistics().getNumDocs();
+	public long getIndexNumDocs() {
+		return autoCompItem.getSuggestionCount();
 	}
 
-	final private int indexBuffer(int docCount, List<IndexDocument> buffer)
-			throws SearchLibException, NoSuchAlgorithmException, IOException, URISyntaxException,
-			InstantiationException, IllegalAccessException, ClassNotFoundException {
-		if (buffer.size() == 0)
-			return docCount;
-		docCount += autoCompClient.updateDocuments(buffer);
-		buffer.clear();
-		if (infoCallback != null)
-			infoCallback.setInfo(docCount + " term(s) indexed");
-		return docCount;
+	private void addTerm(AutoCompletionSuggester.Builder builder, String term, int freq) throws IOException {
+		builder.add(term, freq);
+		if (infoCallback != null && builder.getCount() % bufferSize == 0)
+			infoCallback.setInfo(builder.getCount() + " term(s) collected");
 	}
 
-	private int indexTerm(String term, Integer freq, List<IndexDocument> buffer, int docCount)
-			throws NoSuchAlgorithmException, SearchLibException, IOException, URISyntaxException,
-			InstantiationException, IllegalAccessException, ClassNotFoundException {
-		IndexDocument indexDocument = new IndexDocument();
-		indexDocument.addString("term", term);
-		indexDocument.addString("cluster", term);
-		if (freq != null)
-			indexDocument.addString("freq", Integer.toString(freq));
-		buffer.add(indexDocument);
-		if (buffer.size() == bufferSize)
-			docCount = indexBuffer(docCount, buffer);
-		return docCount;
-	}
-
-	private int buildTermEnum(List<IndexDocument> buffer, int docCount)
-			throws SearchLibException, NoSuchAlgorithmException, IOException, URISyntaxException,
-			InstantiationException, IllegalAccessException, ClassNotFoundException {
+	private void buildTermEnum(AutoCompletionSuggester.Builder builder) throws SearchLibException, IOException {
 		if (fieldNames == null)
-			return docCount;
+			return;
 		for (String fieldName : fieldNames) {
 			termEnum = sourceClient.getTermEnum(new Term(fieldName, ""));
 			try {
@@ -119,21 +93,18 @@ public class AutoCompletionBuildThread extends ThreadAbstract<AutoCompletionBuil
 						break;
 					if (isAborted())
 						break;
-					docCount = indexTerm(term.text(), termEnum.docFreq(), buffer, docCount);
+					addTerm(builder, term.text(), termEnum.docFreq());
 					termEnum.next();
 				}
 			} finally {
 				IOUtils.close(termEnum);
 			}
 		}
-		return docCount;
 	}
 
-	private int buildSearchRequest(List<IndexDocument> buffer, int docCount)
-			throws SearchLibException, IOException, NoSuchAlgorithmException, URISyntaxException,
-			InstantiationException, IllegalAccessException, ClassNotFoundException {
+	private void buildSearchRequest(AutoCompletionSuggester.Builder builder) throws SearchLibException, IOException {
 		if (fieldNames == null)
-			return docCount;
+			return;
 		AbstractRequest request = sourceClient.getNewRequest(searchRequest);
 		if (request == null)
 			throw new SearchLibException("Request not found " + searchRequest);
@@ -141,15 +112,16 @@ public class AutoCompletionBuildThread extends ThreadAbstract<AutoCompletionBuil
 			throw new SearchLibException("The request " + searchRequest + " is not a Search request ");
 		AbstractSearchRequest searchRequest = (AbstractSearchRequest) request;
 		searchRequest.setRows(0);
+		searchRequest.setFullDocSet(true);
 		AbstractResultSearch<?> result = (AbstractResultSearch<?>) sourceClient.request(request);
 		if (result == null)
-			return docCount;
+			return;
 		DocIdInterface docIds = result.getDocs();
 		if (docIds == null)
-			return docCount;
+			return;
 		RoaringBitmap bitSet = docIds.getBitSet();
 		if (bitSet == null || bitSet.isEmpty())
-			return docCount;
+			return;
 		for (String fieldName : fieldNames) {
 			termEnum = sourceClient.getTermEnum(new Term(fieldName, ""));
 			try {
@@ -164,7 +136,7 @@ public class AutoCompletionBuildThread extends ThreadAbstract<AutoCompletionBuil
 					while (termDocs.next() && !add)
 						add = bitSet.contains(termDocs.doc());
 					if (add)
-						docCount = indexTerm(term.text(), termEnum.docFreq(), buffer, docCount);
+						addTerm(builder, term.text(), termEnum.docFreq());
 					termEnum.next();
 				}
 			} finally {
@@ -173,19 +145,24 @@ public class AutoCompletionBuildThread extends ThreadAbstract<AutoCompletionBuil
 			if (isAborted())
 				break;
 		}
-		return docCount;
 	}
 
 	@Override
 	public void runner() throws Exception {
-		autoCompClient.deleteAll();
-		List<IndexDocument> buffer = new ArrayList<IndexDocument>();
-		int docCount = 0;
-		if (searchRequest != null && searchRequest.length() > 0)
-			docCount = buildSearchRequest(buffer, docCount);
-		else
-			docCount = buildTermEnum(buffer, docCount);
-		docCount = indexBuffer(docCount, buffer);
+		try (AutoCompletionSuggester.Builder builder = new AutoCompletionSuggester.Builder()) {
+			if (searchRequest != null && searchRequest.length() > 0)
+				buildSearchRequest(builder);
+			else
+				buildTermEnum(builder);
+			if (isAborted())
+				return;
+			if (infoCallback != null)
+				infoCallback.setInfo(builder.getCount() + " term(s) collected, building the suggester");
+			AutoCompletionSuggester suggester = builder.build();
+			autoCompItem.setSuggester(suggester);
+			if (infoCallback != null)
+				infoCallback.setInfo(suggester.getSize() + " suggestion(s) built");
+		}
 	}
 
 	@Override
@@ -200,10 +177,16 @@ public class AutoCompletionBuildThread extends ThreadAbstract<AutoCompletionBuil
 		}
 	}
 
+	/**
+	 * @param fieldNames    the fields providing the terms
+	 * @param searchRequest an optional request selecting the documents
+	 * @param bufferSize    the number of terms collected between two progress
+	 *                      reports
+	 */
 	public void init(Collection<String> fieldNames, String searchRequest, int bufferSize) {
 		this.fieldNames = fieldNames.toArray(new String[fieldNames.size()]);
 		this.searchRequest = searchRequest;
-		this.bufferSize = bufferSize;
+		this.bufferSize = bufferSize > 0 ? bufferSize : 1000;
 	}
 
 }
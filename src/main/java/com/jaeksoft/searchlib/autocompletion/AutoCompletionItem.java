@@ -27,18 +27,23 @@ package com.jaeksoft.searchlib.autocompletion;
 import java.io.Closeable;
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.InvalidPropertiesFormatException;
+import java.util.List;
 import java.util.Properties;
 import java.util.Set;
 import java.util.TreeSet;
 
+import org.apache.commons.io.FileUtils;
+
 import com.jaeksoft.searchlib.Client;
 import com.jaeksoft.searchlib.SearchLibException;
 import com.jaeksoft.searchlib.config.Config;
 import com.jaeksoft.searchlib.query.QueryUtils;
 import com.jaeksoft.searchlib.request.AbstractSearchRequest;
 import com.jaeksoft.searchlib.result.AbstractResultSearch;
+import com.jaeksoft.searchlib.result.ResultDocument;
 import com.jaeksoft.searchlib.util.InfoCallback;
 import com.jaeksoft.searchlib.util.PropertiesUtils;
 import com.jaeksoft.searchlib.util.ReadWriteLock;
@@ -50,6 +55,8 @@ public class AutoCompletionItem implements Closeable,
 
 	private final ReadWriteLock rwl = new ReadWriteLock();
 
+	private volatile AutoCompletionSuggester suggester = null;
+
 	private Client autoCompClient = null;
 
 	private AutoCompletionBuildThread buildThread = null;
@@ -58,7 +65,11 @@ public class AutoCompletionItem implements Closeable,
 
 	private final File propFile;
 
-	private int propRows;
+	private final File suggesterFile;
+
+	private volatile int propRows;
+
+	private volatile boolean propFuzzy;
 
 	private final Set<String> propFields;
 
@@ -68,6 +79,7 @@ public class AutoCompletionItem implements Closeable,
 	private final static String autoCompletionPropertyField = "field";
 	private final static String autoCompletionPropertyRows = "rows";
 	private final static String autoCompletionPropertyRowsDefault = "10";
+	private final static String autoCompletionPropertyFuzzy = "fuzzy";
 	public final static String autoCompletionSchemaFieldTerm = "term";
 	public final static String autoCompletionSchemaFieldFreq = "freq";
 	public final static String autoCompletionSearchRequest = "searchRequest";
@@ -82,20 +94,21 @@ public class AutoCompletionItem implements Closeable,
 		AutoCompletionManager manager = config.getAutoCompletionManager();
 		this.propFile = new File(manager.getDirectory(), name + ".xml");
 		this.autoCompClientDir = new File(manager.getDirectory(), name);
+		this.suggesterFile = new File(manager.getDirectory(), name + ".fst");
 		this.propRows = 10;
+		this.propFuzzy = false;
 		this.propFields = new TreeSet<String>();
 		this.searchRequest = null;
 	}
 
-	private final static File getAutoCompClientDir(File autoCompPropFile)
+	private final static String getItemName(File autoCompPropFile)
 			throws InvalidPropertiesFormatException {
 		String name = autoCompPropFile.getName();
 		if (name.length() <= 4 || !name.endsWith(".xml"))
 			throw new InvalidPropertiesFormatException(
 					"File is not an XML file: "
 							+ autoCompPropFile.getAbsolutePath());
-		return new File(autoCompPropFile.getParent(), name.substring(0,
-				name.length() - 4));
+		return name.substring(0, name.length() - 4);
 	}
 
 	public AutoCompletionItem(Config config, File autoCompPropFile)
@@ -104,7 +117,10 @@ public class AutoCompletionItem implements Closeable,
 		this.config = config;
 		this.propFields = new TreeSet<String>();
 		this.propFile = autoCompPropFile;
-		this.autoCompClientDir = getAutoCompClientDir(autoCompPropFile);
+		String name = getItemName(autoCompPropFile);
+		this.autoCompClientDir = new File(autoCompPropFile.getParent(), name);
+		this.suggesterFile = new File(autoCompPropFile.getParent(), name
+				+ ".fst");
 		Properties properties = PropertiesUtils.loadFromXml(propFile);
 		int i = 1;
 		for (;;) {
@@ -117,30 +133,56 @@ public class AutoCompletionItem implements Closeable,
 		}
 		propRows = Integer.parseInt(properties.getProperty(
 				autoCompletionPropertyRows, autoCompletionPropertyRowsDefault));
+		propFuzzy = Boolean.parseBoolean(properties
+				.getProperty(autoCompletionPropertyFuzzy));
 		searchRequest = properties.getProperty(autoCompletionSearchRequest);
-		checkIndexAndThread(null);
-	}
-
-	private void checkIndexAndThread(InfoCallback infoCallback)
-			throws SearchLibException {
-		if (autoCompClient == null) {
-			if (!autoCompClientDir.exists())
-				autoCompClientDir.mkdir();
+		if (suggesterFile.exists()) {
+			suggester = AutoCompletionSuggester.load(suggesterFile);
+			FileUtils.deleteQuietly(autoCompClientDir);
+		} else if (autoCompClientDir.exists())
 			autoCompClient = new Client(autoCompClientDir,
 					autoCompletionConfigPath, true);
-		}
+		checkThread(null);
+	}
+
+	private void checkThread(InfoCallback infoCallback) {
 		if (buildThread == null)
 			buildThread = new AutoCompletionBuildThread((Client) config,
-					autoCompClient, infoCallback);
+					this, infoCallback);
 	}
 
-	public Client getAutoCompletionClient() {
-		rwl.r.lock();
-		try {
-			return autoCompClient;
-		} finally {
-			rwl.r.unlock();
-		}
+	/**
+	 * Save and use a new suggester. The lookups in progress keep the previous
+	 * one.
+	 * 
+	 * @param newSuggester
+	 *            the new suggester
+	 * @throws IOException
+	 */
+	void setSuggester(AutoCompletionSuggester newSuggester)
+			throws IOException {
+		newSuggester.save(suggesterFile);
+		suggester = newSuggester;
+	}
+
+	/**
+	 * Delete the index built by the previous versions, once a suggester
+	 * replaces it
+	 */
+	private void checkLegacyIndex() throws IOException {
+		if (autoCompClient == null || suggester == null)
+			return;
+		autoCompClient.close();
+		autoCompClient.delete();
+		autoCompClient = null;
+	}
+
+	/**
+	 * @return the number of suggestions
+	 */
+	public long getSuggestionCount() {
+		AutoCompletionSuggester s = suggester;
+		return s == null ? 0 : s.getSize();
 	}
 
 	public Collection<String> getFields() {
@@ -219,11 +261,32 @@ public class AutoCompletionItem implements Closeable,
 		}
 	}
 
+	/**
+	 * @return true if the suggestions are completed with the terms whose
+	 *         beginning is one edit away from the query
+	 */
+	public boolean isFuzzy() {
+		return propFuzzy;
+	}
+
+	/**
+	 * @param fuzzy
+	 *            true to complete the suggestions with the fuzzy matches
+	 */
+	public void setFuzzy(boolean fuzzy) {
+		rwl.w.lock();
+		try {
+			propFuzzy = fuzzy;
+		} finally {
+			rwl.w.unlock();
+		}
+	}
+
 	public void save() throws SearchLibException {
 		rwl.w.lock();
 		try {
 			saveProperties();
-			checkIndexAndThread(null);
+			checkThread(null);
 		} catch (IOException e) {
 			throw new SearchLibException(e);
 		} finally {
@@ -237,7 +300,10 @@ public class AutoCompletionItem implements Closeable,
 			if (autoCompClient != null) {
 				autoCompClient.close();
 				autoCompClient.delete();
+				autoCompClient = null;
 			}
+			suggester = null;
+			suggesterFile.delete();
 			propFile.delete();
 		} finally {
 			rwl.w.unlock();
@@ -283,11 +349,14 @@ public class AutoCompletionItem implements Closeable,
 		rwl.w.lock();
 		try {
 			checkIfRunning();
-			checkIndexAndThread(infoCallBack);
+			checkLegacyIndex();
+			checkThread(infoCallBack);
 			if (infoCallBack != null)
 				infoCallBack.setInfo("Build starts");
 			buildThread.init(propFields, searchRequest, bufferSize);
 			buildThread.execute(300);
+		} catch (IOException e) {
+			throw new SearchLibException(e);
 		} finally {
 			rwl.w.unlock();
 		}
@@ -295,29 +364,64 @@ public class AutoCompletionItem implements Closeable,
 		try {
 			if (waitForEndTimeOut != null)
 				buildThread.waitForEnd(waitForEndTimeOut);
-			return buildThread.getIndexNumDocs();
-		} catch (IOException e) {
-			throw new SearchLibException(e);
+			return (int) getSuggestionCount();
 		} finally {
 			rwl.r.unlock();
 		}
 	}
 
-	public AbstractResultSearch<?> search(String query, Integer rows)
+	/**
+	 * Find the terms starting with the query. The lookup does not lock the
+	 * item, a build replaces the suggester atomically.
+	 * 
+	 * @param query
+	 *            the beginning of the term
+	 * @param rows
+	 *            the maximum number of terms, or null for the default number
+	 * @return the terms, the most frequent first
+	 * @throws SearchLibException
+	 */
+	public List<String> search(String query, Integer rows)
+			throws SearchLibException {
+		if (query == null || query.length() == 0)
+			return null;
+		if (rows == null)
+			rows = propRows;
+		AutoCompletionSuggester s = suggester;
+		if (s != null) {
+			try {
+				return s.lookup(query, rows, propFuzzy);
+			} catch (IOException e) {
+				throw new SearchLibException(e);
+			}
+		}
+		return searchLegacyIndex(query, rows);
+	}
+
+	/**
+	 * Search the index built by the previous versions, until the first build
+	 */
+	private List<String> searchLegacyIndex(String query, int rows)
 			throws SearchLibException {
 		rwl.r.lock();
 		try {
-			if (query == null || query.length() == 0)
+			if (autoCompClient == null)
 				return null;
-			if (rows == null)
-				rows = propRows;
 			AbstractSearchRequest searchRequest = (AbstractSearchRequest) autoCompClient
 					.getNewRequest("search");
 			query = QueryUtils.replaceControlChars(query.replace("\"", ""));
 			searchRequest.setQueryString(query);
 			searchRequest.setRows(rows);
-			return (AbstractResultSearch<?>) autoCompClient
+			AbstractResultSearch<?> result = (AbstractResultSearch<?>) autoCompClient
 					.request(searchRequest);
+			if (result == null)
+				return null;
+			List<String> terms = new ArrayList<String>(
+					result.getDocumentCount());
+			for (ResultDocument document : result)
+				terms.add(document.getValueContent(
+						autoCompletionSchemaFieldTerm, 0));
+			return terms;
 		} finally {
 			rwl.r.unlock();
 		}
@@ -332,6 +436,8 @@ public class AutoCompletionItem implements Closeable,
 		}
 		properties.setProperty(autoCompletionPropertyRows,
 				Integer.toString(propRows));
+		properties.setProperty(autoCompletionPropertyFuzzy,
+				Boolean.toString(propFuzzy));
 		if (searchRequest != null && searchRequest.length() > 0)
 			properties.setProperty(autoCompletionSearchRequest, searchRequest);
 		PropertiesUtils.storeToXml(properties, propFile);
@@ -0,0 +1,407 @@
+/**
+ * License Agreement for OpenSearchServer
+ * <p>
+ * Copyright (C) 2017 Emmanuel Keller / Jaeksoft
+ * <p>
+ * http://www.open-search-server.com
+ * <p>
+ * This file is part of OpenSearchServer.
+ * <p>
+ * OpenSearchServer is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * <p>
+ * OpenSearchServer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * <p>
+ * You should have received a copy of the GNU General Public License
+ * along with OpenSearchServer.
+ * If not, see <http://www.gnu.org/licenses/>.
+ **/
+
+package com.jaeksoft.searchlib.autocompletion;
+
+import org.apache.lucene.analysis.ASCIIFoldingFilter;
+import org.apache.lucene.search.suggest.fst.Sort;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.store.IndexInput;
+import org.apache.lucene.store.IndexOutput;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.IntsRef;
+import org.apache.lucene.util.fst.FST;
+import org.apache.lucene.util.fst.PositiveIntOutputs;
+import org.apache.lucene.util.fst.Util;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * A weighted finite state suggester. Each key is the normalized term (lower
+ * case, without accents), a separator, then the original term. The output of
+ * a key is its inverted weight, so the best suggestions of a prefix are the
+ * shortest paths from the node of the prefix.
+ * <p>
+ * The suggester is immutable: the lookups do not need any lock.
+ */
+public class AutoCompletionSuggester {
+
+	private final static int VERSION = 1;
+
+	private final static int SEPARATOR = 0;
+
+	private final static int FUZZY_MIN_LENGTH = 3;
+
+	private final static Comparator<Long> WEIGHT_COMPARATOR = (a, b) -> a.compareTo(b);
+
+	private final FST<Long> fst;
+
+	private final long size;
+
+	private AutoCompletionSuggester(final FST<Long> fst, final long size) {
+		this.fst = fst;
+		this.size = size;
+	}
+
+	/**
+	 * @return the number of suggestions
+	 */
+	public long getSize() {
+		return size;
+	}
+
+	/**
+	 * @return the size of the automaton, in bytes
+	 */
+	public int getSizeInBytes() {
+		return fst == null ? 0 : fst.sizeInBytes();
+	}
+
+	/**
+	 * @param term the term
+	 * @return the term in lower case, without accents and separator
+	 */
+	static String normalize(final String term) {
+		final char[] chars = term.toLowerCase(Locale.ROOT).toCharArray();
+		final char[] folded = new char[chars.length * 4];
+		final int length = ASCIIFoldingFilter.foldToASCII(chars, 0, folded, 0, chars.length);
+		final StringBuilder sb = new StringBuilder(length);
+		for (int i = 0; i < length; i++)
+			if (folded[i] != SEPARATOR)
+				sb.append(folded[i]);
+		return sb.toString();
+	}
+
+	/**
+	 * Find the terms starting with the given prefix, the best weights first.
+	 * In fuzzy mode, when there is not enough exact suggestions, the list is
+	 * completed with the terms whose start is one edit away from the prefix.
+	 *
+	 * @param prefix the beginning of the term
+	 * @param rows   the maximum number of suggestions
+	 * @param fuzzy  true to complete with the fuzzy suggestions
+	 * @return the suggestions
+	 * @throws IOException
+	 */
+	public List<String> lookup(final String prefix, final int rows, final boolean fuzzy) throws IOException {
+		final List<String> terms = new ArrayList<String>(rows);
+		if (fst == null || prefix == null || rows <= 0)
+			return terms;
+		final IntsRef key = Util.toUTF32(normalize(prefix), new IntsRef());
+		if (key.length == 0)
+			return terms;
+		final List<Suggestion> suggestions = new ArrayList<Suggestion>(rows);
+		collectExact(key, rows, suggestions);
+		final Set<String> found = new LinkedHashSet<String>();
+		for (Suggestion suggestion : suggestions)
+			found.add(suggestion.term);
+		if (fuzzy && found.size() < rows && key.length >= FUZZY_MIN_LENGTH) {
+			suggestions.clear();
+			final int[] row = new int[key.length + 1];
+			for (int i = 0; i < row.length; i++)
+				row[i] = i;
+			final IntsRef path = new IntsRef(16);
+			collectFuzzy(key, fst.getFirstArc(new FST.Arc<Long>()), fst.outputs.getNoOutput(), row, path,
+					rows, suggestions);
+			suggestions.sort(null);
+			for (Suggestion suggestion : suggestions) {
+				if (found.size() >= rows)
+					break;
+				found.add(suggestion.term);
+			}
+		}
+		terms.addAll(found);
+		return terms;
+	}
+
+	private void collectExact(final IntsRef key, final int rows, final List<Suggestion> suggestions)
+			throws IOException {
+		final FST.BytesReader reader = fst.getBytesReader(0);
+		final FST.Arc<Long> arc = fst.getFirstArc(new FST.Arc<Long>());
+		Long output = fst.outputs.getNoOutput();
+		for (int i = 0; i < key.length; i++) {
+			if (fst.findTargetArc(key.ints[key.offset + i], arc, arc, reader) == null)
+				return;
+			output = fst.outputs.add(output, arc.output);
+		}
+		collectPaths(key, arc, output, rows, suggestions);
+	}
+
+	/**
+	 * Walk the normalized part of the keys, keeping the edit distance between
+	 * the prefix and the path in one row of the Levenshtein matrix. The
+	 * completions of a node are collected as soon as the whole prefix matches.
+	 */
+	private void collectFuzzy(final IntsRef key, final FST.Arc<Long> node, final Long output, final int[] row,
+			final IntsRef path, final int rows, final List<Suggestion> suggestions) throws IOException {
+		if (!FST.targetHasArcs(node))
+			return;
+		final FST.Arc<Long> arc = fst.readFirstTargetArc(node, new FST.Arc<Long>());
+		final int[] nextRow = new int[row.length];
+		for (;;) {
+			if (arc.label != SEPARATOR && arc.label != FST.END_LABEL) {
+				final int label = arc.label;
+				nextRow[0] = row[0] + 1;
+				int min = nextRow[0];
+				for (int i = 1; i < row.length; i++) {
+					final int cost = key.ints[key.offset + i - 1] == label ? 0 : 1;
+					nextRow[i] = Math.min(Math.min(row[i] + 1, nextRow[i - 1] + 1), row[i - 1] + cost);
+					if (nextRow[i] < min)
+						min = nextRow[i];
+				}
+				if (min <= 1) {
+					path.grow(path.length + 1);
+					path.ints[path.length++] = label;
+					final Long arcOutput = fst.outputs.add(output, arc.output);
+					if (nextRow[row.length - 1] <= 1)
+						collectPaths(path, new FST.Arc<Long>().copyFrom(arc), arcOutput, rows, suggestions);
+					else
+						collectFuzzy(key, arc, arcOutput, nextRow.clone(), path, rows, suggestions);
+					path.length--;
+				}
+			}
+			if (arc.isLast())
+				break;
+			fst.readNextArc(arc);
+		}
+	}
+
+	private void collectPaths(final IntsRef prefix, final FST.Arc<Long> arc, final Long output, final int rows,
+			final List<Suggestion> suggestions) throws IOException {
+		final Util.MinResult<Long>[] results = Util.shortestPaths(fst, arc, WEIGHT_COMPARATOR, rows);
+		for (Util.MinResult<Long> result : results)
+			suggestions.add(
+					new Suggestion(getTerm(prefix, result.input), fst.outputs.add(output, result.output)));
+	}
+
+	private static String getTerm(final IntsRef prefix, final IntsRef suffix) {
+		final StringBuilder sb = new StringBuilder();
+		boolean separatorFound = false;
+		for (int i = 0; i < prefix.length; i++) {
+			final int c = prefix.ints[prefix.offset + i];
+			if (separatorFound)
+				sb.appendCodePoint(c);
+			else if (c == SEPARATOR)
+				separatorFound = true;
+		}
+		for (int i = 0; i < suffix.length; i++) {
+			final int c = suffix.ints[suffix.offset + i];
+			if (separatorFound)
+				sb.appendCodePoint(c);
+			else if (c == SEPARATOR)
+				separatorFound = true;
+		}
+		return sb.toString();
+	}
+
+	private static class Suggestion implements Comparable<Suggestion> {
+
+		private final String term;
+		private final long cost;
+
+		private Suggestion(final String term, final long cost) {
+			this.term = term;
+			this.cost = cost;
+		}
+
+		@Override
+		public int compareTo(final Suggestion o) {
+			return Long.compare(cost, o.cost);
+		}
+	}
+
+	/**
+	 * Save the suggester in a new file, which replaces the previous one
+	 *
+	 * @param file the destination file
+	 * @throws IOException
+	 */
+	public void save(final File file) throws IOException {
+		final File tmpFile = new File(file.getParentFile(), file.getName() + ".tmp");
+		try (final Directory directory = FSDirectory.open(file.getParentFile())) {
+			try (final IndexOutput output = directory.createOutput(tmpFile.getName())) {
+				output.writeVInt(VERSION);
+				output.writeVLong(size);
+				output.writeByte((byte) (fst == null ? 0 : 1));
+				if (fst != null)
+					fst.save(output);
+			}
+		}
+		Files.move(tmpFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+				StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	/**
+	 * Read a saved suggester. The file is memory mapped when the platform
+	 * supports it.
+	 *
+	 * @param file the saved suggester
+	 * @return the suggester
+	 * @throws IOException
+	 */
+	public static AutoCompletionSuggester load(final File file) throws IOException {
+		try (final Directory directory = FSDirectory.open(file.getParentFile())) {
+			try (final IndexInput input = directory.openInput(file.getName())) {
+				final int version = input.readVInt();
+				if (version != VERSION)
+					throw new IOException("Unsupported suggester version: " + version);
+				final long size = input.readVLong();
+				final FST<Long> fst =
+						input.readByte() == 0 ? null : new FST<Long>(input, PositiveIntOutputs.getSingleton(true));
+				return new AutoCompletionSuggester(fst, size);
+			}
+		}
+	}
+
+	/**
+	 * Collect the terms in any order. They are sorted on disk, the terms
+	 * having the same normalized form are merged and the best weight is
+	 * kept.
+	 */
+	public static class Builder implements Closeable {
+
+		private final File unsortedFile;
+		private final File sortedFile;
+		private final Sort.ByteSequencesWriter writer;
+		private final BytesRef bytes;
+		private long count;
+
+		public Builder() throws IOException {
+			unsortedFile = File.createTempFile("autocompletion", ".input", Sort.defaultTempDir());
+			sortedFile = File.createTempFile("autocompletion", ".sorted", Sort.defaultTempDir());
+			writer = new Sort.ByteSequencesWriter(unsortedFile);
+			bytes = new BytesRef();
+			count = 0;
+		}
+
+		/**
+		 * @param term   the term
+		 * @param weight the weight of the term, usually the document frequency
+		 * @throws IOException
+		 */
+		public void add(final String term, final int weight) throws IOException {
+			if (term == null || term.indexOf(SEPARATOR) != -1)
+				return;
+			final String normalized = normalize(term);
+			if (normalized.isEmpty())
+				return;
+			final byte[] key = normalized.getBytes(StandardCharsets.UTF_8);
+			final byte[] original = term.getBytes(StandardCharsets.UTF_8);
+			bytes.grow(key.length + original.length + 5);
+			final byte[] b = bytes.bytes;
+			System.arraycopy(key, 0, b, 0, key.length);
+			int pos = key.length;
+			b[pos++] = SEPARATOR;
+			System.arraycopy(original, 0, b, pos, original.length);
+			pos += original.length;
+			final int w = Math.max(0, weight);
+			b[pos++] = (byte) (w >>> 24);
+			b[pos++] = (byte) (w >>> 16);
+			b[pos++] = (byte) (w >>> 8);
+			b[pos++] = (byte) w;
+			writer.write(b, 0, pos);
+			count++;
+		}
+
+		/**
+		 * @return the number of terms added
+		 */
+		public long getCount() {
+			return count;
+		}
+
+		/**
+		 * @return the suggester
+		 * @throws IOException
+		 */
+		public AutoCompletionSuggester build() throws IOException {
+			writer.close();
+			new Sort().sort(unsortedFile, sortedFile);
+			final PositiveIntOutputs outputs = PositiveIntOutputs.getSingleton(true);
+			final org.apache.lucene.util.fst.Builder<Long> builder =
+					new org.apache.lucene.util.fst.Builder<Long>(FST.INPUT_TYPE.BYTE4, outputs);
+			final IntsRef input = new IntsRef();
+			long size = 0;
+			try (final Sort.ByteSequencesReader reader = new Sort.ByteSequencesReader(sortedFile)) {
+				final BytesRef entry = new BytesRef();
+				String currentKey = null;
+				String bestTerm = null;
+				int bestWeight = -1;
+				while (reader.read(entry)) {
+					final byte[] b = entry.bytes;
+					final int end = entry.offset + entry.length - 4;
+					int sep = entry.offset;
+					while (b[sep] != SEPARATOR)
+						sep++;
+					final String key = new String(b, entry.offset, sep - entry.offset, StandardCharsets.UTF_8);
+					final String term = new String(b, sep + 1, end - sep - 1, StandardCharsets.UTF_8);
+					final int weight = ((b[end] & 0xFF) << 24) | ((b[end + 1] & 0xFF) << 16)
+							| ((b[end + 2] & 0xFF) << 8) | (b[end + 3] & 0xFF);
+					if (!key.equals(currentKey)) {
+						if (currentKey != null) {
+							add(builder, input, currentKey, bestTerm, bestWeight);
+							size++;
+						}
+						currentKey = key;
+						bestTerm = term;
+						bestWeight = weight;
+					} else if (weight > bestWeight) {
+						bestTerm = term;
+						bestWeight = weight;
+					}
+				}
+				if (currentKey != null) {
+					add(builder, input, currentKey, bestTerm, bestWeight);
+					size++;
+				}
+			}
+			return new AutoCompletionSuggester(size == 0 ? null : builder.finish(), size);
+		}
+
+		private static void add(final org.apache.lucene.util.fst.Builder<Long> builder, final IntsRef input,
+				final String key, final String term, final int weight) throws IOException {
+			Util.toUTF32(key + (char) SEPARATOR + term, input);
+			builder.add(input, (long) (Integer.MAX_VALUE - weight));
+		}
+
+		@Override
+		public void close() throws IOException {
+			writer.close();
+			unsortedFile.delete();
+			sortedFile.delete();
+		}
+	}
+}
@@ -0,0 +1,119 @@
+/**
+ * License Agreement for OpenSearchServer
+ * <p>
+ * Copyright (C) 2017 Emmanuel Keller / Jaeksoft
+ * <p>
+ * http://www.open-search-server.com
+ * <p>
+ * This file is part of OpenSearchServer.
+ * <p>
+ * OpenSearchServer is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * <p>
+ * OpenSearchServer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * <p>
+ * You should have received a copy of the GNU General Public License
+ * along with OpenSearchServer.
+ * If not, see <http://www.gnu.org/licenses/>.
+ **/
+
+package com.jaeksoft.searchlib.cache;
+
+/**
+ * A count-min sketch of 4-bit counters estimating how often an item has been
+ * requested (TinyLFU). The counters are halved periodically so the history
+ * ages. Not thread safe: the cache uses it under its policy lock.
+ */
+class FrequencySketch {
+
+	private static final long[] SEEDS =
+			{ 0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L };
+
+	private static final long RESET_MASK = 0x7777777777777777L;
+
+	private long[] table;
+	private int tableMask;
+	private int sampleSize;
+	private int size;
+
+	FrequencySketch(final int maximumSize) {
+		ensureCapacity(maximumSize);
+	}
+
+	final void ensureCapacity(final int maximumSize) {
+		int maximum = Math.max(16, Math.min(maximumSize, 1 << 24));
+		if (table != null && table.length >= maximum)
+			return;
+		table = new long[Integer.highestOneBit(maximum - 1) << 1];
+		tableMask = table.length - 1;
+		sampleSize = 10 * maximum;
+		size = 0;
+	}
+
+	private static int spread(int x) {
+		x = ((x >>> 16) ^ x) * 0x45d9f3b;
+		x = ((x >>> 16) ^ x) * 0x45d9f3b;
+		return (x >>> 16) ^ x;
+	}
+
+	private int indexOf(final int hash, final int i) {
+		long h = (hash + SEEDS[i]) * SEEDS[i];
+		h += h >>> 32;
+		return ((int) h) & tableMask;
+	}
+
+	/**
+	 * @param hash the hash code of the item
+	 * @return the estimated number of occurrences (0 to 15)
+	 */
+	final int frequency(final int hash) {
+		final int h = spread(hash);
+		final int start = (h & 3) << 2;
+		int frequency = Integer.MAX_VALUE;
+		for (int i = 0; i < 4; i++) {
+			final int offset = (start + i) << 2;
+			final int count = (int) ((table[indexOf(h, i)] >>> offset) & 0xfL);
+			frequency = Math.min(frequency, count);
+		}
+		return frequency;
+	}
+
+	/**
+	 * Record one occurrence of the item
+	 *
+	 * @param hash the hash code of the item
+	 */
+	final void increment(final int hash) {
+		final int h = spread(hash);
+		final int start = (h & 3) << 2;
+		boolean added = false;
+		for (int i = 0; i < 4; i++) {
+			final int index = indexOf(h, i);
+			final int offset = (start + i) << 2;
+			final long mask = 0xfL << offset;
+			if ((table[index] & mask) != mask) {
+				table[index] += 1L << offset;
+				added = true;
+			}
+		}
+		if (added && ++size == sampleSize)
+			reset();
+	}
+
+	private void reset() {
+		for (int i = 0; i < table.length; i++)
+			table[i] = (table[i] >>> 1) & RESET_MASK;
+		size = size >>> 1;
+	}
+
+	final void clear() {
+		for (int i = 0; i < table.length; i++)
+			table[i] = 0;
+		size = 0;
+	}
+}
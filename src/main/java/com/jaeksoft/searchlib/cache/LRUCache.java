@@ -26,272 +26,519 @@ package com.jaeksoft.searchlib.cache;
 
 import java.io.PrintWriter;
 import java.text.NumberFormat;
-import java.util.LinkedHashMap;
-import java.util.Map;
-import java.util.TreeMap;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
 
-import com.jaeksoft.searchlib.util.ReadWriteLock;
 import com.jaeksoft.searchlib.util.StringUtils;
 import com.jaeksoft.searchlib.util.Timer;
 
+/**
+ * A concurrent cache bounded by the number of items and by their estimated
+ * memory weight.
+ * 
+ * Lookups are lock-free: the accesses are recorded in striped lossy buffers
+ * which are replayed on the eviction policy under a lock, only when the lock
+ * is free. The policy is a W-TinyLFU: new items enter a small LRU window,
+ * then must beat the least recently used item of the main space according to
+ * their estimated frequency (TinyLFU admission) to stay in the cache.
+ */
 public abstract class LRUCache<K extends LRUItemAbstract<K>> {
 
-	final private ReadWriteLock rwl = new ReadWriteLock();
+	private final static int WINDOW = 1;
+	private final static int PROBATION = 2;
+	private final static int PROTECTED = 3;
 
-	private TreeMap<K, K> cacheMap;
-	private EvictionQueue evictionQueue;
+	private final static int READ_BUFFER_STRIPES = 16;
+	private final static int READ_BUFFER_SIZE = 32;
+	private final static int READ_BUFFER_DRAIN_THRESHOLD = 8;
 
 	private final String name;
 
-	private int maxSize;
-	private long evictions;
-	private long lookups;
-	private long hits;
-	private long inserts;
-
-	private class EvictionQueue extends LinkedHashMap<K, K> {
-
-		/**
-		 * 
-		 */
-		private static final long serialVersionUID = 2876891913920705107L;
-
-		@Override
-		protected boolean removeEldestEntry(Map.Entry<K, K> eldest) {
-			if (size() <= maxSize)
-				return false;
-			cacheMap.remove(eldest.getKey());
-			evictions++;
-			return true;
+	private final ConcurrentHashMap<K, K> cacheMap;
+
+	private final ReentrantLock policyLock = new ReentrantLock();
+	private final AccessQueue windowQueue;
+	private final AccessQueue probationQueue;
+	private final AccessQueue protectedQueue;
+	private final FrequencySketch sketch;
+	private volatile long weight;
+
+	private final AtomicReferenceArray<K> readBuffer;
+	private final AtomicLongArray readBufferWrites;
+	private final AtomicLongArray readBufferReads;
+
+	private volatile int maxSize;
+	private volatile long maxWeight;
+
+	private final LongAdder evictions;
+	private final LongAdder hits;
+	private final LongAdder misses;
+	private final LongAdder inserts;
+	private final LongAdder loads;
+	private final LongAdder loadTime;
+
+	/**
+	 * A doubly linked list of items ordered from the most recently used to
+	 * the least recently used. Guarded by the policy lock.
+	 */
+	private final class AccessQueue {
+
+		private final int id;
+		private K head;
+		private K tail;
+		private int size;
+
+		private AccessQueue(int id) {
+			this.id = id;
+			head = null;
+			tail = null;
+			size = 0;
+		}
+
+		private void addFirst(final K item) {
+			item.cacheQueue = id;
+			item.cachePrev = null;
+			item.cacheNext = head;
+			if (head != null)
+				head.cachePrev = item;
+			else
+				tail = item;
+			head = item;
+			size++;
+		}
+
+		private void unlink(final K item) {
+			final K prev = item.cachePrev;
+			final K next = item.cacheNext;
+			if (prev != null)
+				prev.cacheNext = next;
+			else
+				head = next;
+			if (next != null)
+				next.cachePrev = prev;
+			else
+				tail = prev;
+			item.cachePrev = null;
+			item.cacheNext = null;
+			item.cacheQueue = 0;
+			size--;
+		}
+
+		private void moveToFirst(final K item) {
+			if (head == item)
+				return;
+			unlink(item);
+			addFirst(item);
+		}
+
+		private void collect(final List<K> items, final int max) {
+			K item = head;
+			while (item != null && items.size() < max) {
+				items.add(item);
+				item = item.cacheNext;
+			}
+		}
+
+		private void clear() {
+			while (head != null)
+				unlink(head);
 		}
 	}
 
 	protected LRUCache(String name, int maxSize) {
 		this.name = name;
-		this.evictions = 0;
-		this.lookups = 0;
-		this.inserts = 0;
-		this.hits = 0;
-		this.maxSize = 0;
-		this.cacheMap = null;
-		this.evictionQueue = null;
-		setMaxSize_noLock(maxSize);
-	}
-
-	private void setMaxSize_noLock(int newMaxSize) {
-		if (newMaxSize == maxSize)
-			return;
-		if (newMaxSize == 0) {
-			clear_nolock();
-			cacheMap = null;
-			evictionQueue = null;
-		} else {
-			if (newMaxSize < maxSize) {
-				cacheMap = null;
-				evictionQueue = null;
+		this.cacheMap = new ConcurrentHashMap<K, K>();
+		this.windowQueue = new AccessQueue(WINDOW);
+		this.probationQueue = new AccessQueue(PROBATION);
+		this.protectedQueue = new AccessQueue(PROTECTED);
+		this.sketch = new FrequencySketch(maxSize);
+		this.weight = 0;
+		this.readBuffer = new AtomicReferenceArray<K>(READ_BUFFER_STRIPES * READ_BUFFER_SIZE);
+		this.readBufferWrites = new AtomicLongArray(READ_BUFFER_STRIPES);
+		this.readBufferReads = new AtomicLongArray(READ_BUFFER_STRIPES);
+		this.maxSize = maxSize;
+		this.maxWeight = Long.MAX_VALUE;
+		this.evictions = new LongAdder();
+		this.hits = new LongAdder();
+		this.misses = new LongAdder();
+		this.inserts = new LongAdder();
+		this.loads = new LongAdder();
+		this.loadTime = new LongAdder();
+	}
+
+	public void setMaxSize(int newMaxSize) {
+		policyLock.lock();
+		try {
+			maxSize = newMaxSize;
+			if (newMaxSize == 0) {
+				clear_nolock();
+				return;
 			}
-			if (cacheMap == null)
-				cacheMap = new TreeMap<K, K>();
-			if (evictionQueue == null)
-				evictionQueue = new EvictionQueue();
+			sketch.ensureCapacity(newMaxSize);
+			evict_nolock(null);
+		} finally {
+			policyLock.unlock();
 		}
-		maxSize = newMaxSize;
 	}
 
-	public void setMaxSize(int newMaxSize) {
-		rwl.w.lock();
+	/**
+	 * @param newMaxWeight
+	 *            the maximum estimated memory used by the items, in bytes.
+	 *            Zero or less means no weight limit.
+	 */
+	public void setMaxWeight(long newMaxWeight) {
+		policyLock.lock();
 		try {
-			setMaxSize_noLock(newMaxSize);
+			maxWeight = newMaxWeight <= 0 ? Long.MAX_VALUE : newMaxWeight;
+			evict_nolock(null);
 		} finally {
-			rwl.w.unlock();
+			policyLock.unlock();
 		}
 	}
 
 	final protected K getAndPromote(final K newItem) {
-		rwl.w.lock();
-		try {
-			if (cacheMap == null)
-				return newItem;
-			lookups++;
-			K prevItem = cacheMap.get(newItem);
-			if (prevItem != null) {
-				evictionQueue.remove(prevItem);
-				evictionQueue.put(prevItem, prevItem);
-				hits++;
-				return prevItem;
-			}
-			evictionQueue.put(newItem, newItem);
-			cacheMap.put(newItem, newItem);
-			inserts++;
+		if (maxSize == 0)
 			return newItem;
+		K prevItem = cacheMap.get(newItem);
+		if (prevItem != null) {
+			hits.increment();
+			recordRead(prevItem);
+			return prevItem;
+		}
+		misses.increment();
+		prevItem = cacheMap.putIfAbsent(newItem, newItem);
+		if (prevItem != null) {
+			recordRead(prevItem);
+			return prevItem;
+		}
+		inserts.increment();
+		policyLock.lock();
+		try {
+			drainReadBuffers_nolock();
+			insert_nolock(newItem);
 		} finally {
-			rwl.w.unlock();
+			policyLock.unlock();
 		}
+		return newItem;
 	}
 
 	final public void put(final K item) {
-		rwl.w.lock();
+		if (maxSize == 0)
+			return;
+		K prevItem = cacheMap.put(item, item);
+		inserts.increment();
+		policyLock.lock();
 		try {
-			if (cacheMap == null)
-				return;
-			evictionQueue.put(item, item);
-			cacheMap.put(item, item);
-			inserts++;
+			if (prevItem != null && prevItem != item)
+				unlink_nolock(prevItem);
+			insert_nolock(item);
 		} finally {
-			rwl.w.unlock();
+			policyLock.unlock();
 		}
 	}
 
 	final public boolean remove(final K key) {
-		rwl.w.lock();
+		K item = cacheMap.remove(key);
+		if (item == null)
+			return false;
+		policyLock.lock();
 		try {
-			if (cacheMap == null)
-				return false;
-			K item1 = cacheMap.remove(key);
-			K item2 = evictionQueue.remove(key);
-			if (item1 == null && item2 == null)
-				return false;
-			evictions++;
-			return true;
+			unlink_nolock(item);
 		} finally {
-			rwl.w.unlock();
+			policyLock.unlock();
 		}
+		evictions.increment();
+		return true;
 	}
 
 	public K getAndJoin(K item, Timer timer) throws Exception {
-		item = getAndPromote(item);
+		K cachedItem = getAndPromote(item);
+		if (cachedItem != item || maxSize == 0) {
+			cachedItem.join(timer);
+			return cachedItem;
+		}
+		long start = System.nanoTime();
 		item.join(timer);
+		loadTime.add(System.nanoTime() - start);
+		loads.increment();
+		updateWeight(item);
 		return item;
 	}
 
-	final private void clear_nolock() {
-		if (cacheMap != null)
-			cacheMap.clear();
-		if (evictionQueue != null)
-			evictionQueue.clear();
-	}
-
-	final public void clear() {
-		rwl.w.lock();
+	/**
+	 * Record a cache hit without blocking. The access is dropped if the
+	 * buffer of the stripe is full.
+	 * 
+	 * @param item
+	 */
+	private void recordRead(final K item) {
+		final int stripe = (int) Thread.currentThread().getId() & (READ_BUFFER_STRIPES - 1);
+		final long writes = readBufferWrites.get(stripe);
+		final long pending = writes - readBufferReads.get(stripe);
+		if (pending < READ_BUFFER_SIZE && readBufferWrites.compareAndSet(stripe, writes, writes + 1))
+			readBuffer.lazySet(stripe * READ_BUFFER_SIZE + (int) (writes & (READ_BUFFER_SIZE - 1)), item);
+		if (pending < READ_BUFFER_DRAIN_THRESHOLD)
+			return;
+		if (!policyLock.tryLock())
+			return;
 		try {
-			clear_nolock();
+			drainReadBuffers_nolock();
 		} finally {
-			rwl.w.unlock();
+			policyLock.unlock();
 		}
 	}
 
-	@Override
-	final public String toString() {
-		rwl.r.lock();
-		try {
-			return StringUtils
-					.fastConcat(
-							name,
-							" - Size: ",
-							cacheMap == null ? 0 : Integer.toString(cacheMap
-									.size()),
-							'/',
-							evictionQueue == null ? 0 : Integer
-									.toString(evictionQueue.size())
-									+ " - MaxSize: ",
-							Integer.toString(maxSize), " - Lookup: ", Long
-									.toString(lookups), " - Insert: ", Long
-									.toString(inserts), " HitRatio: ",
-							getHitRatioPercent());
-		} finally {
-			rwl.r.unlock();
+	private void drainReadBuffers_nolock() {
+		for (int stripe = 0; stripe < READ_BUFFER_STRIPES; stripe++) {
+			long reads = readBufferReads.get(stripe);
+			final long writes = readBufferWrites.get(stripe);
+			while (reads < writes) {
+				final int index = stripe * READ_BUFFER_SIZE + (int) (reads & (READ_BUFFER_SIZE - 1));
+				final K item = readBuffer.getAndSet(index, null);
+				if (item == null)
+					break;
+				access_nolock(item);
+				reads++;
+			}
+			readBufferReads.lazySet(stripe, reads);
 		}
 	}
 
-	final public void xmlInfo(PrintWriter writer) {
-		rwl.r.lock();
-		try {
-			float hitRatio = getHitRatio();
-			writer.println("<cache class=\"" + this.getClass().getName()
-					+ "\" maxSize=\"" + this.maxSize + "\" size=\"" + cacheMap == null ? "0"
-					: cacheMap.size() + "\" hitRatio=\"" + hitRatio
-							+ "\" lookups=\"" + lookups + "\" hits=\"" + hits
-							+ "\" inserts=\"" + inserts + "\" evictions=\""
-							+ evictions + "\">");
-			writer.println("</cache>");
-		} finally {
-			rwl.r.unlock();
+	private int getWindowMaxSize() {
+		return Math.max(1, maxSize / 100);
+	}
+
+	private int getProtectedMaxSize() {
+		return Math.max(1, (maxSize - getWindowMaxSize()) * 4 / 5);
+	}
+
+	private int getPolicySize() {
+		return windowQueue.size + probationQueue.size + protectedQueue.size;
+	}
+
+	private AccessQueue getQueue(final K item) {
+		switch (item.cacheQueue) {
+		case WINDOW:
+			return windowQueue;
+		case PROBATION:
+			return probationQueue;
+		case PROTECTED:
+			return protectedQueue;
+		default:
+			return null;
 		}
 	}
 
-	final public String getName() {
-		rwl.r.lock();
-		try {
-			return name;
-		} finally {
-			rwl.r.unlock();
+	private void insert_nolock(final K item) {
+		// The item may have been removed before we got the lock
+		if (cacheMap.get(item) != item || item.cacheQueue != 0)
+			return;
+		sketch.increment(item.hashCode());
+		item.cacheWeight = item.estimateWeight();
+		weight += item.cacheWeight;
+		windowQueue.addFirst(item);
+		K candidate = null;
+		while (windowQueue.size > getWindowMaxSize()) {
+			candidate = windowQueue.tail;
+			windowQueue.unlink(candidate);
+			probationQueue.addFirst(candidate);
 		}
+		evict_nolock(candidate);
 	}
 
-	final public int getSize() {
-		rwl.r.lock();
-		try {
-			return cacheMap == null ? 0 : cacheMap.size();
-		} finally {
-			rwl.r.unlock();
+	private void access_nolock(final K item) {
+		if (item.cacheQueue == 0)
+			return;
+		sketch.increment(item.hashCode());
+		switch (item.cacheQueue) {
+		case WINDOW:
+			windowQueue.moveToFirst(item);
+			break;
+		case PROBATION:
+			probationQueue.unlink(item);
+			protectedQueue.addFirst(item);
+			while (protectedQueue.size > getProtectedMaxSize()) {
+				K demoted = protectedQueue.tail;
+				protectedQueue.unlink(demoted);
+				probationQueue.addFirst(demoted);
+			}
+			break;
+		case PROTECTED:
+			protectedQueue.moveToFirst(item);
+			break;
 		}
 	}
 
-	final public int getMaxSize() {
-		rwl.r.lock();
-		try {
-			return maxSize;
-		} finally {
-			rwl.r.unlock();
+	private void unlink_nolock(final K item) {
+		AccessQueue queue = getQueue(item);
+		if (queue == null)
+			return;
+		queue.unlink(item);
+		weight -= item.cacheWeight;
+	}
+
+	/**
+	 * Evict until the cache fits its bounds. The candidate coming from the
+	 * window is admitted only if it is more frequent than the victim.
+	 * 
+	 * @param candidate
+	 */
+	private void evict_nolock(K candidate) {
+		while (getPolicySize() > maxSize || weight > maxWeight) {
+			K victim = probationQueue.tail;
+			if (victim == null)
+				victim = protectedQueue.tail;
+			if (victim == null)
+				victim = windowQueue.tail;
+			if (victim == null)
+				return;
+			if (candidate != null && candidate != victim && candidate.cacheQueue == PROBATION) {
+				if (sketch.frequency(candidate.hashCode()) <= sketch.frequency(victim.hashCode()))
+					victim = candidate;
+				candidate = null;
+			}
+			unlink_nolock(victim);
+			cacheMap.remove(victim, victim);
+			evictions.increment();
 		}
 	}
 
-	final public long getEvictions() {
-		rwl.r.lock();
+	private void updateWeight(final K item) {
+		policyLock.lock();
 		try {
-			return evictions;
+			if (item.cacheQueue == 0)
+				return;
+			long newWeight = item.estimateWeight();
+			weight += newWeight - item.cacheWeight;
+			item.cacheWeight = newWeight;
+			evict_nolock(null);
 		} finally {
-			rwl.r.unlock();
+			policyLock.unlock();
 		}
 	}
 
-	final public long getLookups() {
-		rwl.r.lock();
+	/**
+	 * Returns the most recently used items: the window first, then the
+	 * frequently used items.
+	 * 
+	 * @param max
+	 *            the maximum number of items to return
+	 * @return a list of items
+	 */
+	final public List<K> getRecentItems(final int max) {
+		List<K> items = new ArrayList<K>();
+		if (max <= 0)
+			return items;
+		policyLock.lock();
 		try {
-			return lookups;
+			windowQueue.collect(items, max);
+			protectedQueue.collect(items, max);
+			probationQueue.collect(items, max);
+			return items;
 		} finally {
-			rwl.r.unlock();
+			policyLock.unlock();
 		}
 	}
 
-	final public long getHits() {
-		rwl.r.lock();
+	final private void clear_nolock() {
+		cacheMap.clear();
+		windowQueue.clear();
+		probationQueue.clear();
+		protectedQueue.clear();
+		weight = 0;
+	}
+
+	final public void clear() {
+		policyLock.lock();
 		try {
-			return hits;
+			clear_nolock();
 		} finally {
-			rwl.r.unlock();
+			policyLock.unlock();
 		}
 	}
 
+	@Override
+	final public String toString() {
+		return StringUtils.fastConcat(name, " - Size: ", Integer.toString(getSize()), " - MaxSize: ",
+				Integer.toString(maxSize), " - Weight: ", Long.toString(weight), " - Lookup: ",
+				Long.toString(getLookups()), " - Insert: ", Long.toString(getInserts()), " HitRatio: ",
+				getHitRatioPercent());
+	}
+
+	final public void xmlInfo(PrintWriter writer) {
+		writer.println("<cache class=\"" + this.getClass().getName() + "\" maxSize=\"" + maxSize + "\" size=\""
+				+ getSize() + "\" weight=\"" + weight + "\" hitRatio=\"" + getHitRatio() + "\" lookups=\""
+				+ getLookups() + "\" hits=\"" + getHits() + "\" misses=\"" + getMisses() + "\" inserts=\""
+				+ getInserts() + "\" evictions=\"" + getEvictions() + "\" averageLoadTime=\""
+				+ getAverageLoadTime() + "\">");
+		writer.println("</cache>");
+	}
+
+	final public String getName() {
+		return name;
+	}
+
+	final public int getSize() {
+		return cacheMap.size();
+	}
+
+	final public int getMaxSize() {
+		return maxSize;
+	}
+
+	/**
+	 * @return the estimated memory used by the cached items, in bytes
+	 */
+	final public long getWeight() {
+		return weight;
+	}
+
+	final public long getMaxWeight() {
+		return maxWeight == Long.MAX_VALUE ? 0 : maxWeight;
+	}
+
+	final public long getEvictions() {
+		return evictions.sum();
+	}
+
+	final public long getLookups() {
+		return hits.sum() + misses.sum();
+	}
+
+	final public long getHits() {
+		return hits.sum();
+	}
+
+	final public long getMisses() {
+		return misses.sum();
+	}
+
 	final public long getInserts() {
-		rwl.r.lock();
-		try {
-			return inserts;
-		} finally {
-			rwl.r.unlock();
-		}
+		return inserts.sum();
+	}
+
+	/**
+	 * @return the average time spent populating a new item, in milliseconds
+	 */
+	final public float getAverageLoadTime() {
+		long count = loads.sum();
+		if (count == 0)
+			return 0;
+		return (float) loadTime.sum() / count / 1000000;
 	}
 
 	final public float getHitRatio() {
-		rwl.r.lock();
-		try {
-			if (hits > 0 && lookups > 0)
-				return (float) (((float) hits) / ((float) lookups));
-			else
-				return 0;
-		} finally {
-			rwl.r.unlock();
-		}
+		long h = hits.sum();
+		long l = h + misses.sum();
+		if (h > 0 && l > 0)
+			return (float) (((float) h) / ((float) l));
+		else
+			return 0;
 	}
 
 	final public String getHitRatioPercent() {
@@ -33,8 +33,38 @@ public abstract class LRUItemAbstract<K> implements Comparable<K> {
 
 	private Boolean populated = false;
 
+	// Eviction policy state, guarded by the policy lock of the owning cache
+	K cachePrev = null;
+	K cacheNext = null;
+	int cacheQueue = 0;
+	long cacheWeight = 0;
+
 	protected abstract void populate(Timer timer) throws Exception;
 
+	/**
+	 * Items are stored in hash maps: the hash code must be consistent with
+	 * compareTo.
+	 */
+	@Override
+	public abstract int hashCode();
+
+	@SuppressWarnings("unchecked")
+	@Override
+	public boolean equals(Object o) {
+		if (o == this)
+			return true;
+		if (o == null || o.getClass() != getClass())
+			return false;
+		return compareTo((K) o) == 0;
+	}
+
+	/**
+	 * @return the estimated memory used by this item, in bytes
+	 */
+	protected long estimateWeight() {
+		return 64;
+	}
+
 	final public void join(Timer timer) throws Exception {
 		rwl.r.lock();
 		try {
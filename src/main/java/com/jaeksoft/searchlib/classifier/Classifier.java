@@ -47,7 +47,10 @@ import javax.xml.transform.stream.StreamSource;
 import javax.xml.xpath.XPathExpressionException;
 import java.io.File;
 import java.io.IOException;
+import java.util.BitSet;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.TreeSet;
 
 public class Classifier implements Comparable<Classifier>, XmlWriter.Interface {
@@ -77,11 +80,14 @@ public class Classifier implements Comparable<Classifier>, XmlWriter.Interface {
 
 	private ClassifierItem[] valueSetArray;
 
+	private final Map<LanguageEnum, ClassifierQueryIndex> queryIndexMap;
+
 	private ClassificationMethodEnum method;
 
 	public Classifier() {
 		valueSetArray = null;
 		valueSet = new TreeSet<ClassifierItem>();
+		queryIndexMap = new HashMap<LanguageEnum, ClassifierQueryIndex>();
 		name = null;
 		fieldName = null;
 		scoreFieldName = null;
@@ -182,6 +188,30 @@ public class Classifier implements Comparable<Classifier>, XmlWriter.Interface {
 	private final void buildValueSetArray() {
 		valueSetArray = new ClassifierItem[valueSet.size()];
 		valueSet.toArray(valueSetArray);
+		synchronized (queryIndexMap) {
+			queryIndexMap.clear();
+		}
+	}
+
+	/**
+	 * The query index is built on first use for each language, and kept until
+	 * the items change.
+	 *
+	 * @param client the client which parses the queries
+	 * @param lang   the language of the document
+	 * @return the query index of the items
+	 */
+	private ClassifierQueryIndex getQueryIndex(Client client, LanguageEnum lang)
+			throws ParseException, SearchLibException, SyntaxError, IOException {
+		synchronized (queryIndexMap) {
+			ClassifierQueryIndex queryIndex = queryIndexMap.get(lang);
+			if (queryIndex == null) {
+				queryIndex = new ClassifierQueryIndex(client, lang,
+						valueSetArray == null ? new ClassifierItem[0] : valueSetArray);
+				queryIndexMap.put(lang, queryIndex);
+			}
+			return queryIndex;
+		}
 	}
 
 	private final void addNoLock(ClassifierItem item) {
@@ -315,11 +345,13 @@ public class Classifier implements Comparable<Classifier>, XmlWriter.Interface {
 		}
 	}
 
-	private void multivaluedClassification(Client client, IndexDocument document, LanguageEnum lang, MemoryIndex index)
-			throws ParseException, SearchLibException, SyntaxError, IOException {
+	private void multivaluedClassification(IndexDocument document, ClassifierQueryIndex queryIndex, MemoryIndex index)
+			throws IOException {
 		boolean setDefaultValue = defaultValue != null && defaultValue.length() > 0;
-		for (ClassifierItem item : valueSet) {
-			float score = item.score(client, lang, index);
+		BitSet candidates = queryIndex.getCandidates(index);
+		for (int pos = candidates.nextSetBit(0); pos >= 0; pos = candidates.nextSetBit(pos + 1)) {
+			float score = queryIndex.score(pos, index);
+			ClassifierItem item = queryIndex.getItem(pos);
 			if (score > 0.0f) {
 				document.add(fieldName, item.getValue(), item.getBoost());
 				if (scoreFieldName != null && scoreFieldName.length() > 0)
@@ -333,14 +365,15 @@ public class Classifier implements Comparable<Classifier>, XmlWriter.Interface {
 
 	private final static ThreadSafeDecimalFormat scoreFormat = new ThreadSafeDecimalFormat("0.###########");
 
-	private void bestScoreClassification(Client client, IndexDocument document, LanguageEnum lang, MemoryIndex index)
-			throws ParseException, SearchLibException, SyntaxError, IOException {
+	private void bestScoreClassification(IndexDocument document, ClassifierQueryIndex queryIndex, MemoryIndex index)
+			throws IOException {
 		ClassifierItem selectedItem = null;
 		float maxScore = 0;
-		for (ClassifierItem item : valueSet) {
-			float score = item.score(client, lang, index);
+		BitSet candidates = queryIndex.getCandidates(index);
+		for (int pos = candidates.nextSetBit(0); pos >= 0; pos = candidates.nextSetBit(pos + 1)) {
+			float score = queryIndex.score(pos, index);
 			if (score > maxScore) {
-				selectedItem = item;
+				selectedItem = queryIndex.getItem(pos);
 				maxScore = score;
 			}
 		}
@@ -368,10 +401,11 @@ public class Classifier implements Comparable<Classifier>, XmlWriter.Interface {
 				String concatValues = fieldContent.getMergedValues(" ");
 				index.addField(fieldName, concatValues, analyzer);
 			}
+			ClassifierQueryIndex queryIndex = getQueryIndex(client, lang);
 			if (method == ClassificationMethodEnum.MULTIVALUED)
-				multivaluedClassification(client, document, lang, index);
+				multivaluedClassification(document, queryIndex, index);
 			else if (method == ClassificationMethodEnum.BESTSCORE)
-				bestScoreClassification(client, document, lang, index);
+				bestScoreClassification(document, queryIndex, index);
 
 		} finally {
 			rwl.r.unlock();
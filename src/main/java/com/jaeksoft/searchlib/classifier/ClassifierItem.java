@@ -30,7 +30,6 @@ import java.util.Map;
 
 import javax.xml.xpath.XPathExpressionException;
 
-import org.apache.lucene.index.memory.MemoryIndex;
 import org.apache.lucene.search.Query;
 import org.w3c.dom.Node;
 import org.xml.sax.SAXException;
@@ -225,15 +224,26 @@ public class ClassifierItem implements Comparable<ClassifierItem> {
 				.getNumFound();
 	}
 
-	protected final float score(Client client, LanguageEnum lang,
-			MemoryIndex index) throws ParseException, SearchLibException,
-			SyntaxError, IOException {
+	/**
+	 * @param client
+	 *            the client which parses the query
+	 * @param lang
+	 *            the language of the document
+	 * @return the parsed query, cached per language
+	 * @throws ParseException
+	 * @throws SearchLibException
+	 * @throws SyntaxError
+	 * @throws IOException
+	 */
+	protected final Query getCompiledQuery(Client client, LanguageEnum lang)
+			throws ParseException, SearchLibException, SyntaxError,
+			IOException {
 		Query qry = queryMap.get(lang);
 		if (qry == null) {
 			AbstractSearchRequest searchRequest = getSearchRequest(client, lang);
 			qry = searchRequest.getQuery();
 			queryMap.put(lang, qry);
 		}
-		return index.search(qry);
+		return qry;
 	}
 }
@@ -0,0 +1,207 @@
+/**
+ * License Agreement for OpenSearchServer
+ * <p>
+ * Copyright (C) 2017 Emmanuel Keller / Jaeksoft
+ * <p>
+ * http://www.open-search-server.com
+ * <p>
+ * This file is part of OpenSearchServer.
+ * <p>
+ * OpenSearchServer is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * <p>
+ * OpenSearchServer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * <p>
+ * You should have received a copy of the GNU General Public License
+ * along with OpenSearchServer.
+ * If not, see <http://www.gnu.org/licenses/>.
+ **/
+
+package com.jaeksoft.searchlib.classifier;
+
+import com.jaeksoft.searchlib.Client;
+import com.jaeksoft.searchlib.SearchLibException;
+import com.jaeksoft.searchlib.analysis.LanguageEnum;
+import com.jaeksoft.searchlib.function.expression.SyntaxError;
+import com.jaeksoft.searchlib.query.ParseException;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.index.TermEnum;
+import org.apache.lucene.index.memory.MemoryIndex;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.DisjunctionMaxQuery;
+import org.apache.lucene.search.PhraseQuery;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.TermQuery;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The queries of the items of a classifier, compiled for one language and
+ * indexed by the terms a document must contain to match them. A document is
+ * only scored against the items whose terms it contains, and against the items
+ * whose query gives no such terms (wildcards, fuzzy queries, ...).
+ */
+class ClassifierQueryIndex {
+
+	private final ClassifierItem[] items;
+	private final Query[] queries;
+	private final Map<Term, int[]> termMap;
+	private final BitSet unindexed;
+
+	ClassifierQueryIndex(final Client client, final LanguageEnum lang, final ClassifierItem[] items)
+			throws ParseException, SearchLibException, SyntaxError, IOException {
+		this(items, compileQueries(client, lang, items));
+	}
+
+	/**
+	 * @param items   the items
+	 * @param queries the compiled query of each item
+	 */
+	ClassifierQueryIndex(final ClassifierItem[] items, final Query[] queries) {
+		this.items = items;
+		this.queries = queries;
+		this.unindexed = new BitSet(items.length);
+		final Map<Term, List<Integer>> termLists = new HashMap<Term, List<Integer>>();
+		for (int i = 0; i < items.length; i++) {
+			final Set<Term> terms = getRequiredTerms(queries[i]);
+			if (terms == null) {
+				unindexed.set(i);
+				continue;
+			}
+			for (Term term : terms)
+				termLists.computeIfAbsent(term, t -> new ArrayList<Integer>(1)).add(i);
+		}
+		termMap = new HashMap<Term, int[]>();
+		termLists.forEach((term, list) -> termMap.put(term, list.stream().mapToInt(Integer::intValue).toArray()));
+	}
+
+	private static Query[] compileQueries(final Client client, final LanguageEnum lang,
+			final ClassifierItem[] items) throws ParseException, SearchLibException, SyntaxError, IOException {
+		final Query[] queries = new Query[items.length];
+		for (int i = 0; i < items.length; i++)
+			queries[i] = items[i].getCompiledQuery(client, lang);
+		return queries;
+	}
+
+	/**
+	 * Find a set of terms such as a document matching the query contains at
+	 * least one of them.
+	 *
+	 * @param query the query
+	 * @return the terms, or null if the query cannot be indexed
+	 */
+	private static Set<Term> getRequiredTerms(final Query query) {
+		if (query instanceof TermQuery)
+			return new HashSet<Term>(Arrays.asList(((TermQuery) query).getTerm()));
+		if (query instanceof PhraseQuery) {
+			// Any term of the phrase is required, the longest one is the most selective
+			Term required = null;
+			for (Term term : ((PhraseQuery) query).getTerms())
+				if (required == null || term.text().length() > required.text().length())
+					required = term;
+			return required == null ? null : new HashSet<Term>(Arrays.asList(required));
+		}
+		if (query instanceof DisjunctionMaxQuery) {
+			final Set<Term> terms = new HashSet<Term>();
+			for (Query disjunct : (DisjunctionMaxQuery) query) {
+				final Set<Term> disjunctTerms = getRequiredTerms(disjunct);
+				if (disjunctTerms == null)
+					return null;
+				terms.addAll(disjunctTerms);
+			}
+			return terms.isEmpty() ? null : terms;
+		}
+		if (query instanceof BooleanQuery)
+			return getRequiredTerms((BooleanQuery) query);
+		return null;
+	}
+
+	private static Set<Term> getRequiredTerms(final BooleanQuery booleanQuery) {
+		Set<Term> mustTerms = null;
+		boolean hasMust = false;
+		final Set<Term> shouldTerms = new HashSet<Term>();
+		boolean shouldIndexed = true;
+		for (BooleanClause clause : booleanQuery.getClauses()) {
+			switch (clause.getOccur()) {
+			case MUST:
+				hasMust = true;
+				// One required clause is enough, keep the smallest one
+				final Set<Term> terms = getRequiredTerms(clause.getQuery());
+				if (terms != null && (mustTerms == null || terms.size() < mustTerms.size()))
+					mustTerms = terms;
+				break;
+			case SHOULD:
+				final Set<Term> clauseTerms = getRequiredTerms(clause.getQuery());
+				if (clauseTerms == null)
+					shouldIndexed = false;
+				else
+					shouldTerms.addAll(clauseTerms);
+				break;
+			default:
+				break;
+			}
+		}
+		if (hasMust)
+			return mustTerms;
+		if (!shouldIndexed || shouldTerms.isEmpty())
+			return null;
+		return shouldTerms;
+	}
+
+	/**
+	 * @param index the document
+	 * @return the positions of the items which may match the document
+	 * @throws IOException
+	 */
+	final BitSet getCandidates(final MemoryIndex index) throws IOException {
+		final BitSet candidates = (BitSet) unindexed.clone();
+		if (termMap.isEmpty())
+			return candidates;
+		final TermEnum termEnum = index.createSearcher().getIndexReader().terms(new Term(""));
+		try {
+			do {
+				final Term term = termEnum.term();
+				if (term == null)
+					break;
+				final int[] positions = termMap.get(term);
+				if (positions != null)
+					for (int pos : positions)
+						candidates.set(pos);
+			} while (termEnum.next());
+		} finally {
+			termEnum.close();
+		}
+		return candidates;
+	}
+
+	/**
+	 * @param pos the position of the item
+	 * @return the item
+	 */
+	final ClassifierItem getItem(final int pos) {
+		return items[pos];
+	}
+
+	/**
+	 * @param pos   the position of the item
+	 * @param index the document
+	 * @return the score of the document for the query of the item
+	 */
+	final float score(final int pos, final MemoryIndex index) {
+		return index.search(queries[pos]);
+	}
+}
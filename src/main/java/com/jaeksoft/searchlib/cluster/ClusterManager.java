@@ -26,6 +26,7 @@ package com.jaeksoft.searchlib.cluster;
 
 import java.io.File;
 import java.io.IOException;
+import java.net.URI;
 import java.util.Collection;
 import java.util.LinkedHashSet;
 import java.util.List;
@@ -101,4 +102,25 @@ public class ClusterManager {
 			rwl.r.unlock();
 		}
 	}
+
+	/**
+	 * @param url
+	 *            an URL of a remote instance
+	 * @return the instance whose URI starts the URL, or null
+	 */
+	public ClusterInstance findByUrl(String url) {
+		if (url == null)
+			return null;
+		rwl.r.lock();
+		try {
+			for (ClusterInstance clusterInstance : clusterInstances) {
+				URI uri = clusterInstance.getUri();
+				if (uri != null && url.startsWith(uri.toString()))
+					return clusterInstance;
+			}
+			return null;
+		} finally {
+			rwl.r.unlock();
+		}
+	}
 }
@@ -42,6 +42,7 @@ import com.jaeksoft.searchlib.result.collector.collapsing.CollapseCollectorInter
 import com.jaeksoft.searchlib.result.collector.collapsing.CollapseDistanceCollector;
 import com.jaeksoft.searchlib.result.collector.collapsing.CollapseJoinDocCollector;
 import com.jaeksoft.searchlib.result.collector.collapsing.CollapseScoreDocCollector;
+import com.jaeksoft.searchlib.sort.SorterAbstract;
 import com.jaeksoft.searchlib.util.Timer;
 
 public abstract class CollapseAbstract {
@@ -148,8 +149,8 @@ public abstract class CollapseAbstract {
 	}
 
 	private CollapseDocInterface collapseFromCollector(
-			DocIdInterface collector, int searchRows, int end,
-			FieldCacheIndex collapseFieldStringIndex, Timer timer)
+			DocIdInterface collector, SorterAbstract sorter, int searchRows,
+			int end, FieldCacheIndex collapseFieldStringIndex, Timer timer)
 			throws IOException {
 		int lastRows = 0;
 		int rows = end;
@@ -163,6 +164,8 @@ public abstract class CollapseAbstract {
 				rows = numFound;
 			if (lastRows == rows)
 				break;
+			if (sorter != null)
+				sorter.partialSort(rows, iterationTimer);
 			collapsedDocs = run(collector, rows, collapseFieldStringIndex,
 					iterationTimer);
 			lastRows = rows;
@@ -174,27 +177,31 @@ public abstract class CollapseAbstract {
 	}
 
 	/**
-	 * Fetch new documents until collapsed results is complete.
+	 * Fetch new documents until collapsed results is complete. The sorter
+	 * sorts the fetched documents only.
 	 * 
 	 * @throws IOException
 	 * @throws SyntaxError
 	 * @throws ParseException
 	 */
 	private CollapseDocInterface collapseOptimized(ReaderAbstract reader,
-			DocIdInterface collector, Timer timer) throws IOException,
+			DocIdInterface collector, SorterAbstract sorter, Timer timer)
+			throws IOException,
 			ParseException, SyntaxError {
 
 		int searchRows = searchRequest.getRows();
 		int end = searchRequest.getEnd();
 		FieldCacheIndex collapseFieldStringIndex = reader
 				.getStringIndex(searchRequest.getCollapseField());
-		return collapseFromCollector(collector, searchRows, end,
+		return collapseFromCollector(collector, sorter, searchRows, end,
 				collapseFieldStringIndex, timer);
 	}
 
 	private CollapseDocInterface collapseFull(ReaderAbstract reader,
-			DocIdInterface collector, Timer timer) throws IOException,
-			ParseException, SyntaxError {
+			DocIdInterface collector, SorterAbstract sorter, Timer timer)
+			throws IOException, ParseException, SyntaxError {
+		if (sorter != null)
+			sorter.quickSort(timer);
 		FieldCacheIndex collapseFieldStringIndex = reader
 				.getStringIndex(searchRequest.getCollapseField());
 		collapsedDocs = run(collector, collector.getSize(),
@@ -202,16 +209,30 @@ public abstract class CollapseAbstract {
 		return collapsedDocs;
 	}
 
+	/**
+	 * @param reader
+	 *            the reader
+	 * @param collector
+	 *            the documents to collapse
+	 * @param sorter
+	 *            the sorter of the documents, which are not yet sorted, or
+	 *            null if the documents are already in order
+	 * @param timer
+	 * @return the collapsed documents
+	 * @throws IOException
+	 * @throws ParseException
+	 * @throws SyntaxError
+	 */
 	final public CollapseDocInterface collapse(ReaderAbstract reader,
-			DocIdInterface collector, Timer timer) throws IOException,
-			ParseException, SyntaxError {
+			DocIdInterface collector, SorterAbstract sorter, Timer timer)
+			throws IOException, ParseException, SyntaxError {
 		Timer collapseTimer = new Timer(timer, "collapse "
 				+ collapseMode.getLabel() + " " + collapseType.getLabel());
 		try {
 			if (collapseType == CollapseParameters.Type.OPTIMIZED)
-				return collapseOptimized(reader, collector, timer);
+				return collapseOptimized(reader, collector, sorter, timer);
 			if (collapseType == CollapseParameters.Type.FULL)
-				return collapseFull(reader, collector, timer);
+				return collapseFull(reader, collector, sorter, timer);
 			return null;
 		} finally {
 			collapseTimer.getDuration();
@@ -47,15 +47,15 @@ public class CollapseAdjacent extends CollapseAbstract {
 		RoaringBitmap collapsedSet = new RoaringBitmap();
 
 		int[] ids = collector.getIds();
-		String lastTerm = null;
+		int lastOrd = 0;
 		int adjacent = 0;
 		for (int i = 0; i < fetchLength; i++) {
-			String term = collapseStringIndex.lookup[collapseStringIndex.order[ids[i]]];
-			if (term != null && term.equals(lastTerm)) {
+			final int ord = collapseStringIndex.getOrd(ids[i]);
+			if (ord != 0 && ord == lastOrd) {
 				if (++adjacent >= getCollapseMax())
 					collapsedSet.add(i);
 			} else {
-				lastTerm = term;
+				lastOrd = ord;
 				adjacent = 0;
 			}
 		}
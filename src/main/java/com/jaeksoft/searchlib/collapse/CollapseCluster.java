@@ -24,8 +24,7 @@
 
 package com.jaeksoft.searchlib.collapse;
 
-import java.util.HashMap;
-import java.util.Map;
+import it.unimi.dsi.fastutil.ints.Int2IntOpenHashMap;
 
 import com.jaeksoft.searchlib.index.FieldCacheIndex;
 import com.jaeksoft.searchlib.request.AbstractSearchRequest;
@@ -35,6 +34,12 @@ import com.jaeksoft.searchlib.util.Timer;
 
 public class CollapseCluster extends CollapseAbstract {
 
+	/**
+	 * An array indexed by ordinal is used when the field has at most this
+	 * number of terms per fetched document, a hash map otherwise.
+	 */
+	private final static int DIRECT_ADDRESS_RATIO = 4;
+
 	protected CollapseCluster(AbstractSearchRequest searchRequest) {
 		super(searchRequest);
 	}
@@ -44,24 +49,17 @@ public class CollapseCluster extends CollapseAbstract {
 			int fetchLength, FieldCacheIndex collapseStringIndex, Timer timer) {
 
 		Timer t = new Timer(timer, "Build collapse map");
-		Map<String, Integer> collapsedDocMap = new HashMap<String, Integer>();
 		int[] ids = collector.getIds();
 
 		CollapseCollectorInterface collapseCollector = getNewCollapseInterfaceInstance(
 				collector, fetchLength, getCollectDocArray());
-		Integer collapsePos;
 
-		for (int i = 0; i < fetchLength; i++) {
-			String term = collapseStringIndex.lookup[collapseStringIndex.order[ids[i]]];
-			if (term != null
-					&& ((collapsePos = collapsedDocMap.get(term)) != null)) {
-				collapseCollector.collectCollapsedDoc(i, collapsePos);
-			} else {
-				collapsePos = collapseCollector.collectDoc(i);
-				if (term != null)
-					collapsedDocMap.put(term, collapsePos);
-			}
-		}
+		if (useDirectAddress(collapseStringIndex.getTermCount(), fetchLength))
+			collapseDirect(ids, fetchLength, collapseStringIndex,
+					collapseCollector);
+		else
+			collapseHashed(ids, fetchLength, collapseStringIndex,
+					collapseCollector);
 
 		collapseCollector.endCollection();
 
@@ -69,4 +67,58 @@ public class CollapseCluster extends CollapseAbstract {
 
 		return collapseCollector;
 	}
+
+	/**
+	 * @param termCount
+	 *            the number of ordinals of the collapse field
+	 * @param fetchLength
+	 *            the number of documents to collapse
+	 * @return true if the collapse positions are stored in an array indexed
+	 *         by ordinal, false if they are stored in a hash map
+	 */
+	static boolean useDirectAddress(final int termCount,
+			final int fetchLength) {
+		return termCount <= (long) fetchLength * DIRECT_ADDRESS_RATIO;
+	}
+
+	/**
+	 * The collapse position of each ordinal is stored plus one in an array
+	 * indexed by ordinal, 0 means not yet collected. The ordinal 0 (no term)
+	 * is never collapsed.
+	 */
+	static void collapseDirect(final int[] ids, final int fetchLength,
+			final FieldCacheIndex collapseStringIndex,
+			final CollapseCollectorInterface collapseCollector) {
+		final int[] collapsePositions = new int[collapseStringIndex
+				.getTermCount()];
+		for (int i = 0; i < fetchLength; i++) {
+			final int ord = collapseStringIndex.getOrd(ids[i]);
+			final int collapsePos = collapsePositions[ord] - 1;
+			if (ord != 0 && collapsePos != -1)
+				collapseCollector.collectCollapsedDoc(i, collapsePos);
+			else {
+				final int pos = collapseCollector.collectDoc(i);
+				if (ord != 0)
+					collapsePositions[ord] = pos + 1;
+			}
+		}
+	}
+
+	static void collapseHashed(final int[] ids, final int fetchLength,
+			final FieldCacheIndex collapseStringIndex,
+			final CollapseCollectorInterface collapseCollector) {
+		final Int2IntOpenHashMap collapsePositions = new Int2IntOpenHashMap();
+		collapsePositions.defaultReturnValue(-1);
+		for (int i = 0; i < fetchLength; i++) {
+			final int ord = collapseStringIndex.getOrd(ids[i]);
+			final int collapsePos = ord == 0 ? -1 : collapsePositions.get(ord);
+			if (collapsePos != -1)
+				collapseCollector.collectCollapsedDoc(i, collapsePos);
+			else {
+				final int pos = collapseCollector.collectDoc(i);
+				if (ord != 0)
+					collapsePositions.put(ord, pos);
+			}
+		}
+	}
 }
@@ -370,7 +370,7 @@ public abstract class Config implements ThreadFactory {
 		default:
 			return null;
 		case 1:
-			return new IndexConfig(nodeList.item(0)).getNewIndex(indexDir, createIndexIfNotExists);
+			return new IndexConfig(nodeList.item(0)).getNewIndex(indexDir, getThreadPool(), createIndexIfNotExists);
 		}
 	}
 
@@ -1731,6 +1731,17 @@ public abstract class Config implements ThreadFactory {
 		} catch (Exception e) {
 			Logging.warn(e.getMessage(), e);
 		}
+		try {
+			parsersLock.r.lock();
+			try {
+				if (parserSelector != null)
+					parserSelector.close();
+			} finally {
+				parsersLock.r.unlock();
+			}
+		} catch (Exception e) {
+			Logging.warn(e.getMessage(), e);
+		}
 		try {
 			StatisticsList statList = getStatisticsList();
 			if (statList != null)
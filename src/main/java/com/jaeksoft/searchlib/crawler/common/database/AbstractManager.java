@@ -67,8 +67,15 @@ public abstract class AbstractManager {
 		this.dbClient = dbClient;
 	}
 
+	/**
+	 * Called before the database is closed
+	 */
+	protected void beforeFree() {
+	}
+
 	final public void free() {
 		if (dbClient != null) {
+			beforeFree();
 			dbClient.close();
 			dbClient = null;
 		}
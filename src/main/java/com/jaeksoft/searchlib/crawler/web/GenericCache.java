@@ -130,6 +130,28 @@ public abstract class GenericCache<K, V extends GenericCache.Expirable> {
 		}
 	}
 
+	/**
+	 * Return the item if it is not expired
+	 *
+	 * @param key
+	 * @return the item, or null
+	 */
+	final public V getValid(K key) {
+		synchronized (map) {
+			V value = map.get(key);
+			if (value == null || System.currentTimeMillis() > value.getExpirationTime())
+				return null;
+			return value;
+		}
+	}
+
+	final protected V put(K key, V value) {
+		synchronized (map) {
+			map.put(key, value);
+			return value;
+		}
+	}
+
 	protected abstract V[] newArray(int size);
 
 	final public V[] getList() {
@@ -0,0 +1,148 @@
+/*
+ * License Agreement for OpenSearchServer
+ * <p>
+ * Copyright (C) 2017 Emmanuel Keller / Jaeksoft
+ * <p>
+ * http://www.open-search-server.com
+ * <p>
+ * This file is part of OpenSearchServer.
+ * <p>
+ * OpenSearchServer is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * <p>
+ * OpenSearchServer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * <p>
+ * You should have received a copy of the GNU General Public License
+ * along with OpenSearchServer.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.jaeksoft.searchlib.crawler.web.database;
+
+import com.google.common.hash.BloomFilter;
+import com.google.common.hash.Funnels;
+import com.jaeksoft.searchlib.Client;
+import com.jaeksoft.searchlib.SearchLibException;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.index.TermEnum;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A Bloom filter of the URLs stored in the URL database. A negative answer is
+ * exact: the URL is not in the database. A positive answer may be a false
+ * positive and has to be checked against the index.
+ * <p>
+ * URLs are added before being written, deleted URLs are kept: the filter only
+ * gives more false positives. It is rebuilt from the terms of the URL field
+ * when it holds more URLs than expected.
+ */
+class UrlBloomFilter {
+
+	private final static int MIN_EXPECTED = 100000;
+	private final static double FALSE_POSITIVE_PROBABILITY = 0.01;
+
+	private final BloomFilter<CharSequence> filter;
+	private final long expected;
+	private long count;
+
+	private UrlBloomFilter(final BloomFilter<CharSequence> filter, final long expected, final long count) {
+		this.filter = filter;
+		this.expected = expected;
+		this.count = count;
+	}
+
+	private UrlBloomFilter(final long expected) {
+		this(BloomFilter.create(Funnels.stringFunnel(StandardCharsets.UTF_8), expected, FALSE_POSITIVE_PROBABILITY),
+				expected, 0);
+	}
+
+	final synchronized void put(final String url) {
+		if (filter.put(url))
+			count++;
+	}
+
+	final synchronized boolean mightContain(final String url) {
+		return filter.mightContain(url);
+	}
+
+	/**
+	 * @return true if the false positive rate is above the expected one
+	 */
+	final synchronized boolean isFull() {
+		return count > expected;
+	}
+
+	/**
+	 * Build a new filter with the terms of the URL field
+	 *
+	 * @param dbClient the URL database
+	 * @param field    the name of the URL field
+	 * @return a new filter
+	 * @throws SearchLibException
+	 * @throws IOException
+	 */
+	static UrlBloomFilter build(final Client dbClient, final String field) throws SearchLibException, IOException {
+		final long numDocs = dbClient.getStatistics().getNumDocs();
+		final UrlBloomFilter urlBloomFilter = new UrlBloomFilter(Math.max(MIN_EXPECTED, numDocs * 2));
+		final TermEnum termEnum = dbClient.getTermEnum(new Term(field, ""));
+		try {
+			do {
+				final Term term = termEnum.term();
+				if (term == null || !field.equals(term.field()))
+					break;
+				urlBloomFilter.put(term.text());
+			} while (termEnum.next());
+		} finally {
+			termEnum.close();
+		}
+		return urlBloomFilter;
+	}
+
+	/**
+	 * Save the filter with the version of the index it describes
+	 *
+	 * @param file    the destination file
+	 * @param version the version of the index
+	 * @throws IOException
+	 */
+	final synchronized void writeTo(final File file, final long version) throws IOException {
+		try (final DataOutputStream output = new DataOutputStream(
+				new BufferedOutputStream(new FileOutputStream(file)))) {
+			output.writeLong(version);
+			output.writeLong(expected);
+			output.writeLong(count);
+			filter.writeTo(output);
+		}
+	}
+
+	/**
+	 * @param file    the saved filter
+	 * @param version the current version of the index
+	 * @return the saved filter, or null if the index has changed since
+	 * @throws IOException
+	 */
+	static UrlBloomFilter readFrom(final File file, final long version) throws IOException {
+		try (final DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+			if (input.readLong() != version)
+				return null;
+			final long expected = input.readLong();
+			final long count = input.readLong();
+			return new UrlBloomFilter(BloomFilter.readFrom(input, Funnels.stringFunnel(StandardCharsets.UTF_8)),
+					expected, count);
+		}
+	}
+}
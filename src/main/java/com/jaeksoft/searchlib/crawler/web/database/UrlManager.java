@@ -60,6 +60,7 @@ import com.jaeksoft.searchlib.scheduler.TaskLog;
 import com.jaeksoft.searchlib.util.FormatUtils.ThreadSafeDateFormat;
 import com.jaeksoft.searchlib.util.FormatUtils.ThreadSafeSimpleDateFormat;
 import com.jaeksoft.searchlib.util.InfoCallback;
+import com.jaeksoft.searchlib.util.ReadWriteLock;
 import com.jaeksoft.searchlib.util.ThreadUtils;
 import com.jaeksoft.searchlib.util.XmlWriter;
 import org.apache.commons.collections.CollectionUtils;
@@ -78,6 +79,7 @@ import java.net.URISyntaxException;
 import java.net.URL;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
 import java.util.Iterator;
 import java.util.LinkedHashSet;
@@ -91,7 +93,15 @@ public class UrlManager extends AbstractManager {
 		urlSearch, urlExport, hostFacet;
 	}
 
+	private final static String BLOOM_FILTER_FILENAME = "url_bloom_filter";
+
+	private final ReadWriteLock rwl = new ReadWriteLock();
+	private volatile UrlBloomFilter bloomFilter;
+	private File bloomFilterFile;
+
 	public UrlManager() {
+		bloomFilter = null;
+		bloomFilterFile = null;
 	}
 
 	public void init(Client client, File dataDir) throws SearchLibException, URISyntaxException, FileNotFoundException {
@@ -100,6 +110,85 @@ public class UrlManager extends AbstractManager {
 			dataDir.mkdir();
 		Client dbClient = new Client(dataDir, "/com/jaeksoft/searchlib/url_config.xml", true);
 		super.init(client, dbClient);
+		bloomFilterFile = new File(dataDir, BLOOM_FILTER_FILENAME);
+	}
+
+	@Override
+	protected void beforeFree() {
+		UrlBloomFilter filter = bloomFilter;
+		if (filter == null)
+			return;
+		try {
+			filter.writeTo(bloomFilterFile, dbClient.getIndexAbstract().getVersion());
+		} catch (IOException | SearchLibException e) {
+			Logging.warn("Cannot save the URL Bloom filter", e);
+			bloomFilterFile.delete();
+		}
+	}
+
+	/**
+	 * Returns the filter of the known URLs. On first use, the saved filter is
+	 * loaded if the index did not change since. Otherwise, or when the filter
+	 * is full, a new one is built from the index. The updates are blocked
+	 * meanwhile, so no URL is missed.
+	 *
+	 * @return the filter
+	 * @throws SearchLibException
+	 */
+	private UrlBloomFilter getBloomFilter() throws SearchLibException {
+		UrlBloomFilter filter = bloomFilter;
+		if (filter != null && !filter.isFull())
+			return filter;
+		rwl.w.lock();
+		try {
+			filter = bloomFilter;
+			if (filter != null && !filter.isFull())
+				return filter;
+			filter = filter == null ? loadBloomFilter() : null;
+			if (filter == null) {
+				dbClient.reload();
+				filter = UrlBloomFilter.build(dbClient, UrlItemFieldEnum.INSTANCE.url.getName());
+			}
+			bloomFilter = filter;
+			return filter;
+		} catch (IOException e) {
+			throw new SearchLibException(e);
+		} finally {
+			rwl.w.unlock();
+		}
+	}
+
+	/**
+	 * Load the filter saved when the database was closed. The file is removed,
+	 * it is only valid until the next update.
+	 *
+	 * @return the saved filter, or null if it is missing or outdated
+	 */
+	private UrlBloomFilter loadBloomFilter() {
+		if (!bloomFilterFile.exists())
+			return null;
+		try {
+			return UrlBloomFilter.readFrom(bloomFilterFile, dbClient.getIndexAbstract().getVersion());
+		} catch (IOException | SearchLibException e) {
+			Logging.warn("Cannot load the URL Bloom filter", e);
+			return null;
+		} finally {
+			bloomFilterFile.delete();
+		}
+	}
+
+	/**
+	 * Register the URLs in the filter. The caller must hold the read lock and
+	 * write the URLs to the database afterwards.
+	 *
+	 * @param urls the URLs about to be written
+	 */
+	private void putBloomFilterNoLock(final Collection<String> urls) {
+		final UrlBloomFilter filter = bloomFilter;
+		if (filter == null)
+			return;
+		for (String url : urls)
+			filter.put(url);
 	}
 
 	public void deleteUrls(Collection<String> workDeleteUrlList) throws SearchLibException {
@@ -110,7 +199,20 @@ public class UrlManager extends AbstractManager {
 		dbClient.deleteDocuments(UrlItemFieldEnum.INSTANCE.url.getName(), workDeleteUrlList);
 	}
 
+	/**
+	 * Check the filter of the known URLs, then the index for a possible match
+	 *
+	 * @param sUrl the URL
+	 * @return true if the URL is in the database
+	 * @throws SearchLibException
+	 */
 	public boolean exists(String sUrl) throws SearchLibException {
+		if (!getBloomFilter().mightContain(sUrl))
+			return false;
+		return existsInIndex(sUrl);
+	}
+
+	private boolean existsInIndex(String sUrl) throws SearchLibException {
 		AbstractSearchRequest request = (AbstractSearchRequest) dbClient.getNewRequest(SearchTemplate.urlExport.name());
 		request.getReturnFieldList().clear();
 		request.setQueryString("url:\"" + sUrl + '"');
@@ -118,10 +220,13 @@ public class UrlManager extends AbstractManager {
 	}
 
 	public void removeExisting(List<LinkItem> linkList) throws SearchLibException {
+		final UrlBloomFilter filter = getBloomFilter();
 		Iterator<LinkItem> it = linkList.iterator();
-		while (it.hasNext())
-			if (exists(it.next().getUrl()))
+		while (it.hasNext()) {
+			String url = it.next().getUrl();
+			if (filter.mightContain(url) && existsInIndex(url))
 				it.remove();
+		}
 	}
 
 	public void inject(final List<String> urls, final InfoCallback infoCallback) throws SearchLibException {
@@ -129,10 +234,12 @@ public class UrlManager extends AbstractManager {
 			int already = 0;
 			int injected = 0;
 			List<IndexDocument> injectList = new ArrayList<IndexDocument>(0);
+			List<String> injectUrls = new ArrayList<String>(0);
 			for (String url : urls) {
 				if (exists(url))
 					already++;
 				else {
+					injectUrls.add(url);
 					UrlItem item = getNewUrlItem(url);
 					IndexDocument indexDocument = new IndexDocument();
 					item.populate(indexDocument);
@@ -140,7 +247,13 @@ public class UrlManager extends AbstractManager {
 				}
 			}
 			if (injectList.size() > 0) {
-				injected = dbClient.updateDocuments(injectList);
+				rwl.r.lock();
+				try {
+					putBloomFilterNoLock(injectUrls);
+					injected = dbClient.updateDocuments(injectList);
+				} finally {
+					rwl.r.unlock();
+				}
 				if (injected > 0)
 					dbClient.reload();
 			}
@@ -504,31 +617,42 @@ public class UrlManager extends AbstractManager {
 	}
 
 	public void updateUrlItem(UrlItem urlItem) throws SearchLibException {
+		rwl.r.lock();
 		try {
 			IndexDocument indexDocument = new IndexDocument();
 			urlItem.populate(indexDocument);
+			putBloomFilterNoLock(Collections.singleton(urlItem.getUrl()));
 			dbClient.updateDocument(indexDocument);
 		} catch (IOException e) {
 			throw new SearchLibException(e);
+		} finally {
+			rwl.r.unlock();
 		}
 	}
 
 	public void updateUrlItems(List<UrlItem> urlItems) throws SearchLibException {
+		if (urlItems == null)
+			return;
+		rwl.r.lock();
 		try {
-			if (urlItems == null)
-				return;
 			List<IndexDocument> documents = new ArrayList<IndexDocument>(urlItems.size());
+			List<String> urls = new ArrayList<String>(urlItems.size());
 			for (UrlItem urlItem : urlItems) {
 				if (urlItem == null)
 					continue;
 				IndexDocument indexDocument = new IndexDocument();
 				urlItem.populate(indexDocument);
 				documents.add(indexDocument);
+				urls.add(urlItem.getUrl());
 			}
-			if (documents.size() > 0)
+			if (documents.size() > 0) {
+				putBloomFilterNoLock(urls);
 				dbClient.updateDocuments(documents);
+			}
 		} catch (IOException e) {
 			throw new SearchLibException(e);
+		} finally {
+			rwl.r.unlock();
 		}
 	}
 
@@ -806,8 +930,10 @@ public class UrlManager extends AbstractManager {
 				siteMapUrlSet.clear();
 				urlItemList.clear();
 				siteMapItem.fill(SiteMapCache.getInstance(), httpDownloader, false, siteMapUrlSet);
+				final UrlBloomFilter filter = getBloomFilter();
 				for (SiteMapUrl siteMapUrl : siteMapUrlSet) {
-					UrlItem urlItem = getUrl(request, siteMapUrl.getLoc().toString());
+					String sUrl = siteMapUrl.getLoc().toString();
+					UrlItem urlItem = filter.mightContain(sUrl) ? getUrl(request, sUrl) : null;
 					if (urlItem == null) {
 						urlItemList.add(getNewUrlItem(siteMapUrl));
 						inserted++;
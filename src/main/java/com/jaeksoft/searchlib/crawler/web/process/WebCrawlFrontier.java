@@ -0,0 +1,261 @@
+/**
+ * License Agreement for OpenSearchServer
+ * <p/>
+ * Copyright (C) 2017 Emmanuel Keller / Jaeksoft
+ * <p/>
+ * http://www.open-search-server.com
+ * <p/>
+ * This file is part of OpenSearchServer.
+ * <p/>
+ * OpenSearchServer is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * <p/>
+ * OpenSearchServer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * <p/>
+ * You should have received a copy of the GNU General Public License
+ * along with OpenSearchServer.
+ * If not, see <http://www.gnu.org/licenses/>.
+ **/
+
+package com.jaeksoft.searchlib.crawler.web.process;
+
+import com.jaeksoft.searchlib.crawler.web.database.HostUrlList;
+import com.jaeksoft.searchlib.crawler.web.database.UrlItem;
+import com.jaeksoft.searchlib.crawler.web.spider.Crawl;
+import com.jaeksoft.searchlib.crawler.web.spider.DownloadItem;
+import com.jaeksoft.searchlib.crawler.web.spider.HttpAsyncDownloader;
+import com.jaeksoft.searchlib.crawler.web.spider.HttpDownloader;
+import com.jaeksoft.searchlib.process.ThreadAbstract;
+import com.jaeksoft.searchlib.util.IOUtils;
+import org.apache.http.client.CookieStore;
+
+import java.util.Iterator;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The hosts being crawled, ordered by the time of their next allowed access.
+ * <p>
+ * A crawl thread takes the next host whose delay has expired and sends the
+ * request of its next URL with the shared HttpAsyncDownloader. The host leaves
+ * the frontier while the download is in flight. When the download ends, the
+ * host comes back without delay, a crawl thread parses the content and puts
+ * the host back with its politeness delay. A few threads are then enough to
+ * keep a download in flight for each host.
+ */
+class WebCrawlFrontier {
+
+	/**
+	 * The marker which wakes up the crawl threads when the frontier is done
+	 */
+	private final static HostCrawl DONE = new HostCrawl(null);
+
+	private final DelayQueue<HostCrawl> queue;
+	private final int maxHosts;
+	private final HttpAsyncDownloader httpAsyncDownloader;
+	private int activeHosts;
+	private boolean closed;
+
+	/**
+	 * @param maxHosts            the maximum number of hosts crawled at the
+	 *                            same time
+	 * @param httpAsyncDownloader the client sending the requests, closed by
+	 *                            release
+	 */
+	WebCrawlFrontier(final int maxHosts, final HttpAsyncDownloader httpAsyncDownloader) {
+		this.queue = new DelayQueue<>();
+		this.maxHosts = maxHosts;
+		this.httpAsyncDownloader = httpAsyncDownloader;
+		this.activeHosts = 0;
+		this.closed = false;
+	}
+
+	/**
+	 * A closed frontier holding only one host
+	 *
+	 * @param hostUrlList         the URLs of the host
+	 * @param httpAsyncDownloader the client sending the requests, closed by
+	 *                            release
+	 */
+	WebCrawlFrontier(final HostUrlList hostUrlList, final HttpAsyncDownloader httpAsyncDownloader) {
+		this(1, httpAsyncDownloader);
+		activeHosts = 1;
+		queue.add(new HostCrawl(hostUrlList));
+		closed = true;
+	}
+
+	/**
+	 * @return the client sending the requests of the crawl threads
+	 */
+	HttpAsyncDownloader getHttpAsyncDownloader() {
+		return httpAsyncDownloader;
+	}
+
+	/**
+	 * Add a host, waiting until a crawl thread finishes another host if the
+	 * frontier is full.
+	 *
+	 * @param hostUrlList the URLs of the host
+	 * @param caller      the thread adding the host
+	 * @return false if the caller has been aborted while waiting
+	 * @throws InterruptedException
+	 */
+	synchronized boolean offer(final HostUrlList hostUrlList, final ThreadAbstract<?> caller)
+			throws InterruptedException {
+		while (activeHosts >= maxHosts) {
+			if (caller.isAborted())
+				return false;
+			wait(1000);
+		}
+		activeHosts++;
+		queue.add(new HostCrawl(hostUrlList));
+		return true;
+	}
+
+	/**
+	 * No more host will be added, the crawl threads stop when the last host is
+	 * finished.
+	 */
+	synchronized void close() {
+		closed = true;
+		notifyAll();
+		checkDone();
+	}
+
+	private synchronized void checkDone() {
+		if (closed && activeHosts == 0 && !queue.contains(DONE))
+			queue.add(DONE);
+	}
+
+	/**
+	 * Wait for the next host which can be accessed, or whose download has
+	 * ended.
+	 *
+	 * @return the host, or null if the frontier is done
+	 * @throws InterruptedException
+	 */
+	HostCrawl take() throws InterruptedException {
+		final HostCrawl hostCrawl = queue.take();
+		if (hostCrawl != DONE)
+			return hostCrawl;
+		// The marker stays in the queue for the other crawl threads
+		queue.add(DONE);
+		return null;
+	}
+
+	/**
+	 * Put the host back in the frontier
+	 *
+	 * @param hostCrawl the host
+	 * @param delayMs   the delay before the next access, in milliseconds
+	 */
+	void reschedule(final HostCrawl hostCrawl, final long delayMs) {
+		hostCrawl.nextTime = System.currentTimeMillis() + delayMs;
+		queue.add(hostCrawl);
+	}
+
+	/**
+	 * Release a host whose crawl is over
+	 *
+	 * @param hostCrawl the host
+	 */
+	void finish(final HostCrawl hostCrawl) {
+		hostCrawl.release();
+		synchronized (this) {
+			activeHosts--;
+			notifyAll();
+			checkDone();
+		}
+	}
+
+	/**
+	 * Finish the hosts waiting for their politeness delay. The hosts whose
+	 * download is in flight are finished by the crawl thread which receives
+	 * them.
+	 */
+	void abort() {
+		for (HostCrawl hostCrawl : queue.toArray(new HostCrawl[0]))
+			if (hostCrawl != DONE && queue.remove(hostCrawl))
+				finish(hostCrawl);
+	}
+
+	/**
+	 * Cancel the downloads in flight and release the hosts left by aborted
+	 * crawl threads
+	 */
+	void release() {
+		if (httpAsyncDownloader != null)
+			httpAsyncDownloader.close();
+		abort();
+	}
+
+	/**
+	 * The crawl state of one host
+	 */
+	static class HostCrawl implements Delayed {
+
+		final HostUrlList hostUrlList;
+		private final Iterator<UrlItem> iterator;
+		private volatile long nextTime;
+		HttpDownloader httpDownloader;
+		CookieStore cookieStore;
+
+		/**
+		 * The URL being crawled
+		 */
+		UrlItem urlItem;
+		Crawl crawl;
+
+		/**
+		 * The download in flight (the URL or the robots.txt), and its result
+		 */
+		Crawl downloadCrawl;
+		Crawl.Fetch fetch;
+		DownloadItem downloadItem;
+		Exception downloadError;
+
+		private HostCrawl(final HostUrlList hostUrlList) {
+			this.hostUrlList = hostUrlList;
+			this.iterator = hostUrlList == null ? null : hostUrlList.getUrlList().iterator();
+			this.nextTime = 0;
+			this.httpDownloader = null;
+			this.cookieStore = null;
+		}
+
+		boolean hasNext() {
+			return iterator.hasNext();
+		}
+
+		UrlItem next() {
+			return iterator.next();
+		}
+
+		private void release() {
+			if (httpDownloader != null) {
+				httpDownloader.release();
+				httpDownloader = null;
+			}
+			if (downloadItem != null) {
+				IOUtils.close(downloadItem.getContentInputStream());
+				downloadItem = null;
+			}
+			hostUrlList.getUrlList().clear();
+		}
+
+		@Override
+		public long getDelay(final TimeUnit unit) {
+			return unit.convert(nextTime - System.currentTimeMillis(), TimeUnit.MILLISECONDS);
+		}
+
+		@Override
+		public int compareTo(final Delayed o) {
+			return Long.compare(nextTime, ((HostCrawl) o).nextTime);
+		}
+	}
+}
@@ -48,6 +48,7 @@ import com.jaeksoft.searchlib.crawler.web.sitemap.SiteMapItem;
 import com.jaeksoft.searchlib.crawler.web.sitemap.SiteMapList;
 import com.jaeksoft.searchlib.crawler.web.sitemap.SiteMapUrl;
 import com.jaeksoft.searchlib.crawler.web.spider.Crawl;
+import com.jaeksoft.searchlib.crawler.web.spider.HttpAsyncDownloader;
 import com.jaeksoft.searchlib.crawler.web.spider.HttpDownloader;
 import com.jaeksoft.searchlib.function.expression.SyntaxError;
 import com.jaeksoft.searchlib.query.ParseException;
@@ -70,8 +71,16 @@ import java.util.LinkedHashSet;
 
 public class WebCrawlMaster extends CrawlMasterAbstract<WebCrawlMaster, WebCrawlThread> {
 
+	/**
+	 * The number of hosts in the frontier for each crawl thread. Each host may
+	 * have a download in flight, the crawl threads only parse the content.
+	 */
+	private final static int HOSTS_PER_THREAD = 100;
+
 	private final LinkedList<NamedItem> hostList;
 
+	private volatile WebCrawlFrontier frontier = null;
+
 	private volatile int maxUrlPerSession = 0;
 
 	private final UrlCrawlQueue urlCrawlQueue;
@@ -121,6 +130,12 @@ public class WebCrawlMaster extends CrawlMasterAbstract<WebCrawlMaster, WebCrawl
 			extractSiteMapList(inclusionMatcher, exclusionMatcher);
 			extractHostList(maxUrlPerHost, maxDepth);
 
+			final int maxHosts = threadNumber * HOSTS_PER_THREAD;
+			final WebCrawlFrontier frontier = new WebCrawlFrontier(maxHosts, getNewHttpAsyncDownloader(maxHosts));
+			this.frontier = frontier;
+			for (int i = 0; i < threadNumber; i++)
+				add(new WebCrawlThread(config, this, currentStats, frontier));
+
 			while (!isAborted()) {
 
 				int howMany = urlLeftPerHost(maxUrlPerHost);
@@ -135,12 +150,11 @@ public class WebCrawlMaster extends CrawlMasterAbstract<WebCrawlMaster, WebCrawl
 				if (hostUrlList == null)
 					continue;
 
-				WebCrawlThread crawlThread = new WebCrawlThread(config, this, currentStats, hostUrlList);
-				add(crawlThread);
-
-				while (getThreadsCount() >= threadNumber && !isAborted())
-					sleepSec(5);
+				// Wait until the frontier has room for a new host
+				if (!frontier.offer(hostUrlList, this))
+					break;
 			}
+			frontier.close();
 
 			setStatus(CrawlStatus.WAITING_CHILD);
 			while (getThreadsCount() > 0) {
@@ -148,6 +162,8 @@ public class WebCrawlMaster extends CrawlMasterAbstract<WebCrawlMaster, WebCrawl
 				if (isAborted())
 					break;
 			}
+			this.frontier = null;
+			frontier.release();
 			setStatus(CrawlStatus.INDEXATION);
 			urlCrawlQueue.index(true);
 			if (schedulerJobName != null && schedulerJobName.length() > 0) {
@@ -256,6 +272,31 @@ public class WebCrawlMaster extends CrawlMasterAbstract<WebCrawlMaster, WebCrawl
 		return getNewHttpDownloader(followRedirect, null, true);
 	}
 
+	/**
+	 * @param maxConnections the maximum number of open connections
+	 * @return a new non-blocking client with the user agent, the proxies and
+	 * the time out of the web crawler
+	 * @throws SearchLibException
+	 * @throws IOException
+	 */
+	final HttpAsyncDownloader getNewHttpAsyncDownloader(final int maxConnections)
+			throws SearchLibException, IOException {
+		final WebPropertyManager propertyManager = getConfig().getWebPropertyManager();
+		return new HttpAsyncDownloader(propertyManager.getUserAgent().getValue(), propertyManager.getProxyHandler(),
+				propertyManager.getConnectionTimeOut().getValue() * 1000, maxConnections);
+	}
+
+	/**
+	 * The hosts waiting for their politeness delay are finished at once
+	 */
+	@Override
+	public void abort() {
+		super.abort();
+		final WebCrawlFrontier frontier = this.frontier;
+		if (frontier != null)
+			frontier.abort();
+	}
+
 	private NamedItem getNextHost() {
 		synchronized (hostList) {
 			int s = hostList.size();
@@ -21,9 +21,9 @@
  * along with OpenSearchServer.
  * If not, see <http://www.gnu.org/licenses/>.
  **/
-
 package com.jaeksoft.searchlib.crawler.web.process;
 
+import com.jaeksoft.searchlib.Logging;
 import com.jaeksoft.searchlib.SearchLibException;
 import com.jaeksoft.searchlib.config.Config;
 import com.jaeksoft.searchlib.crawler.common.database.FetchStatus;
@@ -38,35 +38,75 @@ import com.jaeksoft.searchlib.crawler.web.database.UrlCrawlQueue;
 import com.jaeksoft.searchlib.crawler.web.database.UrlItem;
 import com.jaeksoft.searchlib.crawler.web.database.WebPropertyManager;
 import com.jaeksoft.searchlib.crawler.web.database.pattern.PatternListMatcher;
+import com.jaeksoft.searchlib.crawler.web.robotstxt.RobotsTxtCache;
 import com.jaeksoft.searchlib.crawler.web.script.WebScriptItem;
 import com.jaeksoft.searchlib.crawler.web.script.WebScriptManager;
 import com.jaeksoft.searchlib.crawler.web.spider.Crawl;
 import com.jaeksoft.searchlib.crawler.web.spider.DownloadItem;
 import com.jaeksoft.searchlib.crawler.web.spider.HttpDownloader;
+import com.jaeksoft.searchlib.util.IOUtils;
+import org.apache.http.client.CookieStore;
+import org.apache.http.concurrent.FutureCallback;
+import org.apache.http.impl.client.BasicCookieStore;
 
 import java.io.IOException;
 import java.net.MalformedURLException;
 import java.net.URISyntaxException;
 import java.net.URL;
-import java.util.Iterator;
+import java.security.NoSuchAlgorithmException;
 import java.util.List;
 
+/**
+ * A crawl thread takes the hosts from the frontier. The downloads are sent
+ * with the HttpAsyncDownloader of the frontier: the thread does not wait for
+ * them, it crawls another host meanwhile. When a download ends, the host comes
+ * back to a crawl thread which parses the content. The politeness delay is
+ * handled by the frontier.
+ */
 public class WebCrawlThread extends CrawlThreadAbstract<WebCrawlThread, WebCrawlMaster> {
 
+	/**
+	 * The longest Crawl-delay honored, in milliseconds
+	 */
+	private final static long MAX_CRAWL_DELAY = 60000;
+
+	/**
+	 * The host waits for a download in flight
+	 */
+	private final static long IN_FLIGHT = -1;
+
+	/**
+	 * The host has no URL left to crawl
+	 */
+	private final static long FINISHED = -2;
+
 	private UrlItem currentUrlItem;
 	private long delayBetweenAccesses;
-	private HttpDownloader httpDownloader;
 	private HttpDownloader httpDownloaderRobotsTxt;
-	private long nextTimeTarget;
 	private HostUrlList hostUrlList;
 	private Crawl currentCrawl;
 	private PatternListMatcher exclusionMatcher;
 	private PatternListMatcher inclusionMatcher;
 	private UrlCrawlQueue crawlQueue;
+	private final boolean robotsTxtEnabled;
 	private final WebScriptManager webScriptManager;
+	private final WebCrawlFrontier frontier;
+	private final boolean ownFrontier;
 
 	protected WebCrawlThread(Config config, WebCrawlMaster crawlMaster, CrawlStatistics sessionStats,
 			HostUrlList hostUrlList) throws SearchLibException, IOException {
+		this(config, crawlMaster, sessionStats,
+				new WebCrawlFrontier(hostUrlList, crawlMaster.getNewHttpAsyncDownloader(1)), true);
+		this.hostUrlList = hostUrlList;
+	}
+
+	WebCrawlThread(Config config, WebCrawlMaster crawlMaster, CrawlStatistics sessionStats,
+			WebCrawlFrontier frontier) throws SearchLibException, IOException {
+		this(config, crawlMaster, sessionStats, frontier, false);
+	}
+
+	private WebCrawlThread(Config config, WebCrawlMaster crawlMaster, CrawlStatistics sessionStats,
+			WebCrawlFrontier frontier, boolean ownFrontier) throws SearchLibException, IOException {
 		super(config, crawlMaster, null, null);
 		this.crawlQueue = (UrlCrawlQueue) crawlMaster.getCrawlQueue();
 		this.currentUrlItem = null;
@@ -74,9 +114,9 @@ public class WebCrawlThread extends CrawlThreadAbstract<WebCrawlThread, WebCrawl
 		currentStats = new CrawlStatistics(sessionStats);
 		WebPropertyManager propertyManager = config.getWebPropertyManager();
 		delayBetweenAccesses = propertyManager.getDelayBetweenAccesses().getValue();
-		nextTimeTarget = 0;
-		this.hostUrlList = hostUrlList;
-		httpDownloader = crawlMaster.getNewHttpDownloader(false);
+		this.hostUrlList = null;
+		this.frontier = frontier;
+		this.ownFrontier = ownFrontier;
 		httpDownloaderRobotsTxt =
 				new HttpDownloader(propertyManager.getUserAgent().getValue(), true, propertyManager.getProxyHandler(),
 						propertyManager.getConnectionTimeOut().getValue() * 1000);
@@ -86,126 +126,328 @@ public class WebCrawlThread extends CrawlThreadAbstract<WebCrawlThread, WebCrawl
 		inclusionMatcher = propertyManager.getInclusionEnabled().getValue() ?
 				config.getInclusionPatternManager().getPatternListMatcher() :
 				null;
+		robotsTxtEnabled = propertyManager.getRobotsTxtEnabled().getValue();
 		webScriptManager = config.getWebScriptManager();
 	}
 
-	private void sleepInterval() throws InterruptedException {
-		long ms = nextTimeTarget - System.currentTimeMillis();
-		if (ms < 0)
-			return;
-		sleepMs(ms);
-	}
-
 	@Override
 	public void runner() throws Exception {
+		final WebCrawlMaster crawlMaster = (WebCrawlMaster) getThreadMaster();
+		for (; ; ) {
+			setStatus(CrawlStatus.WAITING);
+			final WebCrawlFrontier.HostCrawl hostCrawl = frontier.take();
+			if (hostCrawl == null)
+				break;
+			long delay = FINISHED;
+			try {
+				// An aborted thread finishes the hosts it takes
+				if (!isAborted())
+					delay = crawlStep(crawlMaster, hostCrawl);
+			} catch (InterruptedException e) {
+				throw e;
+			} catch (Exception e) {
+				// An error on one host does not stop the crawl of the others
+				Logging.error("Crawl error on " + hostCrawl.hostUrlList.getNamedItem().getName(), e);
+			} finally {
+				if (delay >= 0)
+					frontier.reschedule(hostCrawl, delay);
+				else if (delay == FINISHED) {
+					setStatus(CrawlStatus.INDEXATION);
+					try {
+						crawlQueue.index(!crawlMaster.isRunning());
+					} finally {
+						frontier.finish(hostCrawl);
+					}
+				}
+			}
+		}
+	}
 
-		List<UrlItem> urlList = hostUrlList.getUrlList();
-		currentStats.addListSize(urlList.size());
-
-		Iterator<UrlItem> iterator = urlList.iterator();
-		WebCrawlMaster crawlMaster = (WebCrawlMaster) getThreadMaster();
-
-		List<WebScriptItem> scriptList = webScriptManager.getItems("http://" + hostUrlList.getNamedItem().getName());
-		if (scriptList != null)
-			for (WebScriptItem scriptItem : scriptList)
-				scriptItem.exec(httpDownloader);
-
-		while (iterator.hasNext()) {
+	/**
+	 * Parse the download which has ended, or start the crawl of the next URL
+	 * of the host
+	 *
+	 * @param crawlMaster the crawl master
+	 * @param hostCrawl   the host
+	 * @return the delay before the next access to the host, IN_FLIGHT or
+	 * FINISHED
+	 * @throws Exception
+	 */
+	private long crawlStep(final WebCrawlMaster crawlMaster, final WebCrawlFrontier.HostCrawl hostCrawl)
+			throws Exception {
 
-			ListType listType = hostUrlList.getListType();
-			if (listType != ListType.MANUAL) {
-				if (crawlMaster.isAborted())
-					break;
-				if (crawlMaster.urlLeft() < 0)
-					break;
-			}
+		synchronized (this) {
+			hostUrlList = hostCrawl.hostUrlList;
+			currentUrlItem = hostCrawl.urlItem;
+			currentCrawl = hostCrawl.crawl;
+		}
 
-			currentUrlItem = iterator.next();
+		if (hostCrawl.downloadCrawl == null)
+			return nextUrl(crawlMaster, hostCrawl);
 
-			currentCrawl = crawl();
-			if (currentCrawl != null)
-				crawlQueue.add(currentStats, currentCrawl);
-			else
-				crawlQueue.delete(currentStats, currentUrlItem.getUrl());
+		final Crawl downloadCrawl = endDownload(hostCrawl);
+		if (downloadCrawl == hostCrawl.crawl)
+			return endUrl(hostCrawl, getPoliteDelay(downloadCrawl.getCrawlDelay()));
 
-			if (isAborted())
-				break;
+		// The robots.txt has been downloaded
+		getConfig().getRobotsTxtCache().putRobotsTxt(downloadCrawl);
+		try {
+			return download(hostCrawl);
+		} catch (MalformedURLException | URISyntaxException | ClassNotFoundException e) {
+			return urlError(hostCrawl, e);
 		}
+	}
 
-		setStatus(CrawlStatus.INDEXATION);
-		crawlQueue.index(!crawlMaster.isRunning());
+	/**
+	 * Start the crawl of the next URL of the host
+	 *
+	 * @param crawlMaster the crawl master
+	 * @param hostCrawl   the host
+	 * @return the delay before the next access to the host, IN_FLIGHT or
+	 * FINISHED
+	 * @throws Exception
+	 */
+	private long nextUrl(final WebCrawlMaster crawlMaster, final WebCrawlFrontier.HostCrawl hostCrawl)
+			throws Exception {
+
+		if (hostCrawl.cookieStore == null) {
+			currentStats.addListSize(hostUrlList.getUrlList().size());
+			List<WebScriptItem> scriptList =
+					webScriptManager.getItems("http://" + hostUrlList.getNamedItem().getName());
+			if (scriptList != null && !scriptList.isEmpty()) {
+				// The requests of the host send the cookies set by the scripts
+				hostCrawl.httpDownloader = crawlMaster.getNewHttpDownloader(false);
+				for (WebScriptItem scriptItem : scriptList)
+					scriptItem.exec(hostCrawl.httpDownloader);
+				hostCrawl.cookieStore = hostCrawl.httpDownloader.getCookieStore();
+			} else
+				hostCrawl.cookieStore = new BasicCookieStore();
+		}
 
-		urlList.clear();
-	}
+		if (!hostCrawl.hasNext())
+			return FINISHED;
 
-	private Crawl crawl() throws SearchLibException, InterruptedException, IOException {
+		ListType listType = hostUrlList.getListType();
+		if (listType != ListType.MANUAL) {
+			if (crawlMaster.isAborted())
+				return FINISHED;
+			if (crawlMaster.urlLeft() < 0)
+				return FINISHED;
+		}
 
-		final Config config = getConfig();
+		final UrlItem urlItem = hostCrawl.next();
+		synchronized (this) {
+			currentUrlItem = urlItem;
+		}
 
 		setStatus(CrawlStatus.CRAWL);
 		currentStats.incUrlCount();
 
-		final Crawl crawl = ((WebCrawlMaster) getThreadMaster()).getNewCrawl(this);
+		final Crawl crawl = crawlMaster.getNewCrawl(this);
+		synchronized (this) {
+			currentCrawl = crawl;
+		}
+		hostCrawl.urlItem = urlItem;
+		hostCrawl.crawl = crawl;
 
 		try {
 
 			// Check the url
-			URL url = currentUrlItem.getURL();
+			URL url = urlItem.getURL();
 
 			// Check if url is allowed by pattern list
 			if (url != null)
 				if (inclusionMatcher != null && !inclusionMatcher.matchPattern(url, null)) {
-					currentUrlItem.setFetchStatus(FetchStatus.NOT_IN_INCLUSION_LIST);
+					urlItem.setFetchStatus(FetchStatus.NOT_IN_INCLUSION_LIST);
 					url = null;
 				}
 			if (url != null)
 				if (exclusionMatcher != null && exclusionMatcher.matchPattern(url, null)) {
-					currentUrlItem.setFetchStatus(FetchStatus.BLOCKED_BY_EXCLUSION_LIST);
+					urlItem.setFetchStatus(FetchStatus.BLOCKED_BY_EXCLUSION_LIST);
 					url = null;
 				}
 
-			if (url == null)
-				return null;
+			if (url == null) {
+				hostCrawl.urlItem = null;
+				hostCrawl.crawl = null;
+				crawlQueue.delete(currentStats, urlItem.getUrl());
+				return hostCrawl.hasNext() ? 0 : FINISHED;
+			}
 
 			// Fetch started
 			currentStats.incFetchedCount();
 
-			sleepInterval();
-			setStatus(CrawlStatus.CRAWL);
-			// NextTimeTarget is immediate by default
-			nextTimeTarget = System.currentTimeMillis();
-			if (crawl.checkRobotTxtAllow(httpDownloaderRobotsTxt)) {
-				DownloadItem downloadItem = crawl.download(httpDownloader);
-				// If we really crawled the content we honor the pause
-				if (downloadItem == null || !downloadItem.isFromCache())
-					nextTimeTarget += +delayBetweenAccesses * 1000;
-				else
-					currentStats.incFromCacheCount();
+			// The robots.txt of the host is downloaded first
+			if (robotsTxtEnabled) {
+				final RobotsTxtCache robotsTxtCache = getConfig().getRobotsTxtCache();
+				if (robotsTxtCache.getCachedRobotsTxt(getConfig(), url) == null) {
+					final Crawl robotsTxtCrawl = robotsTxtCache.getNewRobotsTxtCrawl(getConfig(), url);
+					final Crawl.Fetch fetch = robotsTxtCrawl.prepareDownload();
+					if (fetch != null && fetch.getCachedItem() != null)
+						robotsTxtCrawl.download(fetch, fetch.getCachedItem());
+					else if (fetch != null && sendRequest(hostCrawl, robotsTxtCrawl, fetch, new BasicCookieStore(),
+							true))
+						return IN_FLIGHT;
+					robotsTxtCache.putRobotsTxt(robotsTxtCrawl);
+				}
 			}
 
-			if (currentUrlItem.getFetchStatus() == FetchStatus.FETCHED
-					&& currentUrlItem.getParserStatus() == ParserStatus.PARSED
-					&& currentUrlItem.getIndexStatus() != IndexStatus.META_NOINDEX) {
-				currentUrlItem.setIndexStatus(IndexStatus.TO_INDEX);
-				currentStats.incParsedCount();
-				config.getScreenshotManager().capture(url, crawl.getCredentialItem(), true, 120);
-			} else
-				currentStats.incIgnoredCount();
-
-		} catch (MalformedURLException e) {
-			crawl.setError(e.getMessage());
-			currentUrlItem.setFetchStatus(FetchStatus.URL_ERROR);
-		} catch (URISyntaxException e) {
-			crawl.setError(e.getMessage());
-			currentUrlItem.setFetchStatus(FetchStatus.URL_ERROR);
-		} catch (ClassNotFoundException e) {
-			crawl.setError(e.getMessage());
-			currentUrlItem.setFetchStatus(FetchStatus.URL_ERROR);
+			return download(hostCrawl);
+
+		} catch (MalformedURLException | URISyntaxException | ClassNotFoundException e) {
+			return urlError(hostCrawl, e);
 		}
+	}
+
+	/**
+	 * Check the robots.txt, then send the request of the URL being crawled
+	 *
+	 * @param hostCrawl the host
+	 * @return the delay before the next access to the host, IN_FLIGHT or
+	 * FINISHED
+	 * @throws Exception
+	 */
+	private long download(final WebCrawlFrontier.HostCrawl hostCrawl) throws Exception {
+		final Crawl crawl = hostCrawl.crawl;
+		setStatus(CrawlStatus.CRAWL);
+		if (!crawl.checkRobotTxtAllow(httpDownloaderRobotsTxt))
+			return endUrl(hostCrawl, 0);
+		final Crawl.Fetch fetch = crawl.prepareDownload();
+		if (fetch != null && fetch.getCachedItem() != null) {
+			// The content comes from the cache, the next access is immediate
+			crawl.download(fetch, fetch.getCachedItem());
+			currentStats.incFromCacheCount();
+			return endUrl(hostCrawl, 0);
+		}
+		if (fetch != null && sendRequest(hostCrawl, crawl, fetch, hostCrawl.cookieStore, false))
+			return IN_FLIGHT;
+		return endUrl(hostCrawl, getPoliteDelay(crawl.getCrawlDelay()));
+	}
 
+	/**
+	 * Send a request. The host goes back to the frontier when the download
+	 * ends, nothing else must be done on the host once the request is sent.
+	 *
+	 * @param hostCrawl      the host
+	 * @param crawl          the crawl of the URL or of the robots.txt
+	 * @param fetch          the request
+	 * @param cookieStore    the cookies sent with the request
+	 * @param followRedirect true if the redirections are followed
+	 * @return true if the request is in flight, false if it could not be sent
+	 */
+	private boolean sendRequest(final WebCrawlFrontier.HostCrawl hostCrawl, final Crawl crawl,
+			final Crawl.Fetch fetch, final CookieStore cookieStore, final boolean followRedirect) {
+		hostCrawl.downloadCrawl = crawl;
+		hostCrawl.fetch = fetch;
+		try {
+			frontier.getHttpAsyncDownloader()
+					.get(fetch.getUri(), followRedirect, crawl.getCredentialItem(), fetch.getHeaderList(),
+							fetch.getCookieList(), cookieStore, new FutureCallback<DownloadItem>() {
+
+								@Override
+								public void completed(final DownloadItem downloadItem) {
+									hostCrawl.downloadItem = downloadItem;
+									frontier.reschedule(hostCrawl, 0);
+								}
+
+								@Override
+								public void failed(final Exception e) {
+									hostCrawl.downloadError = e;
+									frontier.reschedule(hostCrawl, 0);
+								}
+
+								@Override
+								public void cancelled() {
+									hostCrawl.downloadError = new IOException("Download cancelled: " + fetch.getUri());
+									frontier.reschedule(hostCrawl, 0);
+								}
+							});
+			return true;
+		} catch (IOException | URISyntaxException e) {
+			hostCrawl.downloadCrawl = null;
+			hostCrawl.fetch = null;
+			crawl.setDownloadError(e);
+			return false;
+		}
+	}
+
+	/**
+	 * Parse the content of the download which has ended
+	 *
+	 * @param hostCrawl the host
+	 * @return the crawl of the download
+	 */
+	private Crawl endDownload(final WebCrawlFrontier.HostCrawl hostCrawl) {
+		final Crawl crawl = hostCrawl.downloadCrawl;
+		final Crawl.Fetch fetch = hostCrawl.fetch;
+		final DownloadItem downloadItem = hostCrawl.downloadItem;
+		final Exception downloadError = hostCrawl.downloadError;
+		hostCrawl.downloadCrawl = null;
+		hostCrawl.fetch = null;
+		hostCrawl.downloadItem = null;
+		hostCrawl.downloadError = null;
+		if (downloadItem == null) {
+			crawl.setDownloadError(downloadError);
+			return crawl;
+		}
+		try {
+			crawl.download(fetch, downloadItem);
+		} finally {
+			IOUtils.close(downloadItem.getContentInputStream());
+		}
 		return crawl;
 	}
 
+	/**
+	 * Set the status of the crawled URL and add it to the crawl queue
+	 *
+	 * @param hostCrawl the host
+	 * @param delay     the delay before the next access to the host
+	 * @return the delay, or FINISHED if the host has no URL left
+	 * @throws NoSuchAlgorithmException
+	 * @throws IOException
+	 * @throws SearchLibException
+	 * @throws URISyntaxException
+	 */
+	private long endUrl(final WebCrawlFrontier.HostCrawl hostCrawl, final long delay)
+			throws NoSuchAlgorithmException, IOException, SearchLibException, URISyntaxException {
+		final Crawl crawl = hostCrawl.crawl;
+		final UrlItem urlItem = hostCrawl.urlItem;
+		hostCrawl.crawl = null;
+		hostCrawl.urlItem = null;
+		if (urlItem.getFetchStatus() == FetchStatus.FETCHED && urlItem.getParserStatus() == ParserStatus.PARSED
+				&& urlItem.getIndexStatus() != IndexStatus.META_NOINDEX) {
+			urlItem.setIndexStatus(IndexStatus.TO_INDEX);
+			currentStats.incParsedCount();
+			getConfig().getScreenshotManager().capture(urlItem.getURL(), crawl.getCredentialItem(), true, 120);
+		} else
+			currentStats.incIgnoredCount();
+		crawlQueue.add(currentStats, crawl);
+		return hostCrawl.hasNext() ? delay : FINISHED;
+	}
+
+	private long urlError(final WebCrawlFrontier.HostCrawl hostCrawl, final Exception e)
+			throws NoSuchAlgorithmException, IOException, SearchLibException, URISyntaxException {
+		final Crawl crawl = hostCrawl.crawl;
+		hostCrawl.crawl = null;
+		hostCrawl.urlItem = null;
+		crawl.setError(e.getMessage());
+		crawl.getUrlItem().setFetchStatus(FetchStatus.URL_ERROR);
+		crawlQueue.add(currentStats, crawl);
+		return hostCrawl.hasNext() ? 0 : FINISHED;
+	}
+
+	/**
+	 * @param crawlDelay the Crawl-delay of the robots.txt, or null
+	 * @return the delay before the next access to the host, in milliseconds
+	 */
+	private long getPoliteDelay(final Long crawlDelay) {
+		final long delay = delayBetweenAccesses * 1000;
+		if (crawlDelay == null)
+			return delay;
+		return Math.max(delay, Math.min(crawlDelay, MAX_CRAWL_DELAY));
+	}
+
 	public UrlItem getCurrentUrlItem() {
 		synchronized (this) {
 			return currentUrlItem;
@@ -226,10 +468,10 @@ public class WebCrawlThread extends CrawlThreadAbstract<WebCrawlThread, WebCrawl
 
 	@Override
 	public void release() {
-		if (httpDownloader != null)
-			httpDownloader.release();
-		if (httpDownloader != null)
+		if (httpDownloaderRobotsTxt != null)
 			httpDownloaderRobotsTxt.release();
+		if (ownFrontier)
+			frontier.release();
 		super.release();
 	}
 
@@ -239,5 +481,4 @@ public class WebCrawlThread extends CrawlThreadAbstract<WebCrawlThread, WebCrawl
 			return "";
 		return currentUrlItem.getUrl();
 	}
-
-}
\ No newline at end of file
+}
@@ -39,10 +39,17 @@ import com.jaeksoft.searchlib.util.LinkUtils;
 import com.qwazr.crawler.web.robotstxt.RobotsTxt;
 import com.qwazr.utils.CharsetUtils;
 
+import java.io.BufferedReader;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
 import java.net.MalformedURLException;
 import java.net.URISyntaxException;
 import java.net.URL;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 public class RobotsTxtCache extends GenericCache<String, RobotsTxtItem> {
 
@@ -85,6 +92,49 @@ public class RobotsTxtCache extends GenericCache<String, RobotsTxtItem> {
 		});
 	}
 
+	/**
+	 * Return the RobotsTxt object related to the URL if it is in the cache.
+	 *
+	 * @param config
+	 * @param url
+	 * @return the item, or null if the robots.txt must be downloaded
+	 * @throws SearchLibException
+	 * @throws URISyntaxException
+	 * @throws IOException
+	 */
+	public RobotsTxtItem getCachedRobotsTxt(final Config config, final URL url)
+			throws SearchLibException, URISyntaxException, IOException {
+		return getValid(config.getUrlManager().getNewUrlItem(RobotsTxtItem.getRobotsUrl(url).toExternalForm())
+				.getUrl());
+	}
+
+	/**
+	 * Create the crawl of the robots.txt related to the URL. Once downloaded,
+	 * the crawl is given to putRobotsTxt.
+	 *
+	 * @param config
+	 * @param url
+	 * @return a new crawl
+	 * @throws SearchLibException
+	 * @throws URISyntaxException
+	 * @throws IOException
+	 */
+	public Crawl getNewRobotsTxtCrawl(final Config config, final URL url)
+			throws SearchLibException, URISyntaxException, IOException {
+		final UrlItem urlItem = config.getUrlManager().getNewUrlItem(RobotsTxtItem.getRobotsUrl(url).toExternalForm());
+		return new Crawl(null, urlItem, config, parserSelector);
+	}
+
+	/**
+	 * Put a downloaded robots.txt in the cache
+	 *
+	 * @param crawl the crawl returned by getNewRobotsTxtCrawl
+	 * @return the new item
+	 */
+	public RobotsTxtItem putRobotsTxt(final Crawl crawl) {
+		return put(crawl.getUrlItem().getUrl(), new RobotsTxtItem(crawl));
+	}
+
 	public RobotsTxtItem[] getRobotsTxtList() {
 		return getList();
 	}
@@ -106,6 +156,8 @@ public class RobotsTxtCache extends GenericCache<String, RobotsTxtItem> {
 
 		volatile RobotsTxt robotsTxt;
 
+		volatile Map<String, Long> crawlDelays;
+
 		public RobotsTxtParser() {
 			super(null, true);
 		}
@@ -114,6 +166,73 @@ public class RobotsTxtCache extends GenericCache<String, RobotsTxtItem> {
 		protected void parseContent(StreamLimiter streamLimiter, LanguageEnum lang)
 				throws IOException, SearchLibException {
 			robotsTxt = new RobotsTxt(streamLimiter.getNewInputStream(), CharsetUtils.CharsetUTF8);
+			crawlDelays = readCrawlDelays(streamLimiter.getNewInputStream());
+		}
+
+		/**
+		 * Read the Crawl-delay directives, which are not handled by RobotsTxt
+		 *
+		 * @param inputStream the content of the robots.txt
+		 * @return the delay in milliseconds for each user agent (lower case)
+		 * @throws IOException
+		 */
+		private static Map<String, Long> readCrawlDelays(final InputStream inputStream) throws IOException {
+			if (inputStream == null)
+				return null;
+			final Map<String, Long> delays = new HashMap<>();
+			final List<String> userAgents = new ArrayList<>();
+			boolean inRules = false;
+			try (final BufferedReader reader = new BufferedReader(
+					new InputStreamReader(inputStream, CharsetUtils.CharsetUTF8))) {
+				String line;
+				while ((line = reader.readLine()) != null) {
+					final int comment = line.indexOf('#');
+					if (comment != -1)
+						line = line.substring(0, comment);
+					final int colon = line.indexOf(':');
+					if (colon == -1)
+						continue;
+					final String key = line.substring(0, colon).trim().toLowerCase();
+					final String value = line.substring(colon + 1).trim();
+					if ("user-agent".equals(key)) {
+						// A new group starts after the rules of the previous one
+						if (inRules) {
+							userAgents.clear();
+							inRules = false;
+						}
+						userAgents.add(value.toLowerCase());
+						continue;
+					}
+					inRules = true;
+					if (!"crawl-delay".equals(key))
+						continue;
+					try {
+						final double seconds = Double.parseDouble(value);
+						if (seconds >= 0)
+							for (String userAgent : userAgents)
+								delays.putIfAbsent(userAgent, (long) (seconds * 1000));
+					} catch (NumberFormatException e) {
+						// Ignore malformed delays
+					}
+				}
+			}
+			return delays;
+		}
+
+		/**
+		 * @param userAgent the user agent of the crawler
+		 * @return the crawl delay in milliseconds, or null if none is defined
+		 */
+		Long getCrawlDelay(final String userAgent) {
+			final Map<String, Long> delays = crawlDelays;
+			if (delays == null)
+				return null;
+			if (userAgent != null) {
+				final Long delay = delays.get(userAgent.toLowerCase());
+				if (delay != null)
+					return delay;
+			}
+			return delays.get("*");
 		}
 	}
 }
@@ -115,6 +115,16 @@ public class RobotsTxtItem implements GenericCache.Expirable {
 		return RobotsTxtStatus.DISALLOW;
 	}
 
+	/**
+	 * Return the Crawl-delay which applies to the user agent
+	 *
+	 * @param userAgent
+	 * @return the delay in milliseconds, or null if none is defined
+	 */
+	public Long getCrawlDelay(String userAgent) {
+		return robotsTxtParser == null ? null : robotsTxtParser.getCrawlDelay(userAgent);
+	}
+
 	/**
 	 * Retourne la date d'expiration. Lorsque la date est expirée, le robots.txt
 	 * est à nouveau téléchargé.
@@ -103,6 +103,7 @@ public class Crawl {
 	private final PatternListMatcher inclusionMatcher;
 	private final PatternListMatcher exclusionMatcher;
 	private final boolean robotsTxtEnabled;
+	private Long crawlDelay;
 
 	public Crawl(HostUrlList hostUrlList, UrlItem urlItem, Config config, ParserSelector parserSelector)
 			throws IOException, SearchLibException {
@@ -134,6 +135,7 @@ public class Crawl {
 				config.getInclusionPatternManager().getPatternListMatcher() :
 				null;
 		this.robotsTxtEnabled = propertyManager.getRobotsTxtEnabled().getValue();
+		this.crawlDelay = null;
 	}
 
 	public Crawl(WebCrawlThread crawlThread) throws SearchLibException, IOException {
@@ -224,6 +226,7 @@ public class Crawl {
 			RobotsTxtItem robotsTxt = config.getRobotsTxtCache().getRobotsTxt(httpDownloader, config, urlItem.getURL(),
 					false);
 			robotsTxtStatus = robotsTxt.getStatus(userAgent, urlItem);
+			crawlDelay = robotsTxt.getCrawlDelay(userAgent);
 		} else
 			robotsTxtStatus = RobotsTxtStatus.DISABLED;
 		urlItem.setRobotsTxtStatus(robotsTxtStatus);
@@ -235,6 +238,57 @@ public class Crawl {
 		return false;
 	}
 
+	/**
+	 * The request of a download, with the content found in the crawl cache if
+	 * any
+	 */
+	public static class Fetch {
+
+		private final URI uri;
+		private final List<HeaderItem> headerList;
+		private final List<CookieItem> cookieList;
+		private final CrawlCacheProvider.Item crawlCacheItem;
+		private final DownloadItem cachedItem;
+
+		private Fetch(final URI uri, final List<HeaderItem> headerList, final List<CookieItem> cookieList,
+				final CrawlCacheProvider.Item crawlCacheItem, final DownloadItem cachedItem) {
+			this.uri = uri;
+			this.headerList = headerList;
+			this.cookieList = cookieList;
+			this.crawlCacheItem = crawlCacheItem;
+			this.cachedItem = cachedItem;
+		}
+
+		/**
+		 * @return the normalized URI
+		 */
+		public URI getUri() {
+			return uri;
+		}
+
+		/**
+		 * @return the configured headers of the URL
+		 */
+		public List<HeaderItem> getHeaderList() {
+			return headerList;
+		}
+
+		/**
+		 * @return the configured cookies of the URL
+		 */
+		public List<CookieItem> getCookieList() {
+			return cookieList;
+		}
+
+		/**
+		 * @return the content found in the crawl cache, or null if the URL must
+		 * be downloaded
+		 */
+		public DownloadItem getCachedItem() {
+			return cachedItem;
+		}
+	}
+
 	/**
 	 * Download the file and extract content informations
 	 *
@@ -242,8 +296,31 @@ public class Crawl {
 	 */
 	public DownloadItem download(HttpDownloader httpDownloader) {
 		synchronized (this) {
-			InputStream is = null;
-			DownloadItem downloadItem = null;
+			final Fetch fetch = prepareDownload();
+			if (fetch == null)
+				return null;
+			DownloadItem downloadItem = fetch.cachedItem;
+			if (downloadItem == null) {
+				try {
+					downloadItem = httpDownloader.get(fetch.uri, credentialItem, fetch.headerList, fetch.cookieList);
+				} catch (Exception e) {
+					setDownloadError(e);
+					return null;
+				}
+			}
+			return download(fetch, downloadItem);
+		}
+	}
+
+	/**
+	 * The first step of a download: the normalization of the URL, the
+	 * credential, the headers and the cookies, and the lookup in the crawl
+	 * cache.
+	 *
+	 * @return the request, or null if the URL is not valid
+	 */
+	public Fetch prepareDownload() {
+		synchronized (this) {
 			try {
 				URL url = urlItem.getURL();
 				if (url == null)
@@ -256,16 +333,34 @@ public class Crawl {
 
 				String externalFormUrl = url.toExternalForm();
 				final CrawlCacheProvider.Item crawlCacheItem = crawlCacheManager.getItem(uri);
-				downloadItem = crawlCacheItem.load();
-				boolean fromCache = (downloadItem != null);
-
-				if (!fromCache) {
+				final DownloadItem cachedItem = crawlCacheItem.load();
+				if (cachedItem != null) {
+					if (Logging.isDebug)
+						Logging.debug("Crawl cache deliver: " + uri);
+					return new Fetch(uri, null, null, crawlCacheItem, cachedItem);
+				}
+				return new Fetch(uri, headerManager.getItems(externalFormUrl), cookieManager.getItems(externalFormUrl),
+						crawlCacheItem, null);
+			} catch (Exception e) {
+				setDownloadError(e);
+				return null;
+			}
+		}
+	}
 
-					List<CookieItem> cookieList = cookieManager.getItems(externalFormUrl);
-					List<HeaderItem> headerList = headerManager.getItems(externalFormUrl);
-					downloadItem = httpDownloader.get(uri, credentialItem, headerList, cookieList);
-				} else if (Logging.isDebug)
-					Logging.debug("Crawl cache deliver: " + uri);
+	/**
+	 * The last step of a download: the content is stored in the crawl cache
+	 * and parsed.
+	 *
+	 * @param fetch        the request returned by prepareDownload
+	 * @param downloadItem the downloaded content, or the cached content
+	 * @return the downloadItem
+	 */
+	public DownloadItem download(final Fetch fetch, final DownloadItem downloadItem) {
+		synchronized (this) {
+			InputStream is = null;
+			try {
+				final boolean fromCache = downloadItem == fetch.cachedItem;
 
 				urlItem.setContentDispositionFilename(downloadItem.getContentDispositionFilename());
 
@@ -296,12 +391,12 @@ public class Crawl {
 
 				if (code >= 200 && code < 300) {
 					if (!fromCache)
-						is = crawlCacheItem.store(downloadItem);
+						is = fetch.crawlCacheItem.store(downloadItem);
 					else
 						is = downloadItem.getContentInputStream();
 					parseContent(is);
 					if (parser != null)
-						crawlCacheItem.store(parser.getParserResults());
+						fetch.crawlCacheItem.store(parser.getParserResults());
 				} else if (code == 301) {
 					urlItem.setFetchStatus(FetchStatus.REDIR_PERM);
 				} else if (code > 301 && code < 400) {
@@ -311,34 +406,48 @@ public class Crawl {
 				} else if (code >= 500 && code < 600) {
 					urlItem.setFetchStatus(FetchStatus.HTTP_ERROR);
 				}
-			} catch (FileNotFoundException e) {
+			} catch (Exception e) {
+				setDownloadError(e);
+			} finally {
+				IOUtils.close(is);
+			}
+			return downloadItem;
+		}
+	}
+
+	/**
+	 * Set the status of a download which failed
+	 *
+	 * @param e the cause of the failure
+	 */
+	public void setDownloadError(final Exception e) {
+		synchronized (this) {
+			if (e instanceof FileNotFoundException) {
 				Logging.info("FileNotFound: " + urlItem.getUrl());
 				urlItem.setFetchStatus(FetchStatus.GONE);
 				setError("FileNotFound: " + urlItem.getUrl());
-			} catch (LimitException e) {
+			} else if (e instanceof LimitException) {
 				Logging.warn(e.toString() + " (" + urlItem.getUrl() + ")");
 				urlItem.setFetchStatus(FetchStatus.SIZE_EXCEED);
 				setError(e.getMessage());
-			} catch (InstantiationException | IllegalAccessException | ClassNotFoundException e) {
+			} else if (e instanceof InstantiationException || e instanceof IllegalAccessException
+					|| e instanceof ClassNotFoundException) {
 				Logging.error(e.getMessage(), e);
 				urlItem.setParserStatus(ParserStatus.PARSER_ERROR);
 				setError(e.getMessage());
-			} catch (URISyntaxException | MalformedURLException e) {
+			} else if (e instanceof URISyntaxException || e instanceof MalformedURLException) {
 				Logging.warn(e.getMessage(), e);
 				urlItem.setFetchStatus(FetchStatus.URL_ERROR);
 				setError(e.getMessage());
-			} catch (IOException e) {
+			} else if (e instanceof IOException) {
 				Logging.warn(e.getMessage(), e);
 				urlItem.setFetchStatus(FetchStatus.ERROR);
 				setError(e.getMessage());
-			} catch (Exception e) {
+			} else {
 				Logging.error(e.getMessage(), e);
 				urlItem.setFetchStatus(FetchStatus.ERROR);
 				setError(e.getMessage());
-			} finally {
-				IOUtils.close(is);
 			}
-			return downloadItem;
 		}
 	}
 
@@ -370,6 +479,14 @@ public class Crawl {
 		return error;
 	}
 
+	/**
+	 * @return the Crawl-delay of the robots.txt in milliseconds, or null if
+	 * none is defined
+	 */
+	public Long getCrawlDelay() {
+		return crawlDelay;
+	}
+
 	public UrlItem getUrlItem() {
 		return urlItem;
 	}
@@ -221,85 +221,102 @@ public abstract class HttpAbstract {
 		synchronized (this) {
 			if (httpResponse == null)
 				return null;
-			try {
-				if (!redirectStrategy.isRedirected(httpBaseRequest, httpResponse, httpClientContext)) {
-					Object redirects = httpClientContext.getAttribute(HttpClientContext.REDIRECT_LOCATIONS);
-					if (redirects == null)
+			return getRedirectLocation(redirectStrategy, httpBaseRequest, httpResponse, httpClientContext);
+		}
+	}
+
+	static URI getRedirectLocation(final RedirectStrategy redirectStrategy, final HttpRequest httpRequest,
+			final HttpResponse httpResponse, final HttpClientContext httpClientContext) {
+		try {
+			if (!redirectStrategy.isRedirected(httpRequest, httpResponse, httpClientContext)) {
+				Object redirects = httpClientContext.getAttribute(HttpClientContext.REDIRECT_LOCATIONS);
+				if (redirects == null)
+					return null;
+				if (redirects instanceof List<?>) {
+					List<?> redirectCollection = (List<?>) redirects;
+					if (CollectionUtils.isEmpty(redirectCollection))
 						return null;
-					if (redirects instanceof List<?>) {
-						List<?> redirectCollection = (List<?>) redirects;
-						if (CollectionUtils.isEmpty(redirectCollection))
-							return null;
-						redirects = redirectCollection.get(redirectCollection.size() - 1);
-					}
-					if (redirects instanceof URI)
-						return ((URI) redirects);
-					else
-						return new URI(redirects.toString());
+					redirects = redirectCollection.get(redirectCollection.size() - 1);
 				}
-				HttpUriRequest httpUri = redirectStrategy.getRedirect(httpBaseRequest, httpResponse, httpClientContext);
-				if (httpUri == null)
-					return null;
-				return httpUri.getURI();
-			} catch (ProtocolException e) {
-				Logging.info(e);
-				return null;
-			} catch (URISyntaxException e) {
-				Logging.info(e);
-				return null;
+				if (redirects instanceof URI)
+					return ((URI) redirects);
+				else
+					return new URI(redirects.toString());
 			}
+			HttpUriRequest httpUri = redirectStrategy.getRedirect(httpRequest, httpResponse, httpClientContext);
+			if (httpUri == null)
+				return null;
+			return httpUri.getURI();
+		} catch (ProtocolException e) {
+			Logging.info(e);
+			return null;
+		} catch (URISyntaxException e) {
+			Logging.info(e);
+			return null;
 		}
 	}
 
 	final public Long getContentLength() {
 		synchronized (this) {
-			if (httpEntity != null)
-				return httpEntity.getContentLength();
-			Header header = httpResponse.getFirstHeader("Content-Length");
-			if (header == null)
-				return null;
-			String value = header.getValue();
-			if (value == null)
-				return null;
-			return new Long(value);
+			return getContentLength(httpResponse, httpEntity);
 		}
 	}
 
+	static Long getContentLength(final HttpResponse httpResponse, final HttpEntity httpEntity) {
+		if (httpEntity != null)
+			return httpEntity.getContentLength();
+		Header header = httpResponse.getFirstHeader("Content-Length");
+		if (header == null)
+			return null;
+		String value = header.getValue();
+		if (value == null)
+			return null;
+		return new Long(value);
+	}
+
 	public String getContentDispositionFilename() {
 		synchronized (this) {
-			if (httpResponse == null)
-				return null;
-			Header header = httpResponse.getFirstHeader("Content-Disposition");
-			if (header == null)
-				return null;
-			String s = header.getValue();
-			int i1 = s.indexOf("filename=");
-			if (i1 == -1)
-				return null;
-			i1 += 9;
-			int i2 = s.indexOf(";", i1);
-			String f = (i2 == -1) ? s.substring(i1) : s.substring(i1, i2);
-			return f.replace("\"", "");
+			return getContentDispositionFilename(httpResponse);
 		}
 	}
 
+	static String getContentDispositionFilename(final HttpResponse httpResponse) {
+		if (httpResponse == null)
+			return null;
+		Header header = httpResponse.getFirstHeader("Content-Disposition");
+		if (header == null)
+			return null;
+		String s = header.getValue();
+		int i1 = s.indexOf("filename=");
+		if (i1 == -1)
+			return null;
+		i1 += 9;
+		int i2 = s.indexOf(";", i1);
+		String f = (i2 == -1) ? s.substring(i1) : s.substring(i1, i2);
+		return f.replace("\"", "");
+	}
+
 	public String getContentBaseType() {
 		synchronized (this) {
-			Header header = null;
-			if (httpEntity != null)
-				header = httpEntity.getContentType();
-			if (header == null)
-				header = httpResponse.getFirstHeader("Content-Type");
-			if (header == null)
-				return null;
-			String v = header.getValue();
-			int i = v.indexOf(';');
-			if (i == -1)
-				return v;
-			return v.substring(0, i);
+			return getContentBaseType(httpResponse, httpEntity);
 		}
 	}
 
+	static String getContentBaseType(final HttpResponse httpResponse, final HttpEntity httpEntity) {
+		Header header = null;
+		if (httpEntity != null)
+			header = httpEntity.getContentType();
+		if (header == null)
+			header = httpResponse.getFirstHeader("Content-Type");
+		if (header == null)
+			return null;
+		String v = header.getValue();
+		int i = v.indexOf(';');
+		if (i == -1)
+			return v;
+		return v.substring(0, i);
+	}
+
 	// Sun, 06 Nov 1994 08:49:37 GMT ; RFC 822, updated by RFC 1123
 	// Sunday, 06-Nov-94 08:49:37 GMT ; RFC 850, obsoleted by RFC 1036
 	// Sun Nov 6 08:49:37 1994
@@ -323,24 +340,28 @@ public abstract class HttpAbstract {
 
 	public Long getLastModified() {
 		synchronized (this) {
-			Header header = httpResponse.getFirstHeader("Last-Modified");
-			if (header == null)
-				return null;
-			String v = header.getValue();
-			if (v == null)
-				return null;
-			ParseException parseException = null;
-			for (ThreadSafeDateFormat dateFormat : httpDatesFormats) {
-				try {
-					return dateFormat.parse(v).getTime();
-				} catch (ParseException e) {
-					parseException = e;
-				}
-			}
-			if (parseException != null)
-				Logging.warn(parseException);
+			return getLastModified(httpResponse);
+		}
+	}
+
+	static Long getLastModified(final HttpResponse httpResponse) {
+		Header header = httpResponse.getFirstHeader("Last-Modified");
+		if (header == null)
 			return null;
+		String v = header.getValue();
+		if (v == null)
+			return null;
+		ParseException parseException = null;
+		for (ThreadSafeDateFormat dateFormat : httpDatesFormats) {
+			try {
+				return dateFormat.parse(v).getTime();
+			} catch (ParseException e) {
+				parseException = e;
+			}
 		}
+		if (parseException != null)
+			Logging.warn(parseException);
+		return null;
 	}
 
 	public static void main(String[] argv) throws IOException {
@@ -355,45 +376,57 @@ public abstract class HttpAbstract {
 
 	public String getContentTypeCharset() {
 		synchronized (this) {
-			if (httpEntity == null)
+			return getContentTypeCharset(httpEntity);
+		}
+	}
+
+	static String getContentTypeCharset(final HttpEntity httpEntity) {
+		if (httpEntity == null)
+			return null;
+		try {
+			ContentType ct = ContentType.getOrDefault(httpEntity);
+			if (ct == null)
 				return null;
-			try {
-				ContentType ct = ContentType.getOrDefault(httpEntity);
-				if (ct == null)
-					return null;
-				Charset charset = ct.getCharset();
-				if (charset == null)
-					return null;
-				return charset.name();
-			} catch (UnsupportedCharsetException e) {
-				Logging.warn(e);
+			Charset charset = ct.getCharset();
+			if (charset == null)
 				return null;
-			}
+			return charset.name();
+		} catch (UnsupportedCharsetException e) {
+			Logging.warn(e);
+			return null;
 		}
 	}
 
 	public String getContentEncoding() {
 		synchronized (this) {
-			if (httpEntity == null)
-				return null;
-			Header header = httpEntity.getContentEncoding();
-			if (header == null)
-				return null;
-			return header.getValue();
+			return getContentEncoding(httpEntity);
 		}
 	}
 
+	static String getContentEncoding(final HttpEntity httpEntity) {
+		if (httpEntity == null)
+			return null;
+		Header header = httpEntity.getContentEncoding();
+		if (header == null)
+			return null;
+		return header.getValue();
+	}
+
 	public String getContentLocation() {
 		synchronized (this) {
-			if (httpResponse == null)
-				return null;
-			Header header = httpResponse.getFirstHeader("Content-Location");
-			if (header == null)
-				return null;
-			return header.getValue();
+			return getContentLocation(httpResponse);
 		}
 	}
 
+	static String getContentLocation(final HttpResponse httpResponse) {
+		if (httpResponse == null)
+			return null;
+		Header header = httpResponse.getFirstHeader("Content-Location");
+		if (header == null)
+			return null;
+		return header.getValue();
+	}
+
 	protected InputStream getContent() throws IllegalStateException, IOException {
 		synchronized (this) {
 			if (httpEntity == null)
@@ -426,6 +459,14 @@ public abstract class HttpAbstract {
 		}
 	}
 
+	/**
+	 * @return the cookies of this downloader, which may have been set by a web
+	 * script
+	 */
+	public CookieStore getCookieStore() {
+		return cookieStore;
+	}
+
 	public Header[] getHeaders() {
 		synchronized (this) {
 			if (httpResponse == null)
@@ -0,0 +1,268 @@
+/**
+ * License Agreement for OpenSearchServer
+ * <p>
+ * Copyright (C) 2017 Emmanuel Keller / Jaeksoft
+ * <p>
+ * http://www.open-search-server.com
+ * <p>
+ * This file is part of OpenSearchServer.
+ * <p>
+ * OpenSearchServer is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * <p>
+ * OpenSearchServer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * <p>
+ * You should have received a copy of the GNU General Public License
+ * along with OpenSearchServer.
+ * If not, see <http://www.gnu.org/licenses/>.
+ **/
+
+package com.jaeksoft.searchlib.crawler.web.spider;
+
+import com.jaeksoft.searchlib.crawler.web.database.CookieItem;
+import com.jaeksoft.searchlib.crawler.web.database.CredentialItem;
+import com.jaeksoft.searchlib.crawler.web.database.HeaderItem;
+import com.jaeksoft.searchlib.util.IOUtils;
+import com.jaeksoft.searchlib.util.cifs.NTLMSchemeFactory;
+import org.apache.commons.collections.CollectionUtils;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpHost;
+import org.apache.http.HttpResponse;
+import org.apache.http.StatusLine;
+import org.apache.http.auth.AuthSchemeProvider;
+import org.apache.http.client.CookieStore;
+import org.apache.http.client.CredentialsProvider;
+import org.apache.http.client.RedirectStrategy;
+import org.apache.http.client.config.AuthSchemes;
+import org.apache.http.client.config.CookieSpecs;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.protocol.HttpClientContext;
+import org.apache.http.concurrent.FutureCallback;
+import org.apache.http.config.Registry;
+import org.apache.http.config.RegistryBuilder;
+import org.apache.http.conn.ssl.NoopHostnameVerifier;
+import org.apache.http.cookie.Cookie;
+import org.apache.http.entity.ContentType;
+import org.apache.http.impl.auth.BasicSchemeFactory;
+import org.apache.http.impl.auth.DigestSchemeFactory;
+import org.apache.http.impl.auth.KerberosSchemeFactory;
+import org.apache.http.impl.auth.SPNegoSchemeFactory;
+import org.apache.http.impl.client.BasicCredentialsProvider;
+import org.apache.http.impl.client.DefaultRedirectStrategy;
+import org.apache.http.impl.nio.client.CloseableHttpAsyncClient;
+import org.apache.http.impl.nio.client.HttpAsyncClientBuilder;
+import org.apache.http.impl.nio.client.HttpAsyncClients;
+import org.apache.http.impl.nio.reactor.IOReactorConfig;
+import org.apache.http.nio.client.methods.HttpAsyncMethods;
+import org.apache.http.nio.client.methods.ZeroCopyConsumer;
+import org.apache.http.ssl.SSLContextBuilder;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.security.GeneralSecurityException;
+import java.util.List;
+
+/**
+ * A non-blocking HTTP client shared by the crawl threads.
+ * <p>
+ * The requests are sent by the I/O reactor of httpasyncclient, and the content
+ * is written in a temporary file. The callback receives a DownloadItem whose
+ * content stream deletes the file when it is closed. A few threads can then
+ * keep many downloads in flight. The cookies, the credentials and the proxy are
+ * given for each request, as the HttpDownloader does.
+ */
+public class HttpAsyncDownloader implements Closeable {
+
+	private final int msTimeOut;
+	private final ProxyHandler proxyHandler;
+	private final HttpHost proxyHost;
+	private final RedirectStrategy redirectStrategy;
+	private final CloseableHttpAsyncClient httpClient;
+
+	/**
+	 * @param userAgent      the user agent, or null
+	 * @param proxyHandler   the proxies, or null
+	 * @param msTimeOut      the connection and socket time out, in milliseconds
+	 * @param maxConnections the maximum number of open connections
+	 * @throws IOException
+	 */
+	public HttpAsyncDownloader(String userAgent, final ProxyHandler proxyHandler, final int msTimeOut,
+			final int maxConnections) throws IOException {
+		this.msTimeOut = msTimeOut;
+		this.proxyHandler = proxyHandler;
+		this.proxyHost = proxyHandler == null ? null : proxyHandler.getAnyProxy();
+		this.redirectStrategy = new DefaultRedirectStrategy();
+
+		final HttpAsyncClientBuilder builder = HttpAsyncClients.custom();
+		builder.setDefaultIOReactorConfig(
+				IOReactorConfig.custom().setSoTimeout(msTimeOut).setConnectTimeout(msTimeOut).build());
+		builder.setMaxConnTotal(maxConnections);
+		builder.setMaxConnPerRoute(2);
+
+		try {
+			builder.setSSLContext(new SSLContextBuilder().loadTrustMaterial(null, (chain, authType) -> true).build());
+		} catch (GeneralSecurityException e) {
+			throw new IOException(e);
+		}
+		builder.setSSLHostnameVerifier(NoopHostnameVerifier.INSTANCE);
+
+		if (userAgent != null) {
+			userAgent = userAgent.trim();
+			if (userAgent.length() > 0)
+				builder.setUserAgent(userAgent);
+		}
+
+		final Registry<AuthSchemeProvider> authSchemeRegistry =
+				RegistryBuilder.<AuthSchemeProvider>create().register(AuthSchemes.NTLM, new NTLMSchemeFactory())
+						.register(AuthSchemes.BASIC, new BasicSchemeFactory())
+						.register(AuthSchemes.DIGEST, new DigestSchemeFactory())
+						.register(AuthSchemes.SPNEGO, new SPNegoSchemeFactory())
+						.register(AuthSchemes.KERBEROS, new KerberosSchemeFactory()).build();
+		builder.setDefaultAuthSchemeRegistry(authSchemeRegistry);
+
+		httpClient = builder.build();
+		httpClient.start();
+	}
+
+	/**
+	 * Send a GET request. The method returns at once, the callback is called by
+	 * the I/O reactor when the content is downloaded or when the request fails.
+	 *
+	 * @param uri            the URI to download
+	 * @param followRedirect true if the redirections are followed
+	 * @param credentialItem the credential, or null
+	 * @param headers        the additional headers, or null
+	 * @param cookies        the configured cookies, added to the cookie store
+	 * @param cookieStore    the cookies of the host
+	 * @param callback       the callback receiving the DownloadItem
+	 * @throws IOException        if the temporary file cannot be created
+	 * @throws URISyntaxException if a configured cookie is not valid
+	 */
+	public void get(final URI uri, final boolean followRedirect, final CredentialItem credentialItem,
+			final List<HeaderItem> headers, final List<CookieItem> cookies, final CookieStore cookieStore,
+			final FutureCallback<DownloadItem> callback) throws IOException, URISyntaxException {
+
+		final HttpGet httpGet = new HttpGet(uri);
+		if (headers != null)
+			for (HeaderItem header : headers)
+				httpGet.addHeader(header.getHeader());
+
+		if (!CollectionUtils.isEmpty(cookies)) {
+			final List<Cookie> cookieList = cookieStore.getCookies();
+			for (CookieItem cookie : cookies) {
+				final Cookie newCookie = cookie.getCookie();
+				if (!cookieList.contains(newCookie))
+					cookieStore.addCookie(newCookie);
+			}
+		}
+
+		final RequestConfig.Builder configBuilder =
+				RequestConfig.custom().setSocketTimeout(msTimeOut).setConnectionRequestTimeout(msTimeOut)
+						.setConnectTimeout(msTimeOut).setCookieSpec(CookieSpecs.STANDARD)
+						.setRedirectsEnabled(followRedirect);
+
+		final CredentialsProvider credentialsProvider = new BasicCredentialsProvider();
+		if (credentialItem != null)
+			credentialItem.setUpCredentials(credentialsProvider, httpGet);
+		if (proxyHandler != null && proxyHost != null)
+			if (proxyHandler.isProxy(uri))
+				proxyHandler.applyProxy(configBuilder, proxyHost, credentialsProvider);
+		httpGet.setConfig(configBuilder.build());
+
+		final HttpClientContext httpClientContext = HttpClientContext.create();
+		httpClientContext.setCookieStore(cookieStore);
+		httpClientContext.setCredentialsProvider(credentialsProvider);
+
+		final File file = File.createTempFile("oss_download", ".tmp");
+		try {
+			httpClient.execute(HttpAsyncMethods.create(httpGet), new ZeroCopyConsumer<DownloadItem>(file) {
+				@Override
+				protected DownloadItem process(final HttpResponse httpResponse, final File file,
+						final ContentType contentType) throws IOException {
+					final HttpEntity httpEntity = httpResponse.getEntity();
+					final StatusLine statusLine = httpResponse.getStatusLine();
+					final DownloadItem downloadItem = new DownloadItem(uri, System.currentTimeMillis(), false);
+					downloadItem.setRedirectLocation(
+							HttpAbstract.getRedirectLocation(redirectStrategy, httpGet, httpResponse,
+									httpClientContext));
+					downloadItem.setContentLength(HttpAbstract.getContentLength(httpResponse, httpEntity));
+					downloadItem.setLastModified(HttpAbstract.getLastModified(httpResponse));
+					downloadItem.setContentDispositionFilename(
+							HttpAbstract.getContentDispositionFilename(httpResponse));
+					downloadItem.setContentBaseType(HttpAbstract.getContentBaseType(httpResponse, httpEntity));
+					downloadItem.setContentEncoding(HttpAbstract.getContentEncoding(httpEntity));
+					downloadItem.setContentLocation(HttpAbstract.getContentLocation(httpResponse));
+					downloadItem.setContentTypeCharset(HttpAbstract.getContentTypeCharset(httpEntity));
+					downloadItem.setStatusCode(statusLine == null ? null : statusLine.getStatusCode());
+					downloadItem.setReasonPhrase(statusLine == null ? null : statusLine.getReasonPhrase());
+					downloadItem.setContentInputStream(new TemporaryFileInputStream(file));
+					downloadItem.setHeaders(httpResponse.getAllHeaders());
+					return downloadItem;
+				}
+			}, httpClientContext, new FutureCallback<DownloadItem>() {
+
+				@Override
+				public void completed(final DownloadItem downloadItem) {
+					callback.completed(downloadItem);
+				}
+
+				@Override
+				public void failed(final Exception e) {
+					file.delete();
+					callback.failed(e);
+				}
+
+				@Override
+				public void cancelled() {
+					file.delete();
+					callback.cancelled();
+				}
+			});
+		} catch (IOException | RuntimeException e) {
+			file.delete();
+			throw e;
+		}
+	}
+
+	/**
+	 * Stop the I/O reactor, the requests in flight are cancelled
+	 */
+	@Override
+	public void close() {
+		IOUtils.close(httpClient);
+	}
+
+	/**
+	 * The downloaded content, the temporary file is deleted when the stream is
+	 * closed
+	 */
+	private static class TemporaryFileInputStream extends FileInputStream {
+
+		private final File file;
+
+		private TemporaryFileInputStream(final File file) throws FileNotFoundException {
+			super(file);
+			this.file = file;
+		}
+
+		@Override
+		public void close() throws IOException {
+			try {
+				super.close();
+			} finally {
+				file.delete();
+			}
+		}
+	}
+}
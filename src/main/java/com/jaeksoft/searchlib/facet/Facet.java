@@ -25,25 +25,27 @@
 package com.jaeksoft.searchlib.facet;
 
 import com.jaeksoft.searchlib.SearchLibException;
-import com.jaeksoft.searchlib.facet.FacetCounter.FacetSorter;
+import com.jaeksoft.searchlib.index.DocTermOrds;
 import com.jaeksoft.searchlib.index.FieldCacheIndex;
 import com.jaeksoft.searchlib.index.ReaderAbstract;
 import com.jaeksoft.searchlib.result.collector.DocIdInterface;
 import com.jaeksoft.searchlib.schema.SchemaField;
 import com.jaeksoft.searchlib.schema.TermVector;
 import com.jaeksoft.searchlib.util.Timer;
-import it.unimi.dsi.fastutil.Arrays;
-import org.apache.lucene.index.Term;
-import org.apache.lucene.index.TermDocs;
+import com.jaeksoft.searchlib.webservice.query.search.SearchQueryAbstract.Facet.OrderByEnum;
 import org.apache.lucene.index.TermFreqVector;
-import org.roaringbitmap.RoaringBitmap;
 
 import java.io.IOException;
+import java.util.AbstractMap;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.PriorityQueue;
 
 public class Facet implements Iterable<Map.Entry<String, FacetCounter>> {
 
@@ -51,9 +53,15 @@ public class Facet implements Iterable<Map.Entry<String, FacetCounter>> {
 	private Map<String, FacetCounter> facetMap;
 	protected transient List<Map.Entry<String, FacetCounter>> list = null;
 
+	// Counts by ordinal, the terms are only resolved when the list is built
+	private FieldCacheIndex stringIndex;
+	private int[] counts;
+
 	public Facet() {
 		list = null;
 		facetMap = new LinkedHashMap<>();
+		stringIndex = null;
+		counts = null;
 	}
 
 	public Facet(FacetField facetField) {
@@ -61,16 +69,11 @@ public class Facet implements Iterable<Map.Entry<String, FacetCounter>> {
 		this.facetField = facetField;
 	}
 
-	private Facet(FacetField facetField, String[] terms, int[] counts) {
+	private Facet(FacetField facetField, FieldCacheIndex stringIndex, int[] counts) {
 		this(facetField);
-		int i = 0;
-		int minCount = facetField.getMinCount();
-		for (int count : counts) {
-			String term = terms[i];
-			if (term != null && count >= minCount)
-				facetMap.put(term, new FacetCounter(count));
-			i++;
-		}
+		this.facetMap = null;
+		this.stringIndex = stringIndex;
+		this.counts = counts;
 	}
 
 	private Facet(FacetField facetField, Map<String, FacetCounter> facetMap) {
@@ -104,12 +107,44 @@ public class Facet implements Iterable<Map.Entry<String, FacetCounter>> {
 		}
 	}
 
+	/**
+	 * Sum the counts of the facets computed on the same field by several
+	 * searches
+	 *
+	 * @param facetField the facet field, its minimum count applies to the sums
+	 * @param facets     the facets to merge
+	 * @return a new facet
+	 */
+	public static Facet merge(FacetField facetField, Collection<Facet> facets) {
+		Facet facet = new Facet(facetField);
+		for (Facet f : facets)
+			facet.sum(f);
+		return new Facet(facetField, facet.facetMap);
+	}
+
+	/**
+	 * @param facetField the facet field
+	 * @param counts     the number of documents of each term
+	 * @return a new facet, the counts are kept whatever the minimum count
+	 */
+	public static Facet fromCounts(FacetField facetField, Map<String, Long> counts) {
+		Facet facet = new Facet(facetField);
+		counts.forEach((term, count) -> facet.facetMap.put(term, new FacetCounter(count)));
+		return facet;
+	}
+
 	public List<Map.Entry<String, FacetCounter>> getList() {
 		synchronized (this) {
 			if (list != null)
 				return list;
-			list = new ArrayList<>(facetMap.entrySet());
-			list = limitOrderBy(facetField, list);
+			if (facetMap == null) {
+				list = limitOrderBy(facetField, stringIndex, counts);
+				stringIndex = null;
+				counts = null;
+			} else {
+				list = new ArrayList<>(facetMap.entrySet());
+				list = limitOrderBy(facetField, list);
+			}
 			return list;
 		}
 	}
@@ -141,7 +176,7 @@ public class Facet implements Iterable<Map.Entry<String, FacetCounter>> {
 		if (schemaField.getTermVector() == TermVector.NO) {
 			FieldCacheIndex stringIndex = reader.getStringIndex(fieldName);
 			int[] countIndex = computeMultivaluedTD(reader, fieldName, stringIndex, docIdInterface);
-			return new Facet(facetField, stringIndex.lookup, countIndex);
+			return new Facet(facetField, stringIndex, countIndex);
 		} else {
 			Map<String, FacetCounter> facetMap = computeMultivaluedTFV(reader, fieldName, docIdInterface);
 			return new Facet(facetField, facetMap);
@@ -153,33 +188,16 @@ public class Facet implements Iterable<Map.Entry<String, FacetCounter>> {
 		String fieldName = facetField.getName();
 		FieldCacheIndex stringIndex = reader.getStringIndex(fieldName);
 		int[] countIndex = computeSinglevalued(stringIndex, collector);
-		return new Facet(facetField, stringIndex.lookup, countIndex);
+		return new Facet(facetField, stringIndex, countIndex);
 	}
 
 	final private static int[] computeMultivaluedTD(ReaderAbstract reader, String fieldName,
 			FieldCacheIndex stringIndex, DocIdInterface docIdInterface) throws IOException, SearchLibException {
-		final int[] countIndex = new int[stringIndex.lookup.length];
-		int indexPos = 0;
-		if (docIdInterface.getSize() == 0)
+		final int[] countIndex = new int[stringIndex.getTermCount()];
+		final int size = docIdInterface.getSize();
+		if (size == 0)
 			return countIndex;
-		final int[] docs = new int[100];
-		final int[] freqs = new int[100];
-		final RoaringBitmap bitset = docIdInterface.getBitSet();
-		Term oTerm = new Term(fieldName);
-		for (String term : stringIndex.lookup) {
-			if (term != null) {
-				Term t = oTerm.createTerm(term);
-				TermDocs termDocs = reader.getTermDocs(t);
-				int l;
-				while ((l = termDocs.read(docs, freqs)) > 0)
-					for (int i = 0; i < l; i++)
-						if (freqs[i] > 0)
-							if (bitset.contains(docs[i]))
-								countIndex[indexPos]++;
-				termDocs.close();
-			}
-			indexPos++;
-		}
+		reader.getDocTermOrds(fieldName).count(docIdInterface.getIds(), size, countIndex);
 		return countIndex;
 	}
 
@@ -211,13 +229,12 @@ public class Facet implements Iterable<Map.Entry<String, FacetCounter>> {
 	}
 
 	private static int[] computeSinglevalued(FieldCacheIndex stringIndex, DocIdInterface collector) throws IOException {
-		final int[] countArray = new int[stringIndex.lookup.length];
-		final int[] order = stringIndex.order;
+		final int[] countArray = new int[stringIndex.getTermCount()];
 		int i = collector.getSize();
 		for (int id : collector.getIds()) {
 			if (i == 0)
 				break;
-			countArray[order[id]]++;
+			countArray[stringIndex.getOrd(id)]++;
 			i--;
 		}
 		return countArray;
@@ -225,17 +242,156 @@ public class Facet implements Iterable<Map.Entry<String, FacetCounter>> {
 
 	private static List<Map.Entry<String, FacetCounter>> limitOrderBy(FacetField facetField,
 			List<Map.Entry<String, FacetCounter>> list) {
-		final FacetSorter facetSorter = FacetSorter.getSorter(list, facetField.getOrderBy());
-		if (facetSorter == null)
+		final Comparator<Map.Entry<String, FacetCounter>> comparator =
+				FacetCounter.getComparator(facetField.getOrderBy());
+		if (comparator == null)
 			return list;
-		Arrays.quickSort(0, list.size(), facetSorter, facetSorter);
 		final Integer limit = facetField.getLimit();
-		if (limit == null)
-			return list;
-		if (list.size() <= limit)
+		if (limit == null || list.size() <= limit) {
+			list.sort(comparator);
 			return list;
-		return list.subList(0, limit);
+		}
+		if (limit <= 0)
+			return new ArrayList<>(0);
+		// Keep the best entries in a bounded heap whose head is the worst one
+		final PriorityQueue<Map.Entry<String, FacetCounter>> queue =
+				new PriorityQueue<>(limit + 1, comparator.reversed());
+		for (Map.Entry<String, FacetCounter> entry : list) {
+			queue.offer(entry);
+			if (queue.size() > limit)
+				queue.poll();
+		}
+		final List<Map.Entry<String, FacetCounter>> result = new ArrayList<>(queue);
+		result.sort(comparator);
+		return result;
+	}
+
+	/**
+	 * Order and limit the counts by ordinal. The terms are only resolved for
+	 * the returned entries.
+	 */
+	private static List<Map.Entry<String, FacetCounter>> limitOrderBy(FacetField facetField,
+			FieldCacheIndex stringIndex, int[] counts) {
+		final int[] ords = limitOrderBy(facetField, counts);
+		final List<Map.Entry<String, FacetCounter>> entries = new ArrayList<>(ords.length);
+		for (int ord : ords)
+			entries.add(new AbstractMap.SimpleImmutableEntry<>(stringIndex.getTerm(ord), new FacetCounter(counts[ord])));
+		return entries;
+	}
+
+	/**
+	 * Select the ordinals of a facet. The terms are sorted, so the term
+	 * orders only need a scan. The count orders use a bounded heap of
+	 * ordinals. The ordinal 0 (no term) is never selected.
+	 *
+	 * @param facetField the facet field, giving the order, the limit and the
+	 *                   minimum count
+	 * @param counts     the number of documents of each ordinal
+	 * @return the selected ordinals, in the order of the facet
+	 */
+	static int[] limitOrderBy(FacetField facetField, int[] counts) {
+		final int minCount = facetField.getMinCount();
+		final OrderByEnum orderBy = facetField.getOrderBy();
+		final Integer limitObject = facetField.getLimit();
+		final boolean unlimited = limitObject == null || orderBy == null || orderBy == OrderByEnum.no_sort;
+		final int limit = unlimited ? Integer.MAX_VALUE : Math.max(0, limitObject);
+		if (orderBy == OrderByEnum.count_desc || orderBy == OrderByEnum.count_asc) {
+			final OrdinalHeap heap = new OrdinalHeap(counts, Math.min(limit, counts.length),
+					orderBy == OrderByEnum.count_desc);
+			for (int ord = 1; ord < counts.length; ord++)
+				if (counts[ord] >= minCount)
+					heap.offer(ord);
+			return heap.toSortedArray();
+		}
+		final int[] ords = new int[Math.min(limit, counts.length)];
+		int size = 0;
+		if (orderBy == OrderByEnum.term_desc) {
+			for (int ord = counts.length - 1; ord > 0 && size < limit; ord--)
+				if (counts[ord] >= minCount)
+					ords[size++] = ord;
+		} else {
+			for (int ord = 1; ord < counts.length && size < limit; ord++)
+				if (counts[ord] >= minCount)
+					ords[size++] = ord;
+		}
+		return size == ords.length ? ords : Arrays.copyOf(ords, size);
+	}
+
+	/**
+	 * A bounded binary heap of ordinals. The head is the worst ordinal kept:
+	 * the lowest count (or the highest when ascending), then the highest
+	 * ordinal.
+	 */
+	private static class OrdinalHeap {
+
+		private final int[] counts;
+		private final int[] heap;
+		private final boolean descending;
+		private int size;
+
+		private OrdinalHeap(int[] counts, int maxSize, boolean descending) {
+			this.counts = counts;
+			this.heap = new int[maxSize];
+			this.descending = descending;
+			this.size = 0;
+		}
+
+		/**
+		 * @return true if ord1 should be returned before ord2
+		 */
+		private boolean better(int ord1, int ord2) {
+			final int c1 = counts[ord1];
+			final int c2 = counts[ord2];
+			if (c1 != c2)
+				return descending ? c1 > c2 : c1 < c2;
+			return ord1 < ord2;
+		}
 
+		private void offer(int ord) {
+			if (size < heap.length) {
+				int pos = size++;
+				while (pos > 0) {
+					final int parent = (pos - 1) >>> 1;
+					if (!better(heap[parent], ord))
+						break;
+					heap[pos] = heap[parent];
+					pos = parent;
+				}
+				heap[pos] = ord;
+			} else if (size > 0 && better(ord, heap[0])) {
+				heap[0] = ord;
+				siftDown(0, size);
+			}
+		}
+
+		private void siftDown(int pos, int end) {
+			final int ord = heap[pos];
+			for (; ; ) {
+				int child = (pos << 1) + 1;
+				if (child >= end)
+					break;
+				if (child + 1 < end && better(heap[child], heap[child + 1]))
+					child++;
+				if (!better(ord, heap[child]))
+					break;
+				heap[pos] = heap[child];
+				pos = child;
+			}
+			heap[pos] = ord;
+		}
+
+		/**
+		 * Heap sort in place: the worst ordinal goes to the end
+		 */
+		private int[] toSortedArray() {
+			for (int end = size - 1; end > 0; end--) {
+				final int worst = heap[0];
+				heap[0] = heap[end];
+				heap[end] = worst;
+				siftDown(0, end);
+			}
+			return size == heap.length ? heap : Arrays.copyOf(heap, size);
+		}
 	}
 
 }
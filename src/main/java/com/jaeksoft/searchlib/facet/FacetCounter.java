@@ -24,15 +24,11 @@
 
 package com.jaeksoft.searchlib.facet;
 
-import java.util.List;
+import java.util.Comparator;
 import java.util.Map;
-import java.util.Map.Entry;
 
 import com.jaeksoft.searchlib.webservice.query.search.SearchQueryAbstract.Facet.OrderByEnum;
 
-import it.unimi.dsi.fastutil.Swapper;
-import it.unimi.dsi.fastutil.ints.IntComparator;
-
 public class FacetCounter implements Comparable<FacetCounter> {
 
 	public long count;
@@ -74,105 +70,40 @@ public class FacetCounter implements Comparable<FacetCounter> {
 		return count;
 	}
 
-	public static abstract class FacetSorter implements IntComparator, Swapper {
+	private final static Comparator<Map.Entry<String, FacetCounter>> COUNT_ASC =
+			Comparator.comparingLong((Map.Entry<String, FacetCounter> entry) -> entry.getValue().count)
+					.thenComparing(Map.Entry::getKey);
 
-		protected List<Map.Entry<String, FacetCounter>> facetList;
+	private final static Comparator<Map.Entry<String, FacetCounter>> COUNT_DESC =
+			Comparator.comparingLong((Map.Entry<String, FacetCounter> entry) -> entry.getValue().count)
+					.reversed()
+					.thenComparing(Map.Entry::getKey);
 
-		public FacetSorter(List<Map.Entry<String, FacetCounter>> facetList) {
-			this.facetList = facetList;
-		}
+	private final static Comparator<Map.Entry<String, FacetCounter>> TERM_ASC = Map.Entry.comparingByKey();
 
-		@Override
-		public void swap(int a, int b) {
-			Map.Entry<String, FacetCounter> entry = facetList.get(a);
-			facetList.set(a, facetList.set(b, entry));
-		}
+	private final static Comparator<Map.Entry<String, FacetCounter>> TERM_DESC =
+			Map.Entry.<String, FacetCounter>comparingByKey().reversed();
 
-		public static FacetSorter getSorter(List<Entry<String, FacetCounter>> list, OrderByEnum orderBy) {
-			if (orderBy == null)
-				return null;
-			switch (orderBy) {
-			case no_sort:
-				return null;
-			case count_asc:
-				return new FacetCounterAsc(list);
-			case count_desc:
-				return new FacetCounterDesc(list);
-			case term_asc:
-				return new FacetTermAsc(list);
-			case term_desc:
-				return new FacetTermDesc(list);
-			}
+	/**
+	 * @param orderBy the requested order
+	 * @return the comparator, or null if the facet should not be sorted
+	 */
+	public static Comparator<Map.Entry<String, FacetCounter>> getComparator(OrderByEnum orderBy) {
+		if (orderBy == null)
 			return null;
+		switch (orderBy) {
+		case no_sort:
+			return null;
+		case count_asc:
+			return COUNT_ASC;
+		case count_desc:
+			return COUNT_DESC;
+		case term_asc:
+			return TERM_ASC;
+		case term_desc:
+			return TERM_DESC;
 		}
-	}
-
-	public static class FacetCounterDesc extends FacetSorter {
-
-		public FacetCounterDesc(List<Map.Entry<String, FacetCounter>> facetList) {
-			super(facetList);
-		}
-
-		@Override
-		public int compare(Integer o1, Integer o2) {
-			return Long.compare(facetList.get(o2).getValue().count, facetList.get(o1).getValue().count);
-		}
-
-		@Override
-		public int compare(int k1, int k2) {
-			return Long.compare(facetList.get(k2).getValue().count, facetList.get(k1).getValue().count);
-		}
-	}
-
-	public static class FacetCounterAsc extends FacetSorter {
-
-		public FacetCounterAsc(List<Map.Entry<String, FacetCounter>> facetList) {
-			super(facetList);
-		}
-
-		@Override
-		public int compare(Integer o1, Integer o2) {
-			return Long.compare(facetList.get(o1).getValue().count, facetList.get(o2).getValue().count);
-		}
-
-		@Override
-		public int compare(int k1, int k2) {
-			return Long.compare(facetList.get(k1).getValue().count, facetList.get(k2).getValue().count);
-		}
-	}
-
-	public static class FacetTermDesc extends FacetSorter {
-
-		public FacetTermDesc(List<Map.Entry<String, FacetCounter>> facetList) {
-			super(facetList);
-		}
-
-		@Override
-		public int compare(Integer o1, Integer o2) {
-			return facetList.get(o2).getKey().compareTo(facetList.get(o1).getKey());
-		}
-
-		@Override
-		public int compare(int k1, int k2) {
-			return facetList.get(k2).getKey().compareTo(facetList.get(k1).getKey());
-		}
-	}
-
-	public static class FacetTermAsc extends FacetSorter {
-
-		public FacetTermAsc(List<Map.Entry<String, FacetCounter>> facetList) {
-			super(facetList);
-		}
-
-		@Override
-		public int compare(Integer o1, Integer o2) {
-			return facetList.get(o1).getKey().compareTo(facetList.get(o2).getKey());
-		}
-
-		@Override
-		public int compare(int k1, int k2) {
-			return facetList.get(k1).getKey().compareTo(facetList.get(k2).getKey());
-		}
+		return null;
 	}
 
 }
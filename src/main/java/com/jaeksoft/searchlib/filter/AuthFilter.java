@@ -144,6 +144,12 @@ public class AuthFilter extends FilterAbstract<AuthFilter> {
 				isNegative(), timer);
 	}
 
+	@Override
+	public Query getFilterQuery(SchemaField defaultField, Analyzer analyzer,
+			AbstractLocalSearchRequest request) throws ParseException, IOException {
+		return getQuery(request, request.getConfig().getAuthManager());
+	}
+
 	@Override
 	public AuthFilter duplicate() {
 		return new AuthFilter();
@@ -158,6 +158,18 @@ public abstract class FilterAbstract<T extends FilterAbstract<?>> {
 			Analyzer analyzer, AbstractLocalSearchRequest request, Timer timer)
 			throws ParseException, IOException, SearchLibException, SyntaxError;
 
+	/**
+	 * The query matching the documents of the filter, before the negation. It
+	 * does not depend on a reader, so it can be applied by the writer.
+	 * 
+	 * @return the query, or null if the filter is not expressed by a query
+	 */
+	public Query getFilterQuery(SchemaField defaultField, Analyzer analyzer,
+			AbstractLocalSearchRequest request) throws ParseException,
+			IOException, SearchLibException, SyntaxError {
+		return null;
+	}
+
 	public abstract void writeXmlConfig(XmlWriter xmlWriter)
 			throws SAXException;
 
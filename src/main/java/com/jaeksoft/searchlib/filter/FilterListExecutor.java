@@ -28,6 +28,11 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 
+import org.apache.lucene.search.BooleanClause.Occur;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.MatchAllDocsQuery;
+import org.apache.lucene.search.Query;
+
 import com.jaeksoft.searchlib.SearchLibException;
 import com.jaeksoft.searchlib.analysis.PerFieldAnalyzer;
 import com.jaeksoft.searchlib.config.Config;
@@ -83,6 +88,58 @@ public class FilterListExecutor {
 		return finalFilterHits;
 	}
 
+	/**
+	 * Fold the filters of the request into its query, combined the way their
+	 * hits are. The query does not depend on a reader, it can be applied by
+	 * the writer.
+	 * 
+	 * @param searchRequest
+	 *            the request
+	 * @return the filtered query, null if the request has no query or if a
+	 *         filter is not expressed by a query
+	 * @throws SearchLibException
+	 * @throws ParseException
+	 * @throws IOException
+	 * @throws SyntaxError
+	 */
+	public static Query getFilteredQuery(AbstractLocalSearchRequest searchRequest)
+			throws SearchLibException, ParseException, IOException, SyntaxError {
+		Query query = searchRequest.getQuery();
+		if (query == null)
+			return null;
+		FilterList filterList = searchRequest.getFilterList();
+		if (filterList == null || filterList.size() == 0)
+			return query;
+		SchemaField defaultField = searchRequest.getConfig().getSchema().getFieldList().getDefaultField();
+		PerFieldAnalyzer analyzer = searchRequest.getAnalyzer();
+		OperatorEnum defaultOperator = filterList.getDefaultOperator();
+		Query filterQuery = null;
+		for (FilterAbstract<?> filter : filterList) {
+			Query q = filter.getFilterQuery(defaultField, analyzer, searchRequest);
+			if (q == null)
+				return null;
+			if (filter.isNegative()) {
+				BooleanQuery negative = new BooleanQuery();
+				negative.add(new MatchAllDocsQuery(), Occur.MUST);
+				negative.add(q, Occur.MUST_NOT);
+				q = negative;
+			}
+			if (filterQuery == null) {
+				filterQuery = q;
+				continue;
+			}
+			Occur occur = filter.getOperator(defaultOperator) == OperatorEnum.OR ? Occur.SHOULD : Occur.MUST;
+			BooleanQuery combined = new BooleanQuery();
+			combined.add(filterQuery, occur);
+			combined.add(q, occur);
+			filterQuery = combined;
+		}
+		BooleanQuery filteredQuery = new BooleanQuery();
+		filteredQuery.add(query, Occur.MUST);
+		filteredQuery.add(filterQuery, Occur.MUST);
+		return filteredQuery;
+	}
+
 	public class FilterThread extends ExceptionCatchThread {
 
 		private final FilterAbstract<?> filter;
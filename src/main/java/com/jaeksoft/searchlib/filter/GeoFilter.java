@@ -310,6 +310,18 @@ public class GeoFilter extends FilterAbstract<GeoFilter> {
 		return null;
 	}
 
+	/**
+	 * Only the squared filter is expressed by a query, the radius filter
+	 * removes the documents by distance.
+	 */
+	@Override
+	public Query getFilterQuery(SchemaField defaultField, Analyzer analyzer,
+			AbstractLocalSearchRequest request) throws ParseException {
+		if (type != Type.SQUARED)
+			return null;
+		return getQuery(request.getGeoParameters());
+	}
+
 	@Override
 	public GeoFilter duplicate() {
 		return new GeoFilter(getSource(), isNegative(), getParamPosition(),
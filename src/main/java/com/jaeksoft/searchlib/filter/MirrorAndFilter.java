@@ -107,6 +107,13 @@ public class MirrorAndFilter extends FilterAbstract<MirrorAndFilter> {
 				isNegative(), timer);
 	}
 
+	@Override
+	public Query getFilterQuery(SchemaField defaultField, Analyzer analyzer,
+			AbstractLocalSearchRequest request) throws ParseException, SyntaxError,
+			SearchLibException, IOException {
+		return getQuery(request);
+	}
+
 	@Override
 	public MirrorAndFilter duplicate() {
 		return new MirrorAndFilter(getSource(), isNegative(),
@@ -124,6 +124,12 @@ public class QueryFilter extends FilterAbstract<QueryFilter> {
 				isNegative(), timer);
 	}
 
+	@Override
+	public Query getFilterQuery(SchemaField defaultField, Analyzer analyzer,
+			AbstractLocalSearchRequest request) throws ParseException {
+		return getQuery(defaultField, analyzer);
+	}
+
 	@Override
 	public QueryFilter duplicate() {
 		return new QueryFilter(queryString, isNegative(), getSource(),
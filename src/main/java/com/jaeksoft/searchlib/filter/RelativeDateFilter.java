@@ -161,6 +161,12 @@ public class RelativeDateFilter extends FilterAbstract<RelativeDateFilter> {
 				isNegative(), timer);
 	}
 
+	@Override
+	public Query getFilterQuery(SchemaField defaultField, Analyzer analyzer,
+			AbstractLocalSearchRequest request) throws ParseException {
+		return getQuery(defaultField, analyzer);
+	}
+
 	@Override
 	public RelativeDateFilter duplicate() {
 		return new RelativeDateFilter(new TimeInterval(from), new TimeInterval(
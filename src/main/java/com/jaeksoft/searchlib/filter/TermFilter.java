@@ -127,6 +127,12 @@ public class TermFilter extends FilterAbstract<TermFilter> {
 				isNegative(), timer);
 	}
 
+	@Override
+	public Query getFilterQuery(SchemaField defaultField, Analyzer analyzer,
+			AbstractLocalSearchRequest request) throws ParseException {
+		return getQuery();
+	}
+
 	@Override
 	public TermFilter duplicate() {
 		return new TermFilter(field, term, isNegative(), getSource(),
@@ -45,6 +45,7 @@ import com.jaeksoft.searchlib.result.collector.docsethit.DocSetHitBaseCollector.
 import com.jaeksoft.searchlib.result.collector.docsethit.DocSetHitCollectorInterface;
 import com.jaeksoft.searchlib.result.collector.docsethit.ScoreBufferAdvancedCollector;
 import com.jaeksoft.searchlib.result.collector.docsethit.ScoreBufferCollector;
+import com.jaeksoft.searchlib.result.collector.docsethit.TopHitsCollector;
 import com.jaeksoft.searchlib.scoring.AdvancedScore;
 import com.jaeksoft.searchlib.util.StringUtils;
 import com.jaeksoft.searchlib.util.Timer;
@@ -52,6 +53,7 @@ import com.jaeksoft.searchlib.util.Timer;
 public class DocSetHits extends LRUItemAbstract<DocSetHits> {
 
 	final ReaderAbstract reader;
+	final AbstractSearchRequest searchRequest;
 	final Query query;
 	final String queryKey;
 	final String boostQueryKey;
@@ -62,17 +64,43 @@ public class DocSetHits extends LRUItemAbstract<DocSetHits> {
 	final DocIdBufferCollector docIdBufferCollector;
 	final DistanceCollector distanceCollector;
 	final ScoreBufferCollector scoreBufferCollector;
+	final TopHitsCollector topHitsCollector;
+	final String sortKey;
 	final DocSetHitCollectorInterface lastCollector;
 
 	DocSetHits(ReaderAbstract reader, AbstractSearchRequest searchRequest, FilterHits filterHits)
 			throws IOException, ParseException, SyntaxError, SearchLibException {
 		this.reader = reader;
+		// A copy: the request of the caller may change, the copy is replayed to warm the next reader
+		try {
+			this.searchRequest = (AbstractSearchRequest) searchRequest.duplicate();
+		} catch (InstantiationException | IllegalAccessException e) {
+			throw new SearchLibException(e);
+		}
 		this.filterHits = filterHits;
 		this.query = searchRequest.getQuery();
 		this.queryKey = query == null ? null : query.toString();
+		docSetHitCollector = new DocSetHitBaseCollector(reader.maxDoc(), searchRequest.isForFilter(),
+				searchRequest.isScoreRequired());
+		final int topSize = getTopSize(reader, searchRequest);
+		if (topSize >= 0) {
+			topHitsCollector = new TopHitsCollector(docSetHitCollector, topSize, searchRequest.isScoreRequired(),
+					searchRequest.getSortFieldList(), reader);
+			sortKey = searchRequest.getSortFieldList() == null ? null : searchRequest.getSortFieldList()
+					.getCacheKey();
+			lastCollector = topHitsCollector;
+			distanceCollector = null;
+			geoParameters = null;
+			scoreBufferCollector = null;
+			docIdBufferCollector = null;
+			advancedScoringKey = AdvancedScore.getCacheKey(searchRequest.getAdvancedScore());
+			boostQueryKey = BoostQuery.getCacheKey(searchRequest.getBoostingQueries());
+			return;
+		}
+		topHitsCollector = null;
+		sortKey = null;
 		ScoreBufferCollector sc = null;
-		DocSetHitCollectorInterface last = docSetHitCollector = new DocSetHitBaseCollector(reader.maxDoc(),
-				searchRequest.isForFilter());
+		DocSetHitCollectorInterface last = docSetHitCollector;
 		if (searchRequest.isScoreRequired())
 			last = sc = new ScoreBufferCollector(docSetHitCollector);
 		if (searchRequest.isDistanceRequired()) {
@@ -97,6 +125,21 @@ public class DocSetHits extends LRUItemAbstract<DocSetHits> {
 		scoreBufferCollector = sc;
 	}
 
+	/**
+	 * @return the number of documents to keep, or -1 if every document must
+	 *         be collected
+	 * @throws IOException
+	 */
+	private static int getTopSize(ReaderAbstract reader, AbstractSearchRequest searchRequest)
+			throws IOException {
+		if (!searchRequest.isDocIdRequired() || !searchRequest.isTopDocsOnly())
+			return -1;
+		final long topSize = (long) searchRequest.getStart() + searchRequest.getRows();
+		if (topSize >= reader.maxDoc())
+			return -1;
+		return (int) topSize;
+	}
+
 	@Override
 	protected void populate(Timer timer) throws IOException, ParseException, SyntaxError, SearchLibException {
 		Timer t = (timer == null) ? null : new Timer(timer, "DocSetHits: " + queryKey);
@@ -114,29 +157,44 @@ public class DocSetHits extends LRUItemAbstract<DocSetHits> {
 	}
 
 	final public RoaringBitmap getBitSet() {
+		if (topHitsCollector != null)
+			return topHitsCollector.getBitSet();
 		if (docIdBufferCollector == null)
 			return null;
 		return docIdBufferCollector.getBitSet();
 	}
 
 	final public int[] getIds() {
+		if (topHitsCollector != null)
+			return topHitsCollector.getIds();
 		if (docIdBufferCollector == null)
 			return null;
 		return docIdBufferCollector.getIds();
 	}
 
 	final public float[] getScores() {
+		if (topHitsCollector != null)
+			return topHitsCollector.getScores();
 		if (scoreBufferCollector == null)
 			return null;
 		return scoreBufferCollector.getScores();
 	}
 
 	final public float getMaxScore() {
+		if (topHitsCollector != null)
+			return topHitsCollector.getMaxScore();
 		if (scoreBufferCollector == null)
 			return 0;
 		return scoreBufferCollector.getMaxScore();
 	}
 
+	/**
+	 * @return true if only the top documents have been collected
+	 */
+	final public boolean isTopHits() {
+		return topHitsCollector != null;
+	}
+
 	final public <T extends CollectorInterface> T getCollector(Class<T> collectorType) {
 		return lastCollector.getCollector(collectorType);
 	}
@@ -157,6 +215,38 @@ public class DocSetHits extends LRUItemAbstract<DocSetHits> {
 		return c2.getClassType() - c1.getClassType();
 	}
 
+	private static int classType(CollectorInterface collector) {
+		return collector == null ? -1 : collector.getClassType();
+	}
+
+	@Override
+	public int hashCode() {
+		int h = classType(docSetHitCollector);
+		h = 31 * h + classType(docIdBufferCollector);
+		h = 31 * h + classType(distanceCollector);
+		h = 31 * h + classType(scoreBufferCollector);
+		h = 31 * h + (topHitsCollector == null ? -1 : topHitsCollector.getCapacity());
+		h = 31 * h + (sortKey == null ? 0 : sortKey.hashCode());
+		h = 31 * h + (queryKey == null ? 0 : queryKey.hashCode());
+		h = 31 * h + (boostQueryKey == null ? 0 : boostQueryKey.hashCode());
+		h = 31 * h + (advancedScoringKey == null ? 0 : advancedScoringKey.hashCode());
+		return 31 * h + (filterHits == null ? 0 : filterHits.hashCode());
+	}
+
+	@Override
+	protected long estimateWeight() {
+		if (topHitsCollector != null)
+			return 256 + (long) topHitsCollector.getCapacity() * 8;
+		int bytesPerDoc = 0;
+		if (docIdBufferCollector != null)
+			bytesPerDoc += 6;
+		if (scoreBufferCollector != null)
+			bytesPerDoc += 4;
+		if (distanceCollector != null)
+			bytesPerDoc += 4;
+		return 256 + (long) getNumFound() * bytesPerDoc;
+	}
+
 	@Override
 	public int compareTo(DocSetHits dsh) {
 		int c;
@@ -168,6 +258,14 @@ public class DocSetHits extends LRUItemAbstract<DocSetHits> {
 			return c;
 		if ((c = compare(scoreBufferCollector, dsh.scoreBufferCollector)) != 0)
 			return c;
+		if ((c = compare(topHitsCollector, dsh.topHitsCollector)) != 0)
+			return c;
+		if (topHitsCollector != null) {
+			if ((c = Integer.compare(topHitsCollector.getCapacity(), dsh.topHitsCollector.getCapacity())) != 0)
+				return c;
+			if ((c = StringUtils.compareNullString(sortKey, dsh.sortKey)) != 0)
+				return c;
+		}
 		if ((c = StringUtils.compareNullString(queryKey, dsh.queryKey)) != 0)
 			return c;
 		if ((c = GeoParameters.compare(geoParameters, dsh.geoParameters)) != 0)
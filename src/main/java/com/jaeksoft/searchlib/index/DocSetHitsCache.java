@@ -33,6 +33,13 @@ public class DocSetHitsCache extends LRUCache<DocSetHits> {
 	public DocSetHitsCache(IndexConfig indexConfig) {
 		super("Search", indexConfig.getSearchCache());
 		this.indexConfig = indexConfig;
+		super.setMaxWeight(getMaxWeightBytes(indexConfig.getSearchCacheMaxWeight()));
+	}
+
+	private static long getMaxWeightBytes(int maxWeightMb) {
+		if (maxWeightMb > 0)
+			return (long) maxWeightMb * 1024 * 1024;
+		return Runtime.getRuntime().maxMemory() / 10;
 	}
 
 	@Override
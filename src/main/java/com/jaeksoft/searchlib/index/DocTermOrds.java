@@ -0,0 +1,125 @@
+/**
+ * License Agreement for OpenSearchServer
+ * <p>
+ * Copyright (C) 2017 Emmanuel Keller / Jaeksoft
+ * <p>
+ * http://www.open-search-server.com
+ * <p>
+ * This file is part of OpenSearchServer.
+ * <p>
+ * OpenSearchServer is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * <p>
+ * OpenSearchServer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * <p>
+ * You should have received a copy of the GNU General Public License
+ * along with OpenSearchServer.
+ * If not, see <http://www.gnu.org/licenses/>.
+ **/
+
+package com.jaeksoft.searchlib.index;
+
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.util.ReaderUtil;
+import org.apache.lucene.util.packed.PackedInts;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The uninverted view of a multivalued field: for each document, the
+ * ordinals of its terms.
+ * <p>
+ * The ordinals are built and cached per segment. The counts of each segment
+ * are merged at query time into the ordinals of the FieldCacheIndex of the
+ * whole reader.
+ */
+public class DocTermOrds {
+
+	private final int[] docStarts;
+	private final SegmentDocTermOrds[] segments;
+	private final FieldCacheIndex fieldCacheIndex;
+
+	private DocTermOrds(final int[] docStarts, final SegmentDocTermOrds[] segments,
+			final FieldCacheIndex fieldCacheIndex) {
+		this.docStarts = docStarts;
+		this.segments = segments;
+		this.fieldCacheIndex = fieldCacheIndex;
+	}
+
+	/**
+	 * @param indexReader     the top level reader
+	 * @param fieldName       the name of the field
+	 * @param fieldCacheIndex the FieldCacheIndex of the field, built from the
+	 *                        same reader
+	 * @return a new DocTermOrds instance
+	 * @throws IOException
+	 */
+	static DocTermOrds build(final IndexReader indexReader, final String fieldName,
+			final FieldCacheIndex fieldCacheIndex) throws IOException {
+		final List<IndexReader> subReaders = new ArrayList<IndexReader>();
+		ReaderUtil.gatherSubReaders(subReaders, indexReader);
+		final int size = subReaders.size();
+		final int[] docStarts = new int[size];
+		final SegmentDocTermOrds[] segments = new SegmentDocTermOrds[size];
+		int docStart = 0;
+		for (int i = 0; i < size; i++) {
+			final IndexReader subReader = subReaders.get(i);
+			docStarts[i] = docStart;
+			docStart += subReader.maxDoc();
+			segments[i] = SegmentDocTermOrds.get(subReader, fieldName);
+		}
+		return new DocTermOrds(docStarts, segments, fieldCacheIndex);
+	}
+
+	/**
+	 * Count the terms of the documents. Each segment counts its own ordinals,
+	 * then the counts are added to the counters of the matching ordinals of
+	 * the whole reader.
+	 *
+	 * @param docIds the documents
+	 * @param size   the number of documents to read in docIds
+	 * @param counts the counters, indexed by ordinal of the FieldCacheIndex
+	 */
+	final public void count(final int[] docIds, final int size, final int[] counts) {
+		if (segments.length == 1) {
+			for (int i = 0; i < size; i++)
+				segments[0].count(docIds[i], counts);
+			return;
+		}
+		final int[][] segmentCounts = new int[segments.length][];
+		for (int i = 0; i < size; i++) {
+			final int doc = docIds[i];
+			final int segment = ReaderUtil.subIndex(doc, docStarts);
+			int[] segmentCount = segmentCounts[segment];
+			if (segmentCount == null)
+				segmentCounts[segment] = segmentCount = new int[segments[segment].termCount + 1];
+			segments[segment].count(doc - docStarts[segment], segmentCount);
+		}
+		for (int segment = 0; segment < segments.length; segment++) {
+			final int[] segmentCount = segmentCounts[segment];
+			if (segmentCount == null)
+				continue;
+			final PackedInts.Reader ordMap = fieldCacheIndex.getOrdMap(segment);
+			for (int ord = 1; ord < segmentCount.length; ord++)
+				if (segmentCount[ord] != 0)
+					counts[(int) ordMap.get(ord)] += segmentCount[ord];
+		}
+	}
+
+	/**
+	 * @return the estimated memory used, in bytes
+	 */
+	final public long getMemorySize() {
+		long size = 0;
+		for (SegmentDocTermOrds segment : segments)
+			size += segment.getMemorySize();
+		return size;
+	}
+}
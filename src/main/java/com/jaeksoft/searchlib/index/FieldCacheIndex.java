@@ -24,17 +24,151 @@
 
 package com.jaeksoft.searchlib.index;
 
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.WeakHashMap;
 
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.index.TermEnum;
+import org.apache.lucene.util.ReaderUtil;
+import org.apache.lucene.util.packed.GrowableWriter;
+import org.apache.lucene.util.packed.PackedInts;
+
+/**
+ * The term of each document of a field, as an ordinal in the sorted terms of
+ * the field. The ordinal 0 means no term.
+ * 
+ * The terms are front coded, the ordinals are bit packed and loaded per
+ * segment. With several segments, each segment ordinal is mapped to the
+ * ordinal of the whole reader.
+ * 
+ * A reopened reader builds its index from the index of the previous reader:
+ * the terms of the shared segments are already merged, only the terms of the
+ * new segments are read.
+ */
 public class FieldCacheIndex {
 
-	public final String[] lookup;
+	private final TermDictionary terms;
+	private final int[] docStarts;
+	private final Object[] coreKeys;
+	private final PackedInts.Reader[] segmentOrds;
+	private final PackedInts.Reader[] ordMaps;
+	private final Map<FieldCacheIndex, int[]> foreignOrdMappings;
+
+	private FieldCacheIndex(final TermDictionary terms, final int[] docStarts,
+			final Object[] coreKeys, final PackedInts.Reader[] segmentOrds,
+			final PackedInts.Reader[] ordMaps) {
+		this.terms = terms;
+		this.docStarts = docStarts;
+		this.coreKeys = coreKeys;
+		this.segmentOrds = segmentOrds;
+		this.ordMaps = ordMaps;
+		this.foreignOrdMappings = new WeakHashMap<FieldCacheIndex, int[]>();
+	}
+
+	/**
+	 * @param doc
+	 *            the document
+	 * @return the ordinal of the term of the document, 0 if there is none
+	 */
+	final public int getOrd(final int doc) {
+		if (ordMaps == null)
+			return (int) segmentOrds[0].get(doc);
+		final int segment = ReaderUtil.subIndex(doc, docStarts);
+		final int ord = (int) segmentOrds[segment].get(doc - docStarts[segment]);
+		return ord == 0 ? 0 : (int) ordMaps[segment].get(ord);
+	}
+
+	/**
+	 * @param ord
+	 *            the ordinal
+	 * @return the term, or null for the ordinal 0
+	 */
+	final public String getTerm(final int ord) {
+		return ord == 0 ? null : terms.get(ord - 1);
+	}
+
+	/**
+	 * @param doc
+	 *            the document
+	 * @return the term of the document, or null
+	 */
+	final public String getDocTerm(final int doc) {
+		return getTerm(getOrd(doc));
+	}
+
+	/**
+	 * @return the number of ordinals, including the ordinal 0
+	 */
+	final public int getTermCount() {
+		return terms.size() + 1;
+	}
+
+	/**
+	 * @return the estimated memory used, in bytes
+	 */
+	final public long getMemorySize() {
+		long size = terms.getMemorySize();
+		for (PackedInts.Reader ords : segmentOrds)
+			size += (long) ords.size() * ords.getBitsPerValue() / 8;
+		if (ordMaps != null)
+			for (PackedInts.Reader ordMap : ordMaps)
+				size += (long) ordMap.size() * ordMap.getBitsPerValue() / 8;
+		return size;
+	}
 
-	public final int[] order;
+	/**
+	 * @param segment
+	 *            the position of the segment
+	 * @return the ordinals of the whole reader, indexed by the ordinals of the
+	 *         segment. Null if there is only one segment: the ordinals are
+	 *         the same.
+	 */
+	final PackedInts.Reader getOrdMap(final int segment) {
+		return ordMaps == null ? null : ordMaps[segment];
+	}
 
-	public FieldCacheIndex(final String[] lookup, final int[] order) {
-		this.lookup = lookup;
-		this.order = order;
+	/**
+	 * Map the ordinals of this index to the ordinals of the same terms in
+	 * another index. Both term lists are sorted, the mapping is built by
+	 * merging them once. It is cached until one of the readers is reloaded,
+	 * which gives new FieldCacheIndex instances. The ordinal 0 (no term) is
+	 * mapped to 0.
+	 * 
+	 * @param foreign
+	 *            the FieldCacheIndex of the other field
+	 * @return for each ordinal of this index, the ordinal of the same term in
+	 *         the other index, or -1 if the term is not there
+	 */
+	final public int[] getOrdMapping(final FieldCacheIndex foreign) {
+		synchronized (foreignOrdMappings) {
+			final int[] mapping = foreignOrdMappings.get(foreign);
+			if (mapping != null)
+				return mapping;
+		}
+		final int[] mapping = new int[getTermCount()];
+		final TermDictionary.Cursor localTerms = terms.cursor();
+		final TermDictionary.Cursor foreignTerms = foreign.terms.cursor();
+		String foreignTerm = foreignTerms.next();
+		int foreignOrd = 1;
+		String term;
+		int ord = 1;
+		while ((term = localTerms.next()) != null) {
+			while (foreignTerm != null && foreignTerm.compareTo(term) < 0) {
+				foreignTerm = foreignTerms.next();
+				foreignOrd++;
+			}
+			mapping[ord++] = term.equals(foreignTerm) ? foreignOrd : -1;
+		}
+		synchronized (foreignOrdMappings) {
+			foreignOrdMappings.put(foreign, mapping);
+		}
+		return mapping;
 	}
 
 	final public void putTerms(final int[] docIds,
@@ -42,6 +176,273 @@ public class FieldCacheIndex {
 		if (stringIndexTerms == null)
 			return;
 		for (int docId : docIds)
-			stringIndexTerms.add(lookup[order[docId]]);
+			stringIndexTerms.add(getDocTerm(docId));
+	}
+
+	/**
+	 * Load the ordinals of each segment and merge the terms of the segments.
+	 * 
+	 * @param indexReader
+	 *            the top level reader
+	 * @param fieldName
+	 *            the name of the field
+	 * @return a new FieldCacheIndex
+	 * @throws IOException
+	 */
+	public static FieldCacheIndex build(final IndexReader indexReader,
+			final String fieldName) throws IOException {
+		return build(indexReader, fieldName, null);
+	}
+
+	/**
+	 * Load the ordinals of each segment and merge the terms of the segments.
+	 * The terms of the segments shared with the previous index are taken from
+	 * its merged terms, only the new segments are read. If a segment of the
+	 * previous index has been removed, its terms may be gone: every segment is
+	 * read again.
+	 * 
+	 * @param indexReader
+	 *            the top level reader
+	 * @param fieldName
+	 *            the name of the field
+	 * @param previous
+	 *            the index of the same field in the previous reader, or null
+	 * @return a new FieldCacheIndex
+	 * @throws IOException
+	 */
+	static FieldCacheIndex build(final IndexReader indexReader,
+			final String fieldName, final FieldCacheIndex previous)
+			throws IOException {
+		final List<IndexReader> subReaders = new ArrayList<IndexReader>();
+		ReaderUtil.gatherSubReaders(subReaders, indexReader);
+		final int size = subReaders.size();
+		final int[] docStarts = new int[size];
+		final Object[] coreKeys = new Object[size];
+		final SegmentOrdinals[] segments = new SegmentOrdinals[size];
+		final PackedInts.Reader[] segmentOrds = new PackedInts.Reader[size];
+		int docStart = 0;
+		for (int i = 0; i < size; i++) {
+			final IndexReader subReader = subReaders.get(i);
+			docStarts[i] = docStart;
+			docStart += subReader.maxDoc();
+			coreKeys[i] = subReader.getCoreCacheKey();
+			segments[i] = SegmentOrdinals.get(subReader, fieldName);
+			segmentOrds[i] = segments[i].ords;
+		}
+		final int[] previousSegments = previous == null ? null : previous
+				.getSegmentPositions(coreKeys);
+		if (previousSegments != null
+				&& previous.coreKeys.length == size)
+			return reuse(previous, previousSegments, docStarts, coreKeys,
+					segmentOrds);
+		final TermDictionary.Builder builder = new TermDictionary.Builder();
+		if (size == 1) {
+			final SegmentTerms segmentTerms = new SegmentTerms(
+					subReaders.get(0), fieldName, 0);
+			try {
+				while (segmentTerms.next())
+					builder.add(segmentTerms.text);
+			} finally {
+				segmentTerms.close();
+			}
+			return new FieldCacheIndex(builder.build(), docStarts, coreKeys,
+					segmentOrds, null);
+		}
+		// The writer at the position size maps the ordinals of the previous
+		// index to the new ordinals
+		final GrowableWriter[] writers = new GrowableWriter[size + 1];
+		final PriorityQueue<OrderedTerms> queue = new PriorityQueue<OrderedTerms>(
+				Math.max(1, size + 1));
+		try {
+			for (int i = 0; i < size; i++) {
+				if (previousSegments != null && previousSegments[i] != -1)
+					continue;
+				writers[i] = new GrowableWriter(
+						PackedInts.bitsRequired(segments[i].termCount),
+						segments[i].termCount + 1, false);
+				addTerms(queue, new SegmentTerms(subReaders.get(i),
+						fieldName, i));
+			}
+			if (previousSegments != null) {
+				writers[size] = new GrowableWriter(
+						PackedInts.bitsRequired(previous.terms.size()),
+						previous.terms.size() + 1, false);
+				addTerms(queue, new DictionaryTerms(previous.terms, size));
+			}
+			int ord = 0;
+			while (!queue.isEmpty()) {
+				final String text = queue.peek().text;
+				builder.add(text);
+				ord++;
+				do {
+					final OrderedTerms top = queue.poll();
+					writers[top.target].set(top.ord, ord);
+					if (top.next())
+						queue.add(top);
+					else
+						top.close();
+				} while (!queue.isEmpty() && queue.peek().text.equals(text));
+			}
+		} finally {
+			for (OrderedTerms orderedTerms : queue)
+				orderedTerms.close();
+		}
+		final PackedInts.Reader[] ordMaps = new PackedInts.Reader[size];
+		for (int i = 0; i < size; i++) {
+			if (writers[i] != null) {
+				ordMaps[i] = writers[i].getMutable();
+				continue;
+			}
+			// A shared segment: its previous ordinals, then the new ones
+			final PackedInts.Reader previousOrdMap = previous
+					.getOrdMap(previousSegments[i]);
+			final int termCount = segments[i].termCount;
+			final GrowableWriter ordMap = new GrowableWriter(
+					PackedInts.bitsRequired(termCount), termCount + 1, false);
+			for (int segmentOrd = 1; segmentOrd <= termCount; segmentOrd++) {
+				final int previousOrd = previousOrdMap == null ? segmentOrd
+						: (int) previousOrdMap.get(segmentOrd);
+				ordMap.set(segmentOrd, writers[size].get(previousOrd));
+			}
+			ordMaps[i] = ordMap.getMutable();
+		}
+		return new FieldCacheIndex(builder.build(), docStarts, coreKeys,
+				segmentOrds, ordMaps);
+	}
+
+	/**
+	 * The segments are the same as the ones of the previous index, maybe in
+	 * another order: the terms and the ordinal mappings are shared.
+	 */
+	private static FieldCacheIndex reuse(final FieldCacheIndex previous,
+			final int[] previousSegments, final int[] docStarts,
+			final Object[] coreKeys, final PackedInts.Reader[] segmentOrds) {
+		if (previous.ordMaps == null)
+			return new FieldCacheIndex(previous.terms, docStarts, coreKeys,
+					segmentOrds, null);
+		final PackedInts.Reader[] ordMaps = new PackedInts.Reader[previousSegments.length];
+		for (int i = 0; i < ordMaps.length; i++)
+			ordMaps[i] = previous.ordMaps[previousSegments[i]];
+		return new FieldCacheIndex(previous.terms, docStarts, coreKeys,
+				segmentOrds, ordMaps);
+	}
+
+	/**
+	 * @param newCoreKeys
+	 *            the core keys of the segments of a new reader
+	 * @return for each new segment, its position in this index, or -1 if it
+	 *         is a new segment. Null if a segment of this index is not in the
+	 *         new reader.
+	 */
+	private int[] getSegmentPositions(final Object[] newCoreKeys) {
+		final int[] positions = new int[newCoreKeys.length];
+		int found = 0;
+		for (int i = 0; i < newCoreKeys.length; i++) {
+			positions[i] = -1;
+			for (int j = 0; j < coreKeys.length; j++) {
+				if (coreKeys[j] == newCoreKeys[i]) {
+					positions[i] = j;
+					found++;
+					break;
+				}
+			}
+		}
+		return found == coreKeys.length ? positions : null;
+	}
+
+	private static void addTerms(final PriorityQueue<OrderedTerms> queue,
+			final OrderedTerms orderedTerms) throws IOException {
+		if (orderedTerms.next())
+			queue.add(orderedTerms);
+		else
+			orderedTerms.close();
+	}
+
+	/**
+	 * Sorted terms to merge. The ordinal of the current term is set in the
+	 * writer at the position target.
+	 */
+	private static abstract class OrderedTerms implements
+			Comparable<OrderedTerms> {
+
+		protected final int target;
+		protected String text;
+		protected int ord;
+
+		protected OrderedTerms(final int target) {
+			this.target = target;
+			this.text = null;
+			this.ord = 0;
+		}
+
+		abstract boolean next() throws IOException;
+
+		void close() throws IOException {
+		}
+
+		@Override
+		public int compareTo(final OrderedTerms other) {
+			return text.compareTo(other.text);
+		}
+	}
+
+	/**
+	 * The merged terms of the previous index
+	 */
+	private static class DictionaryTerms extends OrderedTerms {
+
+		private final TermDictionary.Cursor cursor;
+
+		private DictionaryTerms(final TermDictionary terms, final int target) {
+			super(target);
+			this.cursor = terms.cursor();
+		}
+
+		@Override
+		boolean next() {
+			text = cursor.next();
+			if (text == null)
+				return false;
+			ord++;
+			return true;
+		}
+	}
+
+	/**
+	 * Enumerate the terms of a field in one segment
+	 */
+	private static class SegmentTerms extends OrderedTerms {
+
+		private final TermEnum termEnum;
+		private final String fieldName;
+		private boolean started;
+
+		private SegmentTerms(final IndexReader segmentReader,
+				final String fieldName, final int segment) throws IOException {
+			super(segment);
+			this.termEnum = segmentReader.terms(new Term(fieldName));
+			this.fieldName = fieldName;
+			this.started = false;
+		}
+
+		@Override
+		boolean next() throws IOException {
+			if (started) {
+				if (!termEnum.next())
+					return false;
+			} else
+				started = true;
+			final Term term = termEnum.term();
+			if (term == null || !fieldName.equals(term.field()))
+				return false;
+			text = term.text();
+			ord++;
+			return true;
+		}
+
+		@Override
+		void close() throws IOException {
+			termEnum.close();
+		}
 	}
 }
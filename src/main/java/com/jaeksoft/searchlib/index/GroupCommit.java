@@ -0,0 +1,121 @@
+/**
+ * License Agreement for OpenSearchServer
+ * <p>
+ * Copyright (C) 2017 Emmanuel Keller / Jaeksoft
+ * <p>
+ * http://www.open-search-server.com
+ * <p>
+ * This file is part of OpenSearchServer.
+ * <p>
+ * OpenSearchServer is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * <p>
+ * OpenSearchServer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * <p>
+ * You should have received a copy of the GNU General Public License
+ * along with OpenSearchServer.
+ * If not, see <http://www.gnu.org/licenses/>.
+ **/
+
+package com.jaeksoft.searchlib.index;
+
+import org.apache.lucene.index.IndexWriter;
+
+import java.io.IOException;
+
+/**
+ * Merge the commits requested by concurrent update calls.
+ * <p>
+ * Each caller registers its pending documents and waits until a commit
+ * covering them is done. The first caller becomes the leader: it waits for
+ * more updates (up to commitMaxLatency or commitMaxBatchSize documents), then
+ * commits once for the whole group.
+ */
+class GroupCommit {
+
+	private final IndexConfig indexConfig;
+
+	private long registeredSeq;
+	private long committedSeq;
+	private int pendingDocs;
+	private boolean committing;
+
+	GroupCommit(final IndexConfig indexConfig) {
+		this.indexConfig = indexConfig;
+		registeredSeq = 0;
+		committedSeq = 0;
+		pendingDocs = 0;
+		committing = false;
+	}
+
+	/**
+	 * Wait until the documents already written by the caller are committed.
+	 *
+	 * @param indexWriter the shared writer
+	 * @param docCount    the number of documents written by the caller
+	 * @throws IOException
+	 * @throws InterruptedException
+	 */
+	final void commit(final IndexWriter indexWriter, final int docCount) throws IOException, InterruptedException {
+		final long targetSeq;
+		synchronized (this) {
+			final long seq = ++registeredSeq;
+			pendingDocs += docCount;
+			notifyAll();
+			for (; ; ) {
+				if (committedSeq >= seq)
+					return;
+				if (!committing)
+					break;
+				wait();
+			}
+			committing = true;
+			try {
+				awaitBatch();
+			} catch (InterruptedException e) {
+				committing = false;
+				notifyAll();
+				throw e;
+			}
+			targetSeq = registeredSeq;
+			pendingDocs = 0;
+		}
+		boolean success = false;
+		try {
+			indexWriter.commit();
+			success = true;
+		} finally {
+			synchronized (this) {
+				committing = false;
+				if (success && targetSeq > committedSeq)
+					committedSeq = targetSeq;
+				notifyAll();
+			}
+		}
+	}
+
+	/**
+	 * Let the concurrent updates join the current group
+	 *
+	 * @throws InterruptedException
+	 */
+	private void awaitBatch() throws InterruptedException {
+		final long maxLatency = indexConfig.getCommitMaxLatency();
+		if (maxLatency <= 0)
+			return;
+		final int maxBatchSize = indexConfig.getCommitMaxBatchSize();
+		final long deadline = System.currentTimeMillis() + maxLatency;
+		while (pendingDocs < maxBatchSize) {
+			final long remaining = deadline - System.currentTimeMillis();
+			if (remaining <= 0)
+				return;
+			wait(remaining);
+		}
+	}
+
+}
@@ -24,6 +24,10 @@
 
 package com.jaeksoft.searchlib.index;
 
+import java.io.IOException;
+
+import org.apache.lucene.index.IndexCommit;
+import org.apache.lucene.search.IndexSearcher;
 import org.xml.sax.SAXException;
 
 import com.jaeksoft.searchlib.SearchLibException;
@@ -53,6 +57,38 @@ public abstract class IndexAbstract implements ReaderInterface, WriterInterface
 
 	public abstract void setOnline(boolean v) throws SearchLibException;
 
+	/**
+	 * Pin the last commit point of the index, until the snapshot is released
+	 *
+	 * @param id the identifier of the snapshot
+	 * @return the pinned commit point, or null if the index is not written
+	 *         locally
+	 * @throws SearchLibException
+	 */
+	public abstract IndexCommit snapshot(String id) throws SearchLibException;
+
+	/**
+	 * @param id the identifier of the snapshot to release
+	 * @throws SearchLibException
+	 */
+	public abstract void releaseSnapshot(String id) throws SearchLibException;
+
+	/**
+	 * Work on the current searcher of the index. The reader of the searcher is
+	 * not closed nor reopened until the visitor returns.
+	 *
+	 * @param visitor the work to do
+	 * @return the value returned by the visitor
+	 * @throws IOException
+	 * @throws SearchLibException
+	 */
+	public abstract <T> T visitIndexSearcher(IndexSearcherVisitor<T> visitor) throws IOException, SearchLibException;
+
+	public interface IndexSearcherVisitor<T> {
+
+		T visit(IndexSearcher indexSearcher) throws IOException, SearchLibException;
+	}
+
 	protected abstract void writeXmlConfigIndex(XmlWriter xmlWriter) throws SAXException;
 
 	public void writeXmlConfig(XmlWriter xmlWriter) throws SAXException {
@@ -31,6 +31,7 @@ import java.net.URISyntaxException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 
@@ -50,6 +51,8 @@ public class IndexConfig {
 
 	private final AtomicInteger searchCache;
 
+	private final AtomicInteger searchCacheMaxWeight;
+
 	private final AtomicInteger filterCache;
 
 	private final AtomicInteger fieldCache;
@@ -68,11 +71,23 @@ public class IndexConfig {
 
 	private final AtomicLong writeLockTimeout;
 
+	private final AtomicInteger commitMaxBatchSize;
+
+	private final AtomicLong commitMaxLatency;
+
+	private final AtomicLong refreshInterval;
+
+	private final AtomicInteger autoWarmCount;
+
+	private final AtomicInteger searchThreads;
+
 	private final ConcurrentSkipListSet<String> indexSet;
 
 	public IndexConfig(Node node) throws URISyntaxException {
 		searchCache = new AtomicInteger(XPathParser.getAttributeValue(node,
 				"searchCache"));
+		searchCacheMaxWeight = new AtomicInteger(XPathParser.getAttributeValue(
+				node, "searchCacheMaxWeight"));
 		filterCache = new AtomicInteger(XPathParser.getAttributeValue(node,
 				"filterCache"));
 		int fc = XPathParser.getAttributeValue(node, "fieldCache");
@@ -95,6 +110,18 @@ public class IndexConfig {
 		if (wlt == 0)
 			wlt = IndexWriterConfig.getDefaultWriteLockTimeout();
 		writeLockTimeout = new AtomicLong(wlt);
+		int cmbs = XPathParser.getAttributeValue(node, "commitMaxBatchSize");
+		if (cmbs == 0)
+			cmbs = 1000;
+		commitMaxBatchSize = new AtomicInteger(cmbs);
+		commitMaxLatency = new AtomicLong(XPathParser.getAttributeValue(node,
+				"commitMaxLatency"));
+		refreshInterval = new AtomicLong(XPathParser.getAttributeValue(node,
+				"refreshInterval"));
+		autoWarmCount = new AtomicInteger(XPathParser.getAttributeValue(node,
+				"autoWarmCount"));
+		searchThreads = new AtomicInteger(XPathParser.getAttributeValue(node,
+				"searchThreads"));
 		Node indicesNode = DomUtils.getFirstNode(node, "indices");
 		if (indicesNode != null) {
 			indexSet = new ConcurrentSkipListSet<String>();
@@ -108,7 +135,8 @@ public class IndexConfig {
 
 	public void writeXmlConfig(XmlWriter xmlWriter) throws SAXException {
 		xmlWriter.startElement("index", "searchCache",
-				Integer.toString(searchCache.get()), "filterCache",
+				Integer.toString(searchCache.get()), "searchCacheMaxWeight",
+				Integer.toString(searchCacheMaxWeight.get()), "filterCache",
 				Integer.toString(filterCache.get()), "fieldCache",
 				Integer.toString(fieldCache.get()), "termVectorCache",
 				Integer.toString(termVectorCache.get()), "remoteURI",
@@ -116,7 +144,12 @@ public class IndexConfig {
 				keyField, "keyMd5RegExp", keyMd5RegExp, "similarityClass",
 				similarityClass, "maxNumSegments",
 				Integer.toString(maxNumSegments.get()), "writeLockTimeout",
-				Long.toString(writeLockTimeout.get()));
+				Long.toString(writeLockTimeout.get()), "commitMaxBatchSize",
+				Integer.toString(commitMaxBatchSize.get()), "commitMaxLatency",
+				Long.toString(commitMaxLatency.get()), "refreshInterval",
+				Long.toString(refreshInterval.get()), "autoWarmCount",
+				Integer.toString(autoWarmCount.get()), "searchThreads",
+				Integer.toString(searchThreads.get()));
 		if (indexSet != null) {
 			xmlWriter.startElement("indices");
 			for (String index : indexSet) {
@@ -186,6 +219,22 @@ public class IndexConfig {
 		this.searchCache.set(searchCache);
 	}
 
+	/**
+	 * @return the maximum memory used by the search cache, in megabytes. Zero
+	 *         means a tenth of the maximum heap size.
+	 */
+	public int getSearchCacheMaxWeight() {
+		return searchCacheMaxWeight.get();
+	}
+
+	/**
+	 * @param searchCacheMaxWeight
+	 *            the searchCacheMaxWeight to set
+	 */
+	public void setSearchCacheMaxWeight(int searchCacheMaxWeight) {
+		this.searchCacheMaxWeight.set(searchCacheMaxWeight);
+	}
+
 	/**
 	 * @return the filterCache
 	 */
@@ -321,9 +370,11 @@ public class IndexConfig {
 	}
 
 	public IndexAbstract getNewIndex(File configDir,
-			boolean createIndexIfNotExists) throws IOException,
-			URISyntaxException, SearchLibException, JSONException {
-		return new IndexSingle(configDir, this, createIndexIfNotExists);
+			ExecutorService searchExecutor, boolean createIndexIfNotExists)
+			throws IOException, URISyntaxException, SearchLibException,
+			JSONException {
+		return new IndexSingle(configDir, this, searchExecutor,
+				createIndexIfNotExists);
 	}
 
 	public long getWriteLockTimeout() {
@@ -338,4 +389,83 @@ public class IndexConfig {
 		this.writeLockTimeout.set(writeLockTimeout);
 	}
 
+	/**
+	 * @return the maximum number of documents merged in one group commit
+	 */
+	public int getCommitMaxBatchSize() {
+		return commitMaxBatchSize.get();
+	}
+
+	/**
+	 * @param commitMaxBatchSize
+	 *            the commitMaxBatchSize to set
+	 */
+	public void setCommitMaxBatchSize(int commitMaxBatchSize) {
+		this.commitMaxBatchSize.set(commitMaxBatchSize);
+	}
+
+	/**
+	 * @return the maximum time (in milliseconds) a group commit waits for
+	 *         concurrent updates before committing
+	 */
+	public long getCommitMaxLatency() {
+		return commitMaxLatency.get();
+	}
+
+	/**
+	 * @param commitMaxLatency
+	 *            the commitMaxLatency to set
+	 */
+	public void setCommitMaxLatency(long commitMaxLatency) {
+		this.commitMaxLatency.set(commitMaxLatency);
+	}
+
+	/**
+	 * @return the interval (in milliseconds) between two background reader
+	 *         refreshes. Zero means the reader is reopened after each update.
+	 */
+	public long getRefreshInterval() {
+		return refreshInterval.get();
+	}
+
+	/**
+	 * @param refreshInterval
+	 *            the refreshInterval to set
+	 */
+	public void setRefreshInterval(long refreshInterval) {
+		this.refreshInterval.set(refreshInterval);
+	}
+
+	/**
+	 * @return the number of recently used cache entries replayed on the new
+	 *         reader after a reopen
+	 */
+	public int getAutoWarmCount() {
+		return autoWarmCount.get();
+	}
+
+	/**
+	 * @param autoWarmCount
+	 *            the autoWarmCount to set
+	 */
+	public void setAutoWarmCount(int autoWarmCount) {
+		this.autoWarmCount.set(autoWarmCount);
+	}
+
+	/**
+	 * @return the number of threads searching the segments of one query
+	 *         concurrently, 0 or 1 to search them sequentially
+	 */
+	public int getSearchThreads() {
+		return searchThreads.get();
+	}
+
+	/**
+	 * @param searchThreads
+	 *            the searchThreads to set
+	 */
+	public void setSearchThreads(int searchThreads) {
+		this.searchThreads.set(searchThreads);
+	}
+
 }
@@ -33,6 +33,8 @@ import com.jaeksoft.searchlib.util.LinkUtils;
 import com.jaeksoft.searchlib.util.ReadWriteLock;
 import org.apache.commons.lang3.ArrayUtils;
 import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.KeepOnlyLastCommitDeletionPolicy;
+import org.apache.lucene.index.SnapshotDeletionPolicy;
 import org.apache.lucene.store.Directory;
 import org.apache.lucene.store.FSDirectory;
 import org.apache.lucene.store.NoSuchDirectoryException;
@@ -42,15 +44,41 @@ import java.io.File;
 import java.io.IOException;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.util.HashMap;
 import java.util.Map;
 
 public class IndexDirectory {
 
+	/**
+	 * The snapshot policies of the local directories. A reloaded index opens a
+	 * new IndexDirectory on the same files, it gets the same policy. A policy
+	 * is removed when the last IndexDirectory of its files is closed.
+	 */
+	private final static Map<File, SharedSnapshotPolicy> snapshotPolicies =
+			new HashMap<File, SharedSnapshotPolicy>();
+
+	private static class SharedSnapshotPolicy {
+
+		private final SnapshotDeletionPolicy policy =
+				new SnapshotDeletionPolicy(new KeepOnlyLastCommitDeletionPolicy());
+
+		private int references = 0;
+	}
+
 	private Directory directory;
+	private final File policyFile;
+	private final SnapshotDeletionPolicy snapshotPolicy;
 	private final ReadWriteLock rwl = new ReadWriteLock();
 
 	protected IndexDirectory(File indexDir) throws IOException {
 		directory = FSDirectory.open(indexDir);
+		policyFile = indexDir.getCanonicalFile();
+		synchronized (snapshotPolicies) {
+			final SharedSnapshotPolicy shared =
+					snapshotPolicies.computeIfAbsent(policyFile, file -> new SharedSnapshotPolicy());
+			shared.references++;
+			snapshotPolicy = shared.policy;
+		}
 	}
 
 	/**
@@ -79,6 +107,8 @@ public class IndexDirectory {
 			String url = parameters.get("url");
 			SwiftToken token = new SwiftToken(httpDownloader, url, user, password, AuthType.KEYSTONE, tenant);
 			directory = new ObjectStorageDirectory(httpDownloader, token, container);
+			policyFile = null;
+			snapshotPolicy = new SnapshotDeletionPolicy(new KeepOnlyLastCommitDeletionPolicy());
 			return;
 		}
 		throw new IOException("Unsupported protocol: " + uri);
@@ -93,6 +123,16 @@ public class IndexDirectory {
 		}
 	}
 
+	/**
+	 * Every writable open of the directory, writer or reader, uses this
+	 * deletion policy: the pinned commit points are never deleted.
+	 *
+	 * @return the deletion policy shared by the writers of the directory
+	 */
+	public SnapshotDeletionPolicy getSnapshotPolicy() {
+		return snapshotPolicy;
+	}
+
 	public boolean isEmpty() throws IOException {
 		rwl.r.lock();
 		try {
@@ -130,9 +170,20 @@ public class IndexDirectory {
 				Logging.warn(e.getMessage(), e);
 			}
 			directory = null;
+			releaseSnapshotPolicy();
 		} finally {
 			rwl.w.unlock();
 		}
 	}
 
+	private void releaseSnapshotPolicy() {
+		if (policyFile == null)
+			return;
+		synchronized (snapshotPolicies) {
+			final SharedSnapshotPolicy shared = snapshotPolicies.get(policyFile);
+			if (shared != null && --shared.references == 0)
+				snapshotPolicies.remove(policyFile);
+		}
+	}
+
 }
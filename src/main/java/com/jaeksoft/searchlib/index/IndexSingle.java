@@ -26,10 +26,12 @@ package com.jaeksoft.searchlib.index;
 
 import com.jaeksoft.searchlib.Client;
 import com.jaeksoft.searchlib.ClientCatalog;
+import com.jaeksoft.searchlib.Logging;
 import com.jaeksoft.searchlib.SearchLibException;
 import com.jaeksoft.searchlib.analysis.PerFieldAnalyzer;
 import com.jaeksoft.searchlib.filter.FilterAbstract;
 import com.jaeksoft.searchlib.filter.FilterHits;
+import com.jaeksoft.searchlib.filter.FilterListExecutor;
 import com.jaeksoft.searchlib.function.expression.SyntaxError;
 import com.jaeksoft.searchlib.query.ParseException;
 import com.jaeksoft.searchlib.request.AbstractLocalSearchRequest;
@@ -41,6 +43,8 @@ import com.jaeksoft.searchlib.schema.FieldValue;
 import com.jaeksoft.searchlib.schema.Schema;
 import com.jaeksoft.searchlib.schema.SchemaField;
 import com.jaeksoft.searchlib.util.IOUtils;
+import com.jaeksoft.searchlib.util.StringUtils;
+import com.jaeksoft.searchlib.util.ThreadUtils;
 import com.jaeksoft.searchlib.util.Timer;
 import com.jaeksoft.searchlib.util.XmlWriter;
 import com.jaeksoft.searchlib.webservice.query.document.IndexDocumentResult;
@@ -49,6 +53,7 @@ import org.apache.lucene.index.*;
 import org.apache.lucene.search.Query;
 import org.apache.lucene.search.similar.MoreLikeThis;
 import org.json.JSONException;
+import org.roaringbitmap.RoaringBitmap;
 import org.xml.sax.SAXException;
 
 import java.io.File;
@@ -57,16 +62,32 @@ import java.io.IOException;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
 
 public class IndexSingle extends IndexAbstract {
 
+	private final static int DELETE_ATTEMPTS = 3;
+
 	final private IndexDirectory indexDirectory;
+	final private File spellCheckDirectory;
 
 	private volatile ReaderLocal _reader;
 	private final WriterLocal writer;
 
 	private volatile boolean online;
 
+	private final ReentrantLock reloadLock = new ReentrantLock();
+	private final AtomicBoolean refreshRequired = new AtomicBoolean(false);
+	private final Queue<IndexDocument> pendingAfterUpdates = new ConcurrentLinkedQueue<>();
+	private final ScheduledExecutorService refreshExecutor;
+	private final ExecutorService searchExecutor;
+
 	private final Set<UpdateInterfaces.Before> beforeUpdateSet = new HashSet<>();
 	private final Set<UpdateInterfaces.After> afterUpdateSet = new HashSet<>();
 	private final Set<UpdateInterfaces.Delete> afterDeleteSet = new HashSet<>();
@@ -84,18 +105,21 @@ public class IndexSingle extends IndexAbstract {
 		}
 	};
 
-	public IndexSingle(File configDir, IndexConfig indexConfig, boolean createIfNotExists)
-			throws IOException, URISyntaxException, SearchLibException, JSONException {
+	public IndexSingle(File configDir, IndexConfig indexConfig, ExecutorService searchExecutor,
+			boolean createIfNotExists) throws IOException, URISyntaxException, SearchLibException, JSONException {
 		super(indexConfig);
+		this.searchExecutor = searchExecutor;
 		this.online = true;
 		boolean bCreate = false;
 		File indexDir = new File(configDir, "index");
 		if (!indexDir.exists()) {
 			if (!createIfNotExists) {
 				indexDirectory = null;
+				spellCheckDirectory = null;
 				_reader = null;
 				writer = null;
 				reloadIndexList = null;
+				refreshExecutor = null;
 				return;
 			}
 			indexDir.mkdir();
@@ -104,6 +128,9 @@ public class IndexSingle extends IndexAbstract {
 			indexDir = findIndexDirOrSub(indexDir);
 		URI remoteURI = indexConfig.getRemoteURI();
 		indexDirectory = remoteURI == null ? new IndexDirectory(indexDir) : new IndexDirectory(remoteURI);
+		// A multi index has no segment of its own
+		spellCheckDirectory =
+				remoteURI == null && !indexConfig.isMulti() ? new File(configDir, "spellcheck") : null;
 		bCreate = bCreate || indexDirectory.isEmpty();
 		if (!indexConfig.isMulti()) {
 			writer = new WriterLocal(indexConfig, indexDirectory);
@@ -114,10 +141,62 @@ public class IndexSingle extends IndexAbstract {
 			writer = null;
 			reloadIndexList = new ArrayList<>();
 		}
-		_reader = new ReaderLocal(indexConfig, indexDirectory);
+		_reader = new ReaderLocal(indexConfig, indexDirectory, spellCheckDirectory, searchExecutor);
+		refreshExecutor = writer == null ? null : startRefresh(indexConfig.getRefreshInterval());
 		eventUpdateInterface();
 	}
 
+	/**
+	 * Schedule the background reader refresh
+	 *
+	 * @param interval the refresh interval in milliseconds
+	 * @return the executor, or null if the reader is reopened after each update
+	 */
+	private ScheduledExecutorService startRefresh(long interval) {
+		if (interval <= 0)
+			return null;
+		ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(
+				new ThreadUtils.ThreadGroupFactory(ClientCatalog.getThreadGroup()));
+		executor.scheduleWithFixedDelay(() -> {
+			if (!refreshRequired.getAndSet(false))
+				return;
+			try {
+				backgroundRefresh();
+			} catch (Exception e) {
+				refreshRequired.set(true);
+				Logging.warn(e);
+			}
+		}, interval, interval, TimeUnit.MILLISECONDS);
+		return executor;
+	}
+
+	/**
+	 * Reopen the reader if the index is online, then notify the updates of
+	 * the documents written before the reopen: they are visible now.
+	 *
+	 * @throws SearchLibException
+	 */
+	private void backgroundRefresh() throws SearchLibException {
+		// The documents are queued once written, these ones are in the new reader
+		int written = pendingAfterUpdates.size();
+		reloadLock.lock();
+		try {
+			if (!online)
+				return;
+			reloadNoLock(false);
+		} finally {
+			reloadLock.unlock();
+		}
+		while (written-- > 0) {
+			IndexDocument document = pendingAfterUpdates.poll();
+			if (document == null)
+				break;
+			notifyAfterUpdate(document);
+		}
+		if (!pendingAfterUpdates.isEmpty())
+			refreshRequired.set(true);
+	}
+
 	private void emptyReloadEvents() {
 		for (IndexAbstract index : reloadIndexList)
 			index.removeUpdateInterface(reloadUpdateInterface);
@@ -238,11 +317,15 @@ public class IndexSingle extends IndexAbstract {
 
 	@Override
 	public void close() {
+		if (refreshExecutor != null)
+			refreshExecutor.shutdownNow();
 		if (reloadIndexList != null) {
 			synchronized (reloadIndexList) {
 				emptyReloadEvents();
 			}
 		}
+		if (writer != null)
+			writer.close();
 		if (_reader != null)
 			IOUtils.close(_reader);
 		_reader = null;
@@ -260,25 +343,29 @@ public class IndexSingle extends IndexAbstract {
 		if (writer == null)
 			return;
 		writer.deleteAll();
-		reloadNoLock();
+		refresh();
 	}
 
-	private int[] getIds(AbstractRequest request) throws IOException, ParseException, SyntaxError, SearchLibException {
-		ReaderLocal reader = acquire();
-		try {
-			if (request instanceof AbstractLocalSearchRequest) {
-				DocSetHits dsh = reader.searchDocSet((AbstractLocalSearchRequest) request, null);
-				if (dsh != null)
-					return dsh.getIds();
-			} else if (request instanceof DocumentsRequest) {
-				ResultDocuments result = (ResultDocuments) reader.request(request);
-				if (result != null)
-					return result.getDocIdArray();
+	private static int[] getIds(ReaderLocal reader, AbstractRequest request)
+			throws IOException, ParseException, SyntaxError, SearchLibException {
+		if (request instanceof AbstractLocalSearchRequest) {
+			// The full document set is requested on a copy, the request of the caller is left unchanged
+			final AbstractLocalSearchRequest searchRequest;
+			try {
+				searchRequest = (AbstractLocalSearchRequest) request.duplicate();
+			} catch (InstantiationException | IllegalAccessException e) {
+				throw new SearchLibException(e);
 			}
-			return null;
-		} finally {
-			release(reader);
+			searchRequest.setFullDocSet(true);
+			DocSetHits dsh = reader.searchDocSet(searchRequest, null);
+			if (dsh != null)
+				return dsh.getIds();
+		} else if (request instanceof DocumentsRequest) {
+			ResultDocuments result = (ResultDocuments) reader.request(request);
+			if (result != null)
+				return result.getDocIdArray();
 		}
+		return null;
 	}
 
 	@Override
@@ -287,17 +374,117 @@ public class IndexSingle extends IndexAbstract {
 			checkOnline(true);
 			if (writer == null)
 				return 0;
-			int[] ids = getIds(request);
-			if (ids == null || ids.length == 0)
-				return 0;
-			int res = writer.deleteDocuments(ids);
-			reloadNoLock();
+			final int res;
+			if (request instanceof DocumentsRequest)
+				res = deleteByTerms((DocumentsRequest) request);
+			else if (request instanceof AbstractLocalSearchRequest)
+				res = deleteBySearch((AbstractLocalSearchRequest) request);
+			else
+				res = deleteByIds(request);
+			if (res > 0)
+				refresh();
 			return res;
 		} catch (IOException | ParseException | SyntaxError e) {
 			throw new SearchLibException(e);
 		}
 	}
 
+	/**
+	 * Delete the documents found by the request by document number. The
+	 * numbers are the ones of the commit read by the reader, the deletion is
+	 * applied on that commit. If the index has changed meanwhile, the request
+	 * is run again on a new reader.
+	 */
+	private int deleteByIds(AbstractRequest request)
+			throws IOException, ParseException, SyntaxError, SearchLibException {
+		for (int attempt = 1; ; attempt++) {
+			ReaderLocal reader = acquire();
+			try {
+				int[] ids = getIds(reader, request);
+				if (ids == null || ids.length == 0)
+					return 0;
+				return writer.deleteDocuments(reader.getIndexCommit(), ids);
+			} catch (StaleReaderException e) {
+				if (attempt == DELETE_ATTEMPTS)
+					throw new SearchLibException("The index has been modified during the deletion", e);
+			} finally {
+				release(reader);
+			}
+			reloadNoLock(false);
+		}
+	}
+
+	/**
+	 * Delete the documents having one of the values in the field of the
+	 * request (the unique field by default).
+	 */
+	private int deleteByTerms(DocumentsRequest request) throws IOException, SearchLibException {
+		Schema schema = request.getConfig().getSchema();
+		String field = request.getField();
+		SchemaField schemaField = StringUtils.isEmpty(field) ?
+				schema.getFieldList().getUniqueField() :
+				schema.getField(field);
+		if (schemaField == null)
+			throw new SearchLibException(StringUtils.isEmpty(field) ? "No unique field" : "Field not found: " + field);
+		String fieldName = schemaField.getName();
+		Collection<String> values = request.getUniqueKeyList();
+		if (values == null || values.isEmpty())
+			return 0;
+		WriterLocal.TermDeletion deletion = writer.newTermDeletion(fieldName);
+		RoaringBitmap deleted = new RoaringBitmap();
+		ReaderLocal reader = acquire();
+		try {
+			Term term = new Term(fieldName);
+			for (String value : values) {
+				TermDocs termDocs = reader.getTermDocs(term.createTerm(value));
+				if (termDocs == null)
+					continue;
+				try {
+					boolean found = false;
+					while (termDocs.next()) {
+						deleted.add(termDocs.doc());
+						found = true;
+					}
+					if (found)
+						deletion.add(value);
+				} finally {
+					IOUtils.close(termDocs);
+				}
+			}
+		} finally {
+			release(reader);
+		}
+		deletion.commit();
+		return deleted.getCardinality();
+	}
+
+	/**
+	 * Delete the documents found by the request through the shared writer. The
+	 * filters are folded into the query, the matching documents are counted on
+	 * the current reader. Only a filter which is not expressed by a query
+	 * (radius geo filter, request template filter) requires the deletion by
+	 * document number.
+	 */
+	private int deleteBySearch(AbstractLocalSearchRequest request)
+			throws IOException, ParseException, SyntaxError, SearchLibException {
+		if (request.getQuery() == null)
+			return 0;
+		final Query query = FilterListExecutor.getFilteredQuery(request);
+		if (query == null)
+			return deleteByIds(request);
+		final int count;
+		ReaderLocal reader = acquire();
+		try {
+			count = reader.countDocuments(query);
+		} finally {
+			release(reader);
+		}
+		if (count == 0)
+			return 0;
+		writer.deleteDocuments(query);
+		return count;
+	}
+
 	private void beforeUpdate(Schema schema, IndexDocument document) throws SearchLibException {
 		UpdateInterfaces.Before[] array = _beforeUpdateArray;
 		if (array == null)
@@ -306,7 +493,23 @@ public class IndexSingle extends IndexAbstract {
 			beforeUpdate.update(schema, document);
 	}
 
+	/**
+	 * Notify the update of a document, once it is visible: now if the reader
+	 * has been reopened, after the next background refresh otherwise.
+	 *
+	 * @param document the updated document
+	 * @throws SearchLibException
+	 */
 	private void afterUpdate(IndexDocument document) throws SearchLibException {
+		if (_afterUpdateArray == null)
+			return;
+		if (refreshExecutor != null)
+			pendingAfterUpdates.add(document);
+		else
+			notifyAfterUpdate(document);
+	}
+
+	private void notifyAfterUpdate(IndexDocument document) throws SearchLibException {
 		UpdateInterfaces.After[] array = _afterUpdateArray;
 		if (array == null)
 			return;
@@ -330,7 +533,7 @@ public class IndexSingle extends IndexAbstract {
 		beforeUpdate(schema, document);
 		if (!writer.updateDocument(schema, document))
 			return false;
-		reloadNoLock();
+		refresh();
 		afterUpdate(document);
 		return true;
 	}
@@ -343,7 +546,7 @@ public class IndexSingle extends IndexAbstract {
 		for (IndexDocument document : documents)
 			beforeUpdate(schema, document);
 		int res = writer.updateDocuments(schema, documents);
-		reloadNoLock();
+		refresh();
 		for (IndexDocument document : documents)
 			afterUpdate(document);
 		return res;
@@ -356,19 +559,54 @@ public class IndexSingle extends IndexAbstract {
 		if (writer == null)
 			return 0;
 		int res = writer.updateIndexDocuments(schema, documents);
-		reloadNoLock();
+		refresh();
 		return res;
 	}
 
-	private synchronized void reloadNoLock() throws SearchLibException {
-		ReaderLocal oldReader = _reader;
+	/**
+	 * Make the last updates visible: reopen the reader now, or let the
+	 * background refresh do it.
+	 *
+	 * @throws SearchLibException
+	 */
+	private void refresh() throws SearchLibException {
+		if (refreshExecutor != null)
+			refreshRequired.set(true);
+		else
+			reloadNoLock(false);
+	}
+
+	/**
+	 * Replace the current reader. The new reader is opened and warmed before
+	 * being published, searches keep using the previous one meanwhile.
+	 *
+	 * @param full true to rebuild the whole reader, false to reopen only the
+	 *             changed segments
+	 * @throws SearchLibException
+	 */
+	private void reloadNoLock(boolean full) throws SearchLibException {
+		reloadLock.lock();
 		try {
-			_reader = new ReaderLocal(indexConfig, indexDirectory);
-		} catch (IOException e) {
-			throw new SearchLibException(e);
+			ReaderLocal oldReader = _reader;
+			ReaderLocal newReader;
+			try {
+				newReader = full || oldReader == null ?
+						new ReaderLocal(indexConfig, indexDirectory, spellCheckDirectory, searchExecutor) :
+						oldReader.reopen();
+			} catch (IOException e) {
+				throw new SearchLibException(e);
+			}
+			if (newReader != oldReader) {
+				newReader.warm(oldReader);
+				synchronized (this) {
+					_reader = newReader;
+				}
+				if (oldReader != null)
+					IOUtils.closeQuietly(oldReader);
+			}
+		} finally {
+			reloadLock.unlock();
 		}
-		if (oldReader != null)
-			IOUtils.closeQuietly(oldReader);
 		afterReload();
 	}
 
@@ -378,7 +616,7 @@ public class IndexSingle extends IndexAbstract {
 		eventUpdateInterface();
 		ReaderLocal reader = acquire();
 		try {
-			reloadNoLock();
+			reloadNoLock(true);
 		} finally {
 			release(reader);
 		}
@@ -562,15 +800,24 @@ public class IndexSingle extends IndexAbstract {
 	}
 
 	@Override
-	public synchronized void setOnline(boolean v) throws SearchLibException {
-		if (v == online)
-			return;
-		online = v;
-		if (v)
-			reloadNoLock();
-		else {
-			IOUtils.close(_reader);
-			_reader = null;
+	public void setOnline(boolean v) throws SearchLibException {
+		reloadLock.lock();
+		try {
+			if (v == online)
+				return;
+			online = v;
+			if (v)
+				reloadNoLock(true);
+			else {
+				if (writer != null)
+					writer.close();
+				synchronized (this) {
+					IOUtils.close(_reader);
+					_reader = null;
+				}
+			}
+		} finally {
+			reloadLock.unlock();
 		}
 	}
 
@@ -585,6 +832,17 @@ public class IndexSingle extends IndexAbstract {
 		}
 	}
 
+	@Override
+	public <T> T visitIndexSearcher(final IndexSearcherVisitor<T> visitor) throws IOException, SearchLibException {
+		checkOnline(true);
+		ReaderLocal reader = acquire();
+		try {
+			return reader.visitIndexSearcher(visitor);
+		} finally {
+			release(reader);
+		}
+	}
+
 	public DocSetHitsCache getSearchCache() throws SearchLibException {
 		checkOnline(true);
 		ReaderLocal reader = acquire();
@@ -679,12 +937,25 @@ public class IndexSingle extends IndexAbstract {
 		ReaderLocal reader = sourceIndex.acquire();
 		try {
 			writer.mergeData(sourceIndex.writer);
-			reloadNoLock();
+			refresh();
 		} finally {
 			release(reader);
 		}
 	}
 
+	@Override
+	public IndexCommit snapshot(String id) throws SearchLibException {
+		if (writer == null)
+			return null;
+		return writer.snapshot(id);
+	}
+
+	@Override
+	public void releaseSnapshot(String id) throws SearchLibException {
+		if (writer != null)
+			writer.releaseSnapshot(id);
+	}
+
 	@Override
 	public boolean isMerging() {
 		return writer != null && writer.isMerging();
@@ -343,6 +343,16 @@ public class ObjectStorageDirectory extends Directory {
 			return StringUtils.compareNullString(name, o.name);
 		}
 
+		@Override
+		public int hashCode() {
+			return name == null ? 0 : name.hashCode();
+		}
+
+		@Override
+		protected long estimateWeight() {
+			return bytes == null ? 64 : 64 + bytes.length;
+		}
+
 		@Override
 		protected void populate(Timer timer) throws Exception {
 			meta = getObjectMeta(name);
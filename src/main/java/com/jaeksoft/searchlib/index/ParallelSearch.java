@@ -0,0 +1,369 @@
+/**
+ * License Agreement for OpenSearchServer
+ * <p>
+ * Copyright (C) 2017 Emmanuel Keller / Jaeksoft
+ * <p>
+ * http://www.open-search-server.com
+ * <p>
+ * This file is part of OpenSearchServer.
+ * <p>
+ * OpenSearchServer is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * <p>
+ * OpenSearchServer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * <p>
+ * You should have received a copy of the GNU General Public License
+ * along with OpenSearchServer.
+ * If not, see <http://www.gnu.org/licenses/>.
+ **/
+
+package com.jaeksoft.searchlib.index;
+
+import com.jaeksoft.searchlib.result.collector.docsethit.DocSetHitBaseCollector.LuceneCollector;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.search.Collector;
+import org.apache.lucene.search.Filter;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.Scorer;
+import org.apache.lucene.search.Weight;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Search the segments of a reader concurrently.
+ * <p>
+ * Each task scores and collects a group of segments: the hits of each segment
+ * and their scores are collected by chunks, without waiting for the caller.
+ * The merge step is done by the caller's thread: it replays the segments in
+ * order on its collector, so the collectors see the same documents, in the
+ * same order, as with a sequential search. The segment being replayed is
+ * streamed, and each chunk is released once replayed. The collector chain
+ * keeps every hit (facets, collapsing, sorts), so the pending chunks never
+ * hold more than the chain itself.
+ * <p>
+ * A task claims a segment before scoring it. When the caller reaches a
+ * segment no task has claimed yet, it scores it itself, directly on its
+ * collector: the search never waits for a task which is not running.
+ */
+class ParallelSearch {
+
+	private final static int CHUNK_SIZE = 1024;
+
+	private final IndexSearcher[] segmentSearchers;
+	private final int[] segmentStarts;
+	private final int[] segmentSizes;
+	private final ExecutorService executor;
+
+	ParallelSearch(final IndexSearcher indexSearcher, final ExecutorService executor) {
+		this.executor = executor;
+		final IndexReader[] subReaders = indexSearcher.getSubReaders();
+		segmentSearchers = new IndexSearcher[subReaders.length];
+		segmentStarts = new int[subReaders.length];
+		segmentSizes = new int[subReaders.length];
+		int docStart = 0;
+		for (int i = 0; i < subReaders.length; i++) {
+			segmentSearchers[i] = new IndexSearcher(subReaders[i]);
+			segmentStarts[i] = docStart;
+			segmentSizes[i] = subReaders[i].maxDoc();
+			docStart += segmentSizes[i];
+		}
+	}
+
+	/**
+	 * @param indexSearcher the searcher of the whole reader
+	 * @param query         the query
+	 * @param filter        the filter, or null
+	 * @param collector     the collector receiving the hits of every segment
+	 * @param threads       the maximum number of concurrent tasks
+	 * @throws IOException
+	 */
+	final void search(final IndexSearcher indexSearcher, final Query query, final Filter filter,
+			final Collector collector, final int threads) throws IOException {
+		final Weight weight = indexSearcher.createNormalizedWeight(query);
+		final boolean scoreRequired =
+				!(collector instanceof LuceneCollector) || ((LuceneCollector) collector).isScoreRequired();
+		final SegmentHits[] segmentHits = new SegmentHits[segmentSearchers.length];
+		for (int i = 0; i < segmentHits.length; i++)
+			segmentHits[i] = new SegmentHits(scoreRequired, collector.acceptsDocsOutOfOrder());
+		final int[][] groups = getGroups(threads);
+		final List<Future<?>> futures = new ArrayList<>(groups.length);
+		final Future<?>[] segmentFutures = new Future<?>[segmentSearchers.length];
+		try {
+			for (int[] group : groups) {
+				final Future<?> future = executor.submit(() -> {
+					for (int segment : group)
+						if (segmentHits[segment].claim())
+							segmentHits[segment].search(segmentSearchers[segment], weight, filter);
+					return null;
+				});
+				futures.add(future);
+				for (int segment : group)
+					segmentFutures[segment] = future;
+			}
+			final ReplayScorer scorer = new ReplayScorer(weight);
+			for (int i = 0; i < segmentSearchers.length; i++) {
+				if (segmentHits[i].claim()) {
+					segmentSearchers[i].search(weight, filter, new SegmentCollector(collector, segmentStarts[i]));
+					continue;
+				}
+				collector.setNextReader(segmentSearchers[i].getIndexReader(), segmentStarts[i]);
+				collector.setScorer(scorer);
+				segmentHits[i].replay(segmentFutures[i], scorer, collector);
+			}
+			for (Future<?> future : futures)
+				future.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException(e);
+		} catch (ExecutionException e) {
+			final Throwable cause = e.getCause();
+			if (cause instanceof IOException)
+				throw (IOException) cause;
+			if (cause instanceof RuntimeException)
+				throw (RuntimeException) cause;
+			throw new IOException(cause);
+		} finally {
+			for (Future<?> future : futures)
+				future.cancel(true);
+		}
+	}
+
+	/**
+	 * Split the segments in groups of similar size, the largest segments
+	 * first.
+	 *
+	 * @param threads the maximum number of groups
+	 * @return the segments of each group
+	 */
+	private int[][] getGroups(final int threads) {
+		final Integer[] order = new Integer[segmentSearchers.length];
+		for (int i = 0; i < order.length; i++)
+			order[i] = i;
+		Arrays.sort(order, (a, b) -> Integer.compare(segmentSizes[b], segmentSizes[a]));
+		final int groupCount = Math.min(threads, order.length);
+		final long[] groupSizes = new long[groupCount];
+		final int[] groupLengths = new int[groupCount];
+		final int[] groupOf = new int[order.length];
+		for (int segment : order) {
+			int smallest = 0;
+			for (int g = 1; g < groupCount; g++)
+				if (groupSizes[g] < groupSizes[smallest])
+					smallest = g;
+			groupSizes[smallest] += segmentSizes[segment];
+			groupOf[segment] = smallest;
+			groupLengths[smallest]++;
+		}
+		final int[][] groups = new int[groupCount][];
+		for (int g = 0; g < groupCount; g++)
+			groups[g] = new int[groupLengths[g]];
+		final int[] positions = new int[groupCount];
+		for (int segment = 0; segment < order.length; segment++) {
+			final int g = groupOf[segment];
+			groups[g][positions[g]++] = segment;
+		}
+		return groups;
+	}
+
+	/**
+	 * The hits of one segment, by chunks
+	 */
+	private static class Chunk {
+
+		private final int[] docs;
+		private final float[] scores;
+		private int size;
+
+		private Chunk(final boolean scoreRequired) {
+			docs = new int[CHUNK_SIZE];
+			scores = scoreRequired ? new float[CHUNK_SIZE] : null;
+			size = 0;
+		}
+	}
+
+	/**
+	 * Pass the hits of one segment from the task scoring it to the thread
+	 * replaying them. The last chunk of the segment is the empty chunk END.
+	 */
+	private static class SegmentHits extends Collector {
+
+		private final static Chunk END = new Chunk(false);
+
+		private final boolean scoreRequired;
+		private final boolean acceptsDocsOutOfOrder;
+		private final BlockingQueue<Chunk> chunks;
+		private final AtomicBoolean claimed;
+		private Scorer scorer;
+		private Chunk current;
+
+		private SegmentHits(final boolean scoreRequired, final boolean acceptsDocsOutOfOrder) {
+			this.scoreRequired = scoreRequired;
+			this.acceptsDocsOutOfOrder = acceptsDocsOutOfOrder;
+			this.chunks = new LinkedBlockingQueue<>();
+			this.claimed = new AtomicBoolean(false);
+			this.current = new Chunk(scoreRequired);
+		}
+
+		/**
+		 * @return true if the caller is the first one to claim the segment
+		 */
+		private boolean claim() {
+			return claimed.compareAndSet(false, true);
+		}
+
+		private void search(final IndexSearcher segmentSearcher, final Weight weight, final Filter filter)
+				throws IOException {
+			segmentSearcher.search(weight, filter, this);
+			if (current.size > 0)
+				chunks.add(current);
+			current = null;
+			chunks.add(END);
+		}
+
+		@Override
+		public void setScorer(final Scorer scorer) {
+			this.scorer = scorer;
+		}
+
+		@Override
+		public void collect(final int doc) throws IOException {
+			if (current.size == CHUNK_SIZE) {
+				// A cancelled search stops its tasks
+				if (Thread.currentThread().isInterrupted())
+					throw new InterruptedIOException();
+				chunks.add(current);
+				current = new Chunk(scoreRequired);
+			}
+			current.docs[current.size] = doc;
+			if (scoreRequired)
+				current.scores[current.size] = scorer.score();
+			current.size++;
+		}
+
+		@Override
+		public void setNextReader(final IndexReader reader, final int docBase) {
+		}
+
+		@Override
+		public boolean acceptsDocsOutOfOrder() {
+			return acceptsDocsOutOfOrder;
+		}
+
+		/**
+		 * Replay the chunks as they come, until the end of the segment. If
+		 * the task stops without ending the segment, its failure is thrown by
+		 * Future.get().
+		 */
+		private void replay(final Future<?> future, final ReplayScorer replayScorer, final Collector collector)
+				throws IOException, InterruptedException, ExecutionException {
+			for (; ; ) {
+				Chunk chunk = chunks.poll(100, TimeUnit.MILLISECONDS);
+				if (chunk == null) {
+					if (!future.isDone())
+						continue;
+					chunk = chunks.poll();
+					if (chunk == null) {
+						future.get();
+						throw new IOException("The search of the segment ended without its hits");
+					}
+				}
+				if (chunk == END)
+					return;
+				for (int i = 0; i < chunk.size; i++) {
+					replayScorer.doc = chunk.docs[i];
+					replayScorer.score = scoreRequired ? chunk.scores[i] : 0;
+					collector.collect(chunk.docs[i]);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Pass the hits of a segment scored by the caller to its collector, with
+	 * the position of the segment in the whole reader
+	 */
+	private static class SegmentCollector extends Collector {
+
+		private final Collector collector;
+		private final int docBase;
+
+		private SegmentCollector(final Collector collector, final int docBase) {
+			this.collector = collector;
+			this.docBase = docBase;
+		}
+
+		@Override
+		public void setScorer(final Scorer scorer) throws IOException {
+			collector.setScorer(scorer);
+		}
+
+		@Override
+		public void collect(final int doc) throws IOException {
+			collector.collect(doc);
+		}
+
+		@Override
+		public void setNextReader(final IndexReader reader, final int docBase) throws IOException {
+			collector.setNextReader(reader, this.docBase + docBase);
+		}
+
+		@Override
+		public boolean acceptsDocsOutOfOrder() {
+			return collector.acceptsDocsOutOfOrder();
+		}
+	}
+
+	/**
+	 * Return the buffered score of the document being replayed. The replay
+	 * positions the scorer on each hit before passing it to the collector; the
+	 * collector cannot move it: nextDoc and advance end the iteration and
+	 * return NO_MORE_DOCS, until the replay passes the next hit.
+	 */
+	private static class ReplayScorer extends Scorer {
+
+		private int doc = -1;
+		private float score = 0;
+
+		private ReplayScorer(final Weight weight) {
+			super(weight);
+		}
+
+		@Override
+		public float score() {
+			return score;
+		}
+
+		@Override
+		public int docID() {
+			return doc;
+		}
+
+		@Override
+		public int nextDoc() {
+			doc = NO_MORE_DOCS;
+			return doc;
+		}
+
+		@Override
+		public int advance(final int target) {
+			doc = NO_MORE_DOCS;
+			return doc;
+		}
+	}
+}
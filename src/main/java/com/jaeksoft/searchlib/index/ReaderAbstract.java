@@ -70,6 +70,17 @@ public abstract class ReaderAbstract implements ReaderInterface {
 
 	public abstract int maxDoc() throws IOException;
 
+	/**
+	 * Returns the per document term ordinals of a multivalued field. The
+	 * ordinals of each segment are built on first use and shared by the
+	 * readers opened on the same segment.
+	 *
+	 * @param fieldName the name of the field
+	 * @return the DocTermOrds instance
+	 * @throws IOException
+	 */
+	public abstract DocTermOrds getDocTermOrds(String fieldName) throws IOException;
+
 	final public DocValueInterface getDocValueInterface(final String field,
 			final DocValueType type) throws IOException {
 		FieldCacheIndex stringIndex = getStringIndex(field);
@@ -25,6 +25,7 @@
 package com.jaeksoft.searchlib.index;
 
 import com.jaeksoft.searchlib.ClientCatalog;
+import com.jaeksoft.searchlib.Logging;
 import com.jaeksoft.searchlib.SearchLibException;
 import com.jaeksoft.searchlib.analysis.PerFieldAnalyzer;
 import com.jaeksoft.searchlib.filter.FilterAbstract;
@@ -39,12 +40,13 @@ import com.jaeksoft.searchlib.schema.FieldValue;
 import com.jaeksoft.searchlib.schema.FieldValueItem;
 import com.jaeksoft.searchlib.schema.FieldValueOriginEnum;
 import com.jaeksoft.searchlib.schema.SchemaField;
-import com.jaeksoft.searchlib.spellcheck.SpellCheckCache;
+import com.jaeksoft.searchlib.spellcheck.SpellCheckDictionary;
 import com.jaeksoft.searchlib.util.IOUtils;
 import com.jaeksoft.searchlib.util.Timer;
 import org.apache.lucene.document.Document;
 import org.apache.lucene.document.FieldSelector;
 import org.apache.lucene.document.Fieldable;
+import org.apache.lucene.index.IndexCommit;
 import org.apache.lucene.index.IndexReader;
 import org.apache.lucene.index.MultiReader;
 import org.apache.lucene.index.Term;
@@ -54,14 +56,12 @@ import org.apache.lucene.index.TermFreqVector;
 import org.apache.lucene.index.TermPositions;
 import org.apache.lucene.search.Collector;
 import org.apache.lucene.search.Explanation;
-import org.apache.lucene.search.FieldCache.StringIndex;
 import org.apache.lucene.search.Filter;
 import org.apache.lucene.search.IndexSearcher;
 import org.apache.lucene.search.Query;
 import org.apache.lucene.search.Similarity;
+import org.apache.lucene.search.TotalHitCountCollector;
 import org.apache.lucene.search.similar.MoreLikeThis;
-import org.apache.lucene.search.spell.LuceneDictionary;
-import org.apache.lucene.search.spell.SpellChecker;
 import org.apache.lucene.store.Directory;
 import org.apache.lucene.util.ReaderUtil;
 import org.roaringbitmap.RoaringBitmap;
@@ -76,14 +76,17 @@ import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.atomic.AtomicInteger;
 
 public class ReaderLocal extends ReaderAbstract implements ReaderInterface, Closeable {
 
 	private final IndexDirectory indexDirectory;
-	private final SpellCheckCache spellCheckCache;
+	private final File spellCheckDirectory;
 	private final DocSetHitsCache docSetHitsCache;
 
 	private final IndexSearcher indexSearcher;
@@ -91,12 +94,29 @@ public class ReaderLocal extends ReaderAbstract implements ReaderInterface, Clos
 	private final IndexReader[] indexReaders;
 	private final IndexDirectory[] indexDirectories;
 	private final AtomicInteger references;
-
-	ReaderLocal(IndexConfig indexConfig, IndexDirectory indexDirectory) throws IOException, SearchLibException {
+	private final ExecutorService searchExecutor;
+	private final ParallelSearch parallelSearch;
+	private final ConcurrentHashMap<String, FieldCacheIndex> fieldCacheIndexMap = new ConcurrentHashMap<>();
+	private final ConcurrentHashMap<String, DocTermOrds> docTermOrdsMap = new ConcurrentHashMap<>();
+	private final ConcurrentHashMap<String, SpellCheckDictionary> spellCheckDictionaryMap = new ConcurrentHashMap<>();
+
+	/**
+	 * @param indexConfig         the configuration of the index
+	 * @param indexDirectory      the directory of the index
+	 * @param spellCheckDirectory the directory of the saved spelling
+	 *                            dictionaries of the index, or null to keep
+	 *                            them in memory only
+	 * @param searchExecutor      the executor of the parallel searches, or null
+	 * @throws IOException
+	 * @throws SearchLibException
+	 */
+	ReaderLocal(IndexConfig indexConfig, IndexDirectory indexDirectory, File spellCheckDirectory,
+			ExecutorService searchExecutor) throws IOException, SearchLibException {
 		super(indexConfig);
-		spellCheckCache = new SpellCheckCache(100);
+		this.searchExecutor = searchExecutor;
 		docSetHitsCache = new DocSetHitsCache(indexConfig);
 		this.indexDirectory = indexDirectory;
+		this.spellCheckDirectory = spellCheckDirectory;
 		references = new AtomicInteger(0);
 		acquire();
 		Directory directory = indexDirectory.getDirectory();
@@ -119,11 +139,125 @@ public class ReaderLocal extends ReaderAbstract implements ReaderInterface, Clos
 			indexDirectories = null;
 			indexReader = IndexReader.open(directory);
 		}
-		indexSearcher = new IndexSearcher(indexReader);
+		indexSearcher = newIndexSearcher(indexConfig, indexReader);
+		parallelSearch = newParallelSearch(indexSearcher, searchExecutor);
+	}
+
+	/**
+	 * Build a reader sharing the unchanged segments of the previous one
+	 *
+	 * @param previous    the reader which has been reopened
+	 * @param indexReader the reopened IndexReader
+	 * @throws SearchLibException
+	 */
+	private ReaderLocal(ReaderLocal previous, IndexReader indexReader) throws SearchLibException {
+		super(previous.indexConfig);
+		searchExecutor = previous.searchExecutor;
+		docSetHitsCache = new DocSetHitsCache(indexConfig);
+		this.indexDirectory = previous.indexDirectory;
+		this.spellCheckDirectory = previous.spellCheckDirectory;
+		references = new AtomicInteger(0);
+		acquire();
+		indexReaders = null;
+		indexDirectories = null;
+		this.indexReader = indexReader;
+		indexSearcher = newIndexSearcher(indexConfig, indexReader);
+		parallelSearch = newParallelSearch(indexSearcher, searchExecutor);
+	}
 
+	private static IndexSearcher newIndexSearcher(IndexConfig indexConfig, IndexReader indexReader)
+			throws SearchLibException {
+		IndexSearcher indexSearcher = new IndexSearcher(indexReader);
 		Similarity similarity = indexConfig.getNewSimilarityInstance();
 		if (similarity != null)
 			indexSearcher.setSimilarity(similarity);
+		return indexSearcher;
+	}
+
+	private static ParallelSearch newParallelSearch(IndexSearcher indexSearcher, ExecutorService searchExecutor) {
+		if (searchExecutor == null || indexSearcher.getSubReaders().length <= 1)
+			return null;
+		return new ParallelSearch(indexSearcher, searchExecutor);
+	}
+
+	/**
+	 * Reopen the reader. The unchanged segments are shared with the new
+	 * reader, keeping their per-segment caches.
+	 *
+	 * @return the new reader, or this instance if the index did not change
+	 * @throws IOException
+	 * @throws SearchLibException
+	 */
+	ReaderLocal reopen() throws IOException, SearchLibException {
+		if (indexConfig.isMulti())
+			return new ReaderLocal(indexConfig, indexDirectory, spellCheckDirectory, searchExecutor);
+		IndexReader newIndexReader = IndexReader.openIfChanged(indexReader);
+		if (newIndexReader == null)
+			return this;
+		return new ReaderLocal(this, newIndexReader);
+	}
+
+	/**
+	 * Replay the most recently used cache entries of the previous reader
+	 *
+	 * @param previous the reader replaced by this one
+	 */
+	void warm(ReaderLocal previous) {
+		if (previous == null)
+			return;
+		warmFieldCaches(previous);
+		warmSpellCheck(previous);
+		int count = indexConfig.getAutoWarmCount();
+		if (count <= 0)
+			return;
+		for (DocSetHits dsh : previous.docSetHitsCache.getRecentItems(count)) {
+			if (!(dsh.searchRequest instanceof AbstractLocalSearchRequest))
+				continue;
+			try {
+				searchDocSet((AbstractLocalSearchRequest) dsh.searchRequest, null);
+			} catch (Exception e) {
+				Logging.warn(e);
+			}
+		}
+	}
+
+	/**
+	 * Build the string indexes used by the previous reader from its ones: the
+	 * terms of the shared segments are not read again.
+	 *
+	 * @param previous the reader replaced by this one
+	 */
+	private void warmFieldCaches(ReaderLocal previous) {
+		for (Map.Entry<String, FieldCacheIndex> entry : previous.fieldCacheIndexMap.entrySet()) {
+			final String fieldName = entry.getKey();
+			try {
+				synchronized (fieldCacheIndexMap) {
+					if (!fieldCacheIndexMap.containsKey(fieldName))
+						fieldCacheIndexMap.put(fieldName,
+								FieldCacheIndex.build(indexReader, fieldName, entry.getValue()));
+				}
+			} catch (IOException e) {
+				Logging.warn(e);
+			}
+		}
+	}
+
+	/**
+	 * Build the spelling dictionaries used by the previous reader, only the
+	 * new segments are read. The files of the removed segments are deleted.
+	 *
+	 * @param previous the reader replaced by this one
+	 */
+	private void warmSpellCheck(ReaderLocal previous) {
+		for (String fieldName : previous.spellCheckDictionaryMap.keySet()) {
+			try {
+				getSpellCheckDictionary(fieldName);
+			} catch (IOException e) {
+				Logging.warn(e);
+			}
+		}
+		if (spellCheckDirectory != null)
+			SpellCheckDictionary.purge(indexReader, spellCheckDirectory);
 	}
 
 	void acquire() {
@@ -167,6 +301,11 @@ public class ReaderLocal extends ReaderAbstract implements ReaderInterface, Clos
 		return indexReader.getVersion();
 	}
 
+	final <T> T visitIndexSearcher(final IndexAbstract.IndexSearcherVisitor<T> visitor)
+			throws IOException, SearchLibException {
+		return visitor.visit(indexSearcher);
+	}
+
 	@Override
 	public TermDocs getTermDocs(Term term) throws IOException {
 		return indexReader.termDocs(term);
@@ -260,6 +399,14 @@ public class ReaderLocal extends ReaderAbstract implements ReaderInterface, Clos
 		return indexReader.numDocs();
 	}
 
+	/**
+	 * @return the commit point read by this reader
+	 * @throws IOException
+	 */
+	final IndexCommit getIndexCommit() throws IOException {
+		return indexReader.getIndexCommit();
+	}
+
 	@Override
 	public String explain(AbstractRequest request, int docId, boolean bHtml) throws SearchLibException {
 		try {
@@ -282,6 +429,11 @@ public class ReaderLocal extends ReaderAbstract implements ReaderInterface, Clos
 
 	@Override
 	public void search(Query query, Filter filter, Collector collector) throws IOException {
+		final int searchThreads = indexConfig.getSearchThreads();
+		if (parallelSearch != null && searchThreads > 1) {
+			parallelSearch.search(indexSearcher, query, filter, collector, searchThreads);
+			return;
+		}
 		if (filter == null)
 			indexSearcher.search(query, collector);
 		else
@@ -311,38 +463,53 @@ public class ReaderLocal extends ReaderAbstract implements ReaderInterface, Clos
 
 	}
 
-	final private StringIndex getStringIndexNoLock(String fieldName) throws IOException {
-		return org.apache.lucene.search.FieldCache.DEFAULT.getStringIndex(indexReader, fieldName);
+	@Override
+	final public FieldCacheIndex getStringIndex(final String fieldName) throws IOException {
+		FieldCacheIndex fieldCacheIndex = fieldCacheIndexMap.get(fieldName);
+		if (fieldCacheIndex != null)
+			return fieldCacheIndex;
+		synchronized (fieldCacheIndexMap) {
+			fieldCacheIndex = fieldCacheIndexMap.get(fieldName);
+			if (fieldCacheIndex != null)
+				return fieldCacheIndex;
+			fieldCacheIndex = FieldCacheIndex.build(indexReader, fieldName);
+			fieldCacheIndexMap.put(fieldName, fieldCacheIndex);
+			return fieldCacheIndex;
+		}
 	}
 
 	@Override
-	final public FieldCacheIndex getStringIndex(final String fieldName) throws IOException {
-		StringIndex si = getStringIndexNoLock(fieldName);
-		return new FieldCacheIndex(si.lookup, si.order);
+	final public DocTermOrds getDocTermOrds(final String fieldName) throws IOException {
+		DocTermOrds docTermOrds = docTermOrdsMap.get(fieldName);
+		if (docTermOrds != null)
+			return docTermOrds;
+		synchronized (docTermOrdsMap) {
+			docTermOrds = docTermOrdsMap.get(fieldName);
+			if (docTermOrds != null)
+				return docTermOrds;
+			docTermOrds = DocTermOrds.build(indexReader, fieldName, getStringIndex(fieldName));
+			docTermOrdsMap.put(fieldName, docTermOrds);
+			return docTermOrds;
+		}
 	}
 
 	@Override
 	public String[] getDocTerms(final String fieldName) throws SearchLibException, IOException {
-		StringIndex si = getStringIndexNoLock(fieldName);
+		FieldCacheIndex stringIndex = getStringIndex(fieldName);
 		RoaringBitmap bitSet = new RoaringBitmap();
-		for (int doc = 0; doc < si.order.length; doc++) {
+		int maxDoc = indexReader.maxDoc();
+		for (int doc = 0; doc < maxDoc; doc++) {
 			if (!indexReader.isDeleted(doc)) {
-				bitSet.add(si.order[doc]);
+				bitSet.add(stringIndex.getOrd(doc));
 			}
 		}
 		String[] result = new String[bitSet.getCardinality()];
-		int i = 0;
 		int j = 0;
-		for (String term : si.lookup)
-			if (bitSet.contains(i++))
-				result[j++] = term;
+		for (int ord : bitSet)
+			result[j++] = stringIndex.getTerm(ord);
 		return result;
 	}
 
-	public LuceneDictionary getLuceneDirectionary(String fieldName) {
-		return new LuceneDictionary(indexReader, fieldName);
-	}
-
 	public void xmlInfo(PrintWriter writer) {
 		writer.println("<index  path=\"" + indexDirectory.getDirectory() + "\"/>");
 	}
@@ -359,6 +526,17 @@ public class ReaderLocal extends ReaderAbstract implements ReaderInterface, Clos
 		}
 	}
 
+	/**
+	 * @param query the query
+	 * @return the number of documents matching the query
+	 * @throws IOException
+	 */
+	final int countDocuments(final Query query) throws IOException {
+		final TotalHitCountCollector collector = new TotalHitCountCollector();
+		indexSearcher.search(query, collector);
+		return collector.getTotalHits();
+	}
+
 	@Override
 	final public LinkedHashMap<String, FieldValue> getDocumentStoredField(final int docId) throws IOException {
 		LinkedHashMap<String, FieldValue> documentFields = new LinkedHashMap<String, FieldValue>();
@@ -440,7 +618,7 @@ public class ReaderLocal extends ReaderAbstract implements ReaderInterface, Clos
 			for (String fieldName : indexedField) {
 				FieldCacheIndex stringIndex = getStringIndex(fieldName);
 				if (stringIndex != null) {
-					String term = stringIndex.lookup[stringIndex.order[docId]];
+					String term = stringIndex.getDocTerm(docId);
 					if (term != null) {
 						FieldValueItem[] valueItems =
 								FieldValueItem.buildArray(FieldValueOriginEnum.STRING_INDEX, term);
@@ -519,8 +697,18 @@ public class ReaderLocal extends ReaderAbstract implements ReaderInterface, Clos
 		return new IndexStatistics(indexReader);
 	}
 
-	public SpellChecker getSpellChecker(String fieldName) throws IOException, SearchLibException {
-		return spellCheckCache.get(this, fieldName);
+	public SpellCheckDictionary getSpellCheckDictionary(final String fieldName) throws IOException {
+		SpellCheckDictionary dictionary = spellCheckDictionaryMap.get(fieldName);
+		if (dictionary != null)
+			return dictionary;
+		synchronized (spellCheckDictionaryMap) {
+			dictionary = spellCheckDictionaryMap.get(fieldName);
+			if (dictionary != null)
+				return dictionary;
+			dictionary = SpellCheckDictionary.build(indexReader, fieldName, spellCheckDirectory);
+			spellCheckDictionaryMap.put(fieldName, dictionary);
+			return dictionary;
+		}
 	}
 
 	protected DocSetHitsCache getDocSetHitsCache() {
@@ -0,0 +1,211 @@
+/**
+ * License Agreement for OpenSearchServer
+ * <p>
+ * Copyright (C) 2017 Emmanuel Keller / Jaeksoft
+ * <p>
+ * http://www.open-search-server.com
+ * <p>
+ * This file is part of OpenSearchServer.
+ * <p>
+ * OpenSearchServer is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * <p>
+ * OpenSearchServer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * <p>
+ * You should have received a copy of the GNU General Public License
+ * along with OpenSearchServer.
+ * If not, see <http://www.gnu.org/licenses/>.
+ **/
+
+package com.jaeksoft.searchlib.index;
+
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.index.TermDocs;
+import org.apache.lucene.index.TermEnum;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The uninverted view of a multivalued field in one segment: for each
+ * document, the ordinals of its terms. The ordinal is the position of the term
+ * in the terms of the field in this segment, starting at 1, as in
+ * SegmentOrdinals.
+ * <p>
+ * The ordinals of a document are sorted and stored as delta encoded
+ * variable length integers in one byte array. They are cached per segment
+ * core, a reopened reader reuses the ordinals of its unchanged segments.
+ */
+class SegmentDocTermOrds {
+
+	private final static Map<Object, Map<String, SegmentDocTermOrds>> CACHE = new WeakHashMap<>();
+
+	private final int[] offsets;
+	private final byte[] data;
+	final int termCount;
+
+	private SegmentDocTermOrds(final int[] offsets, final byte[] data, final int termCount) {
+		this.offsets = offsets;
+		this.data = data;
+		this.termCount = termCount;
+	}
+
+	/**
+	 * @param segmentReader the reader of one segment
+	 * @param fieldName     the name of the field
+	 * @return the cached ordinals, built on first use
+	 * @throws IOException
+	 */
+	static SegmentDocTermOrds get(final IndexReader segmentReader, final String fieldName) throws IOException {
+		final Map<String, SegmentDocTermOrds> fieldMap;
+		synchronized (CACHE) {
+			fieldMap = CACHE.computeIfAbsent(segmentReader.getCoreCacheKey(), key -> new ConcurrentHashMap<>());
+		}
+		SegmentDocTermOrds docTermOrds = fieldMap.get(fieldName);
+		if (docTermOrds != null)
+			return docTermOrds;
+		synchronized (fieldMap) {
+			docTermOrds = fieldMap.get(fieldName);
+			if (docTermOrds != null)
+				return docTermOrds;
+			docTermOrds = build(segmentReader, fieldName);
+			fieldMap.put(fieldName, docTermOrds);
+			return docTermOrds;
+		}
+	}
+
+	private static int vIntSize(int value) {
+		int size = 1;
+		while ((value & ~0x7F) != 0) {
+			value >>>= 7;
+			size++;
+		}
+		return size;
+	}
+
+	/**
+	 * Build the structure by reading the postings of every term of the
+	 * field. The postings are read twice: once to compute the size used by
+	 * each document, once to write the ordinals.
+	 *
+	 * @param indexReader the reader of one segment
+	 * @param fieldName   the name of the field
+	 * @return a new SegmentDocTermOrds instance
+	 * @throws IOException
+	 */
+	private static SegmentDocTermOrds build(final IndexReader indexReader, final String fieldName)
+			throws IOException {
+		final int maxDoc = indexReader.maxDoc();
+		final int[] lastOrds = new int[maxDoc];
+		final int[] positions = new int[maxDoc + 1];
+		final int[] docs = new int[256];
+		final int[] freqs = new int[256];
+		final TermDocs termDocs = indexReader.termDocs();
+		try {
+			// First pass: compute the number of bytes for each document
+			int ord = 0;
+			TermEnum termEnum = indexReader.terms(new Term(fieldName));
+			try {
+				do {
+					final Term term = termEnum.term();
+					if (term == null || !fieldName.equals(term.field()))
+						break;
+					ord++;
+					termDocs.seek(termEnum);
+					int l;
+					while ((l = termDocs.read(docs, freqs)) > 0) {
+						for (int i = 0; i < l; i++) {
+							final int doc = docs[i];
+							positions[doc] += vIntSize(ord - lastOrds[doc]);
+							lastOrds[doc] = ord;
+						}
+					}
+				} while (termEnum.next());
+			} finally {
+				termEnum.close();
+			}
+			final int termCount = ord;
+			final int[] offsets = new int[maxDoc + 1];
+			long total = 0;
+			for (int doc = 0; doc < maxDoc; doc++) {
+				offsets[doc] = (int) total;
+				total += positions[doc];
+				if (total > Integer.MAX_VALUE)
+					throw new IOException("Too many terms to uninvert the field " + fieldName);
+				positions[doc] = offsets[doc];
+				lastOrds[doc] = 0;
+			}
+			offsets[maxDoc] = (int) total;
+			// Second pass: write the delta encoded ordinals
+			final byte[] data = new byte[(int) total];
+			ord = 0;
+			termEnum = indexReader.terms(new Term(fieldName));
+			try {
+				do {
+					final Term term = termEnum.term();
+					if (term == null || !fieldName.equals(term.field()))
+						break;
+					ord++;
+					termDocs.seek(termEnum);
+					int l;
+					while ((l = termDocs.read(docs, freqs)) > 0) {
+						for (int i = 0; i < l; i++) {
+							final int doc = docs[i];
+							int delta = ord - lastOrds[doc];
+							lastOrds[doc] = ord;
+							int pos = positions[doc];
+							while ((delta & ~0x7F) != 0) {
+								data[pos++] = (byte) ((delta & 0x7F) | 0x80);
+								delta >>>= 7;
+							}
+							data[pos++] = (byte) delta;
+							positions[doc] = pos;
+						}
+					}
+				} while (termEnum.next());
+			} finally {
+				termEnum.close();
+			}
+			return new SegmentDocTermOrds(offsets, data, termCount);
+		} finally {
+			termDocs.close();
+		}
+	}
+
+	/**
+	 * Increment the counter of each term of the document
+	 *
+	 * @param docId  the document, relative to the segment
+	 * @param counts the counters, indexed by segment ordinal
+	 */
+	final void count(final int docId, final int[] counts) {
+		int pos = offsets[docId];
+		final int end = offsets[docId + 1];
+		int ord = 0;
+		while (pos < end) {
+			byte b = data[pos++];
+			int delta = b & 0x7F;
+			for (int shift = 7; (b & 0x80) != 0; shift += 7) {
+				b = data[pos++];
+				delta |= (b & 0x7F) << shift;
+			}
+			ord += delta;
+			counts[ord]++;
+		}
+	}
+
+	/**
+	 * @return the estimated memory used, in bytes
+	 */
+	final long getMemorySize() {
+		return 4L * offsets.length + data.length;
+	}
+}
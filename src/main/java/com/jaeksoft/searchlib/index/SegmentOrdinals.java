@@ -0,0 +1,112 @@
+/**
+ * License Agreement for OpenSearchServer
+ * <p>
+ * Copyright (C) 2017 Emmanuel Keller / Jaeksoft
+ * <p>
+ * http://www.open-search-server.com
+ * <p>
+ * This file is part of OpenSearchServer.
+ * <p>
+ * OpenSearchServer is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * <p>
+ * OpenSearchServer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * <p>
+ * You should have received a copy of the GNU General Public License
+ * along with OpenSearchServer.
+ * If not, see <http://www.gnu.org/licenses/>.
+ **/
+
+package com.jaeksoft.searchlib.index;
+
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.index.TermDocs;
+import org.apache.lucene.index.TermEnum;
+import org.apache.lucene.util.packed.GrowableWriter;
+import org.apache.lucene.util.packed.PackedInts;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The ordinal of the term of each document of one segment, bit packed. The
+ * ordinal is the position of the term in the terms of the field in this
+ * segment, starting at 1; 0 means no term. When a document has several
+ * terms, the last one is kept.
+ * <p>
+ * The ordinals are cached per segment core, a reopened reader reuses the
+ * ordinals of its unchanged segments.
+ */
+class SegmentOrdinals {
+
+	private final static Map<Object, Map<String, SegmentOrdinals>> CACHE = new WeakHashMap<>();
+
+	final PackedInts.Reader ords;
+	final int termCount;
+
+	private SegmentOrdinals(final PackedInts.Reader ords, final int termCount) {
+		this.ords = ords;
+		this.termCount = termCount;
+	}
+
+	/**
+	 * @param segmentReader the reader of one segment
+	 * @param fieldName     the name of the field
+	 * @return the cached ordinals, loaded on first use
+	 * @throws IOException
+	 */
+	static SegmentOrdinals get(final IndexReader segmentReader, final String fieldName) throws IOException {
+		final Map<String, SegmentOrdinals> fieldMap;
+		synchronized (CACHE) {
+			fieldMap = CACHE.computeIfAbsent(segmentReader.getCoreCacheKey(), key -> new ConcurrentHashMap<>());
+		}
+		SegmentOrdinals segmentOrdinals = fieldMap.get(fieldName);
+		if (segmentOrdinals != null)
+			return segmentOrdinals;
+		synchronized (fieldMap) {
+			segmentOrdinals = fieldMap.get(fieldName);
+			if (segmentOrdinals != null)
+				return segmentOrdinals;
+			segmentOrdinals = load(segmentReader, fieldName);
+			fieldMap.put(fieldName, segmentOrdinals);
+			return segmentOrdinals;
+		}
+	}
+
+	private static SegmentOrdinals load(final IndexReader segmentReader, final String fieldName)
+			throws IOException {
+		final int maxDoc = segmentReader.maxDoc();
+		final GrowableWriter ords = new GrowableWriter(1, maxDoc, false);
+		final int[] docs = new int[256];
+		final int[] freqs = new int[256];
+		int ord = 0;
+		final TermDocs termDocs = segmentReader.termDocs();
+		final TermEnum termEnum = segmentReader.terms(new Term(fieldName));
+		try {
+			do {
+				final Term term = termEnum.term();
+				if (term == null || !fieldName.equals(term.field()))
+					break;
+				ord++;
+				termDocs.seek(termEnum);
+				int l;
+				while ((l = termDocs.read(docs, freqs)) > 0)
+					for (int i = 0; i < l; i++)
+						ords.set(docs[i], ord);
+			} while (termEnum.next());
+		} finally {
+			termEnum.close();
+			termDocs.close();
+		}
+		return new SegmentOrdinals(ords.getMutable(), ord);
+	}
+
+}
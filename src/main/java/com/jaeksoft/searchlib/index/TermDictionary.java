@@ -0,0 +1,213 @@
+/**
+ * License Agreement for OpenSearchServer
+ * <p>
+ * Copyright (C) 2017 Emmanuel Keller / Jaeksoft
+ * <p>
+ * http://www.open-search-server.com
+ * <p>
+ * This file is part of OpenSearchServer.
+ * <p>
+ * OpenSearchServer is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * <p>
+ * OpenSearchServer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * <p>
+ * You should have received a copy of the GNU General Public License
+ * along with OpenSearchServer.
+ * If not, see <http://www.gnu.org/licenses/>.
+ **/
+
+package com.jaeksoft.searchlib.index;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * A sorted list of terms, front coded in one byte array. Each term is stored
+ * as the number of characters shared with the previous term, followed by the
+ * UTF-8 bytes of the remaining characters. The first term of each block is
+ * stored whole, so reading a term decodes at most one block.
+ */
+class TermDictionary {
+
+	private final static int BLOCK_SHIFT = 4;
+	private final static int BLOCK_MASK = (1 << BLOCK_SHIFT) - 1;
+
+	private final byte[] data;
+	private final int[] blockOffsets;
+	private final int size;
+
+	private TermDictionary(final byte[] data, final int[] blockOffsets, final int size) {
+		this.data = data;
+		this.blockOffsets = blockOffsets;
+		this.size = size;
+	}
+
+	/**
+	 * @param index the position of the term
+	 * @return the term
+	 */
+	final String get(final int index) {
+		int pos = blockOffsets[index >>> BLOCK_SHIFT];
+		final StringBuilder sb = new StringBuilder();
+		for (int i = index & ~BLOCK_MASK; ; i++) {
+			pos = decode(pos, sb);
+			if (i == index)
+				return sb.toString();
+		}
+	}
+
+	/**
+	 * Decode the term stored at the given position over the previous term
+	 *
+	 * @param pos the position of the term in the data
+	 * @param sb  the previous term, replaced by the decoded term
+	 * @return the position of the next term
+	 */
+	private int decode(int pos, final StringBuilder sb) {
+		byte b = data[pos++];
+		int prefix = b & 0x7F;
+		for (int shift = 7; (b & 0x80) != 0; shift += 7) {
+			b = data[pos++];
+			prefix |= (b & 0x7F) << shift;
+		}
+		b = data[pos++];
+		int length = b & 0x7F;
+		for (int shift = 7; (b & 0x80) != 0; shift += 7) {
+			b = data[pos++];
+			length |= (b & 0x7F) << shift;
+		}
+		sb.setLength(prefix);
+		final int end = pos + length;
+		while (pos < end) {
+			final int c = data[pos++] & 0xFF;
+			if (c < 0x80)
+				sb.append((char) c);
+			else if (c < 0xE0)
+				sb.append((char) (((c & 0x1F) << 6) | (data[pos++] & 0x3F)));
+			else if (c < 0xF0) {
+				sb.append((char) (((c & 0x0F) << 12) | ((data[pos] & 0x3F) << 6) | (data[pos + 1] & 0x3F)));
+				pos += 2;
+			} else {
+				sb.appendCodePoint(((c & 0x07) << 18) | ((data[pos] & 0x3F) << 12) | ((data[pos + 1] & 0x3F) << 6)
+						| (data[pos + 2] & 0x3F));
+				pos += 3;
+			}
+		}
+		return pos;
+	}
+
+	/**
+	 * @return a new cursor over the terms, in ascending order
+	 */
+	final Cursor cursor() {
+		return new Cursor();
+	}
+
+	/**
+	 * Read the terms one after the other, each term is decoded only once
+	 */
+	final class Cursor {
+
+		private final StringBuilder sb = new StringBuilder();
+		private int pos = 0;
+		private int index = 0;
+
+		/**
+		 * @return the next term, or null if there is no more term
+		 */
+		final String next() {
+			if (index == size)
+				return null;
+			index++;
+			pos = decode(pos, sb);
+			return sb.toString();
+		}
+	}
+
+	/**
+	 * @return the number of terms
+	 */
+	final int size() {
+		return size;
+	}
+
+	/**
+	 * @return the estimated memory used, in bytes
+	 */
+	final long getMemorySize() {
+		return data.length + 4L * blockOffsets.length;
+	}
+
+	/**
+	 * Collect the terms, which must be added in ascending order
+	 */
+	static class Builder {
+
+		private byte[] data;
+		private int[] blockOffsets;
+		private int length;
+		private int size;
+		private String previous;
+
+		Builder() {
+			data = new byte[1024];
+			blockOffsets = new int[16];
+			length = 0;
+			size = 0;
+			previous = null;
+		}
+
+		final void add(final String term) throws IOException {
+			int prefix = 0;
+			if ((size & BLOCK_MASK) == 0) {
+				if ((size >>> BLOCK_SHIFT) == blockOffsets.length)
+					blockOffsets = Arrays.copyOf(blockOffsets, blockOffsets.length << 1);
+				blockOffsets[size >>> BLOCK_SHIFT] = length;
+			} else {
+				final int max = Math.min(previous.length(), term.length());
+				while (prefix < max && previous.charAt(prefix) == term.charAt(prefix))
+					prefix++;
+				// Never split a surrogate pair
+				if (prefix > 0 && Character.isHighSurrogate(term.charAt(prefix - 1)))
+					prefix--;
+			}
+			final byte[] suffix = term.substring(prefix).getBytes(StandardCharsets.UTF_8);
+			ensureCapacity(10L + suffix.length);
+			writeVInt(prefix);
+			writeVInt(suffix.length);
+			System.arraycopy(suffix, 0, data, length, suffix.length);
+			length += suffix.length;
+			previous = term;
+			size++;
+		}
+
+		private void ensureCapacity(final long needed) throws IOException {
+			final long required = length + needed;
+			if (required <= data.length)
+				return;
+			if (required > Integer.MAX_VALUE - 8)
+				throw new IOException("Too many terms in the dictionary");
+			data = Arrays.copyOf(data, (int) Math.min(Integer.MAX_VALUE - 8, Math.max(required, 2L * data.length)));
+		}
+
+		private void writeVInt(int value) {
+			while ((value & ~0x7F) != 0) {
+				data[length++] = (byte) ((value & 0x7F) | 0x80);
+				value >>>= 7;
+			}
+			data[length++] = (byte) value;
+		}
+
+		final TermDictionary build() {
+			return new TermDictionary(Arrays.copyOf(data, length),
+					Arrays.copyOf(blockOffsets, (size + BLOCK_MASK) >>> BLOCK_SHIFT), size);
+		}
+	}
+}
@@ -39,34 +39,57 @@ import com.jaeksoft.searchlib.schema.Schema;
 import com.jaeksoft.searchlib.schema.SchemaField;
 import com.jaeksoft.searchlib.schema.SchemaFieldList;
 import com.jaeksoft.searchlib.util.IOUtils;
+import com.jaeksoft.searchlib.util.ReadWriteLock;
 import com.jaeksoft.searchlib.webservice.query.document.IndexDocumentResult;
 import com.jaeksoft.searchlib.webservice.query.document.IndexDocumentResult.IndexField;
 import com.jaeksoft.searchlib.webservice.query.document.IndexDocumentResult.IndexTerm;
 import org.apache.commons.collections.CollectionUtils;
+import org.apache.lucene.analysis.TokenStream;
 import org.apache.lucene.document.Document;
 import org.apache.lucene.index.CorruptIndexException;
+import org.apache.lucene.index.IndexCommit;
 import org.apache.lucene.index.IndexReader;
 import org.apache.lucene.index.IndexWriter;
 import org.apache.lucene.index.IndexWriterConfig;
 import org.apache.lucene.index.IndexWriterConfig.OpenMode;
 import org.apache.lucene.index.SerialMergeScheduler;
+import org.apache.lucene.index.SnapshotDeletionPolicy;
+import org.apache.lucene.index.StaleReaderException;
 import org.apache.lucene.index.Term;
+import org.apache.lucene.search.Query;
 import org.apache.lucene.search.Similarity;
 import org.apache.lucene.store.LockObtainFailedException;
 import org.apache.lucene.util.Version;
 
+import java.io.Closeable;
 import java.io.IOException;
 import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.List;
 
-public class WriterLocal extends WriterAbstract {
+public class WriterLocal extends WriterAbstract implements Closeable {
+
+	private final static int DELETE_BATCH_SIZE = 1024;
 
 	private IndexDirectory indexDirectory;
 
+	private final ReadWriteLock rwl = new ReadWriteLock();
+	private final GroupCommit groupCommit;
+	private volatile IndexWriter sharedWriter;
+
+	/**
+	 * Shared by the successive writers of the directory, the snapshots survive
+	 * the writer being closed and reopened, and the index being reloaded
+	 */
+	private final SnapshotDeletionPolicy snapshotPolicy;
+
 	protected WriterLocal(IndexConfig indexConfig, IndexDirectory indexDirectory) throws IOException {
 		super(indexConfig);
 		this.indexDirectory = indexDirectory;
+		this.groupCommit = new GroupCommit(indexConfig);
+		this.sharedWriter = null;
+		this.snapshotPolicy = indexDirectory.getSnapshotPolicy();
 	}
 
 	private void close(IndexWriter indexWriter) {
@@ -81,13 +104,38 @@ public class WriterLocal extends WriterAbstract {
 		}
 	}
 
+	/**
+	 * Close the shared writer. The caller must hold the write lock.
+	 */
+	private void closeSharedWriterNoLock() {
+		IndexWriter indexWriter = sharedWriter;
+		sharedWriter = null;
+		close(indexWriter);
+	}
+
+	@Override
+	public void close() {
+		rwl.w.lock();
+		try {
+			closeSharedWriterNoLock();
+		} finally {
+			rwl.w.unlock();
+		}
+	}
+
 	public final void create()
 			throws CorruptIndexException, LockObtainFailedException, IOException, SearchLibException {
-		IndexWriter indexWriter = null;
+		rwl.w.lock();
 		try {
-			indexWriter = open(true);
+			closeSharedWriterNoLock();
+			IndexWriter indexWriter = null;
+			try {
+				indexWriter = open(true);
+			} finally {
+				close(indexWriter);
+			}
 		} finally {
-			close(indexWriter);
+			rwl.w.unlock();
 		}
 	}
 
@@ -97,6 +145,7 @@ public class WriterLocal extends WriterAbstract {
 		config.setOpenMode(create ? OpenMode.CREATE_OR_APPEND : OpenMode.APPEND);
 		config.setMergeScheduler(new SerialMergeScheduler());
 		config.setWriteLockTimeout(indexConfig.getWriteLockTimeout());
+		config.setIndexDeletionPolicy(snapshotPolicy);
 		Similarity similarity = indexConfig.getNewSimilarityInstance();
 		if (similarity != null)
 			config.setSimilarity(similarity);
@@ -104,19 +153,87 @@ public class WriterLocal extends WriterAbstract {
 		return new IndexWriter(indexDirectory.getDirectory(), config);
 	}
 
-	private IndexWriter open() throws IOException, SearchLibException {
-		IndexWriter indexWriter = open(false);
-		return indexWriter;
+	/**
+	 * Returns the long-lived writer, opening it if required. The caller must
+	 * hold the read lock.
+	 *
+	 * @return the shared IndexWriter
+	 * @throws IOException
+	 * @throws SearchLibException
+	 */
+	private IndexWriter getSharedWriter() throws IOException, SearchLibException {
+		IndexWriter indexWriter = sharedWriter;
+		if (indexWriter != null)
+			return indexWriter;
+		synchronized (this) {
+			if (sharedWriter == null)
+				sharedWriter = open(false);
+			return sharedWriter;
+		}
+	}
+
+	/**
+	 * Pin the last commit point. Its files are not deleted, even by the
+	 * following commits and merges, until the snapshot is released.
+	 *
+	 * @param id the identifier of the snapshot
+	 * @return the pinned commit point
+	 * @throws SearchLibException
+	 */
+	public IndexCommit snapshot(String id) throws SearchLibException {
+		rwl.r.lock();
+		try {
+			getSharedWriter();
+			return snapshotPolicy.snapshot(id);
+		} catch (IOException e) {
+			throw new SearchLibException(e);
+		} finally {
+			rwl.r.unlock();
+		}
+	}
+
+	/**
+	 * Release a snapshot. Its files are deleted by the next commit if they are
+	 * no more used.
+	 *
+	 * @param id the identifier of the snapshot
+	 * @throws SearchLibException
+	 */
+	public void releaseSnapshot(String id) throws SearchLibException {
+		try {
+			snapshotPolicy.release(id);
+		} catch (IOException e) {
+			throw new SearchLibException(e);
+		}
+	}
+
+	/**
+	 * Commit the documents written by the caller, merged with the concurrent
+	 * updates
+	 *
+	 * @param indexWriter the shared writer
+	 * @param docCount    the number of documents written by the caller
+	 * @throws IOException
+	 * @throws SearchLibException
+	 */
+	private void commit(IndexWriter indexWriter, int docCount) throws IOException, SearchLibException {
+		try {
+			groupCommit.commit(indexWriter, docCount);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new SearchLibException(e);
+		}
 	}
 
 	@Deprecated
 	public void addDocument(Document document) throws IOException, SearchLibException {
-		IndexWriter indexWriter = null;
+		rwl.r.lock();
 		try {
-			indexWriter = open();
+			IndexWriter indexWriter = getSharedWriter();
 			indexWriter.addDocument(document);
+			commit(indexWriter, 1);
 		} finally {
-			close(indexWriter);
+			rwl.r.unlock();
 		}
 	}
 
@@ -146,52 +263,52 @@ public class WriterLocal extends WriterAbstract {
 
 	@Override
 	public boolean updateDocument(Schema schema, IndexDocument document) throws SearchLibException {
-		IndexWriter indexWriter = null;
+		rwl.r.lock();
 		try {
-			indexWriter = open();
+			IndexWriter indexWriter = getSharedWriter();
 			SchemaField uniqueField = schema.getFieldList().getUniqueField();
 			boolean updated = updateDocNoLock(uniqueField, indexWriter, schema, document);
-			close(indexWriter);
-			indexWriter = null;
+			if (updated)
+				commit(indexWriter, 1);
 			return updated;
 		} catch (IOException e) {
 			throw new SearchLibException(e);
 		} catch (NoSuchAlgorithmException e) {
 			throw new SearchLibException(e);
 		} finally {
-			close(indexWriter);
+			rwl.r.unlock();
 		}
 	}
 
 	@Override
 	public int updateDocuments(Schema schema, Collection<IndexDocument> documents) throws SearchLibException {
-		IndexWriter indexWriter = null;
+		rwl.r.lock();
 		try {
 			int count = 0;
-			indexWriter = open();
+			IndexWriter indexWriter = getSharedWriter();
 			SchemaField uniqueField = schema.getFieldList().getUniqueField();
 			for (IndexDocument document : documents)
 				if (updateDocNoLock(uniqueField, indexWriter, schema, document))
 					count++;
-			close(indexWriter);
-			indexWriter = null;
+			if (count > 0)
+				commit(indexWriter, count);
 			return count;
 		} catch (IOException e) {
 			throw new SearchLibException(e);
 		} catch (NoSuchAlgorithmException e) {
 			throw new SearchLibException(e);
 		} finally {
-			close(indexWriter);
+			rwl.r.unlock();
 		}
 	}
 
 	@Override
 	public int updateIndexDocuments(Schema schema, Collection<IndexDocumentResult> documents)
 			throws SearchLibException {
-		IndexWriter indexWriter = null;
+		rwl.r.lock();
 		try {
 			int count = 0;
-			indexWriter = open();
+			IndexWriter indexWriter = getSharedWriter();
 			SchemaField uniqueField = schema.getFieldList().getUniqueField();
 			for (IndexDocumentResult document : documents) {
 				Document doc = getLuceneDocument(schema, document);
@@ -199,13 +316,13 @@ public class WriterLocal extends WriterAbstract {
 				updateDocNoLock(uniqueField, indexWriter, analyzer, doc);
 				count++;
 			}
-			close(indexWriter);
-			indexWriter = null;
+			if (count > 0)
+				commit(indexWriter, count);
 			return count;
 		} catch (IOException e) {
 			throw new SearchLibException(e);
 		} finally {
-			close(indexWriter);
+			rwl.r.unlock();
 		}
 	}
 
@@ -234,10 +351,18 @@ public class WriterLocal extends WriterAbstract {
 				String value = valueItem.getValue();
 				if (value == null)
 					continue;
-				if (compiledAnalyzer != null)
-					if (!compiledAnalyzer.isAnyToken(fieldName, value))
+				org.apache.lucene.document.Field luceneField = field.getLuceneField(value, valueItem.getBoost());
+				if (compiledAnalyzer != null) {
+					if (luceneField.isIndexed() && luceneField.isTokenized()) {
+						// The same analysis checks the value and feeds the index
+						TokenStream tokenStream = compiledAnalyzer.getIndexTokenStream(fieldName, value);
+						if (tokenStream == null)
+							continue;
+						luceneField.setTokenStream(tokenStream);
+					} else if (!compiledAnalyzer.isAnyToken(fieldName, value))
 						continue;
-				doc.add(field.getLuceneField(value, valueItem.getBoost()));
+				}
+				doc.add(luceneField);
 			}
 		}
 		return doc;
@@ -264,34 +389,150 @@ public class WriterLocal extends WriterAbstract {
 		return doc;
 	}
 
-	public int deleteDocuments(int[] ids) throws IOException, SearchLibException {
+	/**
+	 * @param fieldName the field holding the terms of the documents to delete
+	 * @return a new TermDeletion sending its terms to the shared writer
+	 */
+	public TermDeletion newTermDeletion(final String fieldName) {
+		return new TermDeletion(fieldName);
+	}
+
+	/**
+	 * Stream the terms of the documents to delete. The terms are passed to the
+	 * shared writer by batches, the deletion is committed once at the end.
+	 */
+	public class TermDeletion {
+
+		private final Term term;
+		private final Term[] batch;
+		private int size;
+		private int count;
+
+		private TermDeletion(final String fieldName) {
+			term = new Term(fieldName);
+			batch = new Term[DELETE_BATCH_SIZE];
+			size = 0;
+			count = 0;
+		}
+
+		/**
+		 * @param value the value of the term to delete
+		 * @throws IOException
+		 */
+		final public void add(final String value) throws IOException {
+			batch[size++] = term.createTerm(value);
+			if (size == batch.length)
+				flush();
+		}
+
+		private void flush() throws IOException {
+			if (size == 0)
+				return;
+			rwl.r.lock();
+			try {
+				getSharedWriter().deleteDocuments(size == batch.length ? batch : Arrays.copyOf(batch, size));
+				count += size;
+				size = 0;
+			} catch (SearchLibException e) {
+				throw new IOException(e);
+			} finally {
+				rwl.r.unlock();
+			}
+		}
+
+		/**
+		 * Pass the remaining terms to the writer and commit the deletion
+		 *
+		 * @throws SearchLibException
+		 */
+		final public void commit() throws SearchLibException {
+			try {
+				flush();
+			} catch (IOException e) {
+				throw new SearchLibException(e);
+			}
+			if (count == 0)
+				return;
+			rwl.r.lock();
+			try {
+				IndexWriter indexWriter = getSharedWriter();
+				WriterLocal.this.commit(indexWriter, count);
+				count = 0;
+			} catch (IOException e) {
+				throw new SearchLibException(e);
+			} finally {
+				rwl.r.unlock();
+			}
+		}
+	}
+
+	/**
+	 * Delete the documents matching the query through the shared writer, and
+	 * commit the deletion.
+	 *
+	 * @param query a query which does not depend on a reader
+	 * @throws SearchLibException
+	 */
+	public void deleteDocuments(final Query query) throws SearchLibException {
+		rwl.r.lock();
+		try {
+			IndexWriter indexWriter = getSharedWriter();
+			indexWriter.deleteDocuments(query);
+			commit(indexWriter, 1);
+		} catch (IOException e) {
+			throw new SearchLibException(e);
+		} finally {
+			rwl.r.unlock();
+		}
+	}
+
+	/**
+	 * Delete documents by document number. This requires a writable reader,
+	 * the shared writer is closed: prefer the deletion by term.
+	 *
+	 * @param commit the commit point the document numbers come from
+	 * @param ids    the document numbers
+	 * @return the number of deleted documents
+	 * @throws StaleReaderException if the index has changed since the commit
+	 * @throws IOException
+	 * @throws SearchLibException
+	 */
+	public int deleteDocuments(IndexCommit commit, int[] ids) throws IOException, SearchLibException {
 		if (ids == null || ids.length == 0)
 			return 0;
-		IndexReader indexReader = null;
+		rwl.w.lock();
 		try {
-			int l = 0;
-			indexReader = IndexReader.open(indexDirectory.getDirectory(), false);
-			for (int id : ids)
-				if (!indexReader.isDeleted(id)) {
-					indexReader.deleteDocument(id);
-					l++;
-				}
-			indexReader.close();
-			indexReader = null;
-			return l;
+			// Deleting by document number requires a writable reader
+			closeSharedWriterNoLock();
+			IndexReader indexReader = null;
+			try {
+				int l = 0;
+				indexReader = IndexReader.open(indexDirectory.getDirectory(), snapshotPolicy, false);
+				if (indexReader.getIndexCommit().getGeneration() != commit.getGeneration())
+					throw new StaleReaderException("The index has changed since the commit " + commit.getGeneration());
+				for (int id : ids)
+					if (!indexReader.isDeleted(id)) {
+						indexReader.deleteDocument(id);
+						l++;
+					}
+				indexReader.close();
+				indexReader = null;
+				return l;
+			} finally {
+				IOUtils.close(indexReader);
+			}
 		} finally {
-			IOUtils.close(indexReader);
+			rwl.w.unlock();
 		}
 	}
 
 	@Override
 	public void deleteAll() throws SearchLibException {
-		IndexWriter indexWriter = null;
+		rwl.r.lock();
 		try {
-			indexWriter = open();
+			IndexWriter indexWriter = getSharedWriter();
 			indexWriter.deleteAll();
-			close(indexWriter);
-			indexWriter = null;
+			commit(indexWriter, 0);
 		} catch (CorruptIndexException e) {
 			throw new SearchLibException(e);
 		} catch (LockObtainFailedException e) {
@@ -299,7 +540,7 @@ public class WriterLocal extends WriterAbstract {
 		} catch (IOException e) {
 			throw new SearchLibException(e);
 		} finally {
-			close(indexWriter);
+			rwl.r.unlock();
 		}
 	}
 
@@ -309,18 +550,16 @@ public class WriterLocal extends WriterAbstract {
 	}
 
 	private void mergeNoLock(IndexDirectory directory) throws SearchLibException {
-		IndexWriter indexWriter = null;
+		rwl.r.lock();
 		try {
-			indexWriter = open();
+			IndexWriter indexWriter = getSharedWriter();
 			indexWriter.addIndexes(directory.getDirectory());
-			close(indexWriter);
-			indexWriter = null;
+			commit(indexWriter, 0);
 		} catch (IOException e) {
 			throw new SearchLibException(e);
 		} finally {
-			close(indexWriter);
+			rwl.r.unlock();
 		}
-
 	}
 
 	@Override
@@ -42,7 +42,7 @@ public abstract class DocValueNumber extends DocValueStringIndex {
 	@Override
 	final public float getFloat(final int doc) {
 		try {
-			String s = stringIndex.lookup[stringIndex.order[doc]];
+			String s = stringIndex.getDocTerm(doc);
 			if (s == null)
 				return 0;
 			return numberFormat.parse(s).floatValue();
@@ -394,6 +394,7 @@ public class JoinItem implements Comparable<JoinItem> {
 			lazyLoadForeignSearchRequest();
 			foreignSearchRequest.setStart(0);
 			foreignSearchRequest.setRows(0);
+			foreignSearchRequest.setFullDocSet(true);
 			foreignSearchRequest.setUsers(searchRequest.getUsers());
 			foreignSearchRequest.setGroups(searchRequest.getGroups());
 			foreignSearchRequest.setQueryString(queryString);
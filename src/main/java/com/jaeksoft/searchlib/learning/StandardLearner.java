@@ -32,10 +32,10 @@ import java.util.List;
 import java.util.TreeMap;
 
 import org.apache.commons.collections.CollectionUtils;
-import org.apache.commons.lang3.ArrayUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.lucene.search.BooleanClause.Occur;
 import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.ScoreDoc;
 
 import com.fasterxml.jackson.core.JsonParseException;
 import com.fasterxml.jackson.databind.JsonMappingException;
@@ -45,11 +45,9 @@ import com.jaeksoft.searchlib.analysis.Analyzer;
 import com.jaeksoft.searchlib.analysis.LanguageEnum;
 import com.jaeksoft.searchlib.crawler.FieldMap;
 import com.jaeksoft.searchlib.index.IndexDocument;
-import com.jaeksoft.searchlib.request.AbstractLocalSearchRequest;
 import com.jaeksoft.searchlib.request.AbstractSearchRequest;
 import com.jaeksoft.searchlib.result.AbstractResultSearch;
 import com.jaeksoft.searchlib.result.ResultDocument;
-import com.jaeksoft.searchlib.result.ResultSearchSingle;
 import com.jaeksoft.searchlib.schema.Indexed;
 import com.jaeksoft.searchlib.schema.Schema;
 import com.jaeksoft.searchlib.schema.SchemaField;
@@ -76,7 +74,6 @@ public class StandardLearner implements LearnerInterface {
 	private final String[] TARGET_FIELDS = { FIELD_TARGET_LABEL,
 			FIELD_TARGET_SCORE };
 
-	private final String REQUEST_SEARCH = "search";
 	private final String REQUEST_CUSTOM = "custom";
 
 	private final ReadWriteLock rwl = new ReadWriteLock();
@@ -85,6 +82,8 @@ public class StandardLearner implements LearnerInterface {
 
 	private Client learnerClient = null;
 
+	private volatile StandardLearnerModel model = null;
+
 	@Override
 	public void init(File instancesDir) throws SearchLibException {
 		rwl.r.lock();
@@ -135,7 +134,33 @@ public class StandardLearner implements LearnerInterface {
 		return checkDataFields(sourceFieldMap);
 	}
 
+	/**
+	 * Return the compiled model of the learner index. The model is compiled
+	 * again when the version of the index has changed.
+	 * 
+	 * @return the model of the current version of the index
+	 * @throws IOException
+	 * @throws SearchLibException
+	 */
+	private StandardLearnerModel getModel() throws IOException,
+			SearchLibException {
+		long version = learnerClient.getIndex().getVersion();
+		StandardLearnerModel m = model;
+		if (m != null && m.getVersion() == version)
+			return m;
+		synchronized (this) {
+			m = model;
+			if (m != null && m.getVersion() == version)
+				return m;
+			m = StandardLearnerModel.build(learnerClient.getIndex(),
+					FIELD_SOURCE_NAME, FIELD_SOURCE_TARGET, FIELD_SOURCE_CUSTOM);
+			model = m;
+			return m;
+		}
+	}
+
 	private void closeNoLock() {
+		model = null;
 		if (learnerClient == null)
 			return;
 		learnerClient.close();
@@ -162,6 +187,7 @@ public class StandardLearner implements LearnerInterface {
 				learnerClient.delete();
 				learnerClient = null;
 			}
+			model = null;
 		} catch (IOException e) {
 			throw new SearchLibException(e);
 		} finally {
@@ -220,6 +246,7 @@ public class StandardLearner implements LearnerInterface {
 		rwl.w.lock();
 		try {
 			learnerClient.updateDocuments(learnIndexDocuments);
+			model = null;
 		} finally {
 			rwl.w.unlock();
 		}
@@ -245,6 +272,7 @@ public class StandardLearner implements LearnerInterface {
 		rwl.w.lock();
 		try {
 			learnerClient.deleteDocuments(FIELD_SOURCE_NAME, values);
+			model = null;
 		} finally {
 			rwl.w.unlock();
 		}
@@ -273,111 +301,51 @@ public class StandardLearner implements LearnerInterface {
 			if (booleanQuery == null || booleanQuery.getClauses() == null
 					|| booleanQuery.getClauses().length == 0)
 				return;
-			AbstractLocalSearchRequest searchRequest = (AbstractLocalSearchRequest) learnerClient
-					.getNewRequest(REQUEST_SEARCH);
-			int start = 0;
-			final int rows = 1000;
-			List<String[]> termVectors = new ArrayList<String[]>(rows);
-			List<String> stringIndexTerms = new ArrayList<String>(rows);
-			for (;;) {
-				termVectors.clear();
-				stringIndexTerms.clear();
-				searchRequest.setStart(start);
-				searchRequest.setRows(rows);
-				searchRequest.setBoostedComplexQuery(booleanQuery);
-				AbstractResultSearch<?> result = (AbstractResultSearch<?>) learnerClient
-						.request(searchRequest);
-				if (result.getDocumentCount() == 0)
-					break;
-				int end = start + result.getDocumentCount();
-				int[] docIds = ArrayUtils.subarray(
-						ResultDocument.getDocIds(result.getDocs()), start, end);
-				learnerClient.getIndex().putTermVectors(docIds,
-						FIELD_SOURCE_TARGET, termVectors);
-				learnerClient.getIndex().getStringIndex(FIELD_SOURCE_NAME)
-						.putTerms(docIds, stringIndexTerms);
-				int i = -1;
-				for (int pos = start; pos < end; pos++) {
-					i++;
-					String[] terms = termVectors.get(i);
-					if (terms == null)
-						continue;
-					double docScore = result.getScore(pos);
-					if (docScore < minScore)
-						break;
-					String name = stringIndexTerms.get(i);
-					if (name == null)
-						continue;
-					for (String value : terms) {
-						if (value == null)
-							continue;
-						collector.add(new LearnerResultItem(docScore, pos,
-								null, value, 1, null));
-						break;
-					}
-				}
-				searchRequest.reset();
-				start += rows;
+			StandardLearnerModel m = getModel();
+			ScoreDoc[] scoreDocs = m.score(FIELD_SOURCE_DATA, booleanQuery)
+					.top(maxRank, minScore);
+			int pos = 0;
+			for (ScoreDoc scoreDoc : scoreDocs) {
+				int rank = pos++;
+				String[] terms = m.getTargets(scoreDoc.doc);
+				if (terms == null)
+					continue;
+				if (m.getName(scoreDoc.doc) == null)
+					continue;
+				collector.add(new LearnerResultItem(scoreDoc.score, rank,
+						null, terms[0], 1, null));
 			}
 		} finally {
 			rwl.r.unlock();
 		}
 	}
 
-	private void fieldClassify(String fieldName, Float boost, String data,
+	private void fieldClassify(StandardLearnerModel m, String fieldName,
+			Float boost, String data,
 			TreeMap<String, LearnerResultItem> targetMap)
 			throws SearchLibException, IOException {
-		AbstractLocalSearchRequest searchRequest = (AbstractLocalSearchRequest) learnerClient
-				.getNewRequest(REQUEST_SEARCH);
 		BooleanQuery booleanQuery = getBooleanQuery(fieldName, data);
 		if (booleanQuery == null || booleanQuery.getClauses() == null
 				|| booleanQuery.getClauses().length == 0)
 			return;
-		int start = 0;
-		final int rows = 1000;
-		List<String[]> termVectors = new ArrayList<String[]>(rows);
-		List<String> stringIndexTerms = new ArrayList<String>(rows);
-		for (;;) {
-			termVectors.clear();
-			stringIndexTerms.clear();
-			searchRequest.setStart(start);
-			searchRequest.setRows(rows);
-			searchRequest.setBoostedComplexQuery(booleanQuery);
-			ResultSearchSingle result = (ResultSearchSingle) learnerClient
-					.request(searchRequest);
-			if (result.getDocumentCount() == 0)
-				break;
-			int end = start + result.getDocumentCount();
-			int[] docIds = ArrayUtils.subarray(
-					ResultDocument.getDocIds(result.getDocs()), start, end);
-			learnerClient.getIndex().putTermVectors(docIds,
-					FIELD_SOURCE_TARGET, termVectors);
-			learnerClient.getIndex().getStringIndex(FIELD_SOURCE_NAME)
-					.putTerms(docIds, stringIndexTerms);
-			int i = -1;
-			for (int pos = start; pos < end; pos++) {
-				i++;
-				String[] terms = termVectors.get(i);
-				if (terms == null)
-					continue;
-				double docScore = result.getScore(pos);
-				if (boost != null)
-					docScore = docScore * boost;
-				String name = stringIndexTerms.get(i);
-				for (String value : terms) {
-					if (value == null)
-						continue;
-					LearnerResultItem learnerResultItem = targetMap.get(value);
-					if (learnerResultItem == null) {
-						learnerResultItem = new LearnerResultItem(0, -1, value,
-								null, 0, null);
-						targetMap.put(value, learnerResultItem);
-					}
-					learnerResultItem.addScoreInstance(docScore, 1, name);
+		StandardLearnerModel.Hits hits = m.score(fieldName, booleanQuery);
+		for (int i = 0; i < hits.docs.length; i++) {
+			String[] terms = m.getTargets(hits.docs[i]);
+			if (terms == null)
+				continue;
+			double docScore = hits.scores[i];
+			if (boost != null)
+				docScore = docScore * boost;
+			String name = m.getName(hits.docs[i]);
+			for (String value : terms) {
+				LearnerResultItem learnerResultItem = targetMap.get(value);
+				if (learnerResultItem == null) {
+					learnerResultItem = new LearnerResultItem(0, -1, value,
+							null, 0, null);
+					targetMap.put(value, learnerResultItem);
 				}
+				learnerResultItem.addScoreInstance(docScore, 1, name);
 			}
-			searchRequest.reset();
-			start += rows;
 		}
 	}
 
@@ -388,10 +356,11 @@ public class StandardLearner implements LearnerInterface {
 		rwl.r.lock();
 		try {
 			Collection<TargetField> targetFields = checkIndex(sourceFieldMap);
+			StandardLearnerModel m = getModel();
 			TreeMap<String, LearnerResultItem> targetMap = new TreeMap<String, LearnerResultItem>();
-			fieldClassify(FIELD_SOURCE_DATA, null, data, targetMap);
+			fieldClassify(m, FIELD_SOURCE_DATA, null, data, targetMap);
 			for (TargetField targetField : targetFields)
-				fieldClassify(targetField.getBoostedName(),
+				fieldClassify(m, targetField.getBoostedName(),
 						targetField.getBoost(), data, targetMap);
 			for (LearnerResultItem learnerResultItem : targetMap.values()) {
 				learnerResultItem.score = learnerResultItem.score
@@ -433,6 +402,7 @@ public class StandardLearner implements LearnerInterface {
 			checkIndex(sourceFieldMap);
 			int count = 0;
 			learnerClient.deleteAll();
+			model = null;
 			AbstractSearchRequest request = (AbstractSearchRequest) client
 					.getNewRequest(requestName);
 			int start = 0;
@@ -0,0 +1,342 @@
+/**
+ * License Agreement for OpenSearchServer
+ * <p>
+ * Copyright (C) 2017 Emmanuel Keller / Jaeksoft
+ * <p>
+ * http://www.open-search-server.com
+ * <p>
+ * This file is part of OpenSearchServer.
+ * <p>
+ * OpenSearchServer is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * <p>
+ * OpenSearchServer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * <p>
+ * You should have received a copy of the GNU General Public License
+ * along with OpenSearchServer.
+ * If not, see <http://www.gnu.org/licenses/>.
+ **/
+
+package com.jaeksoft.searchlib.learning;
+
+import com.jaeksoft.searchlib.SearchLibException;
+import com.jaeksoft.searchlib.index.IndexAbstract;
+import it.unimi.dsi.fastutil.ints.Int2IntOpenHashMap;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.index.TermDocs;
+import org.apache.lucene.index.TermEnum;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.Similarity;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.util.ReaderUtil;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * The learner index compiled in memory: the name and the targets of each
+ * document, and for each data field a sparse inverted matrix giving the weight
+ * of each term in each document.
+ * <p>
+ * The weights follow the similarity of the learner index and the norms stored
+ * in the index, a query is scored in one pass over the postings of its terms.
+ * The whole model is compiled from one reader: it describes one version of the
+ * index, and it is replaced when the index changes.
+ */
+class StandardLearnerModel {
+
+	private final long version;
+	private final int maxDoc;
+	private final Similarity similarity;
+	private final String[] names;
+	private final String[][] targets;
+	private final Map<String, FieldMatrix> fieldMatrixMap;
+
+	/**
+	 * @param indexSearcher the searcher of the learner index
+	 * @param nameField     the field of the name
+	 * @param targetField   the field of the targets
+	 * @param customField   the field of the custom values, which is not scored
+	 * @throws IOException
+	 */
+	StandardLearnerModel(final IndexSearcher indexSearcher, final String nameField, final String targetField,
+			final String customField) throws IOException {
+		final IndexReader reader = indexSearcher.getIndexReader();
+		version = reader.getVersion();
+		maxDoc = reader.maxDoc();
+		similarity = indexSearcher.getSimilarity();
+		names = new String[maxDoc];
+		forEachTerm(reader, nameField, (text, docFreq, termDocs) -> {
+			while (termDocs.next())
+				names[termDocs.doc()] = text;
+		});
+		final List<List<String>> targetLists = new ArrayList<List<String>>(maxDoc);
+		for (int i = 0; i < maxDoc; i++)
+			targetLists.add(null);
+		forEachTerm(reader, targetField, (text, docFreq, termDocs) -> {
+			while (termDocs.next()) {
+				final int doc = termDocs.doc();
+				List<String> list = targetLists.get(doc);
+				if (list == null) {
+					list = new ArrayList<String>(1);
+					targetLists.set(doc, list);
+				}
+				list.add(text);
+			}
+		});
+		targets = new String[maxDoc][];
+		for (int i = 0; i < maxDoc; i++) {
+			final List<String> list = targetLists.get(i);
+			if (list != null)
+				targets[i] = list.toArray(new String[list.size()]);
+		}
+		final Map<String, FieldMatrix> matrices = new HashMap<String, FieldMatrix>();
+		for (String fieldName : ReaderUtil.getIndexedFields(reader))
+			if (!fieldName.equals(nameField) && !fieldName.equals(targetField) && !fieldName.equals(customField))
+				matrices.put(fieldName, new FieldMatrix(reader, fieldName));
+		fieldMatrixMap = Collections.unmodifiableMap(matrices);
+	}
+
+	/**
+	 * Compile the learner index: the names and the targets of the documents,
+	 * and the matrices of all the other indexed fields, from the same reader.
+	 *
+	 * @param index       the learner index
+	 * @param nameField   the field of the name
+	 * @param targetField the field of the targets
+	 * @param customField the field of the custom values, which is not scored
+	 * @return a new model
+	 * @throws IOException
+	 * @throws SearchLibException
+	 */
+	static StandardLearnerModel build(final IndexAbstract index, final String nameField, final String targetField,
+			final String customField) throws IOException, SearchLibException {
+		return index.visitIndexSearcher(
+				indexSearcher -> new StandardLearnerModel(indexSearcher, nameField, targetField, customField));
+	}
+
+	/**
+	 * @return the version of the index described by the model
+	 */
+	final long getVersion() {
+		return version;
+	}
+
+	/**
+	 * @param doc the document
+	 * @return the name of the document, or null
+	 */
+	final String getName(final int doc) {
+		return names[doc];
+	}
+
+	/**
+	 * @param doc the document
+	 * @return the targets of the document in ascending order, or null
+	 */
+	final String[] getTargets(final int doc) {
+		return targets[doc];
+	}
+
+	/**
+	 * Score the documents matching a disjunction of terms, the way the search
+	 * does: the sum of the term weights, multiplied by the square of the idf,
+	 * the query norm and the coordination factor. Only the term clauses which
+	 * are not prohibited are scored, the other clauses are left out of the
+	 * query norm and of the coordination factor.
+	 * <p>
+	 * The documents are accumulated in arrays sized by the number of postings
+	 * of the terms, not by the number of documents of the index.
+	 *
+	 * @param fieldName the data field
+	 * @param query     the boolean query built by the analyzer of the field
+	 * @return the matching documents with their score, none if the field was
+	 * not indexed in this version
+	 */
+	final Hits score(final String fieldName, final BooleanQuery query) {
+		final FieldMatrix fieldMatrix = fieldMatrixMap.get(fieldName);
+		if (fieldMatrix == null)
+			return new Hits(new int[0], new float[0]);
+		final BooleanClause[] clauses = query.getClauses();
+		final Postings[] clausePostings = new Postings[clauses.length];
+		final float[] termFactors = new float[clauses.length];
+		int maxCoord = 0;
+		int postingsCount = 0;
+		float sumOfSquaredWeights = 0;
+		for (int c = 0; c < clauses.length; c++) {
+			final BooleanClause clause = clauses[c];
+			if (clause.isProhibited() || !(clause.getQuery() instanceof TermQuery))
+				continue;
+			maxCoord++;
+			final TermQuery termQuery = (TermQuery) clause.getQuery();
+			final Postings postings = fieldMatrix.postings.get(termQuery.getTerm().text());
+			final float idf = postings != null ? postings.idf : similarity.idf(0, maxDoc);
+			final float weight = idf * termQuery.getBoost();
+			sumOfSquaredWeights += weight * weight;
+			if (postings == null)
+				continue;
+			clausePostings[c] = postings;
+			termFactors[c] = weight * idf;
+			postingsCount += postings.docs.length;
+		}
+		final int capacity = Math.min(postingsCount, maxDoc);
+		final Int2IntOpenHashMap slots = new Int2IntOpenHashMap(capacity);
+		slots.defaultReturnValue(-1);
+		final int[] docs = new int[capacity];
+		final float[] scores = new float[capacity];
+		final int[] overlaps = new int[capacity];
+		int size = 0;
+		for (int c = 0; c < clauses.length; c++) {
+			final Postings postings = clausePostings[c];
+			if (postings == null)
+				continue;
+			final float termFactor = termFactors[c];
+			for (int i = 0; i < postings.docs.length; i++) {
+				final int doc = postings.docs[i];
+				int slot = slots.get(doc);
+				if (slot == -1) {
+					slot = size++;
+					slots.put(doc, slot);
+					docs[slot] = doc;
+				}
+				overlaps[slot]++;
+				scores[slot] += postings.weights[i] * termFactor;
+			}
+		}
+		final float queryNorm = sumOfSquaredWeights == 0 ? 1 : similarity.queryNorm(sumOfSquaredWeights);
+		for (int i = 0; i < size; i++)
+			scores[i] *= query.isCoordDisabled() ? queryNorm : queryNorm * similarity.coord(overlaps[i], maxCoord);
+		return size == capacity ? new Hits(docs, scores) : new Hits(Arrays.copyOf(docs, size),
+				Arrays.copyOf(scores, size));
+	}
+
+	/**
+	 * The documents matched by a query, in no particular order
+	 */
+	static class Hits {
+
+		final int[] docs;
+		final float[] scores;
+
+		private Hits(final int[] docs, final float[] scores) {
+			this.docs = docs;
+			this.scores = scores;
+		}
+
+		/**
+		 * @param numHits  the maximum number of documents, or 0 for all
+		 * @param minScore the minimum score
+		 * @return the best documents, the highest scores first
+		 */
+		final ScoreDoc[] top(final int numHits, final double minScore) {
+			final PriorityQueue<ScoreDoc> queue = new PriorityQueue<ScoreDoc>(Math.max(1, numHits),
+					(sd1, sd2) -> sd1.score != sd2.score ? Float.compare(sd1.score, sd2.score) : sd2.doc - sd1.doc);
+			for (int i = 0; i < docs.length; i++) {
+				if (scores[i] < minScore)
+					continue;
+				if (numHits > 0 && queue.size() == numHits) {
+					final ScoreDoc worst = queue.peek();
+					if (scores[i] < worst.score || (scores[i] == worst.score && docs[i] > worst.doc))
+						continue;
+					queue.poll();
+				}
+				queue.add(new ScoreDoc(docs[i], scores[i]));
+			}
+			final ScoreDoc[] topDocs = new ScoreDoc[queue.size()];
+			for (int i = topDocs.length - 1; i >= 0; i--)
+				topDocs[i] = queue.poll();
+			return topDocs;
+		}
+	}
+
+	private static class Postings {
+
+		private final float idf;
+		private final int[] docs;
+		private final float[] weights;
+
+		private Postings(final float idf, final int[] docs, final float[] weights) {
+			this.idf = idf;
+			this.docs = docs;
+			this.weights = weights;
+		}
+	}
+
+	/**
+	 * The weights of the terms of one field: the tf of the similarity
+	 * multiplied by the norm stored in the index, which includes the length
+	 * of the field and its boost.
+	 */
+	private class FieldMatrix {
+
+		private final Map<String, Postings> postings;
+
+		private FieldMatrix(final IndexReader reader, final String fieldName) throws IOException {
+			postings = new HashMap<String, Postings>();
+			final byte[] norms = reader.norms(fieldName);
+			forEachTerm(reader, fieldName, (text, docFreq, termDocs) -> {
+				int[] docs = new int[Math.min(docFreq, maxDoc)];
+				float[] weights = new float[docs.length];
+				int size = 0;
+				while (termDocs.next()) {
+					if (size == docs.length) {
+						docs = Arrays.copyOf(docs, size * 2 + 1);
+						weights = Arrays.copyOf(weights, docs.length);
+					}
+					final int doc = termDocs.doc();
+					float weight = similarity.tf(termDocs.freq());
+					if (norms != null)
+						weight *= similarity.decodeNormValue(norms[doc]);
+					docs[size] = doc;
+					weights[size++] = weight;
+				}
+				if (size == 0)
+					return;
+				postings.put(text, new Postings(similarity.idf(docFreq, maxDoc), Arrays.copyOf(docs, size),
+						Arrays.copyOf(weights, size)));
+			});
+		}
+	}
+
+	private interface TermVisitor {
+
+		void visit(String text, int docFreq, TermDocs termDocs) throws IOException;
+	}
+
+	private static void forEachTerm(final IndexReader reader, final String fieldName, final TermVisitor visitor)
+			throws IOException {
+		final TermEnum termEnum = reader.terms(new Term(fieldName, ""));
+		TermDocs termDocs = null;
+		try {
+			do {
+				final Term term = termEnum.term();
+				if (term == null || !fieldName.equals(term.field()))
+					break;
+				if (termDocs == null)
+					termDocs = reader.termDocs(term);
+				else
+					termDocs.seek(termEnum);
+				visitor.visit(term.text(), termEnum.docFreq(), termDocs);
+			} while (termEnum.next());
+		} finally {
+			if (termDocs != null)
+				termDocs.close();
+			termEnum.close();
+		}
+	}
+}
@@ -24,21 +24,69 @@
 
 package com.jaeksoft.searchlib.logreport;
 
+import java.io.BufferedWriter;
 import java.io.File;
-import java.io.FileWriter;
 import java.io.IOException;
-import java.io.PrintWriter;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
 import java.util.Calendar;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
 
+import com.jaeksoft.searchlib.Logging;
 import com.jaeksoft.searchlib.SearchLibException;
 import com.jaeksoft.searchlib.util.FormatUtils.ThreadSafeDateFormat;
 import com.jaeksoft.searchlib.util.FormatUtils.ThreadSafeSimpleDateFormat;
 import com.jaeksoft.searchlib.util.IOUtils;
-import com.jaeksoft.searchlib.util.SimpleLock;
 
+/**
+ * Write log lines in one file per day.
+ * <p>
+ * The lines are put in a bounded queue, one writer thread formats and writes
+ * them by batches. When the queue is full, the caller either waits or the
+ * line is dropped, depending on the overflow policy. The errors are logged,
+ * the writer thread goes on with the next lines, and a writer thread which
+ * died is started again by the next line. When a new day starts, the file of
+ * the previous day can be handed to an archiver, which runs in its own
+ * thread.
+ */
 public class DailyLogger {
 
-	final private SimpleLock lock = new SimpleLock();
+	public enum OverflowPolicy {
+
+		DROP, BLOCK;
+
+		public static OverflowPolicy find(String name) {
+			if (name != null)
+				for (OverflowPolicy policy : values())
+					if (policy.name().equalsIgnoreCase(name))
+						return policy;
+			return BLOCK;
+		}
+	}
+
+	/**
+	 * A log line, formatted by the writer thread
+	 */
+	public interface Message {
+		void appendTo(StringBuilder sb) throws IOException;
+	}
+
+	private final static int DEFAULT_QUEUE_SIZE = 8192;
+
+	private final static int MAX_BATCH_SIZE = 1024;
+
+	private final static int BUFFER_SIZE = 65536;
+
+	private final static String LINE_SEPARATOR = System.getProperty("line.separator");
 
 	final private static ThreadSafeDateFormat dailyFormat = new ThreadSafeSimpleDateFormat(
 			"yyyy-MM-dd");
@@ -49,77 +97,227 @@ public class DailyLogger {
 
 	final private String filePrefix;
 
-	private long timeLimit;
+	final private OverflowPolicy overflowPolicy;
+
+	final private Consumer<File> archiver;
+
+	final private BlockingQueue<Entry> queue;
 
-	private String currentLogFileName;
+	final private AtomicLong droppedCount = new AtomicLong();
 
-	private PrintWriter printWriter = null;
+	private volatile Thread writerThread = null;
 
-	private FileWriter fileWriter = null;
+	private volatile boolean closing = false;
+
+	// Only used by the writer thread, or by close() once the thread has ended
+
+	private long timeLimit = 0;
+
+	private File currentFile = null;
+
+	private Writer writer = null;
 
 	public DailyLogger(File parentDir, String filePrefix,
 			ThreadSafeDateFormat timeStampFormat) {
+		this(parentDir, filePrefix, timeStampFormat, 0, OverflowPolicy.BLOCK,
+				null);
+	}
+
+	/**
+	 * @param parentDir       the directory of the log files
+	 * @param filePrefix      the prefix of the log file names
+	 * @param timeStampFormat the format of the time stamp written before each
+	 *                        line, or null
+	 * @param queueSize       the maximum number of lines waiting to be written,
+	 *                        0 for the default size
+	 * @param overflowPolicy  what to do when the queue is full
+	 * @param archiver        called with the file of the previous day, or null
+	 */
+	public DailyLogger(File parentDir, String filePrefix,
+			ThreadSafeDateFormat timeStampFormat, int queueSize,
+			OverflowPolicy overflowPolicy, Consumer<File> archiver) {
 		this.parentDir = parentDir;
 		this.filePrefix = filePrefix;
 		this.timeStampFormat = timeStampFormat;
-		setTimeLimit(System.currentTimeMillis());
+		this.overflowPolicy = overflowPolicy;
+		this.archiver = archiver;
+		this.queue = new ArrayBlockingQueue<Entry>(
+				queueSize > 0 ? queueSize : DEFAULT_QUEUE_SIZE);
 	}
 
-	private void setTimeLimit(long millis) {
-		lock.rl.lock();
-		try {
-			close();
-			Calendar cal = Calendar.getInstance();
-			cal.setTimeInMillis(millis);
-			cal.set(Calendar.HOUR, 0);
-			cal.set(Calendar.MINUTE, 0);
-			cal.set(Calendar.SECOND, 0);
-			cal.set(Calendar.MILLISECOND, 0);
-			StringBuilder sb = new StringBuilder(filePrefix);
-			sb.append('.');
-			sb.append(dailyFormat.format(cal.getTime()));
-			currentLogFileName = sb.toString();
-			cal.add(Calendar.DAY_OF_MONTH, 1);
-			timeLimit = cal.getTimeInMillis();
-		} finally {
-			lock.rl.unlock();
+	private static class Entry {
+
+		private final long time;
+		private final Message message;
+
+		private Entry(long time, Message message) {
+			this.time = time;
+			this.message = message;
 		}
 	}
 
-	final private void open() throws IOException {
-		fileWriter = new FileWriter(new File(parentDir, currentLogFileName),
-				true);
-		printWriter = new PrintWriter(fileWriter);
+	private void checkWriter() {
+		final Thread thread = writerThread;
+		if (thread == null || closing || !thread.isAlive())
+			startWriter();
+	}
+
+	private synchronized void startWriter() {
+		closing = false;
+		if (writerThread != null && writerThread.isAlive())
+			return;
+		writerThread = new Thread(this::writeLoop, "DailyLogger "
+				+ filePrefix);
+		writerThread.setDaemon(true);
+		writerThread.start();
 	}
 
-	final public void close() {
-		lock.rl.lock();
+	/**
+	 * Write the pending lines and close the file. The writer thread is
+	 * started again by the next line.
+	 */
+	final public synchronized void close() {
+		final Thread thread = writerThread;
+		if (thread == null)
+			return;
+		closing = true;
 		try {
-			IOUtils.close(printWriter, fileWriter);
-			printWriter = null;
-			fileWriter = null;
-		} finally {
-			lock.rl.unlock();
+			thread.join();
+		} catch (InterruptedException e) {
+			// The writer thread ends by itself once the queue is empty
+			Thread.currentThread().interrupt();
+			return;
 		}
+		writerThread = null;
+		// The lines queued while the writer thread was ending
+		drain(new ArrayList<Entry>(MAX_BATCH_SIZE), new StringBuilder());
+		closeFile();
+	}
+
+	final protected void log(final String message) throws SearchLibException {
+		log(sb -> sb.append(message));
 	}
 
-	final protected void log(String message) throws SearchLibException {
-		lock.rl.lock();
+	final protected void log(Message message) throws SearchLibException {
+		Entry entry = new Entry(System.currentTimeMillis(), message);
+		checkWriter();
+		if (overflowPolicy == OverflowPolicy.DROP) {
+			if (!queue.offer(entry))
+				droppedCount.incrementAndGet();
+			return;
+		}
 		try {
-			long time = System.currentTimeMillis();
-			if (time >= timeLimit)
-				setTimeLimit(time);
-			if (printWriter == null)
-				open();
-			if (timeStampFormat != null)
-				printWriter.print(timeStampFormat.format(time));
-			printWriter.println(message);
-			printWriter.flush();
-		} catch (IOException e) {
-			close();
+			// The writer thread is checked again while waiting, the queue is
+			// never left full without a thread to empty it
+			while (!queue.offer(entry, 1, TimeUnit.SECONDS))
+				checkWriter();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
 			throw new SearchLibException(e);
+		}
+	}
+
+	private void writeLoop() {
+		List<Entry> batch = new ArrayList<Entry>(MAX_BATCH_SIZE);
+		StringBuilder sb = new StringBuilder();
+		try {
+			while (!closing) {
+				Entry entry = queue.poll(1, TimeUnit.SECONDS);
+				if (entry == null)
+					continue;
+				batch.add(entry);
+				queue.drainTo(batch, MAX_BATCH_SIZE - 1);
+				write(batch, sb);
+				batch.clear();
+			}
+			drain(batch, sb);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
 		} finally {
-			lock.rl.unlock();
+			closeFile();
+		}
+	}
+
+	/**
+	 * Write the lines of the queue until it is empty
+	 */
+	private void drain(List<Entry> batch, StringBuilder sb) {
+		while (queue.drainTo(batch, MAX_BATCH_SIZE) > 0) {
+			write(batch, sb);
+			batch.clear();
 		}
 	}
+
+	private void write(List<Entry> batch, StringBuilder sb) {
+		try {
+			for (Entry entry : batch) {
+				sb.setLength(0);
+				try {
+					if (timeStampFormat != null)
+						sb.append(timeStampFormat.format(entry.time));
+					entry.message.appendTo(sb);
+				} catch (Throwable e) {
+					// Only this line is lost
+					Logging.error("Cannot format a line of the log " + filePrefix, e);
+					continue;
+				}
+				sb.append(LINE_SEPARATOR);
+				if (entry.time >= timeLimit)
+					rotate(entry.time);
+				if (writer == null)
+					open();
+				writer.append(sb);
+			}
+			if (writer != null)
+				writer.flush();
+		} catch (Throwable e) {
+			// The batch is lost, the writer thread goes on with the next one
+			Logging.error("Cannot write the log " + filePrefix, e);
+			closeFile();
+		}
+		long dropped = droppedCount.getAndSet(0);
+		if (dropped > 0)
+			Logging.warn(dropped + " line(s) dropped from the log "
+					+ filePrefix);
+	}
+
+	private void rotate(long millis) {
+		File previousFile = currentFile;
+		closeFile();
+		Calendar cal = Calendar.getInstance();
+		cal.setTimeInMillis(millis);
+		cal.set(Calendar.HOUR_OF_DAY, 0);
+		cal.set(Calendar.MINUTE, 0);
+		cal.set(Calendar.SECOND, 0);
+		cal.set(Calendar.MILLISECOND, 0);
+		StringBuilder sb = new StringBuilder(filePrefix);
+		sb.append('.');
+		sb.append(dailyFormat.format(cal.getTime()));
+		currentFile = new File(parentDir, sb.toString());
+		cal.add(Calendar.DAY_OF_MONTH, 1);
+		timeLimit = cal.getTimeInMillis();
+		if (archiver != null && previousFile != null
+				&& !previousFile.equals(currentFile) && previousFile.exists())
+			archive(previousFile);
+	}
+
+	private void archive(final File file) {
+		Thread thread = new Thread(() -> archiver.accept(file),
+				"DailyLogger archive " + file.getName());
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	private void open() throws IOException {
+		FileChannel channel = FileChannel.open(currentFile.toPath(),
+				StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.APPEND);
+		writer = new BufferedWriter(Channels.newWriter(channel,
+				StandardCharsets.UTF_8.newEncoder(), -1), BUFFER_SIZE);
+	}
+
+	private void closeFile() {
+		IOUtils.close(writer);
+		writer = null;
+	}
 }
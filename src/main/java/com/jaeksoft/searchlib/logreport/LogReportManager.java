@@ -28,12 +28,15 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.UnsupportedEncodingException;
 import java.net.URLEncoder;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipOutputStream;
 
+import com.jaeksoft.searchlib.ClientFactory;
+import com.jaeksoft.searchlib.InstanceProperties;
+import com.jaeksoft.searchlib.Logging;
 import com.jaeksoft.searchlib.SearchLibException;
 import com.jaeksoft.searchlib.request.AbstractRequest;
 import com.jaeksoft.searchlib.request.AbstractSearchRequest;
@@ -57,7 +60,10 @@ public class LogReportManager {
 		dirLog = new File(StartStopListener.OPENSEARCHSERVER_DATA_FILE, "logs");
 		if (!dirLog.exists())
 			dirLog.mkdir();
-		logger = new DailyLogger(getLogDirectory(), "report." + indexName, timeStampFormat);
+		InstanceProperties properties = ClientFactory.INSTANCE.properties;
+		logger = new DailyLogger(getLogDirectory(), "report." + indexName, timeStampFormat,
+				properties.getLogReportQueueSize(), properties.getLogReportOverflow(),
+				properties.isLogReportArchive() ? this::archiveFileQuietly : null);
 	}
 
 	public void close() {
@@ -102,6 +108,14 @@ public class LogReportManager {
 		}
 	}
 
+	private void archiveFileQuietly(File file) {
+		try {
+			archiveFile(file.getName());
+		} catch (IOException e) {
+			Logging.warn("Cannot archive the log file " + file, e);
+		}
+	}
+
 	public void deleteFile(String filename) throws IOException {
 		File logFile = new File(getLogDirectory(), filename);
 		if (!logFile.exists())
@@ -110,28 +124,44 @@ public class LogReportManager {
 			throw new IOException("Unable to delete " + logFile.getAbsolutePath());
 	}
 
-	final public void log(AbstractRequest request, Timer timer, AbstractResult<?> result) throws SearchLibException {
-		if (request == null)
-			return;
-		if (!request.isLogReport())
-			return;
-		try {
+	/**
+	 * Keep the values of a logged request, the line is built by the writer
+	 * thread
+	 */
+	private static class ReportMessage implements DailyLogger.Message {
+
+		private final String queryString;
+		private final Long duration;
+		private final Integer numFound;
+		private final Integer start;
+		private final List<String> customLogs;
+
+		private ReportMessage(AbstractRequest request, Timer timer, AbstractResult<?> result) {
 			AbstractSearchRequest searchRequest = request instanceof AbstractSearchRequest
 					? (AbstractSearchRequest) request : null;
-			StringBuilder sb = new StringBuilder();
+			queryString = searchRequest != null ? searchRequest.getQueryString() : null;
+			duration = timer != null ? timer.getDuration() : null;
+			numFound = result instanceof AbstractResultSearch ? ((AbstractResultSearch<?>) result).getNumFound()
+					: null;
+			start = searchRequest != null ? searchRequest.getStart() : null;
+			List<String> logs = searchRequest != null ? searchRequest.getCustomLogs() : null;
+			customLogs = logs != null ? new ArrayList<String>(logs) : null;
+		}
+
+		@Override
+		public void appendTo(StringBuilder sb) throws IOException {
 			sb.append('\u0009');
-			if (searchRequest != null)
-				sb.append(URLEncoder.encode(searchRequest.getQueryString(), "UTF-8"));
+			if (queryString != null)
+				sb.append(URLEncoder.encode(queryString, "UTF-8"));
 			sb.append('\u0009');
-			if (timer != null)
-				sb.append(timer.getDuration());
+			if (duration != null)
+				sb.append(duration);
 			sb.append('\u0009');
-			if (result != null && result instanceof AbstractResultSearch)
-				sb.append(((AbstractResultSearch<?>) result).getNumFound());
+			if (numFound != null)
+				sb.append(numFound);
 			sb.append('\u0009');
-			if (searchRequest != null) {
-				sb.append(searchRequest.getStart());
-				List<String> customLogs = searchRequest.getCustomLogs();
+			if (start != null) {
+				sb.append(start);
 				if (customLogs != null) {
 					for (String customLog : customLogs) {
 						sb.append('\u0009');
@@ -139,9 +169,14 @@ public class LogReportManager {
 					}
 				}
 			}
-			logger.log(sb.toString());
-		} catch (UnsupportedEncodingException e) {
-			throw new SearchLibException(e);
 		}
 	}
+
+	final public void log(AbstractRequest request, Timer timer, AbstractResult<?> result) throws SearchLibException {
+		if (request == null)
+			return;
+		if (!request.isLogReport())
+			return;
+		logger.log(new ReportMessage(request, timer, result));
+	}
 }
@@ -24,31 +24,36 @@
 
 package com.jaeksoft.searchlib.parser;
 
-import java.io.ByteArrayOutputStream;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
 import java.io.File;
-import java.io.FileNotFoundException;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Set;
 
 import javax.xml.transform.TransformerConfigurationException;
 
-import org.apache.commons.exec.ExecuteException;
 import org.apache.commons.lang3.SystemUtils;
 import org.xml.sax.SAXException;
 
 import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonInclude.Include;
-import com.jaeksoft.searchlib.Logging;
 import com.jaeksoft.searchlib.SearchLibException;
 import com.jaeksoft.searchlib.analysis.LanguageEnum;
 import com.jaeksoft.searchlib.index.IndexDocument;
 import com.jaeksoft.searchlib.streamlimiter.StreamLimiter;
 import com.jaeksoft.searchlib.streamlimiter.StreamLimiterFile;
 import com.jaeksoft.searchlib.util.ExecuteUtils;
-import com.jaeksoft.searchlib.util.IOUtils;
 import com.jaeksoft.searchlib.util.JsonUtils;
 import com.jaeksoft.searchlib.util.StringUtils;
 import com.jaeksoft.searchlib.util.XPathParser;
@@ -58,11 +63,13 @@ import com.jaeksoft.searchlib.webservice.document.DocumentUpdate;
 
 public class ExternalParser {
 
-	private final static String FILE_PARSER_COMMAND = "parserCommand.json";
-	private final static String FILE_PARSER_CONFIG = "parserConfig.xml";
-	private final static String FILE_PARSER_RESULTS = "parserResults.xml";
 	private final static String FILE_PARSER_ENCODING = "UTF-8";
 
+	/**
+	 * A worker is replaced when its heap is used above this ratio
+	 */
+	private final static double MAX_MEMORY_RATIO = 0.75;
+
 	private final static String ADDITIONAL_CLASSPATH;
 
 	static {
@@ -167,100 +174,104 @@ public class ExternalParser {
 		}
 	}
 
-	public final static void doParserContent(Parser parser, File tempDir,
-			final IndexDocument sourceDocument,
-			final StreamLimiter streamLimiter, final LanguageEnum lang)
-			throws IOException, SearchLibException,
-			TransformerConfigurationException, SAXException {
-		PrintWriter configWriter = null;
-		ByteArrayOutputStream err = null;
-		ByteArrayOutputStream out = null;
-		try {
-			// Prepare the files JSON and XML
-			Command command = new Command(sourceDocument, streamLimiter, lang);
-			File commandFile = new File(tempDir, FILE_PARSER_COMMAND);
-			JsonUtils.jsonToFile(command, commandFile);
-			File configFile = new File(tempDir, FILE_PARSER_CONFIG);
-			configWriter = new PrintWriter(configFile, FILE_PARSER_ENCODING);
-			XmlWriter xmlWriter = new XmlWriter(configWriter,
-					FILE_PARSER_ENCODING);
-			parser.writeXmlConfig(xmlWriter);
-			xmlWriter.endDocument();
-			configWriter.close();
+	final static String getClassPath() {
+		final String classPath = ExecuteUtils.getClassPath();
+		if (StringUtils.isEmpty(ADDITIONAL_CLASSPATH))
+			return classPath;
+		return StringUtils.fastConcat(classPath, SystemUtils.PATH_SEPARATOR, ADDITIONAL_CLASSPATH);
+	}
 
-			// Execute
-			out = new ByteArrayOutputStream();
-			err = new ByteArrayOutputStream();
-			String classPath = ExecuteUtils.getClassPath();
-			if (!StringUtils.isEmpty(ADDITIONAL_CLASSPATH))
-				classPath = StringUtils.fastConcat(classPath,
-						SystemUtils.PATH_SEPARATOR, ADDITIONAL_CLASSPATH);
-			int statusCode = ExecuteUtils.command(tempDir, "java", classPath,
-					true, out, err, 3600000L, ExternalParser.class.getName());
-			if (statusCode != 0)
-				throw new SearchLibException(err.toString("UTF-8"));
-			File fileParserResults = new File(tempDir, FILE_PARSER_RESULTS);
-			if (!fileParserResults.exists())
-				return;
-			Results results = JsonUtils.getObject(fileParserResults,
-					Results.class);
-			if (!StringUtils.isEmpty(results.error)) {
-				Logging.warn("External parser error: " + err.toString());
-				throw new SearchLibException.ExternalParserException(
-						results.error);
-			}
-			parser.setExternalResults(results);
-		} catch (ExecuteException e) {
-			if (err != null)
-				Logging.error(err.toString("UTF-8"));
-			throw e;
-		} finally {
-			IOUtils.close(configWriter, err, out);
-		}
+	final static void writeFrame(final DataOutputStream output, final byte[] bytes) throws IOException {
+		output.writeInt(bytes.length);
+		output.write(bytes);
 	}
 
-	public final static void main(String[] args) {
-		Results results = null;
+	final static byte[] readFrame(final DataInputStream input) throws IOException {
+		final byte[] bytes = new byte[input.readInt()];
+		input.readFully(bytes);
+		return bytes;
+	}
+
+	public final static void doParserContent(final Parser parser, final ExternalParserPool pool,
+			final IndexDocument sourceDocument, final StreamLimiter streamLimiter, final LanguageEnum lang)
+			throws IOException, SearchLibException, TransformerConfigurationException, SAXException {
+		final Command command = new Command(sourceDocument, streamLimiter, lang);
+		final StringWriter configWriter = new StringWriter();
+		final XmlWriter xmlWriter = new XmlWriter(new PrintWriter(configWriter), FILE_PARSER_ENCODING);
+		parser.writeXmlConfig(xmlWriter);
+		xmlWriter.endDocument();
+		final Results results = pool.parse(configWriter.toString(), command);
+		if (results == null)
+			return;
+		if (!StringUtils.isEmpty(results.error))
+			throw new SearchLibException.ExternalParserException(results.error);
+		parser.setExternalResults(results);
+	}
+
+	private static Results parse(final byte[] configBytes, final byte[] commandBytes) {
 		try {
-			File fileParserConfig = new File(FILE_PARSER_CONFIG);
-			if (!fileParserConfig.exists())
-				throw new FileNotFoundException(
-						fileParserConfig.getAbsolutePath());
-			XPathParser xpp = new XPathParser(fileParserConfig);
-			Parser parser = (Parser) ParserFactory.create(null, xpp,
-					xpp.getNode("/parser"));
+			XPathParser xpp = new XPathParser(new ByteArrayInputStream(configBytes));
+			Parser parser = (Parser) ParserFactory.create(null, xpp, xpp.getNode("/parser"));
 			if (parser == null)
 				throw new SearchLibException("Parser not found");
-			File fileParserCommand = new File(FILE_PARSER_COMMAND);
-			if (!fileParserCommand.exists())
-				throw new FileNotFoundException(
-						fileParserCommand.getAbsolutePath());
-			Command command = JsonUtils.getObject(fileParserCommand,
-					Command.class);
+			Command command =
+					JsonUtils.getObject(new String(commandBytes, StandardCharsets.UTF_8), Command.class);
 			if (command == null)
 				throw new SearchLibException("Not parsing command found");
-			StartStopListener.OPENSEARCHSERVER_DATA_FILE = new File(
-					command.opensearchserver_data_path);
-			IndexDocument indexSourceDocument = command.sourceDocument == null ? null
-					: DocumentUpdate.getIndexDocument(command.sourceDocument);
-			StreamLimiterFile streamLimiterFile = new StreamLimiterFile(
-					parser.getSizeLimit(), new File(command.filePath),
-					command.originalURL);
-			parser.doParserContent(null, indexSourceDocument,
-					streamLimiterFile, command.lang);
-			results = parser.getExternalResults();
-		} catch (Exception e) {
-			results = new Results(e);
-		} finally {
-			File fileParserResults = new File(FILE_PARSER_RESULTS);
-			if (fileParserResults.exists())
-				fileParserResults.delete();
+			StartStopListener.OPENSEARCHSERVER_DATA_FILE = new File(command.opensearchserver_data_path);
+			IndexDocument indexSourceDocument =
+					command.sourceDocument == null ? null : DocumentUpdate.getIndexDocument(command.sourceDocument);
+			StreamLimiterFile streamLimiterFile =
+					new StreamLimiterFile(parser.getSizeLimit(), new File(command.filePath), command.originalURL);
 			try {
-				JsonUtils.jsonToFile(results, fileParserResults);
-			} catch (Exception e) {
-				e.printStackTrace();
-				System.exit(1);
+				parser.doParserContent(null, indexSourceDocument, streamLimiterFile, command.lang);
+			} finally {
+				streamLimiterFile.close();
+			}
+			return parser.getExternalResults();
+		} catch (Exception e) {
+			return new Results(e);
+		}
+	}
+
+	/**
+	 * @return true if the worker should be replaced
+	 */
+	private static boolean isMemoryExhausted() {
+		final Runtime runtime = Runtime.getRuntime();
+		return runtime.totalMemory() - runtime.freeMemory() > runtime.maxMemory() * MAX_MEMORY_RATIO;
+	}
+
+	/**
+	 * The worker loop of an external parser process. It reads the parser
+	 * configuration and the command from the standard input and writes the
+	 * results on the standard output, until the standard input is closed.
+	 *
+	 * @param args
+	 */
+	public final static void main(String[] args) {
+		final DataInputStream input = new DataInputStream(new BufferedInputStream(System.in));
+		final DataOutputStream output =
+				new DataOutputStream(new BufferedOutputStream(new FileOutputStream(FileDescriptor.out)));
+		// The standard output is reserved for the results
+		System.setOut(System.err);
+		try {
+			for (; ; ) {
+				final byte[] configBytes;
+				try {
+					configBytes = readFrame(input);
+				} catch (EOFException e) {
+					break;
+				}
+				final byte[] commandBytes = readFrame(input);
+				final Results results = parse(configBytes, commandBytes);
+				output.writeBoolean(isMemoryExhausted());
+				writeFrame(output, JsonUtils.toJsonString(results).getBytes(StandardCharsets.UTF_8));
+				output.flush();
 			}
+		} catch (IOException e) {
+			e.printStackTrace();
+			System.exit(1);
 		}
 		System.exit(0);
 	}
@@ -0,0 +1,259 @@
+/**
+ * License Agreement for OpenSearchServer
+ * <p/>
+ * Copyright (C) 2017 Emmanuel Keller / Jaeksoft
+ * <p/>
+ * http://www.open-search-server.com
+ * <p/>
+ * This file is part of OpenSearchServer.
+ * <p/>
+ * OpenSearchServer is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * <p/>
+ * OpenSearchServer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * <p/>
+ * You should have received a copy of the GNU General Public License
+ * along with OpenSearchServer.
+ * If not, see <http://www.gnu.org/licenses/>.
+ **/
+
+package com.jaeksoft.searchlib.parser;
+
+import com.jaeksoft.searchlib.ClientCatalog;
+import com.jaeksoft.searchlib.Logging;
+import com.jaeksoft.searchlib.SearchLibException;
+import com.jaeksoft.searchlib.util.ExecuteUtils;
+import com.jaeksoft.searchlib.util.IOUtils;
+import com.jaeksoft.searchlib.util.JsonUtils;
+import com.jaeksoft.searchlib.util.StringUtils;
+import com.jaeksoft.searchlib.util.ThreadUtils;
+import org.apache.commons.lang3.SystemUtils;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A pool of external parser processes. Each worker is a JVM running
+ * {@link ExternalParser#main(String[])}, it parses one document at a time,
+ * the jobs and the results are exchanged as length prefixed frames on its
+ * standard input and output.
+ * <p>
+ * A worker which crashes or exceeds the job timeout is destroyed, only the
+ * current document fails. A worker is replaced when its heap is nearly full
+ * or after a number of jobs.
+ */
+public class ExternalParserPool implements Closeable {
+
+	private final static long JOB_TIMEOUT = TimeUnit.HOURS.toMillis(1);
+	private final static long IDLE_TIMEOUT = TimeUnit.MINUTES.toMillis(5);
+	private final static int MAX_JOBS_PER_WORKER = 1000;
+
+	private final int size;
+	private final Semaphore permits;
+	private final LinkedList<Worker> idleWorkers;
+	private final ScheduledExecutorService scheduler;
+	private volatile boolean closed;
+
+	/**
+	 * @param size the maximum number of worker processes
+	 */
+	ExternalParserPool(final int size) {
+		this.size = size;
+		this.permits = new Semaphore(size, true);
+		this.idleWorkers = new LinkedList<>();
+		this.scheduler = Executors.newSingleThreadScheduledExecutor(
+				new ThreadUtils.ThreadGroupFactory(ClientCatalog.getThreadGroup()));
+		this.closed = false;
+		scheduler.scheduleWithFixedDelay(this::closeIdleWorkers, IDLE_TIMEOUT, IDLE_TIMEOUT, TimeUnit.MILLISECONDS);
+	}
+
+	final int getSize() {
+		return size;
+	}
+
+	/**
+	 * Parse a document with an idle worker, or a new one if none is idle.
+	 *
+	 * @param parserConfig the XML configuration of the parser
+	 * @param command      the document to parse
+	 * @return the results returned by the worker
+	 * @throws IOException
+	 * @throws SearchLibException
+	 */
+	final ExternalParser.Results parse(final String parserConfig, final ExternalParser.Command command)
+			throws IOException, SearchLibException {
+		final byte[] configBytes = parserConfig.getBytes(StandardCharsets.UTF_8);
+		final byte[] commandBytes = JsonUtils.toJsonString(command).getBytes(StandardCharsets.UTF_8);
+		try {
+			permits.acquire();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException(e);
+		}
+		try {
+			if (closed)
+				throw new SearchLibException("The external parser pool is closed");
+			Worker worker = pollIdleWorker();
+			if (worker == null)
+				worker = new Worker();
+			boolean reusable = false;
+			try {
+				final ExternalParser.Results results = worker.execute(configBytes, commandBytes);
+				reusable = worker.isReusable();
+				return results;
+			} finally {
+				if (reusable)
+					releaseWorker(worker);
+				else
+					worker.close();
+			}
+		} finally {
+			permits.release();
+		}
+	}
+
+	private Worker pollIdleWorker() {
+		synchronized (idleWorkers) {
+			Worker worker;
+			while ((worker = idleWorkers.pollLast()) != null) {
+				if (worker.process.isAlive())
+					return worker;
+				worker.close();
+			}
+			return null;
+		}
+	}
+
+	private void releaseWorker(final Worker worker) {
+		synchronized (idleWorkers) {
+			if (!closed) {
+				worker.lastUse = System.currentTimeMillis();
+				idleWorkers.addLast(worker);
+				return;
+			}
+		}
+		worker.close();
+	}
+
+	private void closeIdleWorkers() {
+		final long limit = System.currentTimeMillis() - IDLE_TIMEOUT;
+		final List<Worker> expired = new ArrayList<>();
+		synchronized (idleWorkers) {
+			final Iterator<Worker> iterator = idleWorkers.iterator();
+			while (iterator.hasNext()) {
+				final Worker worker = iterator.next();
+				if (worker.lastUse < limit) {
+					iterator.remove();
+					expired.add(worker);
+				}
+			}
+		}
+		for (Worker worker : expired)
+			worker.close();
+	}
+
+	@Override
+	public void close() {
+		closed = true;
+		synchronized (idleWorkers) {
+			for (Worker worker : idleWorkers)
+				worker.close();
+			idleWorkers.clear();
+		}
+		scheduler.shutdownNow();
+	}
+
+	/**
+	 * One external parser process
+	 */
+	private class Worker implements Closeable {
+
+		private final Process process;
+		private final DataInputStream input;
+		private final DataOutputStream output;
+		private volatile boolean timeout;
+		private boolean recycle;
+		private int jobs;
+		private long lastUse;
+
+		private Worker() throws IOException {
+			final List<String> args = new ArrayList<>();
+			args.add("java");
+			if (!StringUtils.isEmpty(SystemUtils.JAVA_IO_TMPDIR))
+				args.add(StringUtils.fastConcat("-Djava.io.tmpdir=", SystemUtils.JAVA_IO_TMPDIR));
+			args.add(ExternalParser.class.getName());
+			final ProcessBuilder processBuilder = new ProcessBuilder(args);
+			processBuilder.environment().put("CLASSPATH", ExternalParser.getClassPath());
+			processBuilder.redirectError(ProcessBuilder.Redirect.INHERIT);
+			process = processBuilder.start();
+			input = new DataInputStream(new BufferedInputStream(process.getInputStream()));
+			output = new DataOutputStream(new BufferedOutputStream(process.getOutputStream()));
+			timeout = false;
+			recycle = false;
+			jobs = 0;
+			lastUse = System.currentTimeMillis();
+		}
+
+		private ExternalParser.Results execute(final byte[] configBytes, final byte[] commandBytes)
+				throws IOException, SearchLibException {
+			jobs++;
+			final ScheduledFuture<?> watchdog = scheduler.schedule(() -> {
+				timeout = true;
+				process.destroyForcibly();
+			}, JOB_TIMEOUT, TimeUnit.MILLISECONDS);
+			final byte[] resultsBytes;
+			try {
+				ExternalParser.writeFrame(output, configBytes);
+				ExternalParser.writeFrame(output, commandBytes);
+				output.flush();
+				recycle = input.readBoolean();
+				resultsBytes = ExternalParser.readFrame(input);
+			} catch (IOException e) {
+				if (timeout)
+					throw new SearchLibException.ExternalParserException("External parser timeout");
+				throw new SearchLibException.ExternalParserException(
+						"External parser failure: " + (e.getMessage() == null ? e.toString() : e.getMessage()));
+			} finally {
+				watchdog.cancel(false);
+			}
+			return JsonUtils.getObject(new String(resultsBytes, StandardCharsets.UTF_8),
+					ExternalParser.Results.class);
+		}
+
+		private boolean isReusable() {
+			return !recycle && jobs < MAX_JOBS_PER_WORKER && process.isAlive();
+		}
+
+		@Override
+		public void close() {
+			IOUtils.close(output, input);
+			try {
+				if (!process.waitFor(5, TimeUnit.SECONDS))
+					process.destroyForcibly();
+			} catch (InterruptedException e) {
+				process.destroyForcibly();
+				Thread.currentThread().interrupt();
+				Logging.warn(e);
+			}
+		}
+	}
+}
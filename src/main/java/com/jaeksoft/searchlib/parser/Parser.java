@@ -42,7 +42,6 @@ import com.jaeksoft.searchlib.analysis.LanguageEnum;
 import com.jaeksoft.searchlib.index.IndexDocument;
 import com.jaeksoft.searchlib.streamlimiter.LimitException;
 import com.jaeksoft.searchlib.streamlimiter.StreamLimiter;
-import com.jaeksoft.searchlib.util.FileUtils;
 import com.jaeksoft.searchlib.util.StringUtils;
 
 public abstract class Parser extends ParserFactory {
@@ -125,19 +124,19 @@ public abstract class Parser extends ParserFactory {
 				t.getMessage());
 	}
 
-	final public void doParserContentExternal(final IndexDocument sourceDocument, final StreamLimiter streamLimiter,
-			final LanguageEnum lang) {
+	final public void doParserContentExternal(final ParserSelector parserSelector, final IndexDocument sourceDocument,
+			final StreamLimiter streamLimiter, final LanguageEnum lang) {
 		if (!externalAllowed) {
-			doParserContent(null, sourceDocument, streamLimiter, lang);
+			doParserContent(parserSelector, sourceDocument, streamLimiter, lang);
 			return;
 		}
+		this.parserSelector = parserSelector;
 		this.streamLimiter = streamLimiter;
 		if (sourceDocument != null)
 			this.sourceDocument = sourceDocument;
-		File tempDir = null;
 		try {
-			tempDir = FileUtils.createTempDirectory("oss-external-parser", "");
-			ExternalParser.doParserContent(this, tempDir, sourceDocument, streamLimiter, lang);
+			ExternalParser.doParserContent(this, parserSelector.getExternalParserPool(), sourceDocument,
+					streamLimiter, lang);
 		} catch (IOException e) {
 			this.error = e;
 			Logging.warn(getErrorText(e), e);
@@ -150,11 +149,6 @@ public abstract class Parser extends ParserFactory {
 		} catch (SAXException e) {
 			this.error = e;
 			Logging.warn(getErrorText(e), e);
-		} finally {
-			if (tempDir != null)
-				if (tempDir.exists())
-					if (tempDir.isDirectory())
-						FileUtils.deleteDirectoryQuietly(tempDir);
 		}
 	}
 
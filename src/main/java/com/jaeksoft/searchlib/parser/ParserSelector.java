@@ -69,6 +69,8 @@ public class ParserSelector implements XmlWriter.Interface {
 	private ParserFactory[] parserFactoryArray;
 	private Map<String, Set<ParserFactory>> mimeTypeParserMap;
 	private Map<String, ParserFactory> extensionParserMap;
+	private int externalParserPoolSize;
+	private ExternalParserPool externalParserPool;
 
 	public ParserSelector(Config config) {
 		this.config = config;
@@ -82,6 +84,8 @@ public class ParserSelector implements XmlWriter.Interface {
 		extensionParserMap = new TreeMap<String, ParserFactory>();
 		parserFactoryMap = new TreeMap<String, ParserFactory>();
 		parserFactoryArray = null;
+		externalParserPoolSize = 0;
+		externalParserPool = null;
 	}
 
 	/**
@@ -280,6 +284,74 @@ public class ParserSelector implements XmlWriter.Interface {
 		}
 	}
 
+	/**
+	 * @return the number of external parser processes, 0 means one per
+	 * available processor
+	 */
+	public int getExternalParserPoolSize() {
+		rwl.r.lock();
+		try {
+			return externalParserPoolSize;
+		} finally {
+			rwl.r.unlock();
+		}
+	}
+
+	/**
+	 * @param externalParserPoolSize the number of external parser processes, 0
+	 *                               means one per available processor
+	 */
+	public void setExternalParserPoolSize(int externalParserPoolSize) {
+		rwl.w.lock();
+		try {
+			this.externalParserPoolSize = externalParserPoolSize;
+			closeExternalParserPool();
+		} finally {
+			rwl.w.unlock();
+		}
+	}
+
+	/**
+	 * @return the pool of external parser processes, started on first use
+	 */
+	ExternalParserPool getExternalParserPool() {
+		rwl.r.lock();
+		try {
+			if (externalParserPool != null)
+				return externalParserPool;
+		} finally {
+			rwl.r.unlock();
+		}
+		rwl.w.lock();
+		try {
+			if (externalParserPool != null)
+				return externalParserPool;
+			return externalParserPool = new ExternalParserPool(
+					externalParserPoolSize > 0 ? externalParserPoolSize : Runtime.getRuntime().availableProcessors());
+		} finally {
+			rwl.w.unlock();
+		}
+	}
+
+	private void closeExternalParserPool() {
+		if (externalParserPool == null)
+			return;
+		externalParserPool.close();
+		externalParserPool = null;
+	}
+
+	/**
+	 * Stop the external parser processes
+	 */
+	public void close() {
+		rwl.w.lock();
+		try {
+			closeExternalParserPool();
+		} finally {
+			rwl.w.unlock();
+		}
+	}
+
 	public ParserFactory[] getParserFactoryArray() {
 		rwl.r.lock();
 		try {
@@ -393,6 +465,8 @@ public class ParserSelector implements XmlWriter.Interface {
 
 	private final static String WEB_CRAWLER_FAILOVER_ATTRIBUTE = "webCrawlerFailOvert";
 
+	private final static String EXTERNAL_PARSER_POOL_SIZE_ATTRIBUTE = "externalParserPoolSize";
+
 	private void fromXmlConfig(Config config, XPathParser xpp, Node parentNode)
 			throws XPathExpressionException, DOMException, IOException, SearchLibException {
 
@@ -402,6 +476,8 @@ public class ParserSelector implements XmlWriter.Interface {
 		webCrawlerDefaultParserName = XPathParser.getAttributeString(parentNode, WEB_CRAWLER_DEFAULT_ATTRIBUTE);
 		webCrawlerFailOverParserName = XPathParser.getAttributeString(parentNode, WEB_CRAWLER_FAILOVER_ATTRIBUTE);
 
+		externalParserPoolSize = XPathParser.getAttributeValue(parentNode, EXTERNAL_PARSER_POOL_SIZE_ATTRIBUTE);
+
 		NodeList parserNodes = xpp.getNodeList(parentNode, "parser");
 		for (int i = 0; i < parserNodes.getLength(); i++) {
 			Node parserNode = parserNodes.item(i);
@@ -422,7 +498,9 @@ public class ParserSelector implements XmlWriter.Interface {
 		try {
 			xmlWriter.startElement("parsers", WEB_CRAWLER_DEFAULT_ATTRIBUTE, webCrawlerDefaultParserName,
 					WEB_CRAWLER_FAILOVER_ATTRIBUTE, webCrawlerFailOverParserName, FILE_CRAWLER_DEFAULT_ATTRIBUTE,
-					fileCrawlerDefaultParserName, FILE_CRAWLER_FAILOVER_ATTRIBUTE, fileCrawlerFailOverParserName);
+					fileCrawlerDefaultParserName, FILE_CRAWLER_FAILOVER_ATTRIBUTE, fileCrawlerFailOverParserName,
+					EXTERNAL_PARSER_POOL_SIZE_ATTRIBUTE,
+					externalParserPoolSize > 0 ? Integer.toString(externalParserPoolSize) : null);
 			for (ParserFactory parser : parserFactoryMap.values())
 				parser.writeXmlConfig(xmlWriter);
 			xmlWriter.endElement();
@@ -452,7 +530,7 @@ public class ParserSelector implements XmlWriter.Interface {
 					throw new SearchLibException("Infinite loop in parser fail over loop");
 				parserSet.add(parser.getParserType());
 				if (externalParser)
-					parser.doParserContentExternal(sourceDocument, streamLimiter, lang);
+					parser.doParserContentExternal(this, sourceDocument, streamLimiter, lang);
 				else
 					parser.doParserContent(this, sourceDocument, streamLimiter, lang);
 				if (parser.getError() == null)
@@ -28,6 +28,7 @@ import java.io.File;
 import java.io.IOException;
 import java.net.URI;
 
+import org.apache.http.HttpEntity;
 import org.apache.http.client.methods.HttpPut;
 import org.apache.http.entity.ContentType;
 import org.apache.http.entity.FileEntity;
@@ -36,11 +37,15 @@ public class UriWriteStream extends UriHttp {
 
 	public UriWriteStream(final int timeOut, URI uri, File file)
 			throws IOException {
+		this(timeOut, uri, new FileEntity(file, ContentType.DEFAULT_BINARY));
+	}
+
+	public UriWriteStream(final int timeOut, URI uri, HttpEntity entity)
+			throws IOException {
 		super(timeOut);
 		HttpPut httpPut = new HttpPut(uri.toASCIIString());
 		httpPut.setConfig(requestConfig);
-		FileEntity fre = new FileEntity(file, ContentType.DEFAULT_BINARY);
-		httpPut.setEntity(fre);
+		httpPut.setEntity(entity);
 		execute(httpPut);
 	}
 
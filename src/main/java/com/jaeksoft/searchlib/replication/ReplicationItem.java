@@ -63,7 +63,8 @@ public class ReplicationItem extends ThreadItem<ReplicationItem, ReplicationThre
 	public final static String[] NOT_PUSHED_DATA_PATH = { "screenshot" };
 
 	public final static String[] NOT_PUSHED_PATH =
-			{ "replication.xml", "replication_old.xml", "jobs.xml", "jobs_old.xml", "report", "statstore" };
+			{ "replication.xml", "replication_old.xml", "jobs.xml", "jobs_old.xml", "report", "statstore",
+					"spellcheck" };
 
 	public final static String[] NOT_PUSHED_PATH_NODB = { "web_crawler_url", "file_crawler_url" };
 
@@ -26,18 +26,43 @@ package com.jaeksoft.searchlib.replication;
 
 import com.jaeksoft.searchlib.Client;
 import com.jaeksoft.searchlib.SearchLibException;
+import com.jaeksoft.searchlib.index.IndexAbstract;
 import com.jaeksoft.searchlib.process.ThreadAbstract;
 import com.jaeksoft.searchlib.scheduler.TaskLog;
 import com.jaeksoft.searchlib.util.*;
 import com.jaeksoft.searchlib.web.PushServlet;
+import org.apache.lucene.index.IndexCommit;
+import org.apache.lucene.store.FSDirectory;
 
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
+/**
+ * Push the data of an index to another instance.
+ * <p>
+ * The last commit point of the index is pinned by a snapshot, the index can
+ * be updated during the replication. A manifest of the directories and files
+ * is sent first, then only the files missing on the target are sent, over
+ * several compressed connections. The target switches to the new data once
+ * every file has been received.
+ * <p>
+ * The targets which do not know the manifest are asked file by file, and the
+ * files are sent uncompressed on one connection, as they expect.
+ */
 public class ReplicationThread extends ThreadAbstract<ReplicationThread> implements RecursiveDirectoryBrowser.CallBack {
 
+	private final static int PUSH_THREADS = 4;
+
 	final private ReadWriteLock rwl = new ReadWriteLock();
 
 	private volatile Client client;
@@ -60,7 +85,13 @@ public class ReplicationThread extends ThreadAbstract<ReplicationThread> impleme
 
 	private final ReplicationType replicationType;
 
-	private final long initVersion;
+	private File commitDirectory;
+
+	private Set<String> commitFileNames;
+
+	private List<File> manifestDirs;
+
+	private List<File> manifestFiles;
 
 	protected ReplicationThread(Client client, ReplicationMaster replicationMaster, ReplicationItem replicationItem,
 			InfoCallback infoCallback) throws SearchLibException {
@@ -68,7 +99,6 @@ public class ReplicationThread extends ThreadAbstract<ReplicationThread> impleme
 		this.sourceDirectory = replicationItem.getDirectory(client);
 		this.replicationType = replicationItem.getReplicationType();
 		this.client = client;
-		initVersion = client.getIndex().getVersion();
 		totalSize = 0;
 		filesSent = 0;
 		checkedSize = 0;
@@ -131,21 +161,54 @@ public class ReplicationThread extends ThreadAbstract<ReplicationThread> impleme
 			setInfo("Completed");
 	}
 
+	/**
+	 * @return the index stored in the replicated directory, or null if no
+	 *         index is pushed
+	 * @throws SearchLibException
+	 */
+	private IndexAbstract getReplicatedIndex() throws SearchLibException {
+		switch (replicationType) {
+		case MAIN_INDEX:
+		case BACKUP_INDEX:
+			return client.getIndex();
+		case WEB_CRAWLER_URL_DATABASE:
+			return client.getUrlManager().getDbClient().getIndex();
+		case FILE_CRAWLER_URI_DATABASE:
+			return client.getFileManager().getDbClient().getIndex();
+		default:
+			return null;
+		}
+	}
+
 	public void push() throws SearchLibException {
 		ReplicationItem replicationItem = getReplicationItem();
+		String snapshotId = "replication-" + replicationItem.getName();
 		try {
-			setTotalSize(new LastModifiedAndSize(sourceDirectory, false).getSize());
-			addCheckedSize(sourceDirectory.length());
-			PushServlet.call_init(getReplicationItem());
-			new RecursiveDirectoryBrowser(sourceDirectory, this);
-			checkVersion();
-			switch (replicationItem.getReplicationType().getFinalMode()) {
-			case MERGE:
-				PushServlet.call_merge(replicationItem);
-				break;
-			case SWITCH:
-				PushServlet.call_switch(replicationItem);
-				break;
+			IndexAbstract index = getReplicatedIndex();
+			IndexCommit indexCommit = index == null ? null : index.snapshot(snapshotId);
+			try {
+				initCommitFiles(indexCommit);
+				final int protocol = PushServlet.call_init(replicationItem);
+				manifestDirs = new ArrayList<>();
+				manifestFiles = new ArrayList<>();
+				new RecursiveDirectoryBrowser(sourceDirectory, this);
+				setTotalSize(getSize(manifestFiles));
+				List<File> missingFiles = protocol >= PushServlet.PROTOCOL_MANIFEST ?
+						PushServlet.call_manifest(client, replicationItem, manifestDirs, manifestFiles) :
+						getMissingFiles();
+				addCheckedSize(totalSize - getSize(missingFiles));
+				pushFiles(missingFiles, protocol);
+				switch (replicationItem.getReplicationType().getFinalMode()) {
+				case MERGE:
+					PushServlet.call_merge(replicationItem);
+					break;
+				case SWITCH:
+					PushServlet.call_switch(replicationItem);
+					break;
+				}
+			} finally {
+				if (indexCommit != null)
+					index.releaseSnapshot(snapshotId);
 			}
 		} catch (Exception e) {
 			PushServlet.call_abort(replicationItem);
@@ -156,6 +219,102 @@ public class ReplicationThread extends ThreadAbstract<ReplicationThread> impleme
 		}
 	}
 
+	/**
+	 * Only the files of the pinned commit point are pushed from the index
+	 * directory, the other ones may be written or deleted meanwhile.
+	 *
+	 * @param indexCommit the pinned commit point, or null
+	 * @throws IOException
+	 */
+	private void initCommitFiles(IndexCommit indexCommit) throws IOException {
+		if (indexCommit == null || !(indexCommit.getDirectory() instanceof FSDirectory)) {
+			commitDirectory = null;
+			commitFileNames = null;
+			return;
+		}
+		commitDirectory = ((FSDirectory) indexCommit.getDirectory()).getDirectory().getCanonicalFile();
+		commitFileNames = new HashSet<>(indexCommit.getFileNames());
+	}
+
+	private static long getSize(List<File> files) {
+		long size = 0;
+		for (File file : files)
+			size += file.length();
+		return size;
+	}
+
+	/**
+	 * The protocol of the targets which do not know the manifest: one call
+	 * per directory to create it, one call per file to check it.
+	 *
+	 * @return the files missing on the target
+	 * @throws SearchLibException
+	 */
+	private List<File> getMissingFiles() throws SearchLibException {
+		final ReplicationItem replicationItem = getReplicationItem();
+		for (File dir : manifestDirs)
+			PushServlet.call_directory(client, replicationItem, dir);
+		final List<File> missingFiles = new ArrayList<>();
+		for (File file : manifestFiles) {
+			if (!PushServlet.call_file_exist(client, replicationItem, file))
+				missingFiles.add(file);
+			updateInfo();
+		}
+		return missingFiles;
+	}
+
+	/**
+	 * Send the files, each connection takes the next file to send
+	 *
+	 * @param files    the files to send
+	 * @param protocol the push protocol of the target
+	 * @throws SearchLibException
+	 */
+	private void pushFiles(List<File> files, int protocol) throws SearchLibException {
+		final ReplicationItem replicationItem = getReplicationItem();
+		final Queue<File> queue = new ConcurrentLinkedQueue<>(files);
+		final int threads =
+				Math.min(protocol >= PushServlet.PROTOCOL_MANIFEST ? PUSH_THREADS : 1, files.size());
+		final List<Future<?>> futures = new ArrayList<>(threads);
+		try {
+			for (int i = 0; i < threads; i++) {
+				futures.add(client.getThreadPool().submit(() -> {
+					File file;
+					while ((file = queue.poll()) != null) {
+						long length = file.length();
+						PushServlet.call_file(client, replicationItem, file, protocol);
+						incFilesSent(length);
+						addCheckedSize(length);
+					}
+					return null;
+				}));
+			}
+			for (Future<?> future : futures) {
+				for (;;) {
+					try {
+						future.get(1, TimeUnit.SECONDS);
+						break;
+					} catch (TimeoutException e) {
+						updateInfo();
+					}
+				}
+			}
+			updateInfo();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new SearchLibException(e);
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof SearchLibException)
+				throw (SearchLibException) cause;
+			throw new SearchLibException(cause);
+		} finally {
+			queue.clear();
+			for (Future<?> future : futures)
+				future.cancel(true);
+		}
+	}
+
 	private void setTotalSize(long size) {
 		rwl.w.lock();
 		try {
@@ -165,7 +324,7 @@ public class ReplicationThread extends ThreadAbstract<ReplicationThread> impleme
 		}
 	}
 
-	private void addCheckedSize(long length) {
+	private void addCheckedSize(double length) {
 		rwl.w.lock();
 		try {
 			checkedSize += length;
@@ -193,6 +352,14 @@ public class ReplicationThread extends ThreadAbstract<ReplicationThread> impleme
 		return true;
 	}
 
+	final private boolean checkCommitFile(final File file) throws IOException {
+		if (commitDirectory == null)
+			return true;
+		if (!commitDirectory.equals(file.getParentFile().getCanonicalFile()))
+			return true;
+		return commitFileNames.contains(file.getName());
+	}
+
 	public String getStatInfo() {
 		rwl.r.lock();
 		try {
@@ -203,39 +370,27 @@ public class ReplicationThread extends ThreadAbstract<ReplicationThread> impleme
 		}
 	}
 
-	private void checkVersion() throws SearchLibException {
-		if (initVersion != client.getIndex().getVersion())
-			throw new SearchLibException("Replication process aborted. The index has changed.");
+	private void updateInfo() throws SearchLibException {
+		if (infoCallback == null)
+			return;
+		infoCallback.setInfo(getStatInfo());
+		if (infoCallback instanceof TaskLog)
+			if (((TaskLog) infoCallback).isAbortRequested())
+				throw new SearchLibException.AbortException();
 	}
 
 	@Override
 	public void file(File file) throws SearchLibException {
 		try {
-			checkVersion();
-			ReplicationItem replicationItem = getReplicationItem();
-			long length = file.length();
 			if (file.isFile()) {
-				if (checkFilePush(file)) {
-					if (!PushServlet.call_file_exist(client, replicationItem, file)) {
-						PushServlet.call_file(client, replicationItem, file);
-						incFilesSent(length);
-					}
-				}
+				if (checkFilePush(file) && checkCommitFile(file))
+					manifestFiles.add(file);
 			} else {
 				if (replicationType.isNotPushedFolder(file))
 					dirsNotPushed.add(file);
 				if (checkDirPush(file))
-					PushServlet.call_directory(client, replicationItem, file);
+					manifestDirs.add(file);
 			}
-			addCheckedSize(length);
-			if (infoCallback != null) {
-				infoCallback.setInfo(getStatInfo());
-				if (infoCallback instanceof TaskLog)
-					if (((TaskLog) infoCallback).isAbortRequested())
-						throw new SearchLibException.AbortException();
-			}
-		} catch (IllegalStateException e) {
-			throw new SearchLibException(e);
 		} catch (IOException e) {
 			throw new SearchLibException(e);
 		}
@@ -102,6 +102,7 @@ public abstract class AbstractSearchRequest extends AbstractRequest implements
 	private final GeoParameters geoParameters = new GeoParameters();
 
 	private transient boolean forFilter;
+	private transient boolean fullDocSet;
 
 	protected AbstractSearchRequest(Config config, RequestTypeEnum type) {
 		super(config, type);
@@ -135,6 +136,7 @@ public abstract class AbstractSearchRequest extends AbstractRequest implements
 		this.withSortValues = false;
 		this.emptyReturnsAll = true;
 		this.forFilter = false;
+		this.fullDocSet = false;
 	}
 
 	@Override
@@ -179,6 +181,7 @@ public abstract class AbstractSearchRequest extends AbstractRequest implements
 		this.advancedScore = AdvancedScore.copy(searchRequest.advancedScore);
 		this.emptyReturnsAll = searchRequest.emptyReturnsAll;
 		this.forFilter = searchRequest.forFilter;
+		this.fullDocSet = searchRequest.fullDocSet;
 	}
 
 	@Override
@@ -1126,4 +1129,52 @@ public abstract class AbstractSearchRequest extends AbstractRequest implements
 		}
 	}
 
+	public boolean isFullDocSet() {
+		rwl.r.lock();
+		try {
+			return fullDocSet;
+		} finally {
+			rwl.r.unlock();
+		}
+	}
+
+	/**
+	 * Require the collection of every matching document, even if only the
+	 * first rows are returned (joins, bitsets, deletion by query).
+	 * 
+	 * @param b
+	 */
+	final public void setFullDocSet(boolean b) {
+		rwl.w.lock();
+		try {
+			fullDocSet = b;
+		} finally {
+			rwl.w.unlock();
+		}
+	}
+
+	/**
+	 * Returns true if only the first start + rows documents have to be
+	 * collected: nothing (facet, collapsing, join, distance, advanced
+	 * scoring) needs the whole document set.
+	 * 
+	 * @return true if the top documents are enough
+	 */
+	public boolean isTopDocsOnly() {
+		rwl.r.lock();
+		try {
+			if (fullDocSet || isForFilter())
+				return false;
+			if (isFacet() || isCollapsing() || isJoin())
+				return false;
+			if (isDistanceRequired())
+				return false;
+			if (advancedScore != null && !advancedScore.isEmpty())
+				return false;
+			return true;
+		} finally {
+			rwl.r.unlock();
+		}
+	}
+
 }
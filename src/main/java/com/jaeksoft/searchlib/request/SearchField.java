@@ -31,7 +31,6 @@ import java.util.List;
 import java.util.Set;
 
 import org.apache.commons.lang3.StringUtils;
-import org.apache.lucene.analysis.Analyzer;
 import org.apache.lucene.analysis.TokenStream;
 import org.apache.lucene.index.Term;
 import org.apache.lucene.search.BooleanClause.Occur;
@@ -238,14 +237,13 @@ public class SearchField implements Cloneable {
 			CompiledAnalyzer compiledAnalyzer, final String queryString) throws IOException {
 		TokenStream ts = null;
 		TokenQueryFilter.TermQueryFilter tqf = null;
-		Analyzer analyzer = compiledAnalyzer != null ? compiledAnalyzer : perFieldAnalyzer.getKeywordAnalyzer();
 		try {
-			ts = analyzer.tokenStream(field, new StringReader(queryString));
+			ts = compiledAnalyzer != null ? compiledAnalyzer.reusableTokenStream(field, new StringReader(queryString)) :
+					perFieldAnalyzer.getKeywordAnalyzer().tokenStream(field, new StringReader(queryString));
 			tqf = new TermQueryFilter(compiledAnalyzer, field, (float) termBoost, ts);
 			while (tqf.incrementToken())
 				;
-			ts.end();
-			ts.close();
+			tqf.end();
 
 			tqf.sortByOffset();
 
@@ -254,7 +252,7 @@ public class SearchField implements Cloneable {
 				termQueryItem.includeChildrenBrothers();
 			return tqf.termQueryItems;
 		} finally {
-			IOUtils.close(tqf, ts, analyzer);
+			IOUtils.close(tqf, ts);
 		}
 	}
 
@@ -286,33 +284,29 @@ public class SearchField implements Cloneable {
 
 	final public void addQuery(Set<String> fields, PerFieldAnalyzer perFieldAnalyzer, String queryString,
 			Collection<Query> queries, int phraseSlop, Occur occur) throws IOException {
-		CompiledAnalyzer compiledAnalyzer = null;
-		try {
-			if (StringUtils.isEmpty(queryString))
-				return;
-			compiledAnalyzer = perFieldAnalyzer.getCompiledAnalyzer(field);
-
-			if (mode == Mode.PATTERN) {
-				queries.add(getPatternQuery(fields, compiledAnalyzer, occur, phraseSlop, queryString));
-				return;
-			}
-			List<TermQueryItem> termQueryItems = getTermQueryFilter(perFieldAnalyzer, compiledAnalyzer, queryString);
-			switch (mode) {
-			case TERM:
-				queries.add(getTermQuery(termQueryItems, occur));
-				break;
-			case PHRASE:
-				queries.add(getPhraseQuery(termQueryItems, phraseSlop, occur));
-				break;
-			case TERM_AND_PHRASE:
-				queries.add(getTermQuery(termQueryItems, occur));
-				queries.add(getPhraseQuery(termQueryItems, phraseSlop, occur));
-				break;
-			default:
-				break;
-			}
-		} finally {
-			IOUtils.close(compiledAnalyzer);
+		if (StringUtils.isEmpty(queryString))
+			return;
+		// The compiled analyzer is shared by the requests: it is not closed
+		final CompiledAnalyzer compiledAnalyzer = perFieldAnalyzer.getCompiledAnalyzer(field);
+
+		if (mode == Mode.PATTERN) {
+			queries.add(getPatternQuery(fields, compiledAnalyzer, occur, phraseSlop, queryString));
+			return;
+		}
+		List<TermQueryItem> termQueryItems = getTermQueryFilter(perFieldAnalyzer, compiledAnalyzer, queryString);
+		switch (mode) {
+		case TERM:
+			queries.add(getTermQuery(termQueryItems, occur));
+			break;
+		case PHRASE:
+			queries.add(getPhraseQuery(termQueryItems, phraseSlop, occur));
+			break;
+		case TERM_AND_PHRASE:
+			queries.add(getTermQuery(termQueryItems, occur));
+			queries.add(getPhraseQuery(termQueryItems, phraseSlop, occur));
+			break;
+		default:
+			break;
 		}
 	}
 
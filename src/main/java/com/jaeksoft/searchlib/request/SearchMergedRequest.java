@@ -52,21 +52,26 @@ public class SearchMergedRequest extends AbstractSearchRequest implements
 		RequestInterfaces.ReturnedFieldInterface,
 		RequestInterfaces.FilterListInterface {
 
+	public final static int DEFAULT_TIMEOUT = 10000;
+
 	private final TreeSet<RemoteRequest> requests;
 
+	private int timeOut;
+
 	public SearchMergedRequest() {
-		super(null, null /* RequestTypeEnum.SearchMergedRequest */);
+		super(null, RequestTypeEnum.SearchMergedRequest);
 		requests = new TreeSet<RemoteRequest>();
 	}
 
 	public SearchMergedRequest(Config config) {
-		super(config, null /* RequestTypeEnum.SearchMergedRequest */);
+		super(config, RequestTypeEnum.SearchMergedRequest);
 		requests = new TreeSet<RemoteRequest>();
 	}
 
 	@Override
 	protected void setDefaultValues() {
 		super.setDefaultValues();
+		timeOut = DEFAULT_TIMEOUT;
 	}
 
 	@Override
@@ -75,13 +80,40 @@ public class SearchMergedRequest extends AbstractSearchRequest implements
 		SearchMergedRequest searchMergedRequest = (SearchMergedRequest) request;
 		requests.clear();
 		requests.addAll(searchMergedRequest.requests);
+		timeOut = searchMergedRequest.timeOut;
 	}
 
 	public Collection<RemoteRequest> getRequests() {
 		return requests;
 	}
 
+	/**
+	 * @return the time in milliseconds given to each request to answer
+	 */
+	final public int getTimeOut() {
+		rwl.r.lock();
+		try {
+			return timeOut;
+		} finally {
+			rwl.r.unlock();
+		}
+	}
+
+	/**
+	 * @param timeOut
+	 *            the time out in milliseconds to set
+	 */
+	final public void setTimeOut(int timeOut) {
+		rwl.w.lock();
+		try {
+			this.timeOut = timeOut;
+		} finally {
+			rwl.w.unlock();
+		}
+	}
+
 	private final static String REMOTEREQUESTS_NODE_NAME = "remoteRequests";
+	private final static String REMOTEREQUESTS_TIMEOUT = "timeOut";
 	private final static String REMOTEREQUEST_NODE_NAME = "remoteRequest";
 	private final static String REMOTEREQUEST_REMOTEURL = "url";
 	private final static String REMOTEREQUEST_INDEXNAME = "indexName";
@@ -96,6 +128,8 @@ public class SearchMergedRequest extends AbstractSearchRequest implements
 		Node requestsNode = DomUtils.getFirstNode(searchRequestNode,
 				REMOTEREQUESTS_NODE_NAME);
 		if (requestsNode != null) {
+			timeOut = DomUtils.getAttributeInteger(requestsNode,
+					REMOTEREQUESTS_TIMEOUT, DEFAULT_TIMEOUT);
 			List<Node> requestNodeList = DomUtils.getNodes(requestsNode,
 					REMOTEREQUEST_NODE_NAME);
 			if (requestNodeList != null)
@@ -106,7 +140,8 @@ public class SearchMergedRequest extends AbstractSearchRequest implements
 
 	@Override
 	public void writeSubXmlConfig(XmlWriter xmlWriter) throws SAXException {
-		xmlWriter.startElement(REMOTEREQUESTS_NODE_NAME);
+		xmlWriter.startElement(REMOTEREQUESTS_NODE_NAME,
+				REMOTEREQUESTS_TIMEOUT, Integer.toString(timeOut));
 		for (RemoteRequest request : requests)
 			request.writeXmlConfig(xmlWriter);
 		xmlWriter.endElement();
@@ -0,0 +1,130 @@
+/**
+ * License Agreement for OpenSearchServer
+ * <p>
+ * Copyright (C) 2017 Emmanuel Keller / Jaeksoft
+ * <p>
+ * http://www.open-search-server.com
+ * <p>
+ * This file is part of OpenSearchServer.
+ * <p>
+ * OpenSearchServer is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * <p>
+ * OpenSearchServer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * <p>
+ * You should have received a copy of the GNU General Public License
+ * along with OpenSearchServer.
+ * If not, see <http://www.gnu.org/licenses/>.
+ **/
+
+package com.jaeksoft.searchlib.result;
+
+import com.jaeksoft.searchlib.SearchLibException;
+import com.jaeksoft.searchlib.facet.FacetList;
+import com.jaeksoft.searchlib.request.SearchMergedRequest;
+import com.jaeksoft.searchlib.request.SearchMergedRequest.RemoteRequest;
+import com.jaeksoft.searchlib.sort.SortField;
+import com.jaeksoft.searchlib.util.StringUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * One of the requests of a merged search. The query phase collects the score,
+ * the sort values and the identity of the first documents of the request, with
+ * the counts of the facets. The fetch phase loads the documents of a range of
+ * positions by their identity, once the merge has chosen the documents of the
+ * page.
+ */
+abstract class MergedShard {
+
+	protected final SearchMergedRequest mergedRequest;
+	protected final RemoteRequest remoteRequest;
+	protected final List<SortField> sortFields;
+
+	protected int numFound;
+	protected float maxScore;
+	protected float[] scores;
+	protected String[][] sortValues;
+	protected FacetList facetList;
+
+	protected MergedShard(final SearchMergedRequest mergedRequest, final RemoteRequest remoteRequest) {
+		this.mergedRequest = mergedRequest;
+		this.remoteRequest = remoteRequest;
+		this.sortFields = new ArrayList<SortField>();
+		for (SortField sortField : mergedRequest.getSortFieldList())
+			sortFields.add(sortField);
+		numFound = 0;
+		maxScore = 0;
+		scores = new float[0];
+		sortValues = new String[0][];
+		facetList = null;
+	}
+
+	/**
+	 * @param mergedRequest the merged request
+	 * @param remoteRequest the request to run
+	 * @return a local shard if the request has no URL, a remote shard otherwise
+	 */
+	static MergedShard newInstance(final SearchMergedRequest mergedRequest, final RemoteRequest remoteRequest) {
+		if (StringUtils.isEmpty(remoteRequest.getRemoteURL()))
+			return new MergedShardLocal(mergedRequest, remoteRequest);
+		return new MergedShardRemote(mergedRequest, remoteRequest);
+	}
+
+	/**
+	 * Collect the scores and the sort values of the first documents, and the
+	 * facets
+	 *
+	 * @param rows the number of documents
+	 * @throws SearchLibException
+	 */
+	abstract void query(int rows) throws SearchLibException;
+
+	/**
+	 * Load the documents collected by the query phase. A document which cannot
+	 * be found again is null.
+	 *
+	 * @param start the position of the first document
+	 * @param rows  the number of documents
+	 * @return the documents with their returned fields and snippets
+	 * @throws SearchLibException
+	 */
+	abstract ResultDocument[] fetch(int start, int rows) throws SearchLibException;
+
+	/**
+	 * @param sortField a sort field
+	 * @return true if the merge compares the indexed terms of the field
+	 */
+	static boolean isValueSort(final SortField sortField) {
+		return !sortField.isScore() && !sortField.isDistance() && sortField.getJoinNumber() == 0;
+	}
+
+	/**
+	 * @return true if the sort of the merged request compares field values
+	 */
+	protected final boolean hasValueSort() {
+		for (SortField sortField : sortFields)
+			if (isValueSort(sortField))
+				return true;
+		return false;
+	}
+
+	/**
+	 * @return the number of documents collected by the query phase
+	 */
+	final int size() {
+		return scores.length;
+	}
+
+	@Override
+	public String toString() {
+		return StringUtils.fastConcat(remoteRequest.getRemoteURL(), " ", remoteRequest.getIndexName(), " ",
+				remoteRequest.getRequestName());
+	}
+}
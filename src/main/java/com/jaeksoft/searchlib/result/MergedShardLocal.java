@@ -0,0 +1,206 @@
+/**
+ * License Agreement for OpenSearchServer
+ * <p>
+ * Copyright (C) 2017 Emmanuel Keller / Jaeksoft
+ * <p>
+ * http://www.open-search-server.com
+ * <p>
+ * This file is part of OpenSearchServer.
+ * <p>
+ * OpenSearchServer is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * <p>
+ * OpenSearchServer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * <p>
+ * You should have received a copy of the GNU General Public License
+ * along with OpenSearchServer.
+ * If not, see <http://www.gnu.org/licenses/>.
+ **/
+
+package com.jaeksoft.searchlib.result;
+
+import com.jaeksoft.searchlib.Client;
+import com.jaeksoft.searchlib.ClientCatalog;
+import com.jaeksoft.searchlib.SearchLibException;
+import com.jaeksoft.searchlib.facet.FacetField;
+import com.jaeksoft.searchlib.facet.FacetFieldList;
+import com.jaeksoft.searchlib.filter.FilterAbstract;
+import com.jaeksoft.searchlib.function.expression.SyntaxError;
+import com.jaeksoft.searchlib.index.FieldCacheIndex;
+import com.jaeksoft.searchlib.index.IndexAbstract;
+import com.jaeksoft.searchlib.query.ParseException;
+import com.jaeksoft.searchlib.request.AbstractLocalSearchRequest;
+import com.jaeksoft.searchlib.request.AbstractRequest;
+import com.jaeksoft.searchlib.request.ReturnField;
+import com.jaeksoft.searchlib.request.ReturnFieldList;
+import com.jaeksoft.searchlib.request.SearchMergedRequest;
+import com.jaeksoft.searchlib.request.SearchMergedRequest.RemoteRequest;
+import com.jaeksoft.searchlib.snippet.SnippetField;
+import com.jaeksoft.searchlib.snippet.SnippetFieldList;
+import com.jaeksoft.searchlib.sort.SortField;
+import com.jaeksoft.searchlib.sort.SortFieldList;
+
+import java.io.IOException;
+import java.util.LinkedHashSet;
+
+/**
+ * A request on an index of this instance. The documents are identified by
+ * their number, which is valid as long as the version of the index does not
+ * change. The sort values are the indexed terms the index sorts on.
+ */
+class MergedShardLocal extends MergedShard {
+
+	private final static int QUERY_ATTEMPTS = 3;
+
+	private int[] docIds;
+	private long version;
+
+	MergedShardLocal(final SearchMergedRequest mergedRequest, final RemoteRequest remoteRequest) {
+		super(mergedRequest, remoteRequest);
+		docIds = new int[0];
+		version = 0;
+	}
+
+	private Client getClient() throws SearchLibException {
+		final Client client = ClientCatalog.getClient(remoteRequest.getIndexName());
+		if (client == null)
+			throw new SearchLibException("Index not found: " + remoteRequest.getIndexName());
+		return client;
+	}
+
+	/**
+	 * @return a copy of the request template, with the query, the language,
+	 * the filters and the sort of the merged request
+	 */
+	private AbstractLocalSearchRequest getNewRequest(final Client client) throws SearchLibException {
+		final AbstractRequest request = client.getNewRequest(remoteRequest.getRequestName());
+		if (!(request instanceof AbstractLocalSearchRequest))
+			throw new SearchLibException(
+					"The request " + remoteRequest.getRequestName() + " is not a local search request");
+		final AbstractLocalSearchRequest searchRequest = (AbstractLocalSearchRequest) request;
+		if (mergedRequest.getQueryString() != null)
+			searchRequest.setQueryString(mergedRequest.getQueryString());
+		if (mergedRequest.getLang() != null)
+			searchRequest.setLang(mergedRequest.getLang());
+		for (FilterAbstract<?> filter : mergedRequest.getFilterList())
+			searchRequest.getFilterList().add(filter.duplicate());
+		if (!sortFields.isEmpty()) {
+			final SortFieldList sortFieldList = searchRequest.getSortFieldList();
+			sortFieldList.clear();
+			for (SortField sortField : sortFields)
+				sortFieldList.put(sortField.duplicate());
+		}
+		return searchRequest;
+	}
+
+	/**
+	 * The request is run again if the index changes while the documents are
+	 * collected, so that the numbers, the scores and the sort values come from
+	 * the same version.
+	 */
+	@Override
+	final void query(final int rows) throws SearchLibException {
+		final Client client = getClient();
+		final IndexAbstract index = client.getIndex();
+		for (int attempt = 1; ; attempt++) {
+			final long before = index.getVersion();
+			final AbstractLocalSearchRequest searchRequest = getNewRequest(client);
+			searchRequest.setStart(0);
+			searchRequest.setRows(rows);
+			// Only the numbers are read, the documents are fetched later
+			searchRequest.getReturnFieldList().clear();
+			searchRequest.getSnippetFieldList().clear();
+			// All the terms are counted, the limits apply to the merged facets
+			final FacetFieldList facetFieldList = searchRequest.getFacetFieldList();
+			facetFieldList.clear();
+			for (FacetField facetField : mergedRequest.getFacetFieldList()) {
+				final FacetField shardField = facetField.duplicate();
+				shardField.setMinCount(1);
+				shardField.setLimit(null);
+				facetFieldList.put(shardField);
+			}
+			final AbstractResultSearch<?> result = (AbstractResultSearch<?>) client.request(searchRequest);
+			final int count = result.getDocumentCount();
+			final int[] ids = new int[count];
+			final float[] hitScores = new float[count];
+			for (int i = 0; i < count; i++) {
+				ids[i] = result.getDocument(i).getDocId();
+				hitScores[i] = result.getScore(i);
+			}
+			final String[][] values = getSortValues(index, ids);
+			if (index.getVersion() == before) {
+				version = before;
+				numFound = result.getNumFound();
+				maxScore = result.getMaxScore();
+				facetList = result.getFacetList();
+				docIds = ids;
+				scores = hitScores;
+				sortValues = values;
+				return;
+			}
+			if (attempt == QUERY_ATTEMPTS)
+				throw new SearchLibException("The index " + remoteRequest.getIndexName() + " changed during the query");
+		}
+	}
+
+	/**
+	 * @return the indexed term of each sort field, for each document
+	 */
+	private String[][] getSortValues(final IndexAbstract index, final int[] ids) throws SearchLibException {
+		final String[][] values = new String[ids.length][sortFields.size()];
+		try {
+			int j = 0;
+			for (SortField sortField : sortFields) {
+				if (isValueSort(sortField)) {
+					final FieldCacheIndex stringIndex = index.getStringIndex(sortField.getName());
+					for (int i = 0; i < ids.length; i++)
+						values[i][j] = stringIndex.getDocTerm(ids[i]);
+				}
+				j++;
+			}
+		} catch (IOException e) {
+			throw new SearchLibException(e);
+		}
+		return values;
+	}
+
+	@Override
+	final ResultDocument[] fetch(final int start, final int rows) throws SearchLibException {
+		final Client client = getClient();
+		final IndexAbstract index = client.getIndex();
+		final AbstractLocalSearchRequest searchRequest = getNewRequest(client);
+		final ReturnFieldList returnFieldList = searchRequest.getReturnFieldList();
+		returnFieldList.clear();
+		for (ReturnField returnField : mergedRequest.getReturnFieldList())
+			returnFieldList.put(returnField.duplicate());
+		final SnippetFieldList snippetFieldList = searchRequest.getSnippetFieldList();
+		snippetFieldList.clear();
+		for (SnippetField snippetField : mergedRequest.getSnippetFieldList())
+			snippetFieldList.put(snippetField.duplicate());
+		final LinkedHashSet<String> fieldNameSet = new LinkedHashSet<String>();
+		returnFieldList.populate(fieldNameSet);
+		snippetFieldList.populate(fieldNameSet);
+		checkVersion(index);
+		final ResultDocument[] documents = new ResultDocument[rows];
+		try {
+			for (int i = 0; i < rows; i++)
+				documents[i] = new ResultDocument(searchRequest, fieldNameSet, docIds[start + i], index,
+						scores[start + i], null, 0, null);
+		} catch (IOException | ParseException | SyntaxError e) {
+			throw new SearchLibException(e);
+		}
+		checkVersion(index);
+		return documents;
+	}
+
+	private void checkVersion(final IndexAbstract index) throws SearchLibException {
+		if (index.getVersion() != version)
+			throw new SearchLibException(
+					"The index " + remoteRequest.getIndexName() + " changed between the query and the fetch");
+	}
+}
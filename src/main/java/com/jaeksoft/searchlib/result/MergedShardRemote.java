@@ -0,0 +1,316 @@
+/**
+ * License Agreement for OpenSearchServer
+ * <p>
+ * Copyright (C) 2017 Emmanuel Keller / Jaeksoft
+ * <p>
+ * http://www.open-search-server.com
+ * <p>
+ * This file is part of OpenSearchServer.
+ * <p>
+ * OpenSearchServer is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * <p>
+ * OpenSearchServer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * <p>
+ * You should have received a copy of the GNU General Public License
+ * along with OpenSearchServer.
+ * If not, see <http://www.gnu.org/licenses/>.
+ **/
+
+package com.jaeksoft.searchlib.result;
+
+import com.jaeksoft.searchlib.SearchLibException;
+import com.jaeksoft.searchlib.cluster.ClusterInstance;
+import com.jaeksoft.searchlib.cluster.ClusterManager;
+import com.jaeksoft.searchlib.crawler.web.database.HeaderItem;
+import com.jaeksoft.searchlib.crawler.web.spider.DownloadItem;
+import com.jaeksoft.searchlib.crawler.web.spider.HttpDownloader;
+import com.jaeksoft.searchlib.facet.Facet;
+import com.jaeksoft.searchlib.facet.FacetField;
+import com.jaeksoft.searchlib.facet.FacetList;
+import com.jaeksoft.searchlib.filter.FilterAbstract;
+import com.jaeksoft.searchlib.filter.QueryFilter;
+import com.jaeksoft.searchlib.request.ReturnField;
+import com.jaeksoft.searchlib.request.SearchMergedRequest;
+import com.jaeksoft.searchlib.request.SearchMergedRequest.RemoteRequest;
+import com.jaeksoft.searchlib.schema.FieldValueItem;
+import com.jaeksoft.searchlib.schema.FieldValueOriginEnum;
+import com.jaeksoft.searchlib.snippet.SnippetField;
+import com.jaeksoft.searchlib.snippet.SnippetFieldValue;
+import com.jaeksoft.searchlib.sort.SortField;
+import com.jaeksoft.searchlib.util.StringUtils;
+import org.apache.http.client.utils.URIBuilder;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A request on another instance, through its select servlet and its JSON
+ * renderer. The login and the key are the ones of the cluster instance serving
+ * the URL. Only the query filters are sent. The documents are identified by
+ * the value of the unique field of the remote index. The sort values are not
+ * available, the merge only accepts a sort on the score.
+ */
+class MergedShardRemote extends MergedShard {
+
+	private String uniqueField;
+	private String[] keys;
+
+	MergedShardRemote(final SearchMergedRequest mergedRequest, final RemoteRequest remoteRequest) {
+		super(mergedRequest, remoteRequest);
+		uniqueField = null;
+		keys = new String[0];
+	}
+
+	@Override
+	final void query(final int rows) throws SearchLibException {
+		uniqueField = getUniqueField();
+		final JSONObject response = select(0, rows, null, Collections.singletonList(uniqueField), null, true);
+		final JSONArray docs = readResult(response);
+		final int count = docs == null ? 0 : docs.length();
+		scores = new float[count];
+		sortValues = new String[count][sortFields.size()];
+		keys = new String[count];
+		for (int i = 0; i < count; i++) {
+			final JSONObject doc = docs.getJSONObject(i);
+			scores[i] = (float) doc.optDouble("score", 0);
+			keys[i] = getKey(doc);
+		}
+		final JSONArray faceting = response.optJSONArray("faceting");
+		if (faceting == null)
+			return;
+		facetList = new FacetList();
+		for (int i = 0; i < faceting.length(); i++) {
+			final JSONObject jsonFaceting = faceting.getJSONObject(i);
+			final FacetField facetField = mergedRequest.getFacetFieldList().get(jsonFaceting.getString("fieldName"));
+			if (facetField == null)
+				continue;
+			final Map<String, Long> counts = new LinkedHashMap<String, Long>();
+			final JSONArray jsonFacets = jsonFaceting.optJSONArray("facet");
+			if (jsonFacets != null)
+				for (int j = 0; j < jsonFacets.length(); j++) {
+					final JSONObject jsonFacet = jsonFacets.getJSONObject(j);
+					counts.put(jsonFacet.getString("name"), jsonFacet.getLong("value"));
+				}
+			facetList.add(Facet.fromCounts(facetField, counts));
+		}
+	}
+
+	/**
+	 * The documents are selected by their key, the position of a document in
+	 * the result of the remote request may have changed since the query phase.
+	 */
+	@Override
+	final ResultDocument[] fetch(final int start, final int rows) throws SearchLibException {
+		final ResultDocument[] documents = new ResultDocument[rows];
+		final StringBuilder keyQuery = new StringBuilder();
+		for (int i = 0; i < rows; i++) {
+			final String key = keys[start + i];
+			if (key == null)
+				continue;
+			keyQuery.append(keyQuery.length() == 0 ? "(\"" : " OR \"");
+			keyQuery.append(key.replace("\\", "\\\\").replace("\"", "\\\""));
+			keyQuery.append('"');
+		}
+		if (keyQuery.length() == 0)
+			return documents;
+		keyQuery.append(')');
+		boolean returnsKey = false;
+		final List<String> returnFields = new ArrayList<String>();
+		for (ReturnField returnField : mergedRequest.getReturnFieldList()) {
+			returnFields.add(returnField.getName());
+			if (uniqueField.equals(returnField.getName()))
+				returnsKey = true;
+		}
+		if (!returnsKey)
+			returnFields.add(uniqueField);
+		final List<String> snippetFields = new ArrayList<String>();
+		for (SnippetField snippetField : mergedRequest.getSnippetFieldList())
+			snippetFields.add(snippetField.getName());
+		final JSONArray docs =
+				select(0, rows, uniqueField + ':' + keyQuery, returnFields, snippetFields, false).getJSONObject(
+						"result").optJSONArray("doc");
+		if (docs == null)
+			return documents;
+		final Map<String, ResultDocument> documentMap = new HashMap<String, ResultDocument>();
+		for (int i = 0; i < docs.length(); i++) {
+			final JSONObject doc = docs.getJSONObject(i);
+			final String key = getKey(doc);
+			if (key != null)
+				documentMap.put(key, getDocument(doc, returnsKey ? null : uniqueField));
+		}
+		for (int i = 0; i < rows; i++) {
+			final String key = keys[start + i];
+			if (key != null)
+				documents[i] = documentMap.get(key);
+		}
+		return documents;
+	}
+
+	private JSONArray readResult(final JSONObject response) {
+		final JSONObject result = response.getJSONObject("result");
+		numFound = result.optInt("numFound", 0);
+		maxScore = (float) result.optDouble("maxScore", 0);
+		return result.optJSONArray("doc");
+	}
+
+	/**
+	 * @param doc a document rendered by the JSON renderer
+	 * @return the first value of the unique field, or null
+	 */
+	private String getKey(final JSONObject doc) {
+		final JSONArray fields = doc.optJSONArray("field");
+		if (fields != null)
+			for (int i = 0; i < fields.length(); i++) {
+				final JSONObject field = fields.getJSONObject(i);
+				if (uniqueField.equals(field.getString("name")))
+					return field.optString("value", null);
+			}
+		return null;
+	}
+
+	/**
+	 * @param doc       a document rendered by the JSON renderer
+	 * @param skipField a field which was only returned to identify the
+	 *                  document, or null
+	 * @return a document with the returned fields and the snippets
+	 */
+	private static ResultDocument getDocument(final JSONObject doc, final String skipField) {
+		final ResultDocument document = new ResultDocument(-1);
+		final JSONArray fields = doc.optJSONArray("field");
+		if (fields != null)
+			for (int i = 0; i < fields.length(); i++) {
+				final JSONObject field = fields.getJSONObject(i);
+				final String name = field.getString("name");
+				if (name.equals(skipField))
+					continue;
+				document.addReturnedField(FieldValueOriginEnum.EXTERNAL, name, field.optString("value", null));
+			}
+		final JSONArray snippets = doc.optJSONArray("snippet");
+		if (snippets != null)
+			for (int i = 0; i < snippets.length(); i++) {
+				final JSONObject snippet = snippets.getJSONObject(i);
+				final String name = snippet.getString("name");
+				final FieldValueItem value =
+						new FieldValueItem(FieldValueOriginEnum.EXTERNAL, snippet.optString("value", null));
+				final SnippetFieldValue snippetFieldValue = document.getSnippetFields().get(name);
+				if (snippetFieldValue == null) {
+					final List<FieldValueItem> values = new ArrayList<FieldValueItem>(1);
+					values.add(value);
+					document.getSnippetFields()
+							.put(name, new SnippetFieldValue(name, values, "yes".equals(snippet.optString("highlighted"))));
+				} else
+					snippetFieldValue.addValues(value);
+			}
+		return document;
+	}
+
+	/**
+	 * @return the name of the unique field of the remote index, read with the
+	 * REST API of the fields
+	 * @throws SearchLibException if the remote index has no unique field
+	 */
+	private String getUniqueField() throws SearchLibException {
+		HttpDownloader downloader = null;
+		try {
+			final URIBuilder uriBuilder = new URIBuilder(
+					StringUtils.removeEnd(remoteRequest.getRemoteURL(), "/") + "/services/rest/index/" +
+							remoteRequest.getIndexName() + "/field");
+			addCredentials(uriBuilder);
+			final List<HeaderItem> headers = new ArrayList<HeaderItem>(1);
+			headers.add(new HeaderItem("Accept", "application/json"));
+			downloader = new HttpDownloader("OpenSearchServer", false, null, mergedRequest.getTimeOut());
+			final DownloadItem downloadItem = downloader.get(uriBuilder.build(), null, headers, null);
+			downloadItem.checkNoErrorList(200);
+			final String field = new JSONObject(downloadItem.getContentAsString()).optString("unique", null);
+			if (StringUtils.isEmpty(field))
+				throw new SearchLibException("The index " + remoteRequest.getIndexName() + " of " +
+						remoteRequest.getRemoteURL() + " has no unique field");
+			return field;
+		} catch (IOException | URISyntaxException | JSONException e) {
+			throw new SearchLibException(e);
+		} finally {
+			if (downloader != null)
+				downloader.release();
+		}
+	}
+
+	private void addCredentials(final URIBuilder uriBuilder) throws SearchLibException {
+		final ClusterInstance clusterInstance = ClusterManager.getInstance().findByUrl(remoteRequest.getRemoteURL());
+		if (clusterInstance == null)
+			return;
+		if (clusterInstance.getLogin() != null)
+			uriBuilder.addParameter("login", clusterInstance.getLogin());
+		if (clusterInstance.getApiKey() != null)
+			uriBuilder.addParameter("key", clusterInstance.getApiKey());
+	}
+
+	private JSONObject select(final int start, final int rows, final String keyFilter,
+			final Collection<String> returnFields, final Collection<String> snippetFields, final boolean withFacets)
+			throws SearchLibException {
+		HttpDownloader downloader = null;
+		try {
+			final URIBuilder uriBuilder =
+					new URIBuilder(StringUtils.removeEnd(remoteRequest.getRemoteURL(), "/") + "/select");
+			uriBuilder.addParameter("use", remoteRequest.getIndexName());
+			uriBuilder.addParameter("qt", remoteRequest.getRequestName());
+			uriBuilder.addParameter("render", "json");
+			addCredentials(uriBuilder);
+			if (mergedRequest.getQueryString() != null)
+				uriBuilder.addParameter("q", mergedRequest.getQueryString());
+			if (mergedRequest.getLang() != null)
+				uriBuilder.addParameter("lang", mergedRequest.getLang().getCode());
+			uriBuilder.addParameter("start", Integer.toString(start));
+			uriBuilder.addParameter("rows", Integer.toString(rows));
+			for (FilterAbstract<?> filter : mergedRequest.getFilterList())
+				if (filter instanceof QueryFilter)
+					uriBuilder.addParameter(filter.isNegative() ? "fqn" : "fq",
+							((QueryFilter) filter).getQueryString());
+			if (keyFilter != null)
+				uriBuilder.addParameter("fq", keyFilter);
+			if (!sortFields.isEmpty()) {
+				uriBuilder.addParameter("sort.clear", "yes");
+				for (SortField sortField : sortFields)
+					uriBuilder.addParameter("sort", (sortField.isDesc() ? "-" : "+") + sortField.getName());
+			}
+			for (String returnField : returnFields)
+				uriBuilder.addParameter("rf", returnField);
+			if (snippetFields != null)
+				for (String snippetField : snippetFields)
+					uriBuilder.addParameter("hl", snippetField);
+			if (withFacets)
+				for (FacetField facetField : mergedRequest.getFacetFieldList())
+					uriBuilder.addParameter(getFacetParameter(facetField), facetField.getName() + "(1)");
+			downloader = new HttpDownloader("OpenSearchServer", false, null, mergedRequest.getTimeOut());
+			final DownloadItem downloadItem = downloader.get(uriBuilder.build(), null);
+			downloadItem.checkNoErrorList(200);
+			return new JSONObject(downloadItem.getContentAsString()).getJSONObject("response");
+		} catch (IOException | URISyntaxException | JSONException e) {
+			throw new SearchLibException(e);
+		} finally {
+			if (downloader != null)
+				downloader.release();
+		}
+	}
+
+	private static String getFacetParameter(final FacetField facetField) {
+		if (facetField.isCheckMultivalued())
+			return facetField.isCheckPostCollapsing() ? "facet.multi.collapse" : "facet.multi";
+		return facetField.isCheckPostCollapsing() ? "facet.collapse" : "facet";
+	}
+}
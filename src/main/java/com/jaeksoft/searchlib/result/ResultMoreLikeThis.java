@@ -68,6 +68,7 @@ public class ResultMoreLikeThis extends AbstractResult<MoreLikeThisRequest>
 		for (FilterAbstract<?> filter : request.getFilterList())
 			searchRequest.getFilterList().add(filter);
 		searchRequest.setBoostedComplexQuery(request.getQuery());
+		searchRequest.setFullDocSet(true);
 		DocSetHits dsh = reader.searchDocSet(searchRequest, timer);
 		if (dsh == null) {
 			fieldNameSet = null;
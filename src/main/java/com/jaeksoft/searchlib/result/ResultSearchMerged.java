@@ -25,36 +25,291 @@
 package com.jaeksoft.searchlib.result;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
+import com.jaeksoft.searchlib.Logging;
 import com.jaeksoft.searchlib.SearchLibException;
+import com.jaeksoft.searchlib.facet.Facet;
+import com.jaeksoft.searchlib.facet.FacetField;
 import com.jaeksoft.searchlib.request.SearchMergedRequest;
 import com.jaeksoft.searchlib.request.SearchMergedRequest.RemoteRequest;
+import com.jaeksoft.searchlib.sort.SortField;
 import com.jaeksoft.searchlib.util.Timer;
 import com.jaeksoft.searchlib.webservice.query.document.IndexDocumentResult;
 
+/**
+ * Merge the results of several search requests, local or remote, in two
+ * phases. The query phase runs the requests in parallel, each one returning
+ * the scores and the sort values of its first documents, up to the end of the
+ * page, with its facets. The documents are merged in the order of the merged
+ * request, then the fetch phase asks each request for the stored fields of its
+ * documents displayed in the page, by the identity recorded in the query
+ * phase. A request which fails or does not answer in time is left out of the
+ * result.
+ */
 public class ResultSearchMerged extends
 		AbstractResultSearch<SearchMergedRequest> {
 
-	public ResultSearchMerged(SearchMergedRequest request) {
+	private final ExecutorService executor;
+	private final List<MergedShard> shards;
+	private final float[] mergedScores;
+	private final ResultDocument[] resultDocuments;
+
+	public ResultSearchMerged(SearchMergedRequest request)
+			throws SearchLibException {
+		this(request, newShards(request), request.getConfig().getThreadPool());
+	}
+
+	/**
+	 * @param request
+	 *            the merged request
+	 * @param allShards
+	 *            the requests to merge
+	 * @param executor
+	 *            the threads running the requests
+	 * @throws SearchLibException
+	 *             if the sort cannot be merged
+	 */
+	ResultSearchMerged(SearchMergedRequest request,
+			List<MergedShard> allShards, ExecutorService executor)
+			throws SearchLibException {
 		super(null, request);
-		for (RemoteRequest remoteRequest : request.getRequests()) {
+		this.executor = executor;
+		checkSort(allShards);
+
+		// Query phase
+		Timer queryTimer = new Timer(timer, "query phase");
+		final int end = request.getEnd();
+		List<Callable<Boolean>> queryTasks = new ArrayList<Callable<Boolean>>(
+				allShards.size());
+		for (MergedShard shard : allShards)
+			queryTasks.add(() -> {
+				shard.query(end);
+				return Boolean.TRUE;
+			});
+		List<Boolean> queried = invokeAll(allShards, queryTasks);
+		shards = new ArrayList<MergedShard>(allShards.size());
+		for (int i = 0; i < allShards.size(); i++)
+			if (queried.get(i) != null)
+				shards.add(allShards.get(i));
+		queryTimer.getDuration();
+
+		for (MergedShard shard : shards) {
+			numFound += shard.numFound;
+			if (shard.maxScore > maxScore)
+				maxScore = shard.maxScore;
+		}
+		mergeFacets();
+
+		// Merge of the sorted lists of the shards
+		Timer mergeTimer = new Timer(timer, "merge");
+		final int[] cursors = new int[shards.size()];
+		PriorityQueue<Integer> queue = new PriorityQueue<Integer>(Math.max(1,
+				shards.size()), (s1, s2) -> compare(s1, cursors[s1], s2,
+				cursors[s2]));
+		for (int s = 0; s < shards.size(); s++)
+			if (shards.get(s).size() > 0)
+				queue.add(s);
+		int[] hitShards = new int[end];
+		int[] hitRanks = new int[end];
+		float[] hitScores = new float[end];
+		int length = 0;
+		while (length < end && !queue.isEmpty()) {
+			int s = queue.poll();
+			MergedShard shard = shards.get(s);
+			hitShards[length] = s;
+			hitRanks[length] = cursors[s];
+			hitScores[length] = shard.scores[cursors[s]];
+			length++;
+			if (++cursors[s] < shard.size())
+				queue.add(s);
+		}
+		mergedScores = Arrays.copyOf(hitScores, length);
+		mergeTimer.getDuration();
+
+		// Fetch phase: the documents of the page of each shard are contiguous
+		Timer fetchTimer = new Timer(timer, "fetch phase");
+		int start = request.getStart();
+		resultDocuments = new ResultDocument[Math.max(0, length - start)];
+		final int[] firstRanks = new int[shards.size()];
+		final int[] counts = new int[shards.size()];
+		for (int pos = start; pos < length; pos++)
+			if (counts[hitShards[pos]]++ == 0)
+				firstRanks[hitShards[pos]] = hitRanks[pos];
+		List<MergedShard> fetchShards = new ArrayList<MergedShard>();
+		List<Callable<ResultDocument[]>> fetchTasks = new ArrayList<Callable<ResultDocument[]>>();
+		final int[] fetchPositions = new int[shards.size()];
+		for (int s = 0; s < shards.size(); s++) {
+			if (counts[s] == 0)
+				continue;
+			final MergedShard shard = shards.get(s);
+			final int first = firstRanks[s];
+			final int count = counts[s];
+			fetchPositions[s] = fetchShards.size();
+			fetchShards.add(shard);
+			fetchTasks.add(() -> shard.fetch(first, count));
+		}
+		List<ResultDocument[]> fetched = invokeAll(fetchShards, fetchTasks);
+		for (int pos = start; pos < length; pos++) {
+			int s = hitShards[pos];
+			ResultDocument[] documents = fetched.get(fetchPositions[s]);
+			ResultDocument document = documents == null ? null
+					: documents[hitRanks[pos] - firstRanks[s]];
+			resultDocuments[pos - start] = document != null ? document
+					: new ResultDocument(-1);
+		}
+		fetchTimer.getDuration();
+	}
+
+	private static List<MergedShard> newShards(SearchMergedRequest request) {
+		List<MergedShard> shards = new ArrayList<MergedShard>();
+		for (RemoteRequest remoteRequest : request.getRequests())
+			shards.add(MergedShard.newInstance(request, remoteRequest));
+		return shards;
+	}
+
+	/**
+	 * The remote requests do not give the indexed terms of the sort fields, so
+	 * their documents can only be merged on the score.
+	 */
+	private static void checkSort(List<MergedShard> allShards)
+			throws SearchLibException {
+		for (MergedShard shard : allShards) {
+			if (!(shard instanceof MergedShardRemote))
+				continue;
+			for (SortField sortField : shard.sortFields)
+				if (MergedShard.isValueSort(sortField))
+					throw new SearchLibException(
+							"A merged request with a remote request can only be sorted by score: "
+									+ sortField.getName());
+		}
+	}
 
+	/**
+	 * Run the tasks of the shards in parallel. The tasks which fail or do not
+	 * end before the time out are logged and give null.
+	 */
+	private <T> List<T> invokeAll(List<MergedShard> taskShards,
+			List<Callable<T>> tasks) throws SearchLibException {
+		List<T> results = new ArrayList<T>(tasks.size());
+		if (tasks.isEmpty())
+			return results;
+		int timeOut = request.getTimeOut();
+		try {
+			List<Future<T>> futures = timeOut > 0 ? executor.invokeAll(tasks,
+					timeOut, TimeUnit.MILLISECONDS) : executor.invokeAll(tasks);
+			int i = 0;
+			for (Future<T> future : futures) {
+				MergedShard shard = taskShards.get(i++);
+				try {
+					results.add(future.get());
+				} catch (CancellationException e) {
+					Logging.warn("The merged request timed out: " + shard);
+					results.add(null);
+				} catch (ExecutionException e) {
+					Logging.warn("The merged request failed: " + shard,
+							e.getCause());
+					results.add(null);
+				}
+			}
+			return results;
+		} catch (InterruptedException e) {
+			throw new SearchLibException(e);
 		}
 	}
 
+	private void mergeFacets() {
+		if (facetList == null)
+			return;
+		for (FacetField facetField : request.getFacetFieldList()) {
+			List<Facet> facets = new ArrayList<Facet>(shards.size());
+			for (MergedShard shard : shards) {
+				if (shard.facetList == null)
+					continue;
+				Facet facet = shard.facetList.getByField(facetField.getName());
+				if (facet != null)
+					facets.add(facet);
+			}
+			facetList.add(Facet.merge(facetField, facets));
+		}
+	}
+
+	/**
+	 * Compare the current documents of two shards, following the sort of the
+	 * merged request, or the score if there is no sort. The fields are
+	 * compared on their indexed terms, in the order of the terms, as the index
+	 * sorts them. The equal documents keep the order of the shards.
+	 */
+	private int compare(int s1, int rank1, int s2, int rank2) {
+		MergedShard shard1 = shards.get(s1);
+		MergedShard shard2 = shards.get(s2);
+		List<SortField> sortFields = shard1.sortFields;
+		if (sortFields.isEmpty()) {
+			int c = Float.compare(shard2.scores[rank2], shard1.scores[rank1]);
+			return c != 0 ? c : s1 - s2;
+		}
+		int i = 0;
+		for (SortField sortField : sortFields) {
+			int c;
+			if (sortField.isScore()) {
+				c = Float.compare(shard1.scores[rank1], shard2.scores[rank2]);
+				if (sortField.isDesc())
+					c = -c;
+			} else if (MergedShard.isValueSort(sortField)) {
+				String v1 = shard1.sortValues[rank1][i];
+				String v2 = shard2.sortValues[rank2][i];
+				if (v1 == null)
+					c = v2 == null ? 0 : sortField.isNullFirst() ? -1 : 1;
+				else if (v2 == null)
+					c = sortField.isNullFirst() ? 1 : -1;
+				else {
+					c = v1.compareTo(v2);
+					if (sortField.isDesc())
+						c = -c;
+				}
+			} else
+				c = 0;
+			if (c != 0)
+				return c;
+			i++;
+		}
+		return s1 - s2;
+	}
+
+	@Override
+	public int getDocLength() {
+		return mergedScores.length;
+	}
+
+	@Override
+	public float getScore(int pos) {
+		if (pos < 0 || pos >= mergedScores.length)
+			return 0;
+		return mergedScores[pos];
+	}
+
 	@Override
 	public void populate(List<IndexDocumentResult> indexDocuments)
 			throws IOException, SearchLibException {
-		// TODO Auto-generated method stub
-
+		throw new SearchLibException("Method not available");
 	}
 
 	@Override
 	public ResultDocument getDocument(int pos, Timer timer)
 			throws SearchLibException {
-		// TODO Auto-generated method stub
-		return null;
+		pos = pos - request.getStart();
+		if (pos < 0 || pos >= resultDocuments.length)
+			return null;
+		return resultDocuments[pos];
 	}
 
 }
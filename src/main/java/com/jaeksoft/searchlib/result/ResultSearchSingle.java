@@ -85,6 +85,7 @@ public class ResultSearchSingle extends AbstractResultSearch<AbstractLocalSearch
 		JoinResult[] joinResults = null;
 
 		SortFieldList sortFieldList = searchRequest.getSortFieldList();
+		SorterAbstract sorter = null;
 
 		// Are we doing join
 		if (searchRequest.isJoin()) {
@@ -96,9 +97,9 @@ public class ResultSearchSingle extends AbstractResultSearch<AbstractLocalSearch
 			t.getDuration();
 			t = new Timer(joinTimer, "join - sort");
 			if (sortFieldList != null) {
-				SorterAbstract sorter = sortFieldList.getSorter(notCollapsedDocs, reader);
-				if (sorter != null)
-					sorter.quickSort(t);
+				sorter = sortFieldList.getSorter(notCollapsedDocs, reader);
+				if (sorter != null && collapse == null)
+					sorter.partialSort(searchRequest.getEnd(), t);
 				sortFieldList = null;
 			}
 			t.getDuration();
@@ -110,16 +111,16 @@ public class ResultSearchSingle extends AbstractResultSearch<AbstractLocalSearch
 			joinTimer.getDuration();
 		}
 
-		// Handling sorting
+		// Handling sorting, only the returned documents are sorted
 		if (sortFieldList != null && !(request instanceof SearchFilterRequest)) {
-			SorterAbstract sorter = sortFieldList.getSorter(notCollapsedDocs, reader);
-			if (sorter != null)
-				sorter.quickSort(timer);
+			sorter = sortFieldList.getSorter(notCollapsedDocs, reader);
+			if (sorter != null && collapse == null)
+				sorter.partialSort(searchRequest.getEnd(), timer);
 		}
 
-		// Are we doing collapsing ?
+		// Are we doing collapsing ? The collapse sorts the documents it needs
 		if (collapse != null) {
-			collapsedDocs = collapse.collapse(reader, notCollapsedDocs, timer);
+			collapsedDocs = collapse.collapse(reader, notCollapsedDocs, sorter, timer);
 			collapsedDocCount = collapsedDocs == null ? 0 : collapsedDocs.getCollapsedCount();
 			Collection<CollapseFunctionField> functionFields = request.getCollapseFunctionFields();
 			if (functionFields != null)
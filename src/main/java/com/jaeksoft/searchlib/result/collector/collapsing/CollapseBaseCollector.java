@@ -24,6 +24,8 @@
 
 package com.jaeksoft.searchlib.result.collector.collapsing;
 
+import java.util.Arrays;
+
 import org.apache.commons.lang3.ArrayUtils;
 import org.roaringbitmap.RoaringBitmap;
 
@@ -88,22 +90,37 @@ public class CollapseBaseCollector extends
 		return pos;
 	}
 
+	/**
+	 * Trim the arrays of collapsed documents to their final size
+	 */
 	@Override
 	final public void endCollection() {
+		if (collapseDocsArray == null)
+			return;
+		for (int pos = 0; pos < currentPos; pos++) {
+			final int[] collapsedDocs = collapseDocsArray[pos];
+			if (collapsedDocs != null
+					&& collapsedDocs.length != collapseCounts[pos])
+				collapseDocsArray[pos] = Arrays.copyOf(collapsedDocs,
+						collapseCounts[pos]);
+		}
 	}
 
 	@Override
 	final public void collectCollapsedDoc(final int sourcePos,
 			final int collapsePos) {
 		totalCollapseCount++;
-		collapseCounts[collapsePos]++;
+		final int count = ++collapseCounts[collapsePos];
 		if (collapseDocsArray == null)
 			return;
-		if (collapseDocsArray[collapsePos] == null)
-			collapseDocsArray[collapsePos] = new int[] { sourceIds[sourcePos] };
-		else
-			collapseDocsArray[collapsePos] = ArrayUtils.add(
-					collapseDocsArray[collapsePos], sourceIds[sourcePos]);
+		// The arrays grow by doubling, they are trimmed by endCollection
+		int[] collapsedDocs = collapseDocsArray[collapsePos];
+		if (collapsedDocs == null)
+			collapseDocsArray[collapsePos] = collapsedDocs = new int[4];
+		else if (count > collapsedDocs.length)
+			collapseDocsArray[collapsePos] = collapsedDocs = Arrays.copyOf(
+					collapsedDocs, collapsedDocs.length << 1);
+		collapsedDocs[count - 1] = sourceIds[sourcePos];
 	}
 
 	@Override
@@ -41,18 +41,22 @@ final public class DocSetHitBaseCollector extends
 		DocSetHitCollectorInterface {
 
 	private final int maxDoc;
+	private final boolean scoreRequired;
 	public final LuceneCollector collector;
 	private Float score;
 	private int size = 0;
 
-	public DocSetHitBaseCollector(final int maxDoc, final boolean isFilterHits) {
+	public DocSetHitBaseCollector(final int maxDoc, final boolean isFilterHits,
+			final boolean scoreRequired) {
 		this.maxDoc = maxDoc;
+		this.scoreRequired = scoreRequired;
 		collector = isFilterHits ? new FilterHitsCollector()
 				: new LuceneCollector();
 	}
 
 	private DocSetHitBaseCollector(final DocSetHitBaseCollector src) {
 		this.maxDoc = src.maxDoc;
+		this.scoreRequired = src.scoreRequired;
 		this.size = src.size;
 		collector = null;
 	}
@@ -94,6 +98,13 @@ final public class DocSetHitBaseCollector extends
 			this.scorer = scorer;
 		}
 
+		/**
+		 * @return true if the collectors read the score of the documents
+		 */
+		final public boolean isScoreRequired() {
+			return scoreRequired;
+		}
+
 	}
 
 	final public class FilterHitsCollector extends LuceneCollector {
@@ -90,30 +90,15 @@ public class ScoreBufferAdvancedCollector extends ScoreBufferCollector {
 	@Override
 	final public void endCollection() {
 		parent.endCollection();
-		for (AdvancedScoreItemValue scoreItemValue : scoreItemValues)
-			scoreItemValue.endCollection();
-		if (scoreWeight <= 0)
-			endCollectionWithoutVSMScore();
-		else
-			endCollectionWithVSMScore(scoreBufferCollector.getScores());
-		scores = scoreCollector.getFinalArray();
-	}
-
-	final private void endCollectionWithoutVSMScore() {
-		for (int i = 0; i < size; i++) {
-			float sc = 0;
-			for (AdvancedScoreItemValue scoreItemValue : scoreItemValues)
-				sc += scoreItemValue.finalArray[i];
-			scoreCollector.add(sc);
-		}
-	}
-
-	final private void endCollectionWithVSMScore(float[] scores) {
-		for (int i = 0; i < size; i++) {
-			float sc = scores[i] * scoreWeight;
-			for (AdvancedScoreItemValue scoreItemValue : scoreItemValues)
-				sc += scoreItemValue.finalArray[i];
-			scoreCollector.add(sc);
+		scoreCollector.close();
+		final float[] newScores = new float[size];
+		if (scoreWeight > 0) {
+			final float[] vsmScores = scoreBufferCollector.getScores();
+			for (int i = 0; i < size; i++)
+				newScores[i] = vsmScores[i] * scoreWeight;
 		}
+		for (AdvancedScoreItemValue scoreItemValue : scoreItemValues)
+			scoreItemValue.addTo(newScores);
+		scores = newScores;
 	}
 }
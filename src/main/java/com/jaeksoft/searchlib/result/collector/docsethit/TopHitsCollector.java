@@ -0,0 +1,211 @@
+/**
+ * License Agreement for OpenSearchServer
+ *
+ * Copyright (C) 2017 Emmanuel Keller / Jaeksoft
+ *
+ * http://www.open-search-server.com
+ *
+ * This file is part of OpenSearchServer.
+ *
+ * OpenSearchServer is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ * OpenSearchServer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with OpenSearchServer.
+ *  If not, see <http://www.gnu.org/licenses/>.
+ **/
+
+package com.jaeksoft.searchlib.result.collector.docsethit;
+
+import java.io.IOException;
+
+import org.apache.commons.lang3.ArrayUtils;
+import org.roaringbitmap.RoaringBitmap;
+
+import com.jaeksoft.searchlib.index.ReaderAbstract;
+import com.jaeksoft.searchlib.result.collector.AbstractBaseCollector;
+import com.jaeksoft.searchlib.result.collector.AbstractExtendsCollector;
+import com.jaeksoft.searchlib.result.collector.CollectorInterface;
+import com.jaeksoft.searchlib.result.collector.DocIdInterface;
+import com.jaeksoft.searchlib.result.collector.ScoreInterface;
+import com.jaeksoft.searchlib.sort.SortFieldList;
+import com.jaeksoft.searchlib.sort.SorterAbstract;
+import com.jaeksoft.searchlib.sort.SorterAbstract.NoCollectorException;
+
+/**
+ * Keep only the best documents of the result. The ids and scores are stored
+ * in fixed arrays: the first positions hold a binary heap whose head is the
+ * worst document kept, the last position holds the candidate. The sorter
+ * reads these arrays, the documents are then sorted as usual.
+ *
+ * The number of documents found is counted by the base collector.
+ */
+public class TopHitsCollector
+		extends
+		AbstractExtendsCollector<DocSetHitCollectorInterface, DocSetHitBaseCollector>
+		implements DocSetHitCollectorInterface, DocIdInterface, ScoreInterface {
+
+	private final int capacity;
+	private final boolean scoreRequired;
+	private final SortFieldList sortFieldList;
+	private final ReaderAbstract reader;
+	private int[] ids;
+	private float[] scores;
+	private float maxScore;
+	private int size;
+	private SorterAbstract sorter;
+	private RoaringBitmap bitSet;
+
+	public TopHitsCollector(final DocSetHitBaseCollector base,
+			final int capacity, final boolean scoreRequired,
+			final SortFieldList sortFieldList, final ReaderAbstract reader) {
+		super(base);
+		this.capacity = capacity;
+		this.scoreRequired = scoreRequired;
+		this.sortFieldList = sortFieldList;
+		this.reader = reader;
+		ids = new int[capacity + 1];
+		scores = new float[capacity + 1];
+		maxScore = 0;
+		size = 0;
+		sorter = null;
+		bitSet = null;
+	}
+
+	private TopHitsCollector(final DocSetHitBaseCollector base,
+			final TopHitsCollector src) {
+		super(base);
+		capacity = src.capacity;
+		scoreRequired = src.scoreRequired;
+		sortFieldList = null;
+		reader = null;
+		ids = ArrayUtils.clone(src.ids);
+		scores = ArrayUtils.clone(src.scores);
+		maxScore = src.maxScore;
+		size = src.size;
+		sorter = null;
+		bitSet = null;
+	}
+
+	@Override
+	public CollectorInterface duplicate(final AbstractBaseCollector<?> base) {
+		parent.duplicate(base);
+		return new TopHitsCollector((DocSetHitBaseCollector) base, this);
+	}
+
+	@Override
+	final public void collectDoc(final int doc) throws IOException {
+		parent.collectDoc(doc);
+		final float score = scoreRequired ? base.score() : 0;
+		if (score > maxScore)
+			maxScore = score;
+		if (size < capacity) {
+			ids[size] = doc;
+			scores[size] = score;
+			if (++size == capacity && sortFieldList != null)
+				heapify();
+			return;
+		}
+		// Without sort, the first collected documents are kept
+		if (sorter == null)
+			return;
+		ids[capacity] = doc;
+		scores[capacity] = score;
+		if (sorter.compare(capacity, 0) >= 0)
+			return;
+		ids[0] = doc;
+		scores[0] = score;
+		siftDown(0);
+	}
+
+	private void heapify() throws IOException {
+		try {
+			sorter = sortFieldList.getSorter(this, reader);
+		} catch (NoCollectorException e) {
+			throw new IOException(e);
+		}
+		if (sorter == null)
+			return;
+		for (int pos = (size >>> 1) - 1; pos >= 0; pos--)
+			siftDown(pos);
+	}
+
+	private void siftDown(int pos) {
+		for (;;) {
+			int child = (pos << 1) + 1;
+			if (child >= size)
+				return;
+			if (child + 1 < size && sorter.compare(child + 1, child) > 0)
+				child++;
+			if (sorter.compare(pos, child) >= 0)
+				return;
+			doSwap(pos, child);
+			pos = child;
+		}
+	}
+
+	@Override
+	final public void doSwap(final int a, final int b) {
+		parent.doSwap(a, b);
+		int i1 = ids[a];
+		ids[a] = ids[b];
+		ids[b] = i1;
+		float s1 = scores[a];
+		scores[a] = scores[b];
+		scores[b] = s1;
+	}
+
+	@Override
+	final public void endCollection() {
+		parent.endCollection();
+		sorter = null;
+		if (ids.length != size) {
+			ids = ArrayUtils.subarray(ids, 0, size);
+			scores = ArrayUtils.subarray(scores, 0, size);
+		}
+	}
+
+	@Override
+	final public int[] getIds() {
+		return ids;
+	}
+
+	@Override
+	final public synchronized RoaringBitmap getBitSet() {
+		if (bitSet == null)
+			bitSet = RoaringBitmap.bitmapOf(ids);
+		return bitSet;
+	}
+
+	@Override
+	final public float[] getScores() {
+		return scores;
+	}
+
+	@Override
+	final public float getMaxScore() {
+		return maxScore;
+	}
+
+	@Override
+	final public int getMaxDoc() {
+		return base.getMaxDoc();
+	}
+
+	@Override
+	final public int getSize() {
+		return size;
+	}
+
+	final public int getCapacity() {
+		return capacity;
+	}
+
+}
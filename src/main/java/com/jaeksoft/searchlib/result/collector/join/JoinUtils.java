@@ -29,19 +29,21 @@ import com.jaeksoft.searchlib.join.JoinItem.JoinType;
 import com.jaeksoft.searchlib.join.JoinItem.OuterCollector;
 import com.jaeksoft.searchlib.result.collector.DocIdInterface;
 import com.jaeksoft.searchlib.result.collector.ScoreInterface;
-import com.jaeksoft.searchlib.sort.AscStringIndexSorter;
-import com.jaeksoft.searchlib.sort.SorterAbstract.NoCollectorException;
-import com.jaeksoft.searchlib.util.StringUtils;
 import com.jaeksoft.searchlib.util.Timer;
 
+/**
+ * Hash join: the foreign documents are hashed by the ordinal of their term,
+ * the local documents probe this table through the cached mapping of the
+ * local ordinals to the foreign ordinals. The local documents keep their
+ * order.
+ */
 public class JoinUtils {
 
 	final public static DocIdInterface join(final DocIdInterface docs,
 			FieldCacheIndex doc1StringIndex, DocIdInterface docs2,
 			FieldCacheIndex doc2StringIndex, int joinResultSize,
 			final int joinResultPos, Timer timer, JoinType joinType,
-			OuterCollector outerCollector, ReaderAbstract foreignReader)
-			throws NoCollectorException {
+			OuterCollector outerCollector, ReaderAbstract foreignReader) {
 
 		if (docs.getSize() == 0 && outerCollector == null)
 			return docs;
@@ -52,31 +54,33 @@ public class JoinUtils {
 		JoinDocCollector docs1 = JoinUtils.getCollector(docs, joinResultSize);
 		docs1.getForeignReaders()[joinResultPos] = foreignReader;
 
-		Timer t = new Timer(timer, "copy & sort local documents");
-		new AscStringIndexSorter(docs1, doc1StringIndex, false).quickSort(t);
+		Timer t = new Timer(timer, "ordinal mapping");
+		final int[] ordMapping = doc1StringIndex.getOrdMapping(doc2StringIndex);
 		t.getDuration();
 
-		t = new Timer(timer, "copy & sort foreign documents");
-		docs2 = (DocIdInterface) docs2.duplicate();
+		t = new Timer(timer, "hash foreign documents");
 		ScoreInterface scoreDocs2 = docs2.getCollector(ScoreInterface.class);
 		float scores2[] = scoreDocs2 != null ? scoreDocs2.getScores() : null;
-
-		new AscStringIndexSorter(docs2, doc2StringIndex, false).quickSort(t);
+		final int[] ids2 = docs2.getIds();
+		final ForeignDocs foreignDocs = new ForeignDocs(doc2StringIndex, ids2);
 		t.getDuration();
 
 		t = new Timer(timer, "join operation");
 
 		switch (joinType) {
 		case INNER:
-			innerJoin(docs1, doc1StringIndex, docs2, doc2StringIndex, scores2,
-					joinResultPos, outerCollector);
+			innerJoin(docs1, doc1StringIndex, ordMapping, foreignDocs, ids2,
+					scores2, joinResultPos);
 			break;
 		case OUTER:
-			outerJoin(docs1, doc1StringIndex, docs2, doc2StringIndex, scores2,
-					joinResultPos);
+			outerJoin(docs1, doc1StringIndex, ordMapping, foreignDocs, ids2,
+					scores2, joinResultPos);
 			break;
 		}
 
+		if (outerCollector != null)
+			collectOuter(doc2StringIndex, foreignDocs, ids2, outerCollector);
+
 		t.getDuration();
 
 		// / Duplicate on JoinCollector also made reduction
@@ -93,80 +97,104 @@ public class JoinUtils {
 	}
 
 	final private static void outerJoin(JoinDocCollector docs1,
-			FieldCacheIndex doc1StringIndex, DocIdInterface docs2,
-			FieldCacheIndex doc2StringIndex, float scores2[], int joinResultPos) {
-		float score2 = 1.0F;
-		int i1 = 0;
-		int i2 = 0;
-		int[] ids1 = docs1.getCollector(DocIdInterface.class).getIds();
-		int[] ids2 = docs2.getCollector(DocIdInterface.class).getIds();
-		while (i1 != ids1.length) {
-			int id1 = ids1[i1];
-			int id2 = ids2[i2];
-			String t1 = doc1StringIndex.lookup[doc1StringIndex.order[id1]];
-			String t2 = doc2StringIndex.lookup[doc2StringIndex.order[id2]];
-			int c = StringUtils.compareNullString(t1, t2);
-			if (c < 0) {
-				i1++;
-			} else if (c > 0) {
-				i2++;
-				// No more outer content, we can leave
-				if (i2 == ids2.length)
-					break;
-			} else {
-				if (scores2 != null)
-					score2 = scores2[i2];
-				docs1.setForeignDoc(i1, joinResultPos, id2, score2);
-				i1++;
-			}
+			FieldCacheIndex doc1StringIndex, int[] ordMapping,
+			ForeignDocs foreignDocs, int[] ids2, float scores2[],
+			int joinResultPos) {
+		int[] ids1 = docs1.getIds();
+		for (int i1 = 0; i1 < ids1.length; i1++) {
+			final int slot = foreignDocs.find(ordMapping[doc1StringIndex
+					.getOrd(ids1[i1])]);
+			if (slot == -1)
+				continue;
+			final int i2 = foreignDocs.positions[slot];
+			foreignDocs.matched[slot] = true;
+			docs1.setForeignDoc(i1, joinResultPos, ids2[i2],
+					scores2 != null ? scores2[i2] : 1.0F);
 		}
 	}
 
 	final private static void innerJoin(JoinDocCollector docs1,
-			FieldCacheIndex doc1StringIndex, DocIdInterface docs2,
-			FieldCacheIndex doc2StringIndex, float scores2[],
-			int joinResultPos, OuterCollector outerCollector) {
-		float score2 = 1.0F;
-		int i1 = 0;
-		int i2 = 0;
-		int lastOuter = -1;
-		int lastInner = -1;
+			FieldCacheIndex doc1StringIndex, int[] ordMapping,
+			ForeignDocs foreignDocs, int[] ids2, float scores2[],
+			int joinResultPos) {
 		int[] ids1 = docs1.getIds();
-		int[] ids2 = docs2.getIds();
-		while (i1 != ids1.length) {
-			final int id1 = ids1[i1];
-			final int id2 = ids2[i2];
-			final String v1 = doc1StringIndex.lookup[doc1StringIndex.order[id1]];
-			final String v2 = doc2StringIndex.lookup[doc2StringIndex.order[id2]];
-			final int c = StringUtils.compareNullString(v1, v2);
-			if (c < 0) {
+		for (int i1 = 0; i1 < ids1.length; i1++) {
+			final int slot = foreignDocs.find(ordMapping[doc1StringIndex
+					.getOrd(ids1[i1])]);
+			if (slot == -1) {
 				ids1[i1] = -1;
-				i1++;
-			} else if (c > 0) {
-				if (outerCollector != null && lastOuter != id2
-						&& lastInner != id2) {
-					outerCollector.collect(id2, v2);
-					lastOuter = id2;
-				}
-				i2++;
-				if (i2 == ids2.length)
-					while (i1 != ids1.length)
-						ids1[i1++] = -1;
-			} else {
-				if (scores2 != null)
-					score2 = scores2[i2];
-				docs1.setForeignDoc(i1, joinResultPos, id2, score2);
-				lastInner = id2;
-				i1++;
+				continue;
 			}
+			final int i2 = foreignDocs.positions[slot];
+			foreignDocs.matched[slot] = true;
+			docs1.setForeignDoc(i1, joinResultPos, ids2[i2],
+					scores2 != null ? scores2[i2] : 1.0F);
 		}
-		if (outerCollector != null) {
-			while (i2 != ids2.length) {
-				int id2 = ids2[i2++];
-				if (id2 != lastInner)
-					outerCollector.collect(id2,
-							doc2StringIndex.lookup[doc2StringIndex.order[id2]]);
+	}
+
+	/**
+	 * Give the foreign documents whose term matches no local document
+	 */
+	final private static void collectOuter(FieldCacheIndex doc2StringIndex,
+			ForeignDocs foreignDocs, int[] ids2, OuterCollector outerCollector) {
+		for (int id2 : ids2) {
+			final int ord2 = doc2StringIndex.getOrd(id2);
+			if (!foreignDocs.matched[foreignDocs.find(ord2)])
+				outerCollector.collect(id2, doc2StringIndex.getTerm(ord2));
+		}
+	}
+
+	/**
+	 * An open addressing table of the ordinals of the foreign documents. For
+	 * each ordinal, it keeps the position of the first foreign document having
+	 * this term, and whether a local document matched it.
+	 */
+	final private static class ForeignDocs {
+
+		private final int[] keys;
+		private final int[] positions;
+		private final boolean[] matched;
+		private final int mask;
+
+		private ForeignDocs(final FieldCacheIndex doc2StringIndex,
+				final int[] ids2) {
+			final int capacity = Integer.highestOneBit(Math.max(1,
+					ids2.length) << 1) << 1;
+			keys = new int[capacity];
+			positions = new int[capacity];
+			matched = new boolean[capacity];
+			mask = capacity - 1;
+			for (int i2 = 0; i2 < ids2.length; i2++) {
+				final int ord = doc2StringIndex.getOrd(ids2[i2]);
+				final int slot = slot(ord);
+				if (keys[slot] == 0) {
+					// The keys are stored plus one, 0 is an empty slot
+					keys[slot] = ord + 1;
+					positions[slot] = i2;
+				}
 			}
 		}
+
+		private int slot(final int ord) {
+			int h = ord * 0x9E3779B9;
+			h ^= h >>> 16;
+			int slot = h & mask;
+			while (keys[slot] != 0 && keys[slot] != ord + 1)
+				slot = (slot + 1) & mask;
+			return slot;
+		}
+
+		/**
+		 * @param ord
+		 *            a foreign ordinal, or -1
+		 * @return the slot of the ordinal, or -1 if no foreign document has
+		 *         this ordinal
+		 */
+		private int find(final int ord) {
+			if (ord < 0)
+				return -1;
+			final int slot = slot(ord);
+			return keys[slot] == 0 ? -1 : slot;
+		}
 	}
 }
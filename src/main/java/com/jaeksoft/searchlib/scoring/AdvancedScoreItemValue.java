@@ -39,7 +39,6 @@ public class AdvancedScoreItemValue {
 	private final float weight;
 	private float maxValue;
 	private final FloatBufferedArrayInterface valueArray;
-	public float[] finalArray;
 	private final boolean reverse;
 
 	public AdvancedScoreItemValue(final ReaderAbstract reader,
@@ -63,7 +62,6 @@ public class AdvancedScoreItemValue {
 		valueArray = FloatBufferedArrayFactory.INSTANCE.newInstance(reader
 				.maxDoc());
 		maxValue = 0;
-		finalArray = null;
 	}
 
 	public final void collect(final int doc) {
@@ -75,17 +73,25 @@ public class AdvancedScoreItemValue {
 		valueArray.add(value);
 	}
 
-	public final void endCollection() {
-		if (weight == 0)
-			return;
-		finalArray = valueArray.getFinalArray();
-		int i = 0;
-		if (reverse)
-			for (float value : finalArray)
-				finalArray[i++] = ((maxValue - value) / maxValue) * weight;
-		else
-			for (float value : finalArray)
-				finalArray[i++] = (value / maxValue) * weight;
+	/**
+	 * Add the weighted value of each collected document to its score. The
+	 * buffer is read in place, then released.
+	 * 
+	 * @param scores
+	 *            the scores, in collection order
+	 */
+	public final void addTo(final float[] scores) {
+		try {
+			if (weight == 0)
+				return;
+			final int[] pos = { 0 };
+			if (reverse)
+				valueArray.forEach(value -> scores[pos[0]++] += ((maxValue - value) / maxValue) * weight);
+			else
+				valueArray.forEach(value -> scores[pos[0]++] += (value / maxValue) * weight);
+		} finally {
+			valueArray.close();
+		}
 	}
 
 }
@@ -56,7 +56,7 @@ public abstract class AbstractJoinStringIndexSorter extends
 	@Override
 	public String toString(final int pos) {
 		StringBuilder sb = new StringBuilder("StringIndex: ");
-		sb.append(stringIndex.lookup[stringIndex.order[foreignDocIdsArray[pos][joinPosition]]]);
+		sb.append(stringIndex.getDocTerm(foreignDocIdsArray[pos][joinPosition]));
 		return sb.toString();
 	}
 }
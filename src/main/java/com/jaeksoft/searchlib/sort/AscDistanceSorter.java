@@ -45,4 +45,13 @@ public class AscDistanceSorter extends AbstractDistanceSorter {
 			return 0;
 	}
 
+	@Override
+	final public boolean hasSortKey() {
+		return true;
+	}
+
+	@Override
+	final public int getSortKey(final int pos) {
+		return getSortKey(distances[pos]);
+	}
 }
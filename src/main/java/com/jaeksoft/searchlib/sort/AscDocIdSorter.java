@@ -38,4 +38,13 @@ public class AscDocIdSorter extends AbstractDocIdSorter {
 		return ids[pos1] - ids[pos2];
 	}
 
+	@Override
+	final public boolean hasSortKey() {
+		return true;
+	}
+
+	@Override
+	final public int getSortKey(final int pos) {
+		return ids[pos];
+	}
 }
@@ -45,4 +45,13 @@ public class AscScoreSorter extends AbstractScoreSorter {
 			return 0;
 	}
 
+	@Override
+	final public boolean hasSortKey() {
+		return true;
+	}
+
+	@Override
+	final public int getSortKey(final int pos) {
+		return getSortKey(scores[pos]);
+	}
 }
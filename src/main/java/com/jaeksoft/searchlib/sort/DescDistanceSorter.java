@@ -44,4 +44,14 @@ public class DescDistanceSorter extends AbstractDistanceSorter {
 		else
 			return 0;
 	}
+
+	@Override
+	final public boolean hasSortKey() {
+		return true;
+	}
+
+	@Override
+	final public int getSortKey(final int pos) {
+		return ~getSortKey(distances[pos]);
+	}
 }
@@ -37,12 +37,25 @@ public class DescStringIndexSorter extends AbstractStringIndexSorter {
 
 	@Override
 	final public int compare(final int pos1, final int pos2) {
-		int ord1 = stringIndex.order[ids[pos1]];
-		int ord2 = stringIndex.order[ids[pos2]];
+		int ord1 = stringIndex.getOrd(ids[pos1]);
+		int ord2 = stringIndex.getOrd(ids[pos2]);
 		if (ord1 == 0)
 			return ord2 == 0 ? 0 : pos1null;
 		if (ord2 == 0)
 			return pos2null;
 		return ord2 - ord1;
 	}
+
+	@Override
+	final public boolean hasSortKey() {
+		return true;
+	}
+
+	@Override
+	final public int getSortKey(final int pos) {
+		final int ord = stringIndex.getOrd(ids[pos]);
+		if (ord == 0)
+			return pos1null < 0 ? Integer.MIN_VALUE : Integer.MAX_VALUE;
+		return -ord;
+	}
 }
@@ -33,6 +33,8 @@ import com.jaeksoft.searchlib.util.Timer;
 public class SortListSorter extends SorterAbstract {
 
 	final private SorterAbstract[] sorterList;
+	final private int size;
+	private int[][] sortKeys;
 
 	protected SortListSorter(final SortFieldList sortFieldList,
 			final CollectorInterface collector, final ReaderAbstract reader)
@@ -42,10 +44,43 @@ public class SortListSorter extends SorterAbstract {
 		int i = 0;
 		for (SortField sortField : sortFieldList)
 			sorterList[i++] = sortField.getSorter(collector, reader);
+		size = collector.getSize();
+		sortKeys = null;
+	}
+
+	/**
+	 * When every sorter has a sort key, the keys are computed once, the
+	 * comparisons then only read int arrays.
+	 */
+	private void prepareSortKeys() {
+		if (sortKeys != null)
+			return;
+		for (SorterAbstract sorter : sorterList)
+			if (!sorter.hasSortKey())
+				return;
+		final int[][] keys = new int[sorterList.length][];
+		for (int i = 0; i < sorterList.length; i++) {
+			final SorterAbstract sorter = sorterList[i];
+			final int[] key = new int[size];
+			for (int pos = 0; pos < size; pos++)
+				key[pos] = sorter.getSortKey(pos);
+			keys[i] = key;
+		}
+		sortKeys = keys;
 	}
 
 	@Override
 	final public int compare(final int pos1, final int pos2) {
+		final int[][] keys = sortKeys;
+		if (keys != null) {
+			for (int[] key : keys) {
+				final int k1 = key[pos1];
+				final int k2 = key[pos2];
+				if (k1 != k2)
+					return k1 < k2 ? -1 : 1;
+			}
+			return 0;
+		}
 		for (SorterAbstract sorter : sorterList) {
 			int c = sorter.compare(pos1, pos2);
 			if (c != 0)
@@ -63,11 +98,40 @@ public class SortListSorter extends SorterAbstract {
 			sorterList[0].quickSort(timer);
 			break;
 		default:
+			prepareSortKeys();
 			super.quickSort(timer);
 			break;
 		}
 	}
 
+	@Override
+	final public void partialSort(final int count, final Timer timer) {
+		switch (sorterList.length) {
+		case 0:
+			return;
+		case 1:
+			sorterList[0].partialSort(count, timer);
+			break;
+		default:
+			prepareSortKeys();
+			super.partialSort(count, timer);
+			break;
+		}
+	}
+
+	@Override
+	final public void swap(final int pos1, final int pos2) {
+		super.swap(pos1, pos2);
+		final int[][] keys = sortKeys;
+		if (keys == null)
+			return;
+		for (int[] key : keys) {
+			final int k = key[pos1];
+			key[pos1] = key[pos2];
+			key[pos2] = k;
+		}
+	}
+
 	@Override
 	final public boolean isScore() {
 		for (SorterAbstract sorter : sorterList)
@@ -25,34 +25,144 @@
 package com.jaeksoft.searchlib.sort;
 
 import it.unimi.dsi.fastutil.Arrays;
+import it.unimi.dsi.fastutil.Swapper;
 import it.unimi.dsi.fastutil.ints.IntComparator;
 
 import com.jaeksoft.searchlib.SearchLibException;
 import com.jaeksoft.searchlib.result.collector.CollectorInterface;
 import com.jaeksoft.searchlib.util.Timer;
 
-public abstract class SorterAbstract implements IntComparator {
+public abstract class SorterAbstract implements IntComparator, Swapper {
 
 	private final CollectorInterface collector;
+	private int sortedCount;
 
 	protected SorterAbstract(final CollectorInterface collector) {
 		this.collector = collector;
+		this.sortedCount = 0;
 	}
 
 	public abstract String toString(int pos);
 
+	/**
+	 * A sorter has a sort key when its order is the natural order of an int
+	 * computed for each position. Several keys are compared without calling
+	 * the sorters.
+	 * 
+	 * @return true if {@link #getSortKey(int)} is supported
+	 */
+	public boolean hasSortKey() {
+		return false;
+	}
+
+	/**
+	 * Only meaningful when {@link #hasSortKey()} returns true, the sorters
+	 * having a sort key override it. The other sorters return 0 for every
+	 * position: all their documents would have the same key.
+	 * 
+	 * @param pos
+	 *            the position of the document
+	 * @return the sort key of the document, or 0 if the sorter has no sort key
+	 */
+	public int getSortKey(final int pos) {
+		return 0;
+	}
+
+	/**
+	 * @param value
+	 *            a float value
+	 * @return an int having the same order than the float value
+	 */
+	protected final static int getSortKey(final float value) {
+		// Adding 0 turns -0.0 into 0.0
+		final int bits = Float.floatToIntBits(value + 0.0F);
+		return bits ^ ((bits >> 31) & 0x7FFFFFFF);
+	}
+
 	@Override
 	final public int compare(final Integer pos1, final Integer pos2) {
 		return compare((int) pos1, (int) pos2);
 	}
 
+	@Override
+	public void swap(final int pos1, final int pos2) {
+		collector.swap(pos1, pos2);
+	}
+
 	public void quickSort(Timer timer) {
 		int numFound = collector.getSize();
 		Timer t = new Timer(timer, "Sort (quicksort): " + numFound);
-		Arrays.parallelQuickSort(0, numFound, this, collector);
+		Arrays.parallelQuickSort(0, numFound, this, this);
+		sortedCount = numFound;
 		t.end(null);
 	}
 
+	/**
+	 * Sort only the first documents. The best documents are selected and
+	 * sorted, the order of the next ones is undefined. Calling it again with
+	 * a larger count sorts the following documents.
+	 * 
+	 * @param count
+	 *            the number of documents to sort
+	 * @param timer
+	 */
+	public void partialSort(int count, final Timer timer) {
+		final int numFound = collector.getSize();
+		if (count >= numFound / 2 && sortedCount == 0) {
+			quickSort(timer);
+			return;
+		}
+		if (count > numFound)
+			count = numFound;
+		if (count <= sortedCount)
+			return;
+		Timer t = new Timer(timer, "Sort (partial): " + sortedCount + "-"
+				+ count + " / " + numFound);
+		select(sortedCount, numFound, count);
+		Arrays.quickSort(sortedCount, count, this, this);
+		sortedCount = count;
+		t.end(null);
+	}
+
+	/**
+	 * Quickselect: move the documents so that the documents before the
+	 * position k are not greater than the documents after it. The partition
+	 * is done in three ways, the many equal values of a field with few terms
+	 * end the selection early.
+	 */
+	private void select(int from, int to, final int k) {
+		while (k > from && k < to && to - from > 1) {
+			swap(from, medianOf3(from, (from + to) >>> 1, to - 1));
+			// The pivot stays at the position lt
+			int lt = from;
+			int i = from + 1;
+			int gt = to - 1;
+			while (i <= gt) {
+				final int c = compare(i, lt);
+				if (c < 0)
+					swap(lt++, i++);
+				else if (c > 0)
+					swap(i, gt--);
+				else
+					i++;
+			}
+			if (k <= lt)
+				to = lt;
+			else if (k > gt + 1)
+				from = gt + 1;
+			else
+				return;
+		}
+	}
+
+	private int medianOf3(final int a, final int b, final int c) {
+		final int ab = compare(a, b);
+		final int ac = compare(a, c);
+		final int bc = compare(b, c);
+		return ab < 0 ? (bc < 0 ? b : ac < 0 ? c : a) : (bc > 0 ? b
+				: ac > 0 ? c : a);
+	}
+
 	public void check(Timer timer) {
 		int l = collector.getSize();
 		if (l == 0)
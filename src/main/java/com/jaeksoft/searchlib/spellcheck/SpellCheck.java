@@ -33,7 +33,7 @@ import java.util.Set;
 
 import org.apache.commons.lang3.StringUtils;
 import org.apache.lucene.index.Term;
-import org.apache.lucene.search.spell.SpellChecker;
+import org.apache.lucene.search.spell.StringDistance;
 
 import com.jaeksoft.searchlib.SearchLibException;
 import com.jaeksoft.searchlib.function.expression.SyntaxError;
@@ -53,7 +53,7 @@ public class SpellCheck implements Iterable<SpellCheckItem> {
 			SpellCheckField spellCheckField) throws ParseException,
 			SyntaxError, IOException, SearchLibException {
 		fieldName = spellCheckField.getName();
-		SpellChecker spellchecker = reader.getSpellChecker(fieldName);
+		SpellCheckDictionary dictionary = reader.getSpellCheckDictionary(fieldName);
 		Set<String> wordSet = new LinkedHashSet<String>();
 
 		Set<Term> set = request.getTermSet(spellCheckField.getName());
@@ -62,26 +62,20 @@ public class SpellCheck implements Iterable<SpellCheckItem> {
 				wordSet.add(term.text());
 		int suggestionNumber = spellCheckField.getSuggestionNumber();
 		float minScore = spellCheckField.getMinScore();
-		synchronized (spellchecker) {
-			spellchecker.setAccuracy(minScore);
-			spellchecker.setStringDistance(spellCheckField.getStringDistance()
-					.getNewInstance());
-			spellCheckItems = new ArrayList<SpellCheckItem>();
-			for (String word : wordSet) {
-				String[] suggestions = spellchecker.suggestSimilar(word,
-						suggestionNumber);
-				int s = 1;
-				if (suggestions != null)
-					s += suggestions.length;
-				SuggestionItem[] suggestionItems = new SuggestionItem[s];
-				int i = 0;
-				suggestionItems[i++] = new SuggestionItem(word);
-				if (suggestions != null) {
-					for (String suggestion : suggestions)
-						suggestionItems[i++] = new SuggestionItem(suggestion);
-					spellCheckItems.add(new SpellCheckItem(word,
-							suggestionItems));
-				}
+		StringDistance distance = spellCheckField.getStringDistance().getNewInstance();
+		spellCheckItems = new ArrayList<SpellCheckItem>();
+		for (String word : wordSet) {
+			String[] suggestions = dictionary.suggestSimilar(word, suggestionNumber, minScore, distance);
+			int s = 1;
+			if (suggestions != null)
+				s += suggestions.length;
+			SuggestionItem[] suggestionItems = new SuggestionItem[s];
+			int i = 0;
+			suggestionItems[i++] = new SuggestionItem(word);
+			if (suggestions != null) {
+				for (String suggestion : suggestions)
+					suggestionItems[i++] = new SuggestionItem(suggestion);
+				spellCheckItems.add(new SpellCheckItem(word, suggestionItems));
 			}
 		}
 		List<String> highers = new ArrayList<String>(spellCheckItems.size());
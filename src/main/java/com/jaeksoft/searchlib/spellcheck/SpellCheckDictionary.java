@@ -0,0 +1,137 @@
+/**
+ * License Agreement for OpenSearchServer
+ * <p>
+ * Copyright (C) 2017 Emmanuel Keller / Jaeksoft
+ * <p>
+ * http://www.open-search-server.com
+ * <p>
+ * This file is part of OpenSearchServer.
+ * <p>
+ * OpenSearchServer is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * <p>
+ * OpenSearchServer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * <p>
+ * You should have received a copy of the GNU General Public License
+ * along with OpenSearchServer.
+ * If not, see <http://www.gnu.org/licenses/>.
+ **/
+
+package com.jaeksoft.searchlib.spellcheck;
+
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.search.spell.StringDistance;
+import org.apache.lucene.util.ReaderUtil;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The spelling dictionary of one field of a reader, made of the automatons of
+ * its segments. The dictionary is immutable, the lookups run concurrently.
+ */
+public class SpellCheckDictionary {
+
+	private final SpellCheckSegment[] segments;
+
+	private SpellCheckDictionary(final SpellCheckSegment[] segments) {
+		this.segments = segments;
+	}
+
+	/**
+	 * @param indexReader the reader
+	 * @param fieldName   the name of the field
+	 * @param directory   the spellcheck directory of the index, or null
+	 * @return a new dictionary, sharing the automatons of the known segments
+	 * @throws IOException
+	 */
+	public static SpellCheckDictionary build(final IndexReader indexReader, final String fieldName,
+			final File directory) throws IOException {
+		final List<IndexReader> subReaders = new ArrayList<IndexReader>();
+		ReaderUtil.gatherSubReaders(subReaders, indexReader);
+		final SpellCheckSegment[] segments = new SpellCheckSegment[subReaders.size()];
+		int i = 0;
+		for (IndexReader subReader : subReaders)
+			segments[i++] = SpellCheckSegment.get(subReader, fieldName, directory);
+		return new SpellCheckDictionary(segments);
+	}
+
+	/**
+	 * Delete the saved automatons of the segments which are not part of the
+	 * reader
+	 *
+	 * @param indexReader the current reader of the index
+	 * @param directory   the spellcheck directory of the index
+	 */
+	public static void purge(final IndexReader indexReader, final File directory) {
+		final List<IndexReader> subReaders = new ArrayList<IndexReader>();
+		ReaderUtil.gatherSubReaders(subReaders, indexReader);
+		SpellCheckSegment.purge(subReaders, directory);
+	}
+
+	/**
+	 * Find the terms close to the word. The candidates are the terms within
+	 * one edit for the words up to four chars, two edits for the longer ones.
+	 * They are scored with the given distance, the best scores first, then the
+	 * most frequent first.
+	 *
+	 * @param word     the word to check
+	 * @param number   the maximum number of suggestions
+	 * @param minScore the minimum score of a suggestion
+	 * @param distance the distance used to score the candidates
+	 * @return the suggestions, the word itself excluded
+	 * @throws IOException
+	 */
+	public String[] suggestSimilar(final String word, final int number, final float minScore,
+			final StringDistance distance) throws IOException {
+		if (word == null || word.isEmpty() || number <= 0)
+			return new String[0];
+		final int maxEdits = word.length() <= 4 ? 1 : 2;
+		final Map<String, Long> candidates = new HashMap<String, Long>();
+		for (SpellCheckSegment segment : segments)
+			segment.collect(word, maxEdits, candidates);
+		candidates.remove(word);
+		final List<Suggestion> suggestions = new ArrayList<Suggestion>(candidates.size());
+		candidates.forEach((term, freq) -> {
+			final float score = distance.getDistance(word, term);
+			if (score >= minScore)
+				suggestions.add(new Suggestion(term, score, freq));
+		});
+		suggestions.sort(null);
+		final int size = Math.min(number, suggestions.size());
+		final String[] result = new String[size];
+		for (int i = 0; i < size; i++)
+			result[i] = suggestions.get(i).term;
+		return result;
+	}
+
+	private static class Suggestion implements Comparable<Suggestion> {
+
+		private final String term;
+		private final float score;
+		private final long freq;
+
+		private Suggestion(final String term, final float score, final long freq) {
+			this.term = term;
+			this.score = score;
+			this.freq = freq;
+		}
+
+		@Override
+		public int compareTo(final Suggestion o) {
+			final int c = Float.compare(o.score, score);
+			if (c != 0)
+				return c;
+			return Long.compare(o.freq, freq);
+		}
+	}
+}
@@ -0,0 +1,319 @@
+/**
+ * License Agreement for OpenSearchServer
+ * <p>
+ * Copyright (C) 2017 Emmanuel Keller / Jaeksoft
+ * <p>
+ * http://www.open-search-server.com
+ * <p>
+ * This file is part of OpenSearchServer.
+ * <p>
+ * OpenSearchServer is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * <p>
+ * OpenSearchServer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * <p>
+ * You should have received a copy of the GNU General Public License
+ * along with OpenSearchServer.
+ * If not, see <http://www.gnu.org/licenses/>.
+ **/
+
+package com.jaeksoft.searchlib.spellcheck;
+
+import com.jaeksoft.searchlib.Logging;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.SegmentReader;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.index.TermEnum;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.store.IndexInput;
+import org.apache.lucene.store.IndexOutput;
+import org.apache.lucene.util.IntsRef;
+import org.apache.lucene.util.fst.Builder;
+import org.apache.lucene.util.fst.FST;
+import org.apache.lucene.util.fst.PositiveIntOutputs;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URLEncoder;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The terms of one field in one segment, as a finite state automaton whose
+ * output is the document frequency. The labels are the UTF-16 chars, the
+ * order of the term enum.
+ * <p>
+ * The automatons are cached per segment core, a reopened reader only builds
+ * the automatons of its new segments. They are also saved in the spellcheck
+ * directory of the index owning the segments, and loaded back after a
+ * restart. A saved automaton is only loaded if the files of the segment are
+ * the ones it was built from: the segment names start again at _0 after a
+ * deleteAll or a full push.
+ */
+class SpellCheckSegment {
+
+	private final static int VERSION = 2;
+
+	private final static String EXTENSION = ".spell";
+
+	private final static Map<Object, Map<String, SpellCheckSegment>> CACHE = new WeakHashMap<>();
+
+	private final FST<Long> fst;
+
+	private SpellCheckSegment(final FST<Long> fst) {
+		this.fst = fst;
+	}
+
+	/**
+	 * @param segmentReader the reader of one segment
+	 * @param fieldName     the name of the field
+	 * @param directory     the spellcheck directory of the index, or null
+	 * @return the cached automaton, loaded or built on first use
+	 * @throws IOException
+	 */
+	static SpellCheckSegment get(final IndexReader segmentReader, final String fieldName, final File directory)
+			throws IOException {
+		final Map<String, SpellCheckSegment> fieldMap;
+		synchronized (CACHE) {
+			fieldMap = CACHE.computeIfAbsent(segmentReader.getCoreCacheKey(), key -> new ConcurrentHashMap<>());
+		}
+		SpellCheckSegment segment = fieldMap.get(fieldName);
+		if (segment != null)
+			return segment;
+		synchronized (fieldMap) {
+			segment = fieldMap.get(fieldName);
+			if (segment != null)
+				return segment;
+			segment = load(segmentReader, fieldName, directory);
+			fieldMap.put(fieldName, segment);
+			return segment;
+		}
+	}
+
+	private static SpellCheckSegment load(final IndexReader segmentReader, final String fieldName,
+			final File directory) throws IOException {
+		final File file = getFile(directory, segmentReader, fieldName);
+		if (file != null && file.exists()) {
+			try {
+				final SpellCheckSegment segment = read(file, segmentReader, fieldName);
+				if (segment != null)
+					return segment;
+			} catch (IOException e) {
+				Logging.warn("Cannot read the spellcheck file " + file, e);
+			}
+		}
+		final SpellCheckSegment segment = build(segmentReader, fieldName);
+		if (file != null) {
+			try {
+				segment.write(file, segmentReader, fieldName);
+			} catch (IOException e) {
+				Logging.warn("Cannot write the spellcheck file " + file, e);
+			}
+		}
+		return segment;
+	}
+
+	private static SpellCheckSegment build(final IndexReader segmentReader, final String fieldName)
+			throws IOException {
+		final Builder<Long> builder = new Builder<Long>(FST.INPUT_TYPE.BYTE2, PositiveIntOutputs.getSingleton(true));
+		final IntsRef input = new IntsRef();
+		long count = 0;
+		final TermEnum termEnum = segmentReader.terms(new Term(fieldName, ""));
+		try {
+			do {
+				final Term term = termEnum.term();
+				if (term == null || !fieldName.equals(term.field()))
+					break;
+				final String text = term.text();
+				if (text.isEmpty())
+					continue;
+				input.grow(text.length());
+				for (int i = 0; i < text.length(); i++)
+					input.ints[i] = text.charAt(i);
+				input.length = text.length();
+				builder.add(input, (long) termEnum.docFreq());
+				count++;
+			} while (termEnum.next());
+		} finally {
+			termEnum.close();
+		}
+		return new SpellCheckSegment(count == 0 ? null : builder.finish());
+	}
+
+	private static File getFile(final File directory, final IndexReader segmentReader, final String fieldName)
+			throws IOException {
+		if (directory == null || !(segmentReader instanceof SegmentReader))
+			return null;
+		return new File(directory, ((SegmentReader) segmentReader).getSegmentName() + '.' +
+				URLEncoder.encode(fieldName, "UTF-8") + EXTENSION);
+	}
+
+	/**
+	 * @param segmentReader the reader of one segment
+	 * @param fieldName     the name of the field
+	 * @return a hash of the names, the lengths and the modification times of
+	 * the files of the segment, with the first term of the field and its
+	 * document frequency
+	 * @throws IOException
+	 */
+	private static long getSegmentIdentity(final SegmentReader segmentReader, final String fieldName)
+			throws IOException {
+		final Directory directory = segmentReader.directory();
+		final String prefix = segmentReader.getSegmentName() + '.';
+		final String[] names = directory.listAll();
+		Arrays.sort(names);
+		long identity = segmentReader.maxDoc();
+		for (String name : names) {
+			if (!name.startsWith(prefix))
+				continue;
+			identity = identity * 31 + name.hashCode();
+			identity = identity * 31 + directory.fileLength(name);
+			identity = identity * 31 + directory.fileModified(name);
+		}
+		final TermEnum termEnum = segmentReader.terms(new Term(fieldName, ""));
+		try {
+			final Term term = termEnum.term();
+			if (term != null && fieldName.equals(term.field())) {
+				identity = identity * 31 + term.text().hashCode();
+				identity = identity * 31 + termEnum.docFreq();
+			}
+		} finally {
+			termEnum.close();
+		}
+		return identity;
+	}
+
+	/**
+	 * @return the saved automaton, or null if the file does not describe this
+	 * segment
+	 */
+	private static SpellCheckSegment read(final File file, final IndexReader segmentReader, final String fieldName)
+			throws IOException {
+		try (final Directory directory = FSDirectory.open(file.getParentFile())) {
+			try (final IndexInput input = directory.openInput(file.getName())) {
+				if (input.readVInt() != VERSION)
+					return null;
+				if (!fieldName.equals(input.readString()))
+					return null;
+				if (input.readVInt() != segmentReader.maxDoc())
+					return null;
+				if (input.readVLong() != ((SegmentReader) segmentReader).getUniqueTermCount())
+					return null;
+				if (input.readLong() != getSegmentIdentity((SegmentReader) segmentReader, fieldName))
+					return null;
+				return new SpellCheckSegment(
+						input.readByte() == 0 ? null : new FST<Long>(input, PositiveIntOutputs.getSingleton(true)));
+			}
+		}
+	}
+
+	private void write(final File file, final IndexReader segmentReader, final String fieldName)
+			throws IOException {
+		final File parent = file.getParentFile();
+		if (!parent.exists())
+			parent.mkdir();
+		final File tmpFile = new File(parent, file.getName() + ".tmp");
+		try (final Directory directory = FSDirectory.open(parent)) {
+			try (final IndexOutput output = directory.createOutput(tmpFile.getName())) {
+				output.writeVInt(VERSION);
+				output.writeString(fieldName);
+				output.writeVInt(segmentReader.maxDoc());
+				output.writeVLong(((SegmentReader) segmentReader).getUniqueTermCount());
+				output.writeLong(getSegmentIdentity((SegmentReader) segmentReader, fieldName));
+				output.writeByte((byte) (fst == null ? 0 : 1));
+				if (fst != null)
+					fst.save(output);
+			}
+		}
+		Files.move(tmpFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+				StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	/**
+	 * Delete the saved automatons of the segments which are no longer used
+	 *
+	 * @param segmentReaders the segments of the current reader of the index
+	 * @param directory      the spellcheck directory of the index
+	 */
+	static void purge(final Collection<IndexReader> segmentReaders, final File directory) {
+		final Collection<String> segmentNames = new HashSet<>();
+		for (IndexReader segmentReader : segmentReaders)
+			if (segmentReader instanceof SegmentReader)
+				segmentNames.add(((SegmentReader) segmentReader).getSegmentName());
+		final File[] files = directory.listFiles();
+		if (files == null)
+			return;
+		for (File file : files) {
+			final String name = file.getName();
+			final int i = name.indexOf('.');
+			if (i == -1 || segmentNames.contains(name.substring(0, i)))
+				continue;
+			if (!file.delete())
+				Logging.warn("Cannot delete the spellcheck file " + file);
+		}
+	}
+
+	/**
+	 * Collect the terms within the given number of edits from the word. The
+	 * automaton is walked keeping one row of the Levenshtein matrix, a branch
+	 * is left as soon as the row exceeds the maximum distance.
+	 *
+	 * @param word       the misspelled word
+	 * @param maxEdits   the maximum number of edits
+	 * @param candidates the terms found, with the sum of their document
+	 *                   frequencies
+	 * @throws IOException
+	 */
+	void collect(final String word, final int maxEdits, final Map<String, Long> candidates) throws IOException {
+		if (fst == null)
+			return;
+		final int[] row = new int[word.length() + 1];
+		for (int i = 0; i < row.length; i++)
+			row[i] = i;
+		collect(word, maxEdits, fst.getFirstArc(new FST.Arc<Long>()), fst.outputs.getNoOutput(), row,
+				new StringBuilder(), candidates);
+	}
+
+	private void collect(final String word, final int maxEdits, final FST.Arc<Long> node, final Long output,
+			final int[] row, final StringBuilder path, final Map<String, Long> candidates) throws IOException {
+		final FST.Arc<Long> arc = fst.readFirstTargetArc(node, new FST.Arc<Long>());
+		final int[] nextRow = new int[row.length];
+		for (;;) {
+			if (arc.label != FST.END_LABEL) {
+				final char c = (char) arc.label;
+				nextRow[0] = row[0] + 1;
+				int min = nextRow[0];
+				for (int i = 1; i < row.length; i++) {
+					final int cost = word.charAt(i - 1) == c ? 0 : 1;
+					nextRow[i] = Math.min(Math.min(row[i] + 1, nextRow[i - 1] + 1), row[i - 1] + cost);
+					if (nextRow[i] < min)
+						min = nextRow[i];
+				}
+				if (min <= maxEdits) {
+					path.append(c);
+					final Long arcOutput = fst.outputs.add(output, arc.output);
+					if (arc.isFinal() && nextRow[word.length()] <= maxEdits)
+						candidates.merge(path.toString(), fst.outputs.add(arcOutput, arc.nextFinalOutput), Long::sum);
+					if (FST.targetHasArcs(arc))
+						collect(word, maxEdits, arc, arcOutput, nextRow.clone(), path, candidates);
+					path.setLength(path.length() - 1);
+				}
+			}
+			if (arc.isLast())
+				break;
+			fst.readNextArc(arc);
+		}
+	}
+}
@@ -25,180 +25,191 @@
 package com.jaeksoft.searchlib.statistics;
 
 import java.util.Date;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 
-import javax.xml.bind.annotation.XmlAccessType;
-import javax.xml.bind.annotation.XmlAccessorType;
-
+import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.annotation.JsonIgnore;
-import com.jaeksoft.searchlib.util.ReadWriteLock;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonProperty;
 import com.jaeksoft.searchlib.util.Timer;
 
-@XmlAccessorType(XmlAccessType.FIELD)
+/**
+ * The durations measured during one period. The counters are updated without
+ * lock, the distribution of the durations is kept in a histogram.
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
 public class Aggregate {
 
-	@JsonIgnore
-	private final ReadWriteLock rwl = new ReadWriteLock();
+	private final static int STRIPES = 4;
 
-	private Date startTime;
+	private final Date startTime;
 
-	private long count;
+	private final LongAdder count;
 
-	private long max;
+	private final LongAdder totalDuration;
 
-	private String maxInfo;
+	private final AtomicLong max;
 
-	private long min;
+	private volatile String maxInfo;
 
-	private float average;
+	private final AtomicLong min;
 
-	protected long nextStart;
+	protected final long nextStart;
 
-	private long error;
+	private final LongAdder error;
 
-	private String lastError;
+	private volatile String lastError;
 
-	protected Aggregate() {
-	}
+	private final LatencyHistogram histogram;
 
 	protected Aggregate(long startTime, long nextStart) {
 		this.startTime = new Date(startTime);
 		this.nextStart = nextStart;
-		count = 0;
-		error = 0;
-		max = 0;
-		min = Long.MAX_VALUE;
-		average = 0;
+		count = new LongAdder();
+		totalDuration = new LongAdder();
+		error = new LongAdder();
+		max = new AtomicLong(0);
+		min = new AtomicLong(Long.MAX_VALUE);
 		maxInfo = null;
 		lastError = null;
+		histogram = new LatencyHistogram(STRIPES);
+	}
+
+	/**
+	 * Rebuild a saved aggregate. The files written before the histograms
+	 * were introduced have no histogram.
+	 */
+	@JsonCreator
+	protected Aggregate(@JsonProperty("startTime") Date startTime, @JsonProperty("nextStart") long nextStart,
+			@JsonProperty("count") long count, @JsonProperty("average") float average,
+			@JsonProperty("min") long min, @JsonProperty("max") long max,
+			@JsonProperty("maxInfo") String maxInfo, @JsonProperty("error") long error,
+			@JsonProperty("lastError") String lastError, @JsonProperty("histogram") LatencyHistogram histogram) {
+		this.startTime = startTime;
+		this.nextStart = nextStart;
+		this.count = new LongAdder();
+		this.count.add(count);
+		this.totalDuration = new LongAdder();
+		this.totalDuration.add(Math.round((double) average * count));
+		this.error = new LongAdder();
+		this.error.add(error);
+		this.max = new AtomicLong(max);
+		this.min = new AtomicLong(min);
+		this.maxInfo = maxInfo;
+		this.lastError = lastError;
+		this.histogram = histogram != null ? histogram : new LatencyHistogram(1);
 	}
 
 	protected void add(Timer timer) {
-		rwl.w.lock();
-		try {
-			long duration = timer.getDuration();
-			if (duration > max) {
-				max = duration;
+		long duration = timer.getDuration();
+		long m;
+		while (duration > (m = max.get())) {
+			if (max.compareAndSet(m, duration)) {
 				maxInfo = timer.getInfo();
+				break;
 			}
-			if (duration < min)
-				min = duration;
-			if (count != 0) {
-				float added = average + (float) duration / (float) count;
-				float nn1 = (float) count / (float) ++count;
-				average = added * nn1;
-			} else {
-				average = duration;
-				count++;
-			}
-			String err = timer.getError();
-			if (err != null) {
-				lastError = err;
-				error++;
-			}
-		} finally {
-			rwl.w.unlock();
+		}
+		while (duration < (m = min.get()))
+			if (min.compareAndSet(m, duration))
+				break;
+		totalDuration.add(duration);
+		histogram.record(duration);
+		count.increment();
+		String err = timer.getError();
+		if (err != null) {
+			lastError = err;
+			error.increment();
 		}
 	}
 
 	public long getMin() {
-		rwl.r.lock();
-		try {
-			return min;
-		} finally {
-			rwl.r.unlock();
-		}
+		return min.get();
 	}
 
 	public long getMax() {
-		rwl.r.lock();
-		try {
-			return max;
-		} finally {
-			rwl.r.unlock();
-		}
+		return max.get();
 	}
 
 	public long getError() {
-		rwl.r.lock();
-		try {
-			return error;
-		} finally {
-			rwl.r.unlock();
-		}
+		return error.sum();
 	}
 
 	public String getLastError() {
-		rwl.r.lock();
-		try {
-			return lastError;
-		} finally {
-			rwl.r.unlock();
-		}
+		return lastError;
 	}
 
 	public String getMaxInfo() {
-		rwl.r.lock();
-		try {
-			return maxInfo;
-		} finally {
-			rwl.r.unlock();
-		}
+		return maxInfo;
 	}
 
 	public long getCount() {
-		rwl.r.lock();
-		try {
-			return count;
-		} finally {
-			rwl.r.unlock();
-		}
+		return count.sum();
 	}
 
 	public float getAverage() {
-		rwl.r.lock();
-		try {
-			return average;
-		} finally {
-			rwl.r.unlock();
-		}
+		long n = count.sum();
+		if (n == 0)
+			return 0;
+		return (float) ((double) totalDuration.sum() / n);
 	}
 
 	public Date getStartTime() {
-		rwl.r.lock();
-		try {
-			return startTime;
-		} finally {
-			rwl.r.unlock();
-		}
+		return startTime;
 	}
 
 	public long getNextStart() {
-		rwl.r.lock();
-		try {
-			return nextStart;
-		} finally {
-			rwl.r.unlock();
-		}
+		return nextStart;
+	}
+
+	public LatencyHistogram getHistogram() {
+		return histogram;
+	}
+
+	/**
+	 * @param percentile the percentile, between 0 and 100
+	 * @return the duration below which the given percentage of the durations
+	 *         fall, or null if the distribution is not known
+	 */
+	public Long getPercentile(double percentile) {
+		Long value = histogram.getValueAtPercentile(percentile);
+		if (value == null)
+			return null;
+		return Math.min(value, max.get());
+	}
+
+	@JsonIgnore
+	public Long getP50() {
+		return getPercentile(50);
+	}
+
+	@JsonIgnore
+	public Long getP95() {
+		return getPercentile(95);
+	}
+
+	@JsonIgnore
+	public Long getP99() {
+		return getPercentile(99);
 	}
 
 	@Override
 	public String toString() {
-		rwl.r.lock();
-		try {
-			StringBuilder sb = new StringBuilder();
-			sb.append(startTime);
-			sb.append(" - Count:");
-			sb.append(count);
-			sb.append(" -  Average:");
-			sb.append(average);
-			sb.append(" - Min:");
-			sb.append(min);
-			sb.append(" - Max:");
-			sb.append(max);
-			return sb.toString();
-		} finally {
-			rwl.r.unlock();
-		}
+		StringBuilder sb = new StringBuilder();
+		sb.append(startTime);
+		sb.append(" - Count:");
+		sb.append(getCount());
+		sb.append(" -  Average:");
+		sb.append(getAverage());
+		sb.append(" - Min:");
+		sb.append(getMin());
+		sb.append(" - Max:");
+		sb.append(getMax());
+		sb.append(" - P95:");
+		sb.append(getP95());
+		sb.append(" - P99:");
+		sb.append(getP99());
+		return sb.toString();
 	}
 
 }
@@ -0,0 +1,182 @@
+/**
+ * License Agreement for OpenSearchServer
+ * <p>
+ * Copyright (C) 2017 Emmanuel Keller / Jaeksoft
+ * <p>
+ * http://www.open-search-server.com
+ * <p>
+ * This file is part of OpenSearchServer.
+ * <p>
+ * OpenSearchServer is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * <p>
+ * OpenSearchServer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * <p>
+ * You should have received a copy of the GNU General Public License
+ * along with OpenSearchServer.
+ * If not, see <http://www.gnu.org/licenses/>.
+ **/
+
+package com.jaeksoft.searchlib.statistics;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A histogram of durations, in log-scaled buckets. Each power of two is split
+ * in SUB_BUCKETS linear buckets, the values below 2 * SUB_BUCKETS have their
+ * own bucket. A value is known with a relative error below 1 / SUB_BUCKETS.
+ * <p>
+ * Recording is lock-free. The counters are striped by thread, the stripes are
+ * summed when the histogram is read. Two histograms can be merged by adding
+ * their counters.
+ */
+public class LatencyHistogram {
+
+	private final static int SUB_BUCKET_BITS = 4;
+	private final static int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+	private final static int MAX_EXPONENT = 40;
+	private final static long MAX_VALUE = (1L << (MAX_EXPONENT + 1)) - 1;
+	private final static int BUCKET_COUNT = (MAX_EXPONENT - SUB_BUCKET_BITS + 2) * SUB_BUCKETS;
+
+	private final AtomicLongArray[] stripes;
+
+	/**
+	 * @param stripes the number of stripes, a power of two
+	 */
+	LatencyHistogram(final int stripes) {
+		this.stripes = new AtomicLongArray[stripes];
+		for (int i = 0; i < stripes; i++)
+			this.stripes[i] = new AtomicLongArray(BUCKET_COUNT);
+	}
+
+	/**
+	 * Rebuild a saved histogram
+	 *
+	 * @param buckets the position of each non empty bucket followed by its
+	 *                count
+	 */
+	@JsonCreator
+	LatencyHistogram(@JsonProperty("buckets") final long[] buckets) {
+		this(1);
+		if (buckets == null)
+			return;
+		for (int i = 0; i + 1 < buckets.length; i += 2)
+			if (buckets[i] >= 0 && buckets[i] < BUCKET_COUNT)
+				stripes[0].addAndGet((int) buckets[i], buckets[i + 1]);
+	}
+
+	final static int getBucket(long value) {
+		if (value < SUB_BUCKETS)
+			return value < 0 ? 0 : (int) value;
+		if (value > MAX_VALUE)
+			value = MAX_VALUE;
+		final int exponent = 63 - Long.numberOfLeadingZeros(value);
+		final int shift = exponent - SUB_BUCKET_BITS;
+		return ((shift + 1) << SUB_BUCKET_BITS) + (int) ((value >>> shift) & (SUB_BUCKETS - 1));
+	}
+
+	/**
+	 * @param bucket a bucket
+	 * @return the highest value stored in the bucket
+	 */
+	final static long getHighestValue(final int bucket) {
+		if (bucket < SUB_BUCKETS)
+			return bucket;
+		final int shift = (bucket >>> SUB_BUCKET_BITS) - 1;
+		final long lowest = (long) (SUB_BUCKETS + (bucket & (SUB_BUCKETS - 1))) << shift;
+		return lowest + (1L << shift) - 1;
+	}
+
+	/**
+	 * @param value the duration to record
+	 */
+	final void record(final long value) {
+		final AtomicLongArray stripe = stripes.length == 1 ?
+				stripes[0] :
+				stripes[(int) Thread.currentThread().getId() & (stripes.length - 1)];
+		stripe.incrementAndGet(getBucket(value));
+	}
+
+	/**
+	 * Add the counters of another histogram
+	 *
+	 * @param histogram the histogram to merge
+	 */
+	final void add(final LatencyHistogram histogram) {
+		final long[] counts = histogram.sum();
+		for (int i = 0; i < counts.length; i++)
+			if (counts[i] != 0)
+				stripes[0].addAndGet(i, counts[i]);
+	}
+
+	private long[] sum() {
+		final long[] counts = new long[BUCKET_COUNT];
+		for (AtomicLongArray stripe : stripes)
+			for (int i = 0; i < BUCKET_COUNT; i++)
+				counts[i] += stripe.get(i);
+		return counts;
+	}
+
+	/**
+	 * @return the number of recorded values
+	 */
+	@JsonIgnore
+	final public long getTotalCount() {
+		long total = 0;
+		for (long count : sum())
+			total += count;
+		return total;
+	}
+
+	/**
+	 * @param percentile the percentile, between 0 and 100
+	 * @return the highest value below which the given percentage of the
+	 *         values fall, or null if the histogram is empty
+	 */
+	final public Long getValueAtPercentile(final double percentile) {
+		final long[] counts = sum();
+		long total = 0;
+		for (long count : counts)
+			total += count;
+		if (total == 0)
+			return null;
+		final long target = Math.max(1, (long) Math.ceil(total * Math.min(100, percentile) / 100));
+		long cumulated = 0;
+		for (int i = 0; i < counts.length; i++) {
+			cumulated += counts[i];
+			if (cumulated >= target)
+				return getHighestValue(i);
+		}
+		return MAX_VALUE;
+	}
+
+	/**
+	 * @return the non empty buckets, saved in the statistic files: the
+	 *         position of each bucket followed by its count
+	 */
+	final public long[] getBuckets() {
+		final long[] counts = sum();
+		int size = 0;
+		for (long count : counts)
+			if (count != 0)
+				size++;
+		final long[] buckets = new long[size * 2];
+		size = 0;
+		for (int i = 0; i < counts.length; i++) {
+			if (counts[i] == 0)
+				continue;
+			buckets[size++] = i;
+			buckets[size++] = counts[i];
+		}
+		return buckets;
+	}
+}
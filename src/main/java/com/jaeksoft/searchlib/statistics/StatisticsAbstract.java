@@ -51,7 +51,7 @@ public abstract class StatisticsAbstract {
 
 	private LinkedList<Aggregate> aggregateList;
 
-	private Aggregate currentAggregate;
+	private volatile Aggregate currentAggregate;
 
 	private Aggregate[] aggregateArray;
 
@@ -61,7 +61,7 @@ public abstract class StatisticsAbstract {
 
 	private StatisticTypeEnum type;
 
-	private boolean hasBeenUpdated;
+	private volatile boolean hasBeenUpdated;
 
 	public StatisticsAbstract(StatisticTypeEnum type, boolean writeToLog, int maxRetention, File statDir)
 			throws IOException, ClassNotFoundException {
@@ -86,24 +86,40 @@ public abstract class StatisticsAbstract {
 		aggregateArray = null;
 	}
 
+	/**
+	 * Add a measure to the aggregate of the current period. The lock is only
+	 * taken when a new period starts.
+	 *
+	 * @param timer the measure
+	 */
 	public void add(Timer timer) {
+		long startTime = timer.getStartTime();
+		Aggregate aggregate = currentAggregate;
+		if (aggregate == null || startTime >= aggregate.nextStart)
+			aggregate = nextAggregate(startTime);
+		aggregate.add(timer);
+		if (!hasBeenUpdated)
+			hasBeenUpdated = true;
+	}
+
+	private Aggregate nextAggregate(long startTime) {
 		rwl.w.lock();
 		try {
-			long startTime = timer.getStartTime();
-			if (currentAggregate == null || startTime >= currentAggregate.nextStart) {
-				if (currentAggregate != null && writeToLog)
-					Logging.info(type + " - " + getPeriod().getName() + " - " + currentAggregate);
-				currentAggregate = newAggregate(timer.getStartTime());
-				addAggregateNoLock(currentAggregate);
-			}
-			currentAggregate.add(timer);
-			hasBeenUpdated = true;
+			Aggregate aggregate = currentAggregate;
+			if (aggregate != null && startTime < aggregate.nextStart)
+				return aggregate;
+			if (aggregate != null && writeToLog)
+				Logging.info(type + " - " + getPeriod().getName() + " - " + aggregate);
+			aggregate = newAggregate(startTime);
+			addAggregateNoLock(aggregate);
+			currentAggregate = aggregate;
+			return aggregate;
 		} finally {
 			rwl.w.unlock();
 		}
 	}
 
-	protected StatisticTypeEnum getType() {
+	public StatisticTypeEnum getType() {
 		return type;
 	}
 
@@ -119,6 +135,16 @@ public abstract class StatisticsAbstract {
 		}
 	}
 
+	/**
+	 * @return the durations of every retained period, merged
+	 */
+	public LatencyHistogram getMergedHistogram() {
+		LatencyHistogram merged = new LatencyHistogram(1);
+		for (Aggregate aggregate : getArray())
+			merged.add(aggregate.getHistogram());
+		return merged;
+	}
+
 	final protected static StatisticsAbstract fromXmlConfig(XPathParser xpp, Node node, File statDir)
 			throws InstantiationException, IllegalAccessException, ClassNotFoundException, XPathExpressionException,
 			DOMException, IOException {
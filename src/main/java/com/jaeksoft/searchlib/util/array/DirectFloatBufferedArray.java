@@ -0,0 +1,133 @@
+/**
+ * License Agreement for OpenSearchServer
+ *
+ * Copyright (C) 2017 Emmanuel Keller / Jaeksoft
+ *
+ * http://www.open-search-server.com
+ *
+ * This file is part of OpenSearchServer.
+ *
+ * OpenSearchServer is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ * OpenSearchServer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with OpenSearchServer.
+ *  If not, see <http://www.gnu.org/licenses/>.
+ **/
+
+package com.jaeksoft.searchlib.util.array;
+
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Buffer the values off-heap, in direct buffers growing by chunks. The
+ * memory is released by close(), or as soon as the final array is built: the
+ * values only stay off-heap during the collection, the final array is on the
+ * heap. Used when the system property oss.bufferedarray.direct is true.
+ */
+public class DirectFloatBufferedArray implements FloatBufferedArrayInterface {
+
+	private final static int INITIAL_CHUNK_SIZE = 16384;
+	private final static int MAX_CHUNK_SIZE = 1048576;
+
+	private final long maxSize;
+
+	private final List<ByteBuffer> chunks;
+
+	private final List<FloatBuffer> views;
+
+	private FloatBuffer current;
+
+	private int nextChunkSize;
+
+	private long totalSize;
+
+	private float[] finalArray;
+
+	DirectFloatBufferedArray(final long maxSize) {
+		this.maxSize = maxSize;
+		this.chunks = new ArrayList<ByteBuffer>();
+		this.views = new ArrayList<FloatBuffer>();
+		this.current = null;
+		this.nextChunkSize = INITIAL_CHUNK_SIZE;
+		this.totalSize = 0;
+		this.finalArray = null;
+	}
+
+	final private void newChunk() {
+		final int chunkSize = (int) Math.max(1, Math.min(nextChunkSize, maxSize - totalSize));
+		final ByteBuffer chunk = DirectBuffers.allocate(chunkSize * 4);
+		chunks.add(chunk);
+		current = chunk.asFloatBuffer();
+		views.add(current);
+		if (nextChunkSize < MAX_CHUNK_SIZE)
+			nextChunkSize <<= 1;
+	}
+
+	@Override
+	final public void add(final float value) {
+		if (current == null || !current.hasRemaining())
+			newChunk();
+		current.put(value);
+		totalSize++;
+	}
+
+	@Override
+	final public long getSize() {
+		return totalSize;
+	}
+
+	@Override
+	final public float[] getFinalArray() {
+		if (finalArray != null)
+			return finalArray;
+		finalArray = new float[(int) totalSize];
+		int pos = 0;
+		for (FloatBuffer view : views) {
+			final FloatBuffer buffer = view.duplicate();
+			buffer.flip();
+			final int length = buffer.remaining();
+			buffer.get(finalArray, pos, length);
+			pos += length;
+		}
+		close();
+		return finalArray;
+	}
+
+	@Override
+	final public void forEach(final FloatConsumer consumer) {
+		if (finalArray != null) {
+			for (float value : finalArray)
+				consumer.accept(value);
+			return;
+		}
+		for (FloatBuffer view : views) {
+			final FloatBuffer buffer = view.duplicate();
+			buffer.flip();
+			while (buffer.hasRemaining())
+				consumer.accept(buffer.get());
+		}
+	}
+
+	@Override
+	final public void close() {
+		for (ByteBuffer chunk : chunks)
+			DirectBuffers.free(chunk);
+		chunks.clear();
+		views.clear();
+		current = null;
+		if (finalArray == null)
+			totalSize = 0;
+	}
+
+}
@@ -104,4 +104,25 @@ public class FloatBufferedArray implements FloatBufferedArrayInterface {
 		arrays.clear();
 	}
 
+	@Override
+	final public void forEach(final FloatConsumer consumer) {
+		if (finalArray != null) {
+			for (float value : finalArray)
+				consumer.accept(value);
+			return;
+		}
+		int sizeLeft = totalSize;
+		for (float[] array : arrays) {
+			int length = Math.min(array.length, sizeLeft);
+			for (int i = 0; i < length; i++)
+				consumer.accept(array[i]);
+			sizeLeft -= length;
+		}
+	}
+
+	@Override
+	final public void close() {
+		clear();
+	}
+
 }
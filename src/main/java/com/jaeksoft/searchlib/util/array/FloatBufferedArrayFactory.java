@@ -26,20 +26,27 @@ import it.unimi.dsi.fastutil.floats.FloatArrayList;
 
 import java.util.Random;
 
-import com.jaeksoft.searchlib.util.NativeOss;
-
 public abstract class FloatBufferedArrayFactory {
 
-	public final static FloatBufferedArrayFactory INSTANCE = NativeOss.loaded() ? new NativeFactory()
-			: new JavaFactory();
+	/**
+	 * The values are buffered on the heap. Set the system property
+	 * oss.bufferedarray.direct to true to buffer them off-heap during the
+	 * collection.
+	 * <p>
+	 * In both cases the final array is on the heap: the collected documents
+	 * are sorted, swapped and collapsed in place, and they are shared by the
+	 * cached DocSetHits, so they are not kept off-heap.
+	 */
+	public final static FloatBufferedArrayFactory INSTANCE = Boolean.getBoolean("oss.bufferedarray.direct")
+			? new DirectFactory() : new JavaFactory();
 
 	public abstract FloatBufferedArrayInterface newInstance(final long maxSize);
 
-	final static private class NativeFactory extends FloatBufferedArrayFactory {
+	final static private class DirectFactory extends FloatBufferedArrayFactory {
 
 		@Override
 		public FloatBufferedArrayInterface newInstance(final long maxSize) {
-			return new NativeFloatBufferedArray(maxSize);
+			return new DirectFloatBufferedArray(maxSize);
 		}
 	}
 
@@ -109,7 +116,7 @@ public abstract class FloatBufferedArrayFactory {
 		check(randomArray, floatBufferedArray.getFinalArray());
 		IntBufferedArrayFactory.result(floatBufferedArray, startTime, freemem);
 
-		// Testing Native Array
+		// Testing the default implementation
 		System.gc();
 		startTime = System.currentTimeMillis();
 		freemem = Runtime.getRuntime().freeMemory();
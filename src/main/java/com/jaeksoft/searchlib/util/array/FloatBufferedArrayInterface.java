@@ -24,7 +24,9 @@
 
 package com.jaeksoft.searchlib.util.array;
 
-public interface FloatBufferedArrayInterface {
+import java.io.Closeable;
+
+public interface FloatBufferedArrayInterface extends Closeable {
 
 	void add(final float value);
 
@@ -32,4 +34,24 @@ public interface FloatBufferedArrayInterface {
 
 	float[] getFinalArray();
 
+	/**
+	 * Read the values in order, without building the final array
+	 * 
+	 * @param consumer
+	 */
+	void forEach(final FloatConsumer consumer);
+
+	/**
+	 * Release the buffers. The final array, if already built, is still
+	 * available.
+	 */
+	@Override
+	void close();
+
+	@FunctionalInterface
+	interface FloatConsumer {
+
+		void accept(final float value);
+	}
+
 }
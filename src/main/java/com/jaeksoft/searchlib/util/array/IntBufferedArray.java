@@ -26,6 +26,7 @@ package com.jaeksoft.searchlib.util.array;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.function.IntConsumer;
 
 public class IntBufferedArray implements IntBufferedArrayInterface {
 
@@ -105,4 +106,25 @@ public class IntBufferedArray implements IntBufferedArrayInterface {
 		arrays.clear();
 	}
 
+	@Override
+	final public void forEach(final IntConsumer consumer) {
+		if (finalArray != null) {
+			for (int value : finalArray)
+				consumer.accept(value);
+			return;
+		}
+		int sizeLeft = totalSize;
+		for (int[] array : arrays) {
+			int length = Math.min(array.length, sizeLeft);
+			for (int i = 0; i < length; i++)
+				consumer.accept(array[i]);
+			sizeLeft -= length;
+		}
+	}
+
+	@Override
+	final public void close() {
+		clear();
+	}
+
 }
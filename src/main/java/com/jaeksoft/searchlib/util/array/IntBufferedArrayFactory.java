@@ -26,20 +26,27 @@ import it.unimi.dsi.fastutil.ints.IntArrayList;
 
 import java.util.Random;
 
-import com.jaeksoft.searchlib.util.NativeOss;
-
 public abstract class IntBufferedArrayFactory {
 
-	public final static IntBufferedArrayFactory INSTANCE = NativeOss.loaded() ? new NativeFactory()
-			: new JavaFactory();
+	/**
+	 * The values are buffered on the heap. Set the system property
+	 * oss.bufferedarray.direct to true to buffer them off-heap during the
+	 * collection.
+	 * <p>
+	 * In both cases the final array is on the heap: the collected documents
+	 * are sorted, swapped and collapsed in place, and they are shared by the
+	 * cached DocSetHits, so they are not kept off-heap.
+	 */
+	public final static IntBufferedArrayFactory INSTANCE = Boolean.getBoolean("oss.bufferedarray.direct")
+			? new DirectFactory() : new JavaFactory();
 
 	public abstract IntBufferedArrayInterface newInstance(final long maxSize);
 
-	final static private class NativeFactory extends IntBufferedArrayFactory {
+	final static private class DirectFactory extends IntBufferedArrayFactory {
 
 		@Override
 		public IntBufferedArrayInterface newInstance(final long maxSize) {
-			return new NativeIntBufferedArray(maxSize);
+			return new DirectIntBufferedArray(maxSize);
 		}
 	}
 
@@ -112,7 +119,7 @@ public abstract class IntBufferedArrayFactory {
 		check(randomArray, intBufferedArray.getFinalArray());
 		result(intBufferedArray, startTime, freemem);
 
-		// Testing Native Array
+		// Testing the default implementation
 		System.gc();
 		startTime = System.currentTimeMillis();
 		freemem = Runtime.getRuntime().freeMemory();
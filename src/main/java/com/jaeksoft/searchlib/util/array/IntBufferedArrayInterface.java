@@ -24,7 +24,10 @@
 
 package com.jaeksoft.searchlib.util.array;
 
-public interface IntBufferedArrayInterface {
+import java.io.Closeable;
+import java.util.function.IntConsumer;
+
+public interface IntBufferedArrayInterface extends Closeable {
 
 	void add(final int value);
 
@@ -32,4 +35,18 @@ public interface IntBufferedArrayInterface {
 
 	int[] getFinalArray();
 
+	/**
+	 * Read the values in order, without building the final array
+	 * 
+	 * @param consumer
+	 */
+	void forEach(final IntConsumer consumer);
+
+	/**
+	 * Release the buffers. The final array, if already built, is still
+	 * available.
+	 */
+	@Override
+	void close();
+
 }
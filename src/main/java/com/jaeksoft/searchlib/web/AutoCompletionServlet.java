@@ -28,6 +28,7 @@ import java.io.IOException;
 import java.io.PrintWriter;
 import java.util.Collection;
 import java.util.Iterator;
+import java.util.List;
 
 import org.apache.commons.lang3.ArrayUtils;
 import org.apache.commons.lang3.StringUtils;
@@ -35,8 +36,6 @@ import org.apache.commons.lang3.StringUtils;
 import com.jaeksoft.searchlib.Client;
 import com.jaeksoft.searchlib.SearchLibException;
 import com.jaeksoft.searchlib.autocompletion.AutoCompletionItem;
-import com.jaeksoft.searchlib.result.AbstractResultSearch;
-import com.jaeksoft.searchlib.result.ResultDocument;
 import com.jaeksoft.searchlib.user.Role;
 import com.jaeksoft.searchlib.user.User;
 
@@ -70,13 +69,11 @@ public class AutoCompletionServlet extends AbstractServlet {
 		PrintWriter pw = transaction.getWriter("UTF-8");
 		if (rows == null)
 			rows = autoCompItem.getRows();
-		AbstractResultSearch<?> result = autoCompItem.search(query, rows);
-		if (result == null)
+		List<String> terms = autoCompItem.search(query, rows);
+		if (terms == null)
 			return;
-		if (result.getDocumentCount() <= 0)
-			return;
-		for (ResultDocument document : result)
-			pw.println(document.getValueContent(AutoCompletionItem.autoCompletionSchemaFieldTerm, 0));
+		for (String term : terms)
+			pw.println(term);
 	}
 
 	private void set(ServletTransaction transaction, Client client, User user, String name) throws SearchLibException {
@@ -24,18 +24,33 @@
 
 package com.jaeksoft.searchlib.web;
 
+import java.io.BufferedReader;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
 import java.io.UnsupportedEncodingException;
 import java.net.MalformedURLException;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
 
 import javax.naming.NamingException;
 import javax.xml.parsers.ParserConfigurationException;
 
 import org.apache.commons.io.FilenameUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.http.HttpEntity;
+import org.apache.http.client.entity.GzipCompressingEntity;
+import org.apache.http.entity.ContentType;
+import org.apache.http.entity.FileEntity;
+import org.apache.http.entity.StringEntity;
 import org.xml.sax.SAXException;
 
 import com.jaeksoft.searchlib.Client;
@@ -69,6 +84,8 @@ public class PushServlet extends AbstractServlet {
 			if (CALL_XML_CMD_INIT.equals(cmd)) {
 				transaction.addXmlResponse(CALL_XML_KEY_CMD, CALL_XML_CMD_INIT);
 				ClientCatalog.receive_init(client);
+				transaction.addXmlResponse(CALL_XML_KEY_PROTOCOL,
+						Integer.toString(PROTOCOL_MANIFEST));
 				transaction.addXmlResponse(XML_CALL_KEY_STATUS,
 						XML_CALL_KEY_STATUS_OK);
 				return;
@@ -97,6 +114,17 @@ public class PushServlet extends AbstractServlet {
 						XML_CALL_KEY_STATUS_OK);
 				return;
 			}
+			if (CALL_XML_CMD_MANIFEST.equals(cmd)) {
+				transaction.addXmlResponse(CALL_XML_KEY_CMD,
+						CALL_XML_CMD_MANIFEST);
+				List<String> missingPaths = receive_manifest(client,
+						getInputStream(transaction));
+				transaction.addXmlResponse(CALL_XML_KEY_MISSING,
+						StringUtils.join(missingPaths, '\n'));
+				transaction.addXmlResponse(XML_CALL_KEY_STATUS,
+						XML_CALL_KEY_STATUS_OK);
+				return;
+			}
 			String filePath = transaction
 					.getParameterString(CALL_XML_CMD_FILEPATH);
 			Long lastModified = transaction
@@ -124,7 +152,8 @@ public class PushServlet extends AbstractServlet {
 				ClientCatalog.receive_dir(client, filePath);
 			else
 				ClientCatalog.receive_file(client, filePath, lastModified,
-						transaction.getInputStream());
+						transaction.getParameterLong("checksum"),
+						getInputStream(transaction));
 			transaction.addXmlResponse(XML_CALL_KEY_STATUS,
 					XML_CALL_KEY_STATUS_OK);
 		} catch (SearchLibException e) {
@@ -139,7 +168,68 @@ public class PushServlet extends AbstractServlet {
 
 	}
 
+	/**
+	 * @param transaction the current transaction
+	 * @return the body of the request, uncompressed if required
+	 * @throws IOException
+	 */
+	private static InputStream getInputStream(ServletTransaction transaction)
+			throws IOException {
+		InputStream is = transaction.getInputStream();
+		if ("gzip".equalsIgnoreCase(transaction.getRequest().getHeader(
+				"Content-Encoding")))
+			return new GZIPInputStream(is);
+		return is;
+	}
+
+	/**
+	 * Read the manifest sent by the master. The directories are created, the
+	 * files already present in the index with the same size and date are
+	 * kept.
+	 *
+	 * @param client the target index
+	 * @param is     the manifest, one directory or file per line
+	 * @return the paths of the files which have to be sent
+	 * @throws IOException
+	 */
+	private static List<String> receive_manifest(Client client,
+			InputStream is) throws IOException {
+		List<String> missingPaths = new ArrayList<String>();
+		BufferedReader reader = new BufferedReader(new InputStreamReader(is,
+				StandardCharsets.UTF_8));
+		String line;
+		while ((line = reader.readLine()) != null) {
+			String[] cols = StringUtils.split(line, '\t');
+			if (cols.length < 2)
+				continue;
+			String filePath = cols[1];
+			if (FilenameUtils.getName(filePath).startsWith("."))
+				continue;
+			String systemPath = FileUtils.unixToSystemPath(filePath);
+			if (MANIFEST_DIRECTORY.equals(cols[0]))
+				ClientCatalog.receive_dir(client, systemPath);
+			else if (cols.length == 4
+					&& !ClientCatalog.receive_file_exists(client, systemPath,
+							Long.parseLong(cols[2]), Long.parseLong(cols[3])))
+				missingPaths.add(filePath);
+		}
+		return missingPaths;
+	}
+
+	/**
+	 * The targets which do not give their protocol in the init response only
+	 * know the per file "exists" command and the uncompressed uploads.
+	 */
+	public final static int PROTOCOL_FILES = 1;
+
+	/**
+	 * The manifest command, the compressed uploads with a checksum.
+	 */
+	public final static int PROTOCOL_MANIFEST = 2;
+
+	private final static String CALL_XML_KEY_PROTOCOL = "protocol";
 	private final static String CALL_XML_KEY_EXISTS = "exist";
+	private final static String CALL_XML_KEY_MISSING = "missing";
 
 	private final static String CALL_XML_KEY_CMD = "cmd";
 	private final static String CALL_XML_CMD_INIT = "init";
@@ -148,25 +238,35 @@ public class PushServlet extends AbstractServlet {
 	private final static String CALL_XML_CMD_EXISTS = "exists";
 	private final static String CALL_XML_CMD_FILEPATH = "filePath";
 	private final static String CALL_XML_CMD_ABORT = "abort";
+	private final static String CALL_XML_CMD_MANIFEST = "manifest";
 
-	private static String getPushTargetUrl(Client client,
-			ReplicationItem replicationItem, String cmd, File sourceFile)
-			throws UnsupportedEncodingException, SearchLibException,
-			MalformedURLException, URISyntaxException {
+	private final static String MANIFEST_DIRECTORY = "D";
+	private final static String MANIFEST_FILE = "F";
+
+	private static String getRelativePath(Client client,
+			ReplicationItem replicationItem, File sourceFile)
+			throws SearchLibException {
 		String dataPath = replicationItem.getDirectory(client)
 				.getAbsolutePath();
 		String filePath = sourceFile.getAbsolutePath();
 		if (!filePath.startsWith(dataPath))
 			throw new SearchLibException("Bad file path " + filePath);
-		filePath = filePath.substring(dataPath.length());
+		return FileUtils.systemPathToUnix(filePath.substring(dataPath
+				.length()));
+	}
+
+	private static String getPushTargetUrl(Client client,
+			ReplicationItem replicationItem, String cmd, File sourceFile)
+			throws UnsupportedEncodingException, SearchLibException,
+			MalformedURLException, URISyntaxException {
+		String filePath = getRelativePath(client, replicationItem, sourceFile);
 		StringBuilder sb = new StringBuilder(replicationItem.getCachedUrl());
 		if (cmd != null) {
 			sb.append("&cmd=");
 			sb.append(cmd);
 		}
 		sb.append("&filePath=");
-		sb.append(URLEncoder.encode(FileUtils.systemPathToUnix(filePath),
-				"UTF-8"));
+		sb.append(URLEncoder.encode(filePath, "UTF-8"));
 		if (sourceFile.isDirectory())
 			sb.append("&type=dir");
 		else {
@@ -208,9 +308,25 @@ public class PushServlet extends AbstractServlet {
 		}
 	}
 
-	public static void call_init(ReplicationItem replicationItem)
+	/**
+	 * @param replicationItem
+	 *            the replication target
+	 * @return the push protocol of the target, PROTOCOL_FILES if the target
+	 *         does not give it
+	 * @throws SearchLibException
+	 */
+	public static int call_init(ReplicationItem replicationItem)
 			throws SearchLibException {
-		call(replicationItem, CALL_XML_CMD_INIT);
+		XPathParser xpp = call(replicationItem, CALL_XML_CMD_INIT);
+		String protocol = getCallKeyValue(xpp, CALL_XML_KEY_PROTOCOL);
+		if (StringUtils.isEmpty(protocol))
+			return PROTOCOL_FILES;
+		try {
+			return Integer.parseInt(protocol.trim());
+		} catch (NumberFormatException e) {
+			throw new SearchLibException("Unexpected push protocol: "
+					+ protocol, e);
+		}
 	}
 
 	public static void call_switch(ReplicationItem replicationItem)
@@ -228,6 +344,91 @@ public class PushServlet extends AbstractServlet {
 		call(replicationItem, CALL_XML_CMD_ABORT);
 	}
 
+	/**
+	 * Send the list of the directories and files to replicate. The target
+	 * creates the directories and keeps its files which are up to date.
+	 *
+	 * @param client          the source index
+	 * @param replicationItem the replication target
+	 * @param dirs            the directories to replicate
+	 * @param files           the files to replicate
+	 * @return the files missing on the target
+	 * @throws SearchLibException
+	 */
+	public static List<File> call_manifest(Client client,
+			ReplicationItem replicationItem, List<File> dirs, List<File> files)
+			throws SearchLibException {
+		Map<String, File> fileMap = new HashMap<String, File>();
+		StringBuilder sb = new StringBuilder();
+		for (File dir : dirs) {
+			sb.append(MANIFEST_DIRECTORY);
+			sb.append('\t');
+			sb.append(getRelativePath(client, replicationItem, dir));
+			sb.append('\n');
+		}
+		for (File file : files) {
+			String filePath = getRelativePath(client, replicationItem, file);
+			fileMap.put(filePath, file);
+			sb.append(MANIFEST_FILE);
+			sb.append('\t');
+			sb.append(filePath);
+			sb.append('\t');
+			sb.append(file.lastModified());
+			sb.append('\t');
+			sb.append(file.length());
+			sb.append('\n');
+		}
+		UriWriteStream uriWriteStream = null;
+		try {
+			URI uri = new URI(getPushTargetUrl(replicationItem,
+					CALL_XML_CMD_MANIFEST));
+			HttpEntity entity = new GzipCompressingEntity(new StringEntity(
+					sb.toString(), ContentType.TEXT_PLAIN.withCharset(
+							StandardCharsets.UTF_8)));
+			uriWriteStream = new UriWriteStream(
+					replicationItem.getSecTimeOut(), uri, entity);
+			XPathParser xpp = uriWriteStream.getXmlContent();
+			checkCallError(xpp);
+			checkCallStatusOK(xpp);
+			checkCallKey(xpp, CALL_XML_KEY_CMD, CALL_XML_CMD_MANIFEST);
+			String missing = getCallKeyValue(xpp, CALL_XML_KEY_MISSING);
+			List<File> missingFiles = new ArrayList<File>();
+			if (missing == null)
+				return missingFiles;
+			for (String filePath : StringUtils.split(missing, '\n')) {
+				File file = fileMap.get(filePath);
+				if (file == null)
+					throw new SearchLibException("Unexpected file: "
+							+ filePath);
+				missingFiles.add(file);
+			}
+			return missingFiles;
+		} catch (URISyntaxException e) {
+			throw new SearchLibException(e);
+		} catch (IllegalStateException e) {
+			throw new SearchLibException(e);
+		} catch (SAXException e) {
+			throw new SearchLibException(e);
+		} catch (IOException e) {
+			throw new SearchLibException(e);
+		} catch (ParserConfigurationException e) {
+			throw new SearchLibException(e);
+		} finally {
+			if (uriWriteStream != null)
+				uriWriteStream.close();
+		}
+	}
+
+	/**
+	 * Ask the target if it has the file with the same size and date, for the
+	 * targets which do not know the manifest command.
+	 *
+	 * @param client          the source index
+	 * @param replicationItem the replication target
+	 * @param file            the file to check
+	 * @return true if the target has the file
+	 * @throws SearchLibException
+	 */
 	public static boolean call_file_exist(Client client,
 			ReplicationItem replicationItem, File file)
 			throws SearchLibException {
@@ -237,7 +438,7 @@ public class PushServlet extends AbstractServlet {
 			XPathParser xpp = call(new URI(url), CALL_XML_CMD_EXISTS,
 					replicationItem.getSecTimeOut());
 			String result = getCallKeyValue(xpp, CALL_XML_KEY_EXISTS);
-			if (result == null)
+			if (StringUtils.isEmpty(result))
 				throw new SearchLibException("Cannot check if file exists: "
 						+ file.getPath());
 			return Boolean.parseBoolean(result);
@@ -250,15 +451,32 @@ public class PushServlet extends AbstractServlet {
 		}
 	}
 
+	/**
+	 * Send a file to the target
+	 *
+	 * @param client          the source index
+	 * @param replicationItem the replication target
+	 * @param file            the file to send
+	 * @param protocol        the push protocol of the target: the file is
+	 *                        compressed and checked with PROTOCOL_MANIFEST,
+	 *                        sent as is with PROTOCOL_FILES
+	 * @throws SearchLibException
+	 */
 	public static void call_file(Client client,
-			ReplicationItem replicationItem, File file)
+			ReplicationItem replicationItem, File file, int protocol)
 			throws SearchLibException {
 		UriWriteStream uriWriteStream = null;
 		try {
 			String url = getPushTargetUrl(client, replicationItem, null, file);
+			HttpEntity entity = new FileEntity(file,
+					ContentType.DEFAULT_BINARY);
+			if (protocol >= PROTOCOL_MANIFEST) {
+				url += "&checksum=" + FileUtils.checksumCRC32(file);
+				entity = new GzipCompressingEntity(entity);
+			}
 			URI uri = new URI(url);
 			uriWriteStream = new UriWriteStream(
-					replicationItem.getSecTimeOut(), uri, file);
+					replicationItem.getSecTimeOut(), uri, entity);
 			XPathParser xpp = uriWriteStream.getXmlContent();
 			checkCallError(xpp);
 			checkCallStatusOK(xpp);
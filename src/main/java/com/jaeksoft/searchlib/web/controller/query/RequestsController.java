@@ -30,6 +30,7 @@ import org.zkoss.bind.annotation.NotifyChange;
 
 import com.jaeksoft.searchlib.Client;
 import com.jaeksoft.searchlib.SearchLibException;
+import com.jaeksoft.searchlib.request.RequestTypeEnum;
 import com.jaeksoft.searchlib.request.SearchMergedRequest;
 import com.jaeksoft.searchlib.request.SearchMergedRequest.RemoteRequest;
 
@@ -39,7 +40,7 @@ public class RequestsController extends AbstractQueryController {
 	private transient RemoteRequest selectedRequest;
 
 	public RequestsController() throws SearchLibException {
-		super(null/* RequestTypeEnum.SearchMergedRequest */);
+		super(RequestTypeEnum.SearchMergedRequest);
 	}
 
 	@Override
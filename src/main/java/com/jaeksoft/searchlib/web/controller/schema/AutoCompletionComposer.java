@@ -49,8 +49,6 @@ import com.jaeksoft.searchlib.autocompletion.AutoCompletionBuildThread;
 import com.jaeksoft.searchlib.autocompletion.AutoCompletionItem;
 import com.jaeksoft.searchlib.autocompletion.AutoCompletionManager;
 import com.jaeksoft.searchlib.request.RequestTypeEnum;
-import com.jaeksoft.searchlib.result.AbstractResultSearch;
-import com.jaeksoft.searchlib.result.ResultDocument;
 import com.jaeksoft.searchlib.web.controller.AlertController;
 import com.jaeksoft.searchlib.web.controller.CommonController;
 
@@ -63,6 +61,8 @@ public class AutoCompletionComposer extends CommonController {
 
 	private int rows;
 
+	private boolean fuzzy;
+
 	private String selectedField;
 
 	private final Set<String> fields;
@@ -116,6 +116,7 @@ public class AutoCompletionComposer extends CommonController {
 		selectedItem = null;
 		name = null;
 		rows = 10;
+		fuzzy = false;
 		selectedField = null;
 		searchRequest = null;
 	}
@@ -140,6 +141,7 @@ public class AutoCompletionComposer extends CommonController {
 				: new AutoCompletionItem(client, name);
 		autoCompItem.setFields(fields);
 		autoCompItem.setRows(rows);
+		autoCompItem.setFuzzy(fuzzy);
 		autoCompItem.setSearchRequest(searchRequest);
 		if (selectedItem == null)
 			manager.add(autoCompItem);
@@ -188,6 +190,7 @@ public class AutoCompletionComposer extends CommonController {
 		selectedField = null;
 		name = null;
 		rows = 10;
+		fuzzy = false;
 		fields.clear();
 	}
 
@@ -211,20 +214,10 @@ public class AutoCompletionComposer extends CommonController {
 		if (selectedItem == null)
 			return;
 		String[] resultArray = new String[0];
-		AbstractResultSearch<?> result = selectedItem.search(event.getValue(),
+		List<String> terms = selectedItem.search(event.getValue(),
 				selectedItem.getRows());
-		if (result != null) {
-			if (result.getDocumentCount() > 0) {
-				resultArray = new String[result.getDocumentCount()];
-				int i = 0;
-				for (ResultDocument resDoc : result) {
-					resultArray[i++] = resDoc
-							.getValueContent(
-									AutoCompletionItem.autoCompletionSchemaFieldTerm,
-									0);
-				}
-			}
-		}
+		if (terms != null)
+			resultArray = terms.toArray(resultArray);
 		comboList = new ListModelArray<String>(resultArray);
 	}
 
@@ -249,6 +242,7 @@ public class AutoCompletionComposer extends CommonController {
 		fields.clear();
 		fields.addAll(selectedItem.getFields());
 		this.rows = selectedItem.getRows();
+		this.fuzzy = selectedItem.isFuzzy();
 		this.name = selectedItem.getName();
 		this.searchRequest = selectedItem.getSearchRequest();
 	}
@@ -287,6 +281,21 @@ public class AutoCompletionComposer extends CommonController {
 		this.rows = rows;
 	}
 
+	/**
+	 * @return the fuzzy
+	 */
+	public boolean isFuzzy() {
+		return fuzzy;
+	}
+
+	/**
+	 * @param fuzzy
+	 *            the fuzzy to set
+	 */
+	public void setFuzzy(boolean fuzzy) {
+		this.fuzzy = fuzzy;
+	}
+
 	/**
 	 * @return the selectedField
 	 */
@@ -36,9 +36,6 @@ import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 
-import com.jaeksoft.searchlib.autocompletion.AutoCompletionItem;
-import com.jaeksoft.searchlib.result.AbstractResultSearch;
-import com.jaeksoft.searchlib.result.ResultDocument;
 import com.jaeksoft.searchlib.webservice.CommonResult;
 
 @XmlRootElement(name = "result")
@@ -51,16 +48,13 @@ public class AutoCompletionResult extends CommonResult {
 		terms = null;
 	}
 
-	public AutoCompletionResult(AbstractResultSearch<?> result) {
+	public AutoCompletionResult(List<String> result) {
 		super(true, null);
 		if (result == null)
 			return;
-		if (result.getDocumentCount() <= 0)
+		if (result.isEmpty())
 			return;
-		terms = new ArrayList<String>();
-		for (ResultDocument document : result)
-			terms.add(document.getValueContent(
-					AutoCompletionItem.autoCompletionSchemaFieldTerm, 0));
+		terms = result;
 	}
 
 	public AutoCompletionResult(JSONObject json) throws JSONException,
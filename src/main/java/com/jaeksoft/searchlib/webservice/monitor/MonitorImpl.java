@@ -23,11 +23,14 @@
  */
 package com.jaeksoft.searchlib.webservice.monitor;
 
+import com.jaeksoft.searchlib.Client;
+import com.jaeksoft.searchlib.ClientCatalog;
 import com.jaeksoft.searchlib.ClientFactory;
 import com.jaeksoft.searchlib.SearchLibException;
 import com.jaeksoft.searchlib.user.User;
 import com.jaeksoft.searchlib.webservice.CommonServices;
 
+import javax.ws.rs.core.Response;
 import javax.xml.ws.WebServiceException;
 import java.io.IOException;
 
@@ -46,6 +49,22 @@ public class MonitorImpl extends CommonServices implements RestMonitor {
 		}
 	}
 
+	public MonitorStatisticsResult statistics(String login, String key, String index) {
+		try {
+			User user = getLoggedUser(login, key);
+			if (user != null)
+				if (!user.isMonitoring() && !user.isAdmin())
+					throw new WebServiceException("Not allowed");
+			ClientFactory.INSTANCE.properties.checkApi();
+			Client client = ClientCatalog.getClient(index);
+			if (client == null)
+				throw new CommonServiceException(Response.Status.NOT_FOUND, "Index not found: " + index);
+			return new MonitorStatisticsResult(client.getStatisticsList());
+		} catch (SearchLibException | InterruptedException | IOException e) {
+			throw new WebServiceException(e);
+		}
+	}
+
 	@Override
 	public MonitorResult getMonitorXML(String login, String key, boolean full) {
 		return monitor(login, key, full);
@@ -55,4 +74,14 @@ public class MonitorImpl extends CommonServices implements RestMonitor {
 	public MonitorResult getMonitorJSON(String login, String key, boolean full) {
 		return monitor(login, key, full);
 	}
+
+	@Override
+	public MonitorStatisticsResult getStatisticsXML(String login, String key, String index) {
+		return statistics(login, key, index);
+	}
+
+	@Override
+	public MonitorStatisticsResult getStatisticsJSON(String login, String key, String index) {
+		return statistics(login, key, index);
+	}
 }
@@ -0,0 +1,192 @@
+/**
+ * License Agreement for OpenSearchServer
+ * <p>
+ * Copyright (C) 2017 Emmanuel Keller / Jaeksoft
+ * <p>
+ * http://www.open-search-server.com
+ * <p>
+ * This file is part of OpenSearchServer.
+ * <p>
+ * OpenSearchServer is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * <p>
+ * OpenSearchServer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * <p>
+ * You should have received a copy of the GNU General Public License
+ * along with OpenSearchServer.
+ * If not, see <http://www.gnu.org/licenses/>.
+ **/
+
+package com.jaeksoft.searchlib.webservice.monitor;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import com.fasterxml.jackson.annotation.JsonFormat.Shape;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonInclude.Include;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.jaeksoft.searchlib.statistics.Aggregate;
+import com.jaeksoft.searchlib.statistics.LatencyHistogram;
+import com.jaeksoft.searchlib.statistics.StatisticPeriodEnum;
+import com.jaeksoft.searchlib.statistics.StatisticTypeEnum;
+import com.jaeksoft.searchlib.statistics.StatisticsAbstract;
+import com.jaeksoft.searchlib.statistics.StatisticsList;
+import com.jaeksoft.searchlib.webservice.CommonResult;
+
+import javax.xml.bind.annotation.XmlAccessType;
+import javax.xml.bind.annotation.XmlAccessorType;
+import javax.xml.bind.annotation.XmlAttribute;
+import javax.xml.bind.annotation.XmlElement;
+import javax.xml.bind.annotation.XmlRootElement;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+@XmlAccessorType(XmlAccessType.PUBLIC_MEMBER)
+@XmlRootElement(name = "result")
+@JsonInclude(Include.NON_NULL)
+public class MonitorStatisticsResult extends CommonResult {
+
+	@XmlElement(name = "statistic")
+	@JsonProperty("statistics")
+	final public List<StatisticResult> statistics;
+
+	public MonitorStatisticsResult() {
+		statistics = null;
+	}
+
+	public MonitorStatisticsResult(StatisticsList statisticsList) {
+		super(true, null);
+		statistics = new ArrayList<StatisticResult>();
+		for (StatisticTypeEnum type : StatisticTypeEnum.values()) {
+			List<StatisticsAbstract> statList = statisticsList.getStatList(type);
+			if (statList != null)
+				for (StatisticsAbstract stat : statList)
+					statistics.add(new StatisticResult(stat));
+		}
+	}
+
+	/**
+	 * The percentiles of the durations, in milliseconds
+	 */
+	@XmlAccessorType(XmlAccessType.PUBLIC_MEMBER)
+	@JsonInclude(Include.NON_NULL)
+	public static class Percentiles {
+
+		@XmlAttribute
+		final public Long p50;
+
+		@XmlAttribute
+		final public Long p90;
+
+		@XmlAttribute
+		final public Long p95;
+
+		@XmlAttribute
+		final public Long p99;
+
+		@XmlAttribute
+		final public Long p999;
+
+		public Percentiles() {
+			p50 = null;
+			p90 = null;
+			p95 = null;
+			p99 = null;
+			p999 = null;
+		}
+
+		public Percentiles(LatencyHistogram histogram) {
+			p50 = histogram.getValueAtPercentile(50);
+			p90 = histogram.getValueAtPercentile(90);
+			p95 = histogram.getValueAtPercentile(95);
+			p99 = histogram.getValueAtPercentile(99);
+			p999 = histogram.getValueAtPercentile(99.9);
+		}
+	}
+
+	@XmlAccessorType(XmlAccessType.PUBLIC_MEMBER)
+	@JsonInclude(Include.NON_NULL)
+	public static class StatisticResult {
+
+		@XmlAttribute
+		final public StatisticTypeEnum type;
+
+		@XmlAttribute
+		final public StatisticPeriodEnum period;
+
+		@XmlElement
+		final public Percentiles percentiles;
+
+		@XmlElement(name = "aggregate")
+		@JsonProperty("aggregates")
+		final public List<AggregateResult> aggregates;
+
+		public StatisticResult() {
+			type = null;
+			period = null;
+			percentiles = null;
+			aggregates = null;
+		}
+
+		public StatisticResult(StatisticsAbstract stat) {
+			type = stat.getType();
+			period = stat.getPeriod();
+			percentiles = new Percentiles(stat.getMergedHistogram());
+			aggregates = new ArrayList<AggregateResult>();
+			for (Aggregate aggregate : stat.getArray())
+				aggregates.add(new AggregateResult(aggregate));
+		}
+	}
+
+	@XmlAccessorType(XmlAccessType.PUBLIC_MEMBER)
+	@JsonInclude(Include.NON_NULL)
+	public static class AggregateResult {
+
+		@XmlAttribute
+		@JsonFormat(shape = Shape.STRING, pattern = DATE_FORMAT)
+		final public Date startTime;
+
+		@XmlAttribute
+		final public long count;
+
+		@XmlAttribute
+		final public long error;
+
+		@XmlAttribute
+		final public float average;
+
+		@XmlAttribute
+		final public Long min;
+
+		@XmlAttribute
+		final public Long max;
+
+		@XmlElement
+		final public Percentiles percentiles;
+
+		public AggregateResult() {
+			startTime = null;
+			count = 0;
+			error = 0;
+			average = 0;
+			min = null;
+			max = null;
+			percentiles = null;
+		}
+
+		public AggregateResult(Aggregate aggregate) {
+			startTime = aggregate.getStartTime();
+			count = aggregate.getCount();
+			error = aggregate.getError();
+			average = aggregate.getAverage();
+			min = count == 0 ? null : aggregate.getMin();
+			max = count == 0 ? null : aggregate.getMax();
+			percentiles = new Percentiles(aggregate.getHistogram());
+		}
+	}
+}
@@ -25,6 +25,7 @@ package com.jaeksoft.searchlib.webservice.monitor;
 
 import javax.ws.rs.GET;
 import javax.ws.rs.Path;
+import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
 import javax.ws.rs.QueryParam;
 import javax.ws.rs.core.MediaType;
@@ -44,4 +45,18 @@ public interface RestMonitor {
 	public MonitorResult getMonitorJSON(@QueryParam("login") String login,
 			@QueryParam("key") String key, @QueryParam("full") boolean full);
 
+	@GET
+	@Produces(MediaType.APPLICATION_XML)
+	@Path("/statistics/{index_name}/xml")
+	public MonitorStatisticsResult getStatisticsXML(
+			@QueryParam("login") String login, @QueryParam("key") String key,
+			@PathParam("index_name") String index);
+
+	@GET
+	@Produces(MediaType.APPLICATION_JSON)
+	@Path("/statistics/{index_name}/json")
+	public MonitorStatisticsResult getStatisticsJSON(
+			@QueryParam("login") String login, @QueryParam("key") String key,
+			@PathParam("index_name") String index);
+
 }
@@ -0,0 +1,137 @@
+/**
+ * License Agreement for OpenSearchServer
+ * <p>
+ * Copyright (C) 2017 Emmanuel Keller / Jaeksoft
+ * <p>
+ * http://www.open-search-server.com
+ * <p>
+ * This file is part of OpenSearchServer.
+ * <p>
+ * OpenSearchServer is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * <p>
+ * OpenSearchServer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * <p>
+ * You should have received a copy of the GNU General Public License
+ * along with OpenSearchServer.
+ * If not, see <http://www.gnu.org/licenses/>.
+ **/
+
+package com.jaeksoft.searchlib.autocompletion;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class AutoCompletionSuggesterTest {
+
+	private static AutoCompletionSuggester build(final Object... termWeights) throws IOException {
+		try (final AutoCompletionSuggester.Builder builder = new AutoCompletionSuggester.Builder()) {
+			for (int i = 0; i < termWeights.length; i += 2)
+				builder.add((String) termWeights[i], (Integer) termWeights[i + 1]);
+			return builder.build();
+		}
+	}
+
+	private static void assertLookup(final AutoCompletionSuggester suggester, final String prefix, final int rows,
+			final boolean fuzzy, final String... expected) throws IOException {
+		assertEquals(Arrays.asList(expected), suggester.lookup(prefix, rows, fuzzy));
+	}
+
+	/**
+	 * The best weights first, up to the number of rows
+	 */
+	@Test
+	public void prefixOrder() throws IOException {
+		final AutoCompletionSuggester suggester =
+				build("apple", 10, "banana", 100, "application", 50, "apply", 30, "ape", 1);
+		assertEquals(5, suggester.getSize());
+		assertLookup(suggester, "app", 10, false, "application", "apply", "apple");
+		assertLookup(suggester, "app", 2, false, "application", "apply");
+		assertLookup(suggester, "a", 10, false, "application", "apply", "apple", "ape");
+		assertLookup(suggester, "apples", 10, false);
+		assertLookup(suggester, "", 10, false);
+		assertLookup(suggester, "app", 0, false);
+	}
+
+	/**
+	 * The prefix and the terms are compared in lower case without accents,
+	 * the original term is suggested
+	 */
+	@Test
+	public void folding() throws IOException {
+		assertEquals("elephant", AutoCompletionSuggester.normalize("ÉLÉPHANT"));
+		assertEquals("facade", AutoCompletionSuggester.normalize("Façade"));
+		final AutoCompletionSuggester suggester = build("Éléphant", 5, "elegant", 3, "Façade", 1);
+		assertLookup(suggester, "ele", 10, false, "Éléphant", "elegant");
+		assertLookup(suggester, "ÉLÉ", 10, false, "Éléphant", "elegant");
+		assertLookup(suggester, "faç", 10, false, "Façade");
+	}
+
+	/**
+	 * The terms having the same normalized form are merged, the best weight
+	 * gives the suggested term
+	 */
+	@Test
+	public void sameNormalizedForm() throws IOException {
+		final AutoCompletionSuggester suggester = build("Cafe", 2, "café", 7, "CAFE", 1, "cafeteria", 3);
+		assertEquals(2, suggester.getSize());
+		assertLookup(suggester, "caf", 10, false, "café", "cafeteria");
+	}
+
+	/**
+	 * The fuzzy suggestions complete the exact ones, never before them
+	 */
+	@Test
+	public void fuzzy() throws IOException {
+		final AutoCompletionSuggester suggester =
+				build("search", 10, "seaside", 5, "test", 1, "text", 9, "zebra", 4);
+		assertLookup(suggester, "serch", 5, false);
+		assertLookup(suggester, "serch", 5, true, "search");
+		assertLookup(suggester, "tes", 2, true, "test", "text");
+		assertLookup(suggester, "tes", 1, true, "test");
+		// Too short for the fuzzy mode
+		assertLookup(suggester, "tx", 5, true);
+		// Two edits away
+		assertLookup(suggester, "sxxrch", 5, true);
+	}
+
+	@Test
+	public void saveAndLoad() throws IOException {
+		final AutoCompletionSuggester suggester =
+				build("apple", 10, "application", 50, "Éléphant", 5, "search", 10, "text", 9);
+		final File directory = Files.createTempDirectory("autocompletion").toFile();
+		final File file = new File(directory, "suggester");
+		try {
+			suggester.save(file);
+			final AutoCompletionSuggester loaded = AutoCompletionSuggester.load(file);
+			assertEquals(suggester.getSize(), loaded.getSize());
+			assertEquals(suggester.getSizeInBytes(), loaded.getSizeInBytes());
+			for (String prefix : new String[] { "a", "app", "ele", "serch", "tex", "zzz" })
+				for (boolean fuzzy : new boolean[] { false, true }) {
+					final List<String> expected = suggester.lookup(prefix, 5, fuzzy);
+					assertEquals(expected, loaded.lookup(prefix, 5, fuzzy));
+				}
+			final AutoCompletionSuggester empty = build();
+			empty.save(file);
+			final AutoCompletionSuggester loadedEmpty = AutoCompletionSuggester.load(file);
+			assertEquals(0, loadedEmpty.getSize());
+			assertTrue(loadedEmpty.lookup("a", 5, true).isEmpty());
+		} finally {
+			file.delete();
+			directory.delete();
+		}
+	}
+}
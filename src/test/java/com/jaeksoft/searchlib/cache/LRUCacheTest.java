@@ -0,0 +1,207 @@
+/**
+ * License Agreement for OpenSearchServer
+ * <p>
+ * Copyright (C) 2017 Emmanuel Keller / Jaeksoft
+ * <p>
+ * http://www.open-search-server.com
+ * <p>
+ * This file is part of OpenSearchServer.
+ * <p>
+ * OpenSearchServer is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * <p>
+ * OpenSearchServer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * <p>
+ * You should have received a copy of the GNU General Public License
+ * along with OpenSearchServer.
+ * If not, see <http://www.gnu.org/licenses/>.
+ **/
+
+package com.jaeksoft.searchlib.cache;
+
+import com.jaeksoft.searchlib.util.Timer;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class LRUCacheTest {
+
+	private static class Item extends LRUItemAbstract<Item> {
+
+		private final int key;
+		private final long weight;
+		private int populateCount;
+
+		private Item(final int key, final long weight) {
+			this.key = key;
+			this.weight = weight;
+			this.populateCount = 0;
+		}
+
+		private Item(final int key) {
+			this(key, 64);
+		}
+
+		@Override
+		protected void populate(final Timer timer) {
+			populateCount++;
+		}
+
+		@Override
+		protected long estimateWeight() {
+			return weight;
+		}
+
+		@Override
+		public int hashCode() {
+			return key;
+		}
+
+		@Override
+		public int compareTo(final Item o) {
+			return Integer.compare(key, o.key);
+		}
+	}
+
+	private static class Cache extends LRUCache<Item> {
+
+		private Cache(final int maxSize) {
+			super("test", maxSize);
+		}
+
+		private Item get(final int key) {
+			return getAndPromote(new Item(key));
+		}
+
+		private boolean contains(final int key) {
+			for (Item item : getRecentItems(getSize()))
+				if (item.key == key)
+					return true;
+			return false;
+		}
+	}
+
+	@Test
+	public void sizeBound() {
+		final Cache cache = new Cache(100);
+		for (int i = 0; i < 1000; i++)
+			cache.put(new Item(i));
+		assertEquals(100, cache.getSize());
+		assertEquals(1000, cache.getInserts());
+		assertEquals(900, cache.getEvictions());
+	}
+
+	@Test
+	public void hitsAndMisses() {
+		final Cache cache = new Cache(10);
+		final Item item = cache.get(1);
+		assertSame(item, cache.get(1));
+		assertNotSame(item, cache.get(2));
+		assertEquals(1, cache.getHits());
+		assertEquals(2, cache.getMisses());
+		assertEquals(2, cache.getSize());
+	}
+
+	/**
+	 * The frequently used items survive a scan of items used once
+	 */
+	@Test
+	public void scanResistance() {
+		final Cache cache = new Cache(100);
+		for (int i = 0; i < 10000; i++) {
+			if (i % 100 == 0)
+				for (int hot = 0; hot < 50; hot++)
+					cache.get(hot);
+			cache.get(1000 + i);
+		}
+		assertEquals(100, cache.getSize());
+		for (int hot = 0; hot < 50; hot++)
+			assertTrue("Hot item evicted: " + hot, cache.contains(hot));
+	}
+
+	/**
+	 * An item leaving the window is admitted only if it is more frequent than
+	 * the victim
+	 */
+	@Test
+	public void admission() {
+		final Cache cache = new Cache(10);
+		for (int j = 0; j < 4; j++)
+			for (int i = 0; i < 10; i++)
+				cache.get(i);
+		cache.get(100);
+		cache.get(101);
+		assertEquals(10, cache.getSize());
+		assertFalse(cache.contains(100));
+		assertTrue(cache.contains(101));
+		for (int i = 0; i < 9; i++)
+			assertTrue(cache.contains(i));
+	}
+
+	@Test
+	public void weightBound() {
+		final Cache cache = new Cache(1000);
+		cache.setMaxWeight(10000);
+		for (int i = 0; i < 100; i++)
+			cache.put(new Item(i, 1000));
+		assertTrue(cache.getWeight() <= 10000);
+		assertEquals(10, cache.getSize());
+		cache.setMaxWeight(0);
+		for (int i = 100; i < 200; i++)
+			cache.put(new Item(i, 1000));
+		assertEquals(110, cache.getSize());
+		assertEquals(110000, cache.getWeight());
+		cache.setMaxWeight(5000);
+		assertEquals(5, cache.getSize());
+		assertEquals(5000, cache.getWeight());
+	}
+
+	@Test
+	public void setMaxSize() {
+		final Cache cache = new Cache(100);
+		for (int i = 0; i < 100; i++)
+			cache.put(new Item(i));
+		assertEquals(100, cache.getSize());
+		cache.setMaxSize(20);
+		assertEquals(20, cache.getSize());
+		cache.setMaxSize(0);
+		assertEquals(0, cache.getSize());
+		final Item item = new Item(1);
+		assertSame(item, cache.getAndPromote(item));
+		assertEquals(0, cache.getSize());
+	}
+
+	@Test
+	public void removeAndClear() {
+		final Cache cache = new Cache(100);
+		for (int i = 0; i < 10; i++)
+			cache.put(new Item(i));
+		assertTrue(cache.remove(new Item(5)));
+		assertFalse(cache.remove(new Item(5)));
+		assertEquals(9, cache.getSize());
+		assertEquals(9 * 64, cache.getWeight());
+		cache.clear();
+		assertEquals(0, cache.getSize());
+		assertEquals(0, cache.getWeight());
+		assertFalse(cache.contains(1));
+	}
+
+	@Test
+	public void getAndJoin() throws Exception {
+		final Cache cache = new Cache(10);
+		final Item item = cache.getAndJoin(new Item(1), null);
+		assertSame(item, cache.getAndJoin(new Item(1), null));
+		assertEquals(1, item.populateCount);
+		assertEquals(1, cache.getHits());
+		assertEquals(2, cache.getLookups());
+	}
+}
@@ -0,0 +1,193 @@
+/**
+ * License Agreement for OpenSearchServer
+ * <p>
+ * Copyright (C) 2017 Emmanuel Keller / Jaeksoft
+ * <p>
+ * http://www.open-search-server.com
+ * <p>
+ * This file is part of OpenSearchServer.
+ * <p>
+ * OpenSearchServer is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * <p>
+ * OpenSearchServer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * <p>
+ * You should have received a copy of the GNU General Public License
+ * along with OpenSearchServer.
+ * If not, see <http://www.gnu.org/licenses/>.
+ **/
+
+package com.jaeksoft.searchlib.classifier;
+
+import org.apache.lucene.analysis.WhitespaceAnalyzer;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.index.memory.MemoryIndex;
+import org.apache.lucene.search.BooleanClause.Occur;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.PhraseQuery;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.search.WildcardQuery;
+import org.apache.lucene.util.Version;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.BitSet;
+import java.util.Random;
+import java.util.function.Function;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ClassifierQueryIndexTest {
+
+	private final static String FIELD = "content";
+
+	private final static String[] WORDS =
+			{ "alpha", "beta", "gamma", "delta", "epsilon", "zeta", "eta", "theta", "iota", "kappa" };
+
+	private final static int QUERIES = 30;
+
+	private final static int DOCUMENTS = 300;
+
+	private static Term term(final Random random) {
+		return new Term(FIELD, WORDS[random.nextInt(WORDS.length)]);
+	}
+
+	private static TermQuery termQuery(final Random random) {
+		return new TermQuery(term(random));
+	}
+
+	private static PhraseQuery phraseQuery(final Random random) {
+		final PhraseQuery phraseQuery = new PhraseQuery();
+		phraseQuery.add(term(random));
+		phraseQuery.add(term(random));
+		phraseQuery.setSlop(random.nextInt(3));
+		return phraseQuery;
+	}
+
+	private static MemoryIndex document(final Random random) {
+		final StringBuilder text = new StringBuilder();
+		final int length = random.nextInt(6);
+		for (int i = 0; i < length; i++)
+			text.append(WORDS[random.nextInt(WORDS.length)]).append(' ');
+		final MemoryIndex index = new MemoryIndex();
+		index.addField(FIELD, text.toString(), new WhitespaceAnalyzer(Version.LUCENE_36));
+		return index;
+	}
+
+	/**
+	 * Score random documents against every query, as the classifier did
+	 * without the index: each matching query must be a candidate.
+	 *
+	 * @return the number of candidates which are not matching
+	 */
+	private static int check(final long seed, final Function<Random, Query> queryFactory) throws IOException {
+		final Random random = new Random(seed);
+		final Query[] queries = new Query[QUERIES];
+		for (int i = 0; i < queries.length; i++)
+			queries[i] = queryFactory.apply(random);
+		final ClassifierQueryIndex queryIndex = new ClassifierQueryIndex(new ClassifierItem[queries.length], queries);
+		int matches = 0;
+		int extraCandidates = 0;
+		for (int doc = 0; doc < DOCUMENTS; doc++) {
+			final MemoryIndex index = document(random);
+			final BitSet candidates = queryIndex.getCandidates(index);
+			for (int pos = 0; pos < queries.length; pos++) {
+				final boolean match = queryIndex.score(pos, index) > 0;
+				if (match) {
+					assertTrue(queries[pos] + " must be a candidate", candidates.get(pos));
+					matches++;
+				} else if (candidates.get(pos))
+					extraCandidates++;
+			}
+		}
+		assertTrue(matches > 0);
+		return extraCandidates;
+	}
+
+	/**
+	 * The candidates are filtered: not every query is scored
+	 */
+	private static void checkFiltered(final long seed, final Function<Random, Query> queryFactory)
+			throws IOException {
+		assertTrue(check(seed, queryFactory) < (DOCUMENTS * QUERIES) / 2);
+	}
+
+	@Test
+	public void termQuery() throws IOException {
+		// The candidates are exactly the matches
+		assertEquals(0, check(1, ClassifierQueryIndexTest::termQuery));
+	}
+
+	@Test
+	public void phraseQuery() throws IOException {
+		checkFiltered(2, ClassifierQueryIndexTest::phraseQuery);
+	}
+
+	@Test
+	public void booleanMust() throws IOException {
+		checkFiltered(3, random -> {
+			final BooleanQuery booleanQuery = new BooleanQuery();
+			booleanQuery.add(termQuery(random), Occur.MUST);
+			booleanQuery.add(random.nextBoolean() ? phraseQuery(random) : new WildcardQuery(
+					new Term(FIELD, WORDS[random.nextInt(WORDS.length)].substring(0, 2) + '*')), Occur.MUST);
+			booleanQuery.add(termQuery(random), Occur.SHOULD);
+			if (random.nextBoolean())
+				booleanQuery.add(termQuery(random), Occur.MUST_NOT);
+			return booleanQuery;
+		});
+	}
+
+	@Test
+	public void booleanShould() throws IOException {
+		checkFiltered(4, random -> {
+			final BooleanQuery booleanQuery = new BooleanQuery();
+			booleanQuery.add(termQuery(random), Occur.SHOULD);
+			booleanQuery.add(phraseQuery(random), Occur.SHOULD);
+			final BooleanQuery nested = new BooleanQuery();
+			nested.add(termQuery(random), Occur.MUST);
+			nested.add(termQuery(random), Occur.MUST);
+			booleanQuery.add(nested, Occur.SHOULD);
+			if (random.nextBoolean())
+				booleanQuery.add(termQuery(random), Occur.MUST_NOT);
+			return booleanQuery;
+		});
+	}
+
+	@Test
+	public void booleanMustNot() throws IOException {
+		// Nothing matches a query without positive clause, it is always a candidate
+		final Random random = new Random(5);
+		final Query[] queries = new Query[QUERIES];
+		for (int i = 0; i < queries.length; i++) {
+			final BooleanQuery booleanQuery = new BooleanQuery();
+			booleanQuery.add(termQuery(random), Occur.MUST_NOT);
+			booleanQuery.add(termQuery(random), Occur.MUST_NOT);
+			queries[i] = booleanQuery;
+		}
+		final ClassifierQueryIndex queryIndex = new ClassifierQueryIndex(new ClassifierItem[queries.length], queries);
+		for (int doc = 0; doc < DOCUMENTS; doc++) {
+			final MemoryIndex index = document(random);
+			assertEquals(queries.length, queryIndex.getCandidates(index).cardinality());
+			for (int pos = 0; pos < queries.length; pos++)
+				assertEquals(0f, queryIndex.score(pos, index), 0f);
+		}
+	}
+
+	@Test
+	public void wildcardQuery() throws IOException {
+		// Wildcards give no required term, they are always candidates
+		final int extraCandidates = check(6, random -> new WildcardQuery(
+				new Term(FIELD, WORDS[random.nextInt(WORDS.length)].charAt(0) + "*")));
+		assertTrue(extraCandidates > 0);
+		// Mixed with term queries, only the term queries are filtered
+		checkFiltered(7, random -> random.nextInt(4) == 0 ? new WildcardQuery(
+				new Term(FIELD, "*" + WORDS[random.nextInt(WORDS.length)].substring(1))) : termQuery(random));
+	}
+}
@@ -0,0 +1,206 @@
+/**
+ * License Agreement for OpenSearchServer
+ * <p>
+ * Copyright (C) 2017 Emmanuel Keller / Jaeksoft
+ * <p>
+ * http://www.open-search-server.com
+ * <p>
+ * This file is part of OpenSearchServer.
+ * <p>
+ * OpenSearchServer is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * <p>
+ * OpenSearchServer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * <p>
+ * You should have received a copy of the GNU General Public License
+ * along with OpenSearchServer.
+ * If not, see <http://www.gnu.org/licenses/>.
+ **/
+
+package com.jaeksoft.searchlib.collapse;
+
+import com.jaeksoft.searchlib.index.FieldCacheIndex;
+import com.jaeksoft.searchlib.result.collector.AbstractBaseCollector;
+import com.jaeksoft.searchlib.result.collector.CollectorInterface;
+import com.jaeksoft.searchlib.result.collector.collapsing.CollapseCollectorInterface;
+import org.apache.lucene.analysis.KeywordAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.store.RAMDirectory;
+import org.apache.lucene.util.Version;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class CollapseClusterTest {
+
+	private final static String FIELD = "site";
+
+	/**
+	 * Records the calls as "collect sourcePos" and "collapse sourcePos to
+	 * collapsePos"
+	 */
+	private static class RecordingCollector implements CollapseCollectorInterface {
+
+		private final List<String> calls = new ArrayList<>();
+		private int size = 0;
+
+		@Override
+		public int collectDoc(final int sourcePos) {
+			calls.add("collect " + sourcePos);
+			return size++;
+		}
+
+		@Override
+		public void collectCollapsedDoc(final int sourcePos, final int collapsePos) {
+			calls.add("collapse " + sourcePos + " to " + collapsePos);
+		}
+
+		@Override
+		public void endCollection() {
+		}
+
+		@Override
+		public int getSize() {
+			return size;
+		}
+
+		@Override
+		public <T extends CollectorInterface> T getCollector(final Class<T> collectorType) {
+			return null;
+		}
+
+		@Override
+		public CollectorInterface getParent() {
+			return null;
+		}
+
+		@Override
+		public CollectorInterface duplicate(final AbstractBaseCollector<?> base) {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public CollectorInterface duplicate() {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public void doSwap(final int pos1, final int pos2) {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public void swap(final int pos1, final int pos2) {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public int getClassType() {
+			return 0;
+		}
+	}
+
+	private static IndexReader newIndex(final Random random, final int docs, final int terms) throws IOException {
+		final RAMDirectory directory = new RAMDirectory();
+		try (final IndexWriter writer = new IndexWriter(directory,
+				new IndexWriterConfig(Version.LUCENE_36, new KeywordAnalyzer()))) {
+			for (int i = 0; i < docs; i++) {
+				final Document document = new Document();
+				if (random.nextInt(10) != 0)
+					document.add(new Field(FIELD, "site" + random.nextInt(terms), Field.Store.NO,
+							Field.Index.NOT_ANALYZED));
+				writer.addDocument(document);
+			}
+		}
+		return IndexReader.open(directory);
+	}
+
+	/**
+	 * The first document of each term is collected, the next ones are
+	 * collapsed on it. The documents without term are all collected.
+	 */
+	private static List<String> bruteForce(final int[] ids, final int fetchLength, final FieldCacheIndex index) {
+		final List<String> calls = new ArrayList<>();
+		final Map<String, Integer> positions = new HashMap<>();
+		int size = 0;
+		for (int i = 0; i < fetchLength; i++) {
+			final String term = index.getDocTerm(ids[i]);
+			final Integer pos = term == null ? null : positions.get(term);
+			if (pos != null)
+				calls.add("collapse " + i + " to " + pos);
+			else {
+				calls.add("collect " + i);
+				if (term != null)
+					positions.put(term, size);
+				size++;
+			}
+		}
+		return calls;
+	}
+
+	/**
+	 * Both collapse methods give the result of the brute force, whatever
+	 * the method chosen for the number of terms
+	 */
+	private static void check(final long seed, final int docs, final int terms) throws IOException {
+		final Random random = new Random(seed);
+		try (final IndexReader reader = newIndex(random, docs, terms)) {
+			final FieldCacheIndex index = FieldCacheIndex.build(reader, FIELD);
+			final List<Integer> shuffled = new ArrayList<>();
+			for (int doc = 0; doc < docs; doc++)
+				shuffled.add(doc);
+			Collections.shuffle(shuffled, random);
+			final int[] ids = new int[docs];
+			for (int i = 0; i < docs; i++)
+				ids[i] = shuffled.get(i);
+			for (int fetchLength : new int[] { 0, 1, docs / 10, docs / 2, docs }) {
+				final List<String> expected = bruteForce(ids, fetchLength, index);
+				final RecordingCollector directCollector = new RecordingCollector();
+				CollapseCluster.collapseDirect(ids, fetchLength, index, directCollector);
+				assertEquals(expected, directCollector.calls);
+				final RecordingCollector hashedCollector = new RecordingCollector();
+				CollapseCluster.collapseHashed(ids, fetchLength, index, hashedCollector);
+				assertEquals(expected, hashedCollector.calls);
+			}
+		}
+	}
+
+	@Test
+	public void threshold() {
+		assertTrue(CollapseCluster.useDirectAddress(400, 100));
+		assertFalse(CollapseCluster.useDirectAddress(401, 100));
+		assertFalse(CollapseCluster.useDirectAddress(1, 0));
+		assertTrue(CollapseCluster.useDirectAddress(Integer.MAX_VALUE, Integer.MAX_VALUE));
+	}
+
+	@Test
+	public void fewTerms() throws IOException {
+		for (int seed = 0; seed < 3; seed++)
+			check(seed, 2000, 5);
+	}
+
+	@Test
+	public void manyTerms() throws IOException {
+		// Mostly unique terms
+		check(5, 2000, 100000);
+	}
+}
@@ -0,0 +1,142 @@
+/**
+ * License Agreement for OpenSearchServer
+ * <p>
+ * Copyright (C) 2017 Emmanuel Keller / Jaeksoft
+ * <p>
+ * http://www.open-search-server.com
+ * <p>
+ * This file is part of OpenSearchServer.
+ * <p>
+ * OpenSearchServer is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * <p>
+ * OpenSearchServer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * <p>
+ * You should have received a copy of the GNU General Public License
+ * along with OpenSearchServer.
+ * If not, see <http://www.gnu.org/licenses/>.
+ **/
+
+package com.jaeksoft.searchlib.facet;
+
+import com.jaeksoft.searchlib.webservice.query.search.SearchQueryAbstract.Facet.OrderByEnum;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class FacetTest {
+
+	private final static Integer[] LIMITS = { null, 0, 1, 5, 1000 };
+
+	private final static int[] MIN_COUNTS = { 0, 1, 3 };
+
+	private static OrderByEnum[] orderBys() {
+		final OrderByEnum[] values = OrderByEnum.values();
+		final OrderByEnum[] orderBys = new OrderByEnum[values.length + 1];
+		System.arraycopy(values, 0, orderBys, 1, values.length);
+		return orderBys;
+	}
+
+	/**
+	 * Few distinct counts, so that many ordinals are tied
+	 */
+	private static int[] randomCounts(final Random random) {
+		final int[] counts = new int[random.nextInt(200)];
+		for (int i = 0; i < counts.length; i++)
+			counts[i] = random.nextInt(8);
+		return counts;
+	}
+
+	/**
+	 * Sort every ordinal, then apply the limit
+	 */
+	private static int[] bruteForce(final int[] counts, final FacetField facetField) {
+		final List<Integer> ords = new ArrayList<>();
+		for (int ord = 1; ord < counts.length; ord++)
+			if (counts[ord] >= facetField.getMinCount())
+				ords.add(ord);
+		final OrderByEnum orderBy = facetField.getOrderBy();
+		if (orderBy != null && orderBy != OrderByEnum.no_sort) {
+			final Comparator<Integer> byCount = Comparator.comparingInt(ord -> counts[ord]);
+			switch (orderBy) {
+			case count_desc:
+				ords.sort(byCount.reversed().thenComparing(Comparator.naturalOrder()));
+				break;
+			case count_asc:
+				ords.sort(byCount.thenComparing(Comparator.naturalOrder()));
+				break;
+			case term_desc:
+				ords.sort(Comparator.reverseOrder());
+				break;
+			default:
+				break;
+			}
+			final Integer limit = facetField.getLimit();
+			if (limit != null && ords.size() > limit)
+				ords.subList(limit, ords.size()).clear();
+		}
+		final int[] result = new int[ords.size()];
+		for (int i = 0; i < result.length; i++)
+			result[i] = ords.get(i);
+		return result;
+	}
+
+	/**
+	 * The ordinals selected by the heap are the first ones of a full sort
+	 */
+	@Test
+	public void ordinals() {
+		final Random random = new Random(1);
+		for (int i = 0; i < 50; i++) {
+			final int[] counts = randomCounts(random);
+			for (OrderByEnum orderBy : orderBys())
+				for (Integer limit : LIMITS)
+					for (int minCount : MIN_COUNTS) {
+						final FacetField facetField =
+								new FacetField("field", minCount, false, false, limit, orderBy, null);
+						assertArrayEquals(orderBy + " " + limit + " " + minCount, bruteForce(counts, facetField),
+								Facet.limitOrderBy(facetField, counts));
+					}
+		}
+	}
+
+	/**
+	 * The facets counted by term (term vectors, merged searches) keep the
+	 * same entries as a full sort
+	 */
+	@Test
+	public void termCounts() {
+		final Random random = new Random(2);
+		for (int i = 0; i < 50; i++) {
+			final int[] counts = randomCounts(random);
+			final Map<String, Long> termCounts = new LinkedHashMap<>();
+			for (int ord = 1; ord < counts.length; ord++)
+				termCounts.put(String.format("term%03d", ord), (long) counts[ord]);
+			for (OrderByEnum orderBy : orderBys())
+				for (Integer limit : LIMITS) {
+					final FacetField facetField = new FacetField("field", 0, false, false, limit, orderBy, null);
+					final int[] expected = bruteForce(counts, facetField);
+					final List<Map.Entry<String, FacetCounter>> list =
+							Facet.fromCounts(facetField, termCounts).getList();
+					assertEquals(orderBy + " " + limit, expected.length, list.size());
+					for (int j = 0; j < expected.length; j++) {
+						assertEquals(String.format("term%03d", expected[j]), list.get(j).getKey());
+						assertEquals(counts[expected[j]], list.get(j).getValue().count);
+					}
+				}
+		}
+	}
+}
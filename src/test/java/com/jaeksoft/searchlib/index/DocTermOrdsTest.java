@@ -0,0 +1,158 @@
+/**
+ * License Agreement for OpenSearchServer
+ * <p>
+ * Copyright (C) 2017 Emmanuel Keller / Jaeksoft
+ * <p>
+ * http://www.open-search-server.com
+ * <p>
+ * This file is part of OpenSearchServer.
+ * <p>
+ * OpenSearchServer is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * <p>
+ * OpenSearchServer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * <p>
+ * You should have received a copy of the GNU General Public License
+ * along with OpenSearchServer.
+ * If not, see <http://www.gnu.org/licenses/>.
+ **/
+
+package com.jaeksoft.searchlib.index;
+
+import org.apache.lucene.analysis.KeywordAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.NoMergePolicy;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.index.TermDocs;
+import org.apache.lucene.store.RAMDirectory;
+import org.apache.lucene.util.Version;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class DocTermOrdsTest {
+
+	private final static String FIELD = "field";
+
+	private static IndexWriter newWriter(final RAMDirectory directory) throws IOException {
+		final IndexWriterConfig config =
+				new IndexWriterConfig(Version.LUCENE_36, new KeywordAnalyzer()).setMergePolicy(
+						NoMergePolicy.NO_COMPOUND_FILES);
+		return new IndexWriter(directory, config);
+	}
+
+	/**
+	 * Add a segment of documents with up to five values, some of them
+	 * repeated, some documents without any value. The number of terms gives
+	 * ordinal deltas longer than one byte.
+	 */
+	private static void addSegment(final IndexWriter writer, final Random random, final int count)
+			throws IOException {
+		for (int i = 0; i < count; i++) {
+			final Document document = new Document();
+			document.add(new Field("id", Integer.toString(writer.maxDoc()), Field.Store.NO,
+					Field.Index.NOT_ANALYZED));
+			final int values = random.nextInt(6);
+			for (int j = 0; j < values; j++)
+				document.add(new Field(FIELD, "term" + random.nextInt(1000), Field.Store.NO,
+						Field.Index.NOT_ANALYZED));
+			writer.addDocument(document);
+		}
+		writer.commit();
+	}
+
+	/**
+	 * Count the terms of a random selection of documents, and compare with
+	 * the postings of each term
+	 */
+	private static void check(final IndexReader reader, final Random random) throws IOException {
+		final FieldCacheIndex fieldCacheIndex = FieldCacheIndex.build(reader, FIELD);
+		final DocTermOrds docTermOrds = DocTermOrds.build(reader, FIELD, fieldCacheIndex);
+		final boolean[] selected = new boolean[reader.maxDoc()];
+		final int[] docIds = new int[reader.maxDoc()];
+		int size = 0;
+		for (int doc = 0; doc < reader.maxDoc(); doc++) {
+			if (reader.isDeleted(doc) || random.nextInt(3) == 0)
+				continue;
+			selected[doc] = true;
+			docIds[size++] = doc;
+		}
+		final int[] counts = new int[fieldCacheIndex.getTermCount()];
+		docTermOrds.count(docIds, size, counts);
+		final int[] expected = new int[counts.length];
+		final TermDocs termDocs = reader.termDocs();
+		try {
+			for (int ord = 1; ord < expected.length; ord++) {
+				termDocs.seek(new Term(FIELD, fieldCacheIndex.getTerm(ord)));
+				while (termDocs.next())
+					if (selected[termDocs.doc()])
+						expected[ord]++;
+			}
+		} finally {
+			termDocs.close();
+		}
+		assertEquals(0, counts[0]);
+		assertArrayEquals(expected, counts);
+		assertTrue(docTermOrds.getMemorySize() > 0);
+	}
+
+	@Test
+	public void counts() throws IOException {
+		final Random random = new Random(1);
+		final RAMDirectory directory = new RAMDirectory();
+		final IndexWriter writer = newWriter(directory);
+		addSegment(writer, random, 400);
+		final IndexReader reader1 = IndexReader.open(directory);
+		// One segment
+		check(reader1, random);
+
+		// Several segments, the shared ones come from the cache
+		addSegment(writer, random, 300);
+		addSegment(writer, random, 50);
+		final IndexReader reader2 = IndexReader.openIfChanged(reader1);
+		assertEquals(3, reader2.getSequentialSubReaders().length);
+		check(reader2, random);
+
+		// Deleted documents are never matched
+		writer.deleteDocuments(new Term("id", "10"));
+		writer.deleteDocuments(new Term("id", "500"));
+		writer.commit();
+		final IndexReader reader3 = IndexReader.openIfChanged(reader2);
+		check(reader3, random);
+		writer.close();
+		reader1.close();
+		reader2.close();
+		reader3.close();
+	}
+
+	@Test
+	public void noValues() throws IOException {
+		final RAMDirectory directory = new RAMDirectory();
+		final IndexWriter writer = newWriter(directory);
+		final Document document = new Document();
+		document.add(new Field("id", "0", Field.Store.NO, Field.Index.NOT_ANALYZED));
+		writer.addDocument(document);
+		writer.close();
+		final IndexReader reader = IndexReader.open(directory);
+		final FieldCacheIndex fieldCacheIndex = FieldCacheIndex.build(reader, FIELD);
+		final int[] counts = new int[fieldCacheIndex.getTermCount()];
+		DocTermOrds.build(reader, FIELD, fieldCacheIndex).count(new int[] { 0 }, 1, counts);
+		for (int count : counts)
+			assertEquals(0, count);
+		reader.close();
+	}
+}
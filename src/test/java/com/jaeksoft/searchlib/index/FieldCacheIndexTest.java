@@ -0,0 +1,158 @@
+/**
+ * License Agreement for OpenSearchServer
+ * <p>
+ * Copyright (C) 2017 Emmanuel Keller / Jaeksoft
+ * <p>
+ * http://www.open-search-server.com
+ * <p>
+ * This file is part of OpenSearchServer.
+ * <p>
+ * OpenSearchServer is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * <p>
+ * OpenSearchServer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * <p>
+ * You should have received a copy of the GNU General Public License
+ * along with OpenSearchServer.
+ * If not, see <http://www.gnu.org/licenses/>.
+ **/
+
+package com.jaeksoft.searchlib.index;
+
+import org.apache.lucene.analysis.KeywordAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.NoMergePolicy;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.store.RAMDirectory;
+import org.apache.lucene.util.Version;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class FieldCacheIndexTest {
+
+	private final static String FIELD = "field";
+
+	private static IndexWriter newWriter(final RAMDirectory directory) throws IOException {
+		final IndexWriterConfig config =
+				new IndexWriterConfig(Version.LUCENE_36, new KeywordAnalyzer()).setMergePolicy(
+						NoMergePolicy.NO_COMPOUND_FILES);
+		return new IndexWriter(directory, config);
+	}
+
+	/**
+	 * Add a segment of documents, some of them without a term
+	 */
+	private static void addSegment(final IndexWriter writer, final Random random, final int count)
+			throws IOException {
+		for (int i = 0; i < count; i++) {
+			final Document document = new Document();
+			document.add(new Field("id", Integer.toString(writer.maxDoc()), Field.Store.NO,
+					Field.Index.NOT_ANALYZED));
+			if (random.nextInt(10) != 0)
+				document.add(new Field(FIELD, "term" + random.nextInt(count * 2), Field.Store.NO,
+						Field.Index.NOT_ANALYZED));
+			writer.addDocument(document);
+		}
+		writer.commit();
+	}
+
+	/**
+	 * The index built from the previous one gives the same ordinals and terms
+	 * as an index built from the segments, and the ordinals follow the order
+	 * of the terms.
+	 */
+	private static void check(final IndexReader reader, final FieldCacheIndex fieldCacheIndex)
+			throws IOException {
+		final FieldCacheIndex expected = FieldCacheIndex.build(reader, FIELD);
+		assertEquals(expected.getTermCount(), fieldCacheIndex.getTermCount());
+		assertNull(fieldCacheIndex.getTerm(0));
+		for (int ord = 2; ord < fieldCacheIndex.getTermCount(); ord++)
+			assertTrue(fieldCacheIndex.getTerm(ord - 1).compareTo(fieldCacheIndex.getTerm(ord)) < 0);
+		for (int doc = 0; doc < reader.maxDoc(); doc++) {
+			assertEquals(expected.getOrd(doc), fieldCacheIndex.getOrd(doc));
+			assertEquals(expected.getDocTerm(doc), fieldCacheIndex.getDocTerm(doc));
+		}
+	}
+
+	@Test
+	public void sharedSegments() throws IOException {
+		final Random random = new Random(1);
+		final RAMDirectory directory = new RAMDirectory();
+		final IndexWriter writer = newWriter(directory);
+		addSegment(writer, random, 300);
+		final IndexReader reader1 = IndexReader.open(directory);
+		final FieldCacheIndex index1 = FieldCacheIndex.build(reader1, FIELD);
+		check(reader1, index1);
+
+		// One segment to two segments
+		addSegment(writer, random, 200);
+		final IndexReader reader2 = IndexReader.openIfChanged(reader1);
+		final FieldCacheIndex index2 = FieldCacheIndex.build(reader2, FIELD, index1);
+		check(reader2, index2);
+
+		// Two segments to four segments
+		addSegment(writer, random, 100);
+		addSegment(writer, random, 50);
+		final IndexReader reader3 = IndexReader.openIfChanged(reader2);
+		final FieldCacheIndex index3 = FieldCacheIndex.build(reader3, FIELD, index2);
+		check(reader3, index3);
+		// The documents of the shared segments keep their terms
+		for (int doc = 0; doc < reader2.maxDoc(); doc++)
+			assertEquals(index2.getDocTerm(doc), index3.getDocTerm(doc));
+
+		// Only deletions: the same segments
+		writer.deleteDocuments(new Term("id", "10"));
+		writer.commit();
+		final IndexReader reader4 = IndexReader.openIfChanged(reader3);
+		check(reader4, FieldCacheIndex.build(reader4, FIELD, index3));
+
+		// A merge removes the segments, the terms are read again
+		writer.close();
+		final IndexWriter merger =
+				new IndexWriter(directory, new IndexWriterConfig(Version.LUCENE_36, new KeywordAnalyzer()));
+		merger.forceMerge(1);
+		merger.close();
+		final IndexReader reader5 = IndexReader.openIfChanged(reader4);
+		check(reader5, FieldCacheIndex.build(reader5, FIELD, index3));
+
+		for (IndexReader reader : new IndexReader[] { reader1, reader2, reader3, reader4, reader5 })
+			reader.close();
+	}
+
+	/**
+	 * The terms only used by deleted documents stay in the ordinals of their
+	 * segment, a reopen gives the same ordinals
+	 */
+	@Test
+	public void deletedTerms() throws IOException {
+		final RAMDirectory directory = new RAMDirectory();
+		final IndexWriter writer = newWriter(directory);
+		addSegment(writer, new Random(2), 50);
+		addSegment(writer, new Random(3), 50);
+		final IndexReader reader1 = IndexReader.open(directory);
+		final FieldCacheIndex index1 = FieldCacheIndex.build(reader1, FIELD);
+		for (int i = 0; i < 100; i += 3)
+			writer.deleteDocuments(new Term("id", Integer.toString(i)));
+		addSegment(writer, new Random(4), 30);
+		final IndexReader reader2 = IndexReader.openIfChanged(reader1);
+		check(reader2, FieldCacheIndex.build(reader2, FIELD, index1));
+		writer.close();
+		reader1.close();
+		reader2.close();
+	}
+}
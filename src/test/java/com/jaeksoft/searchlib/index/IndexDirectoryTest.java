@@ -0,0 +1,63 @@
+/**
+ * License Agreement for OpenSearchServer
+ * <p>
+ * Copyright (C) 2017 Emmanuel Keller / Jaeksoft
+ * <p>
+ * http://www.open-search-server.com
+ * <p>
+ * This file is part of OpenSearchServer.
+ * <p>
+ * OpenSearchServer is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * <p>
+ * OpenSearchServer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * <p>
+ * You should have received a copy of the GNU General Public License
+ * along with OpenSearchServer.
+ * If not, see <http://www.gnu.org/licenses/>.
+ **/
+
+package com.jaeksoft.searchlib.index;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+public class IndexDirectoryTest {
+
+	/**
+	 * The directories opened on the same files share the snapshot policy
+	 * until the last one is closed
+	 */
+	@Test
+	public void sharedSnapshotPolicy() throws IOException {
+		final File dir = Files.createTempDirectory("index").toFile();
+		try {
+			final IndexDirectory directory1 = new IndexDirectory(dir);
+			final IndexDirectory directory2 = new IndexDirectory(new File(dir.getParentFile(), dir.getName()));
+			assertSame(directory1.getSnapshotPolicy(), directory2.getSnapshotPolicy());
+			directory1.close();
+			// Closing twice does not release the policy of the other directory
+			directory1.close();
+			final IndexDirectory directory3 = new IndexDirectory(dir);
+			assertSame(directory2.getSnapshotPolicy(), directory3.getSnapshotPolicy());
+			directory2.close();
+			directory3.close();
+			final IndexDirectory directory4 = new IndexDirectory(dir);
+			assertNotSame(directory2.getSnapshotPolicy(), directory4.getSnapshotPolicy());
+			directory4.close();
+		} finally {
+			dir.delete();
+		}
+	}
+}
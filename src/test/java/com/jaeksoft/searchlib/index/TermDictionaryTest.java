@@ -0,0 +1,119 @@
+/**
+ * License Agreement for OpenSearchServer
+ * <p>
+ * Copyright (C) 2017 Emmanuel Keller / Jaeksoft
+ * <p>
+ * http://www.open-search-server.com
+ * <p>
+ * This file is part of OpenSearchServer.
+ * <p>
+ * OpenSearchServer is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * <p>
+ * OpenSearchServer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * <p>
+ * You should have received a copy of the GNU General Public License
+ * along with OpenSearchServer.
+ * If not, see <http://www.gnu.org/licenses/>.
+ **/
+
+package com.jaeksoft.searchlib.index;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class TermDictionaryTest {
+
+	private static TermDictionary build(final List<String> terms) throws IOException {
+		final TermDictionary.Builder builder = new TermDictionary.Builder();
+		for (String term : terms)
+			builder.add(term);
+		return builder.build();
+	}
+
+	private static void check(final List<String> terms) throws IOException {
+		final TermDictionary dictionary = build(terms);
+		assertEquals(terms.size(), dictionary.size());
+		for (int i = terms.size() - 1; i >= 0; i--)
+			assertEquals(terms.get(i), dictionary.get(i));
+		final TermDictionary.Cursor cursor = dictionary.cursor();
+		for (String term : terms)
+			assertEquals(term, cursor.next());
+		assertNull(cursor.next());
+	}
+
+	@Test
+	public void empty() throws IOException {
+		final TermDictionary dictionary = build(new ArrayList<String>());
+		assertEquals(0, dictionary.size());
+		assertNull(dictionary.cursor().next());
+	}
+
+	/**
+	 * Terms sharing long prefixes, around the block boundaries
+	 */
+	@Test
+	public void prefixes() throws IOException {
+		for (int size : new int[] { 1, 15, 16, 17, 33, 1000 }) {
+			final List<String> terms = new ArrayList<String>();
+			terms.add("");
+			for (int i = 1; i < size; i++)
+				terms.add(String.format("http://www.example.com/page/%06d", i));
+			check(terms);
+		}
+	}
+
+	@Test
+	public void unicode() throws IOException {
+		final TreeSet<String> terms = new TreeSet<String>();
+		terms.add("café");
+		terms.add("cafés");
+		terms.add("文字");
+		terms.add("文字列");
+		terms.add("a😀");
+		terms.add("a😁");
+		terms.add("a😁b");
+		final Random random = new Random(1);
+		final char[] alphabet = { 'a', 'b', 'é', 'ࠀ', '￮' };
+		while (terms.size() < 5000) {
+			final StringBuilder sb = new StringBuilder();
+			final int length = random.nextInt(12);
+			for (int i = 0; i < length; i++) {
+				if (random.nextInt(10) == 0)
+					sb.appendCodePoint(0x1F600 + random.nextInt(3));
+				else
+					sb.append(alphabet[random.nextInt(alphabet.length)]);
+			}
+			terms.add(sb.toString());
+		}
+		check(new ArrayList<String>(terms));
+	}
+
+	@Test
+	public void longTerms() throws IOException {
+		final List<String> terms = new ArrayList<String>();
+		final StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < 40; i++) {
+			sb.append("abcdefghijklmnopqrstuvwxyz");
+			terms.add(sb.toString());
+		}
+		check(terms);
+		final TermDictionary dictionary = build(terms);
+		// Front coding: most of the characters are shared
+		assertTrue(dictionary.getMemorySize() < 26 * 40 * 20);
+	}
+}
@@ -0,0 +1,153 @@
+/**
+ * License Agreement for OpenSearchServer
+ * <p>
+ * Copyright (C) 2017 Emmanuel Keller / Jaeksoft
+ * <p>
+ * http://www.open-search-server.com
+ * <p>
+ * This file is part of OpenSearchServer.
+ * <p>
+ * OpenSearchServer is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * <p>
+ * OpenSearchServer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * <p>
+ * You should have received a copy of the GNU General Public License
+ * along with OpenSearchServer.
+ * If not, see <http://www.gnu.org/licenses/>.
+ **/
+
+package com.jaeksoft.searchlib.learning;
+
+import org.apache.lucene.analysis.WhitespaceAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.BooleanClause.Occur;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.PhraseQuery;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.store.RAMDirectory;
+import org.apache.lucene.util.Version;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+public class StandardLearnerModelTest {
+
+	private final static String NAME = "name";
+	private final static String TARGET = "target";
+	private final static String DATA = "data";
+
+	private final static String[] WORDS = { "red", "green", "blue", "cyan", "magenta", "yellow", "black", "white" };
+
+	/**
+	 * Documents of various lengths and boosts, with a repeated word now and
+	 * then, so that the tf and the norms differ
+	 */
+	private static RAMDirectory newIndex(final Random random) throws IOException {
+		final RAMDirectory directory = new RAMDirectory();
+		try (final IndexWriter writer = new IndexWriter(directory,
+				new IndexWriterConfig(Version.LUCENE_36, new WhitespaceAnalyzer(Version.LUCENE_36)))) {
+			for (int i = 0; i < 200; i++) {
+				final Document document = new Document();
+				document.add(new Field(NAME, "doc" + i, Field.Store.NO, Field.Index.NOT_ANALYZED));
+				document.add(new Field(TARGET, "target" + (i % 7), Field.Store.NO, Field.Index.NOT_ANALYZED));
+				final StringBuilder text = new StringBuilder();
+				final int length = 1 + random.nextInt(10);
+				for (int j = 0; j < length; j++)
+					text.append(WORDS[random.nextInt(WORDS.length)]).append(' ');
+				final Field data = new Field(DATA, text.toString(), Field.Store.NO, Field.Index.ANALYZED);
+				if (random.nextInt(5) == 0)
+					data.setBoost(2.5f);
+				document.add(data);
+				writer.addDocument(document);
+			}
+		}
+		return directory;
+	}
+
+	private static TermQuery termQuery(final String text, final float boost) {
+		final TermQuery termQuery = new TermQuery(new Term(DATA, text));
+		termQuery.setBoost(boost);
+		return termQuery;
+	}
+
+	/**
+	 * The model gives the documents and the scores of the search
+	 */
+	private static void assertSameScores(final IndexSearcher searcher, final StandardLearnerModel model,
+			final BooleanQuery modelQuery, final BooleanQuery searchQuery) throws IOException {
+		final StandardLearnerModel.Hits hits = model.score(DATA, modelQuery);
+		final Map<Integer, Float> modelScores = new HashMap<Integer, Float>();
+		for (int i = 0; i < hits.docs.length; i++)
+			modelScores.put(hits.docs[i], hits.scores[i]);
+		final ScoreDoc[] scoreDocs = searcher.search(searchQuery, searcher.maxDoc()).scoreDocs;
+		assertEquals(searchQuery.toString(), scoreDocs.length, modelScores.size());
+		for (ScoreDoc scoreDoc : scoreDocs) {
+			final Float score = modelScores.get(scoreDoc.doc);
+			assertNotNull(score);
+			assertEquals(scoreDoc.score, score, scoreDoc.score * 1e-5);
+		}
+	}
+
+	@Test
+	public void searchScores() throws IOException {
+		final Random random = new Random(1);
+		try (final IndexReader reader = IndexReader.open(newIndex(random))) {
+			final IndexSearcher searcher = new IndexSearcher(reader);
+			final StandardLearnerModel model = new StandardLearnerModel(searcher, NAME, TARGET, null);
+			assertEquals("doc5", model.getName(5));
+			assertArrayEquals(new String[] { "target5" }, model.getTargets(5));
+			for (int q = 0; q < 50; q++) {
+				final BooleanQuery query = new BooleanQuery(random.nextInt(5) == 0);
+				final int clauses = 1 + random.nextInt(4);
+				for (int c = 0; c < clauses; c++)
+					query.add(termQuery(random.nextInt(8) == 0 ? "unknown" : WORDS[random.nextInt(WORDS.length)],
+							random.nextBoolean() ? 1f : 1.5f), Occur.SHOULD);
+				assertSameScores(searcher, model, query, query);
+			}
+		}
+	}
+
+	/**
+	 * The clauses which are not term queries are not scored, they do not
+	 * count in the coordination factor
+	 */
+	@Test
+	public void unscoredClauses() throws IOException {
+		try (final IndexReader reader = IndexReader.open(newIndex(new Random(2)))) {
+			final IndexSearcher searcher = new IndexSearcher(reader);
+			final StandardLearnerModel model = new StandardLearnerModel(searcher, NAME, TARGET, null);
+			final BooleanQuery termsOnly = new BooleanQuery();
+			termsOnly.add(termQuery("red", 1f), Occur.SHOULD);
+			termsOnly.add(termQuery("blue", 1f), Occur.SHOULD);
+			final BooleanQuery withPhrase = new BooleanQuery();
+			withPhrase.add(termQuery("red", 1f), Occur.SHOULD);
+			final PhraseQuery phraseQuery = new PhraseQuery();
+			phraseQuery.add(new Term(DATA, "green"));
+			phraseQuery.add(new Term(DATA, "yellow"));
+			withPhrase.add(phraseQuery, Occur.SHOULD);
+			withPhrase.add(termQuery("blue", 1f), Occur.SHOULD);
+			withPhrase.add(termQuery("white", 1f), Occur.MUST_NOT);
+			assertSameScores(searcher, model, withPhrase, termsOnly);
+		}
+	}
+}
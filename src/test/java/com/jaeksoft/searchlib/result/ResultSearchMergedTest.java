@@ -0,0 +1,252 @@
+/**
+ * License Agreement for OpenSearchServer
+ * <p>
+ * Copyright (C) 2017 Emmanuel Keller / Jaeksoft
+ * <p>
+ * http://www.open-search-server.com
+ * <p>
+ * This file is part of OpenSearchServer.
+ * <p>
+ * OpenSearchServer is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * <p>
+ * OpenSearchServer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * <p>
+ * You should have received a copy of the GNU General Public License
+ * along with OpenSearchServer.
+ * If not, see <http://www.gnu.org/licenses/>.
+ **/
+
+package com.jaeksoft.searchlib.result;
+
+import com.jaeksoft.searchlib.SearchLibException;
+import com.jaeksoft.searchlib.facet.Facet;
+import com.jaeksoft.searchlib.facet.FacetField;
+import com.jaeksoft.searchlib.facet.FacetList;
+import com.jaeksoft.searchlib.request.SearchMergedRequest;
+import com.jaeksoft.searchlib.request.SearchMergedRequest.RemoteRequest;
+import com.jaeksoft.searchlib.sort.SortField;
+import com.jaeksoft.searchlib.webservice.query.search.SearchQueryAbstract.Facet.OrderByEnum;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class ResultSearchMergedTest {
+
+	/**
+	 * A shard whose documents are known in advance. The document numbers are
+	 * unique across the shards of a test.
+	 */
+	private static class TestShard extends MergedShard {
+
+		private final int[] docIds;
+		private final float[] hitScores;
+		private final String[] hitValues;
+		private final Map<String, Long> counts;
+		private final long sleep;
+		private final boolean fails;
+
+		private TestShard(final SearchMergedRequest request, final int[] docIds, final float[] hitScores,
+				final String[] hitValues, final Map<String, Long> counts, final long sleep, final boolean fails) {
+			super(request, new RemoteRequest());
+			this.docIds = docIds;
+			this.hitScores = hitScores;
+			this.hitValues = hitValues;
+			this.counts = counts;
+			this.sleep = sleep;
+			this.fails = fails;
+		}
+
+		@Override
+		void query(final int rows) throws SearchLibException {
+			if (fails)
+				throw new SearchLibException("Failing shard");
+			if (sleep > 0) {
+				try {
+					Thread.sleep(sleep);
+				} catch (InterruptedException e) {
+					throw new SearchLibException(e);
+				}
+			}
+			final int count = Math.min(rows, docIds.length);
+			numFound = docIds.length;
+			maxScore = count == 0 ? 0 : hitScores[0];
+			scores = Arrays.copyOf(hitScores, count);
+			sortValues = new String[count][sortFields.size()];
+			if (hitValues != null)
+				for (int i = 0; i < count; i++)
+					sortValues[i][0] = hitValues[i];
+			if (counts != null) {
+				facetList = new FacetList();
+				for (FacetField facetField : mergedRequest.getFacetFieldList())
+					facetList.add(Facet.fromCounts(facetField, counts));
+			}
+		}
+
+		@Override
+		ResultDocument[] fetch(final int start, final int rows) {
+			final ResultDocument[] documents = new ResultDocument[rows];
+			for (int i = 0; i < rows; i++)
+				documents[i] = new ResultDocument(docIds[start + i]);
+			return documents;
+		}
+	}
+
+	private static TestShard scoreShard(final SearchMergedRequest request, final int[] docIds,
+			final float[] scores) {
+		return new TestShard(request, docIds, scores, null, null, 0, false);
+	}
+
+	private static SearchMergedRequest newRequest(final int start, final int rows) {
+		final SearchMergedRequest request = new SearchMergedRequest();
+		request.setStart(start);
+		request.setRows(rows);
+		return request;
+	}
+
+	private static ResultSearchMerged merge(final SearchMergedRequest request, final MergedShard... shards)
+			throws SearchLibException {
+		final ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			return new ResultSearchMerged(request, Arrays.asList(shards), executor);
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	private static int[] getDocIds(final ResultSearchMerged result) throws SearchLibException {
+		final int start = result.getRequest().getStart();
+		final int[] docIds = new int[result.getDocLength() - start];
+		for (int i = 0; i < docIds.length; i++)
+			docIds[i] = result.getDocument(start + i, null).getDocId();
+		return docIds;
+	}
+
+	private static void assertDocIds(final ResultSearchMerged result, final int... expected)
+			throws SearchLibException {
+		assertEquals(Arrays.toString(expected), Arrays.toString(getDocIds(result)));
+	}
+
+	@Test
+	public void mergeByScore() throws SearchLibException {
+		final SearchMergedRequest request = newRequest(0, 10);
+		final ResultSearchMerged result = merge(request,
+				scoreShard(request, new int[] { 1, 2, 3 }, new float[] { 9, 5, 1 }),
+				scoreShard(request, new int[] { 11, 12, 13 }, new float[] { 8, 5, 4 }),
+				scoreShard(request, new int[] {}, new float[] {}));
+		// The equal scores keep the order of the shards
+		assertDocIds(result, 1, 11, 2, 12, 13, 3);
+		assertEquals(6, result.getNumFound());
+		assertEquals(9, result.getMaxScore(), 0);
+		assertEquals(8, result.getScore(1), 0);
+	}
+
+	@Test
+	public void mergeBySort() throws SearchLibException {
+		final SearchMergedRequest request = newRequest(0, 10);
+		request.getSortFieldList().put(new SortField(0, "title", false, false));
+		final ResultSearchMerged result = merge(request,
+				new TestShard(request, new int[] { 1, 2, 3 }, new float[] { 1, 1, 1 }, new String[] { "b", "d", null },
+						null, 0, false),
+				new TestShard(request, new int[] { 11, 12 }, new float[] { 1, 1 }, new String[] { "a", "c" }, null,
+						0, false));
+		// The documents without a term come last
+		assertDocIds(result, 11, 1, 12, 2, 3);
+
+		final SearchMergedRequest descRequest = newRequest(0, 10);
+		descRequest.getSortFieldList().put(new SortField(0, "title", true, true));
+		final ResultSearchMerged descResult = merge(descRequest,
+				new TestShard(descRequest, new int[] { 1, 2 }, new float[] { 1, 1 }, new String[] { null, "c" }, null,
+						0, false),
+				new TestShard(descRequest, new int[] { 11, 12 }, new float[] { 1, 1 }, new String[] { "d", "a" }, null,
+						0, false));
+		assertDocIds(descResult, 1, 11, 2, 12);
+	}
+
+	@Test
+	public void remoteShardsOnlySortByScore() {
+		final SearchMergedRequest request = newRequest(0, 10);
+		request.getSortFieldList().put(new SortField(0, "title", false, false));
+		try {
+			merge(request, new MergedShardRemote(request, new RemoteRequest()));
+			assertTrue(false);
+		} catch (SearchLibException e) {
+			assertTrue(e.getMessage().contains("title"));
+		}
+	}
+
+	@Test
+	public void pages() throws SearchLibException {
+		final SearchMergedRequest request = newRequest(2, 3);
+		final ResultSearchMerged result = merge(request,
+				scoreShard(request, new int[] { 1, 2, 3, 4, 5 }, new float[] { 10, 8, 6, 4, 2 }),
+				scoreShard(request, new int[] { 11, 12, 13, 14, 15 }, new float[] { 9, 7, 5, 3, 1 }));
+		assertEquals(5, result.getDocLength());
+		assertDocIds(result, 2, 12, 3);
+		assertNull(result.getDocument(1, null));
+		assertNull(result.getDocument(5, null));
+		assertEquals(10, result.getNumFound());
+
+		// The page ends after the last document
+		final SearchMergedRequest lastRequest = newRequest(4, 10);
+		final ResultSearchMerged lastResult = merge(lastRequest,
+				scoreShard(lastRequest, new int[] { 1, 2, 3 }, new float[] { 6, 4, 2 }),
+				scoreShard(lastRequest, new int[] { 11, 12, 13 }, new float[] { 5, 3, 1 }));
+		assertDocIds(lastResult, 3, 13);
+	}
+
+	@Test
+	public void facets() throws SearchLibException {
+		final SearchMergedRequest request = newRequest(0, 10);
+		request.getFacetFieldList()
+				.put(new FacetField("lang", 3, false, false, 2, OrderByEnum.count_desc, null));
+		final Map<String, Long> counts1 = new LinkedHashMap<String, Long>();
+		counts1.put("en", 5L);
+		counts1.put("fr", 2L);
+		counts1.put("de", 1L);
+		counts1.put("it", 2L);
+		final Map<String, Long> counts2 = new LinkedHashMap<String, Long>();
+		counts2.put("fr", 2L);
+		counts2.put("de", 1L);
+		counts2.put("es", 3L);
+		final ResultSearchMerged result = merge(request,
+				new TestShard(request, new int[] { 1 }, new float[] { 1 }, null, counts1, 0, false),
+				new TestShard(request, new int[] { 11 }, new float[] { 1 }, null, counts2, 0, false));
+		final Facet facet = result.getFacetList().getByField("lang");
+		// it (2) and de (2) are below the minimum count, es (3) is over the limit
+		assertEquals(2, facet.getTermCount());
+		assertEquals("en", facet.getTerm(0));
+		assertEquals(5, facet.getCount(0));
+		assertEquals("fr", facet.getTerm(1));
+		assertEquals(4, facet.getCount(1));
+	}
+
+	@Test
+	public void failingShards() throws SearchLibException {
+		final SearchMergedRequest request = newRequest(0, 10);
+		request.setTimeOut(500);
+		final List<MergedShard> shards = new ArrayList<MergedShard>();
+		shards.add(new TestShard(request, new int[] { 1, 2 }, new float[] { 4, 2 }, null, null, 0, true));
+		shards.add(scoreShard(request, new int[] { 11, 12 }, new float[] { 3, 1 }));
+		shards.add(new TestShard(request, new int[] { 21 }, new float[] { 5 }, null, null, 10000, false));
+		final ResultSearchMerged result = merge(request, shards.toArray(new MergedShard[shards.size()]));
+		assertDocIds(result, 11, 12);
+		assertEquals(2, result.getNumFound());
+		assertEquals(3, result.getMaxScore(), 0);
+	}
+}
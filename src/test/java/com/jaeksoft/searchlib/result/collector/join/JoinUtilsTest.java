@@ -0,0 +1,190 @@
+/**
+ * License Agreement for OpenSearchServer
+ * <p>
+ * Copyright (C) 2017 Emmanuel Keller / Jaeksoft
+ * <p>
+ * http://www.open-search-server.com
+ * <p>
+ * This file is part of OpenSearchServer.
+ * <p>
+ * OpenSearchServer is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * <p>
+ * OpenSearchServer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * <p>
+ * You should have received a copy of the GNU General Public License
+ * along with OpenSearchServer.
+ * If not, see <http://www.gnu.org/licenses/>.
+ **/
+
+package com.jaeksoft.searchlib.result.collector.join;
+
+import com.jaeksoft.searchlib.index.FieldCacheIndex;
+import com.jaeksoft.searchlib.join.JoinItem.JoinType;
+import com.jaeksoft.searchlib.result.collector.DocIdCollector;
+import com.jaeksoft.searchlib.result.collector.DocIdInterface;
+import com.jaeksoft.searchlib.result.collector.JoinDocInterface;
+import com.jaeksoft.searchlib.util.Timer;
+import org.apache.lucene.analysis.KeywordAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.NoMergePolicy;
+import org.apache.lucene.store.RAMDirectory;
+import org.apache.lucene.util.Version;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+public class JoinUtilsTest {
+
+	private final static String FIELD = "key";
+
+	/**
+	 * An index of several segments, some documents without key, the keys are
+	 * shared by several documents
+	 */
+	private static IndexReader newIndex(final Random random, final int keys) throws IOException {
+		final RAMDirectory directory = new RAMDirectory();
+		final IndexWriterConfig config =
+				new IndexWriterConfig(Version.LUCENE_36, new KeywordAnalyzer()).setMergePolicy(
+						NoMergePolicy.NO_COMPOUND_FILES);
+		try (final IndexWriter writer = new IndexWriter(directory, config)) {
+			for (int segment = 0; segment < 3; segment++) {
+				final int count = 50 + random.nextInt(100);
+				for (int i = 0; i < count; i++) {
+					final Document document = new Document();
+					if (random.nextInt(8) != 0)
+						document.add(new Field(FIELD, "key" + random.nextInt(keys), Field.Store.NO,
+								Field.Index.NOT_ANALYZED));
+					writer.addDocument(document);
+				}
+				writer.commit();
+			}
+		}
+		return IndexReader.open(directory);
+	}
+
+	/**
+	 * A random selection of the documents, in random order
+	 */
+	private static DocIdCollector select(final Random random, final IndexReader reader) throws IOException {
+		final List<Integer> docs = new ArrayList<>();
+		for (int doc = 0; doc < reader.maxDoc(); doc++)
+			if (random.nextInt(3) != 0)
+				docs.add(doc);
+		Collections.shuffle(docs, random);
+		final DocIdCollector collector = new DocIdCollector(reader.maxDoc(), docs.size());
+		for (int doc : docs)
+			collector.collectDoc(doc);
+		return collector;
+	}
+
+	/**
+	 * @return the first foreign document having the term, or -1
+	 */
+	private static int findForeign(final String term, final int[] ids2, final FieldCacheIndex index2) {
+		for (int id2 : ids2)
+			if (Objects.equals(term, index2.getDocTerm(id2)))
+				return id2;
+		return -1;
+	}
+
+	/**
+	 * Each term is mapped to the ordinal of the same term in the foreign index
+	 */
+	private static void checkOrdMapping(final FieldCacheIndex index1, final FieldCacheIndex index2) {
+		final int[] mapping = index1.getOrdMapping(index2);
+		assertSame(mapping, index1.getOrdMapping(index2));
+		assertEquals(index1.getTermCount(), mapping.length);
+		assertEquals(0, mapping[0]);
+		for (int ord1 = 1; ord1 < mapping.length; ord1++) {
+			int expected = -1;
+			for (int ord2 = 1; ord2 < index2.getTermCount(); ord2++)
+				if (index1.getTerm(ord1).equals(index2.getTerm(ord2)))
+					expected = ord2;
+			assertEquals(expected, mapping[ord1]);
+		}
+	}
+
+	/**
+	 * Compare the hash join with a nested loop join: each local document gets
+	 * the first foreign document having its term, the outer collector gets
+	 * the foreign documents whose term matched no local document.
+	 */
+	private static void check(final long seed, final JoinType joinType) throws IOException {
+		final Random random = new Random(seed);
+		try (final IndexReader reader1 = newIndex(random, 60); final IndexReader reader2 = newIndex(random, 40)) {
+			final FieldCacheIndex index1 = FieldCacheIndex.build(reader1, FIELD);
+			final FieldCacheIndex index2 = FieldCacheIndex.build(reader2, FIELD);
+			checkOrdMapping(index1, index2);
+			final DocIdCollector docs1 = select(random, reader1);
+			final DocIdCollector docs2 = select(random, reader2);
+			final int[] ids1 = docs1.getIds().clone();
+			final int[] ids2 = docs2.getIds().clone();
+
+			final List<String> outers = new ArrayList<>();
+			final DocIdInterface result =
+					JoinUtils.join(docs1, index1, docs2, index2, 2, 1, new Timer("join"), joinType,
+							(id, value) -> outers.add(id + ":" + value), null);
+
+			final List<Integer> expectedIds = new ArrayList<>();
+			final List<Integer> expectedForeignIds = new ArrayList<>();
+			final Set<String> matchedTerms = new HashSet<>();
+			for (int id1 : ids1) {
+				final String term = index1.getDocTerm(id1);
+				final int id2 = findForeign(term, ids2, index2);
+				if (id2 != -1)
+					matchedTerms.add(String.valueOf(term));
+				else if (joinType == JoinType.INNER)
+					continue;
+				expectedIds.add(id1);
+				expectedForeignIds.add(id2);
+			}
+			assertEquals(expectedIds.size(), result.getSize());
+			final JoinDocInterface joinDocs = (JoinDocInterface) result;
+			for (int i = 0; i < expectedIds.size(); i++) {
+				assertEquals((int) expectedIds.get(i), result.getIds()[i]);
+				assertEquals((int) expectedForeignIds.get(i), joinDocs.getForeignDocId(i, 1));
+				assertEquals(-1, joinDocs.getForeignDocId(i, 0));
+			}
+
+			final List<String> expectedOuters = new ArrayList<>();
+			for (int id2 : ids2) {
+				final String term = index2.getDocTerm(id2);
+				if (!matchedTerms.contains(String.valueOf(term)))
+					expectedOuters.add(id2 + ":" + term);
+			}
+			assertEquals(expectedOuters, outers);
+		}
+	}
+
+	@Test
+	public void innerJoin() throws IOException {
+		for (int seed = 0; seed < 5; seed++)
+			check(seed, JoinType.INNER);
+	}
+
+	@Test
+	public void outerJoin() throws IOException {
+		for (int seed = 10; seed < 15; seed++)
+			check(seed, JoinType.OUTER);
+	}
+}
@@ -0,0 +1,222 @@
+/**
+ * License Agreement for OpenSearchServer
+ * <p>
+ * Copyright (C) 2017 Emmanuel Keller / Jaeksoft
+ * <p>
+ * http://www.open-search-server.com
+ * <p>
+ * This file is part of OpenSearchServer.
+ * <p>
+ * OpenSearchServer is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * <p>
+ * OpenSearchServer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * <p>
+ * You should have received a copy of the GNU General Public License
+ * along with OpenSearchServer.
+ * If not, see <http://www.gnu.org/licenses/>.
+ **/
+
+package com.jaeksoft.searchlib.sort;
+
+import com.jaeksoft.searchlib.result.collector.AbstractBaseCollector;
+import com.jaeksoft.searchlib.result.collector.CollectorInterface;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class SorterAbstractTest {
+
+	private static class Collector implements CollectorInterface {
+
+		private final int[] keys;
+		private final int[] ids;
+
+		private Collector(final int[] keys) {
+			this.keys = keys.clone();
+			this.ids = new int[keys.length];
+			for (int i = 0; i < ids.length; i++)
+				ids[i] = i;
+		}
+
+		@Override
+		public int getSize() {
+			return keys.length;
+		}
+
+		@Override
+		public void swap(final int pos1, final int pos2) {
+			doSwap(pos1, pos2);
+		}
+
+		@Override
+		public void doSwap(final int pos1, final int pos2) {
+			final int key = keys[pos1];
+			keys[pos1] = keys[pos2];
+			keys[pos2] = key;
+			final int id = ids[pos1];
+			ids[pos1] = ids[pos2];
+			ids[pos2] = id;
+		}
+
+		@Override
+		public <T extends CollectorInterface> T getCollector(final Class<T> collectorType) {
+			return null;
+		}
+
+		@Override
+		public CollectorInterface getParent() {
+			return null;
+		}
+
+		@Override
+		public CollectorInterface duplicate(final AbstractBaseCollector<?> base) {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public CollectorInterface duplicate() {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public int getClassType() {
+			return 0;
+		}
+	}
+
+	private static class Sorter extends SorterAbstract {
+
+		private final Collector collector;
+		private int comparisons;
+
+		private Sorter(final Collector collector) {
+			super(collector);
+			this.collector = collector;
+			this.comparisons = 0;
+		}
+
+		@Override
+		public int compare(final int pos1, final int pos2) {
+			comparisons++;
+			return Integer.compare(collector.keys[pos1], collector.keys[pos2]);
+		}
+
+		@Override
+		public String toString(final int pos) {
+			return Integer.toString(collector.keys[pos]);
+		}
+
+		@Override
+		public boolean isScore() {
+			return false;
+		}
+
+		@Override
+		public boolean isDistance() {
+			return false;
+		}
+	}
+
+	private static int[] randomKeys(final int size, final int distinct, final long seed) {
+		final Random random = new Random(seed);
+		final int[] keys = new int[size];
+		for (int i = 0; i < size; i++)
+			keys[i] = random.nextInt(distinct);
+		return keys;
+	}
+
+	/**
+	 * The first documents are the ones of a full sort, the next ones are
+	 * not smaller, and no document is lost
+	 */
+	private static void checkPartialSort(final int[] keys, final int... counts) {
+		final int[] sorted = keys.clone();
+		Arrays.sort(sorted);
+		final Collector collector = new Collector(keys);
+		final Sorter sorter = new Sorter(collector);
+		for (int count : counts) {
+			sorter.partialSort(count, null);
+			final int end = Math.min(count, keys.length);
+			assertArrayEquals(Arrays.copyOf(sorted, end), Arrays.copyOf(collector.keys, end));
+			for (int i = end; i < keys.length; i++)
+				assertTrue(collector.keys[i] >= sorted[end - 1]);
+		}
+		final boolean[] found = new boolean[keys.length];
+		for (int i = 0; i < keys.length; i++) {
+			final int id = collector.ids[i];
+			assertEquals(keys[id], collector.keys[i]);
+			found[id] = true;
+		}
+		for (boolean f : found)
+			assertTrue(f);
+	}
+
+	@Test
+	public void partialSort() {
+		checkPartialSort(randomKeys(10000, 1000000, 1), 10);
+		checkPartialSort(randomKeys(10000, 1000000, 2), 100);
+		checkPartialSort(randomKeys(10000, 1000000, 3), 4999);
+	}
+
+	@Test
+	public void manyEqualKeys() {
+		checkPartialSort(randomKeys(10000, 3, 4), 10);
+		checkPartialSort(randomKeys(10000, 10, 5), 1000);
+		checkPartialSort(new int[10000], 10);
+	}
+
+	@Test
+	public void partialSortAgain() {
+		checkPartialSort(randomKeys(10000, 1000000, 6), 10, 50, 50, 20, 1000);
+		checkPartialSort(randomKeys(10000, 5, 7), 10, 100, 3000);
+	}
+
+	@Test
+	public void fullSort() {
+		checkPartialSort(randomKeys(1000, 1000000, 8), 500);
+		checkPartialSort(randomKeys(1000, 1000000, 9), 2000);
+		checkPartialSort(randomKeys(1, 10, 10), 1);
+	}
+
+	/**
+	 * The selection of the first documents does not sort them all
+	 */
+	@Test
+	public void partialSortCost() {
+		final int[] keys = randomKeys(100000, 1000000, 11);
+		final Sorter partial = new Sorter(new Collector(keys));
+		partial.partialSort(10, null);
+		final Sorter full = new Sorter(new Collector(keys));
+		full.quickSort(null);
+		assertTrue(partial.comparisons * 3 < full.comparisons);
+	}
+
+	@Test
+	public void floatSortKey() {
+		final float[] values = { Float.NEGATIVE_INFINITY, -Float.MAX_VALUE, -1.5F, -Float.MIN_VALUE, 0.0F, Float.MIN_VALUE,
+				1.0F, 1.5F, Float.MAX_VALUE, Float.POSITIVE_INFINITY };
+		for (int i = 1; i < values.length; i++)
+			assertTrue(SorterAbstract.getSortKey(values[i - 1]) < SorterAbstract.getSortKey(values[i]));
+		assertEquals(SorterAbstract.getSortKey(0.0F), SorterAbstract.getSortKey(-0.0F));
+	}
+
+	@Test
+	public void noSortKey() {
+		final Sorter sorter = new Sorter(new Collector(randomKeys(10, 100, 13)));
+		assertFalse(sorter.hasSortKey());
+		for (int pos = 0; pos < 10; pos++)
+			assertEquals(0, sorter.getSortKey(pos));
+	}
+}
@@ -0,0 +1,125 @@
+/**
+ * License Agreement for OpenSearchServer
+ * <p>
+ * Copyright (C) 2017 Emmanuel Keller / Jaeksoft
+ * <p>
+ * http://www.open-search-server.com
+ * <p>
+ * This file is part of OpenSearchServer.
+ * <p>
+ * OpenSearchServer is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * <p>
+ * OpenSearchServer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * <p>
+ * You should have received a copy of the GNU General Public License
+ * along with OpenSearchServer.
+ * If not, see <http://www.gnu.org/licenses/>.
+ **/
+
+package com.jaeksoft.searchlib.spellcheck;
+
+import org.apache.lucene.analysis.KeywordAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.NoMergePolicy;
+import org.apache.lucene.search.spell.LevensteinDistance;
+import org.apache.lucene.store.RAMDirectory;
+import org.apache.lucene.util.Version;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class SpellCheckDictionaryTest {
+
+	private final static String FIELD = "text";
+
+	/**
+	 * One segment per array of terms, one document per term
+	 */
+	private static RAMDirectory newIndex(final String[]... segments) throws IOException {
+		final RAMDirectory directory = new RAMDirectory();
+		final IndexWriterConfig config =
+				new IndexWriterConfig(Version.LUCENE_36, new KeywordAnalyzer()).setMergePolicy(
+						NoMergePolicy.NO_COMPOUND_FILES);
+		try (final IndexWriter writer = new IndexWriter(directory, config)) {
+			for (String[] terms : segments) {
+				for (String term : terms) {
+					final Document document = new Document();
+					document.add(new Field(FIELD, term, Field.Store.NO, Field.Index.NOT_ANALYZED));
+					writer.addDocument(document);
+				}
+				writer.commit();
+			}
+		}
+		return directory;
+	}
+
+	private static void assertSuggest(final SpellCheckDictionary dictionary, final String word, final int number,
+			final float minScore, final String... expected) throws IOException {
+		assertArrayEquals(expected, dictionary.suggestSimilar(word, number, minScore, new LevensteinDistance()));
+	}
+
+	/**
+	 * The best scores first, then the frequencies summed over the segments
+	 */
+	@Test
+	public void suggestSimilar() throws IOException {
+		final RAMDirectory directory =
+				newIndex(new String[] { "beach", "beach", "peach", "search" },
+						new String[] { "beach", "reach", "peach", "peach", "peach" });
+		try (final IndexReader reader = IndexReader.open(directory)) {
+			assertEquals(2, reader.getSequentialSubReaders().length);
+			final SpellCheckDictionary dictionary = SpellCheckDictionary.build(reader, FIELD, null);
+			assertSuggest(dictionary, "leach", 10, 0f, "peach", "beach", "reach", "search");
+			assertSuggest(dictionary, "leach", 10, 0.7f, "peach", "beach", "reach");
+			assertSuggest(dictionary, "leach", 2, 0f, "peach", "beach");
+			// The word itself is not suggested
+			assertSuggest(dictionary, "beach", 10, 0f, "peach", "reach", "search");
+			// One edit only for the short words
+			assertSuggest(dictionary, "bech", 10, 0f, "beach");
+			assertSuggest(dictionary, "zzzzz", 10, 0f);
+			assertSuggest(dictionary, "", 10, 0f);
+		}
+	}
+
+	/**
+	 * A new index with the same segment name, the same number of documents
+	 * and the same number of terms does not load the saved automaton of the
+	 * previous one
+	 */
+	@Test
+	public void savedSegmentIdentity() throws IOException {
+		final File spellDir = Files.createTempDirectory("spellcheck").toFile();
+		try {
+			try (final IndexReader reader = IndexReader.open(newIndex(new String[] { "apple", "beach" }))) {
+				final SpellCheckDictionary dictionary = SpellCheckDictionary.build(reader, FIELD, spellDir);
+				assertSuggest(dictionary, "apples", 10, 0f, "apple");
+			}
+			try (final IndexReader reader = IndexReader.open(newIndex(new String[] { "grape", "peach" }))) {
+				final SpellCheckDictionary dictionary = SpellCheckDictionary.build(reader, FIELD, spellDir);
+				assertSuggest(dictionary, "apples", 10, 0f);
+				assertSuggest(dictionary, "grapes", 10, 0f, "grape");
+			}
+		} finally {
+			final File[] files = spellDir.listFiles();
+			if (files != null)
+				for (File file : files)
+					file.delete();
+			spellDir.delete();
+		}
+	}
+}
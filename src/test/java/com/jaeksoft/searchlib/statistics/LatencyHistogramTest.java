@@ -0,0 +1,131 @@
+/**
+ * License Agreement for OpenSearchServer
+ * <p>
+ * Copyright (C) 2017 Emmanuel Keller / Jaeksoft
+ * <p>
+ * http://www.open-search-server.com
+ * <p>
+ * This file is part of OpenSearchServer.
+ * <p>
+ * OpenSearchServer is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * <p>
+ * OpenSearchServer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * <p>
+ * You should have received a copy of the GNU General Public License
+ * along with OpenSearchServer.
+ * If not, see <http://www.gnu.org/licenses/>.
+ **/
+
+package com.jaeksoft.searchlib.statistics;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class LatencyHistogramTest {
+
+	/**
+	 * The bucket of a value holds it, with a relative error below 1/16
+	 */
+	@Test
+	public void buckets() {
+		int last = 0;
+		for (long value = 0; value < 1000000; value += 1 + value / 100) {
+			final int bucket = LatencyHistogram.getBucket(value);
+			assertTrue(bucket >= last);
+			last = bucket;
+			final long highest = LatencyHistogram.getHighestValue(bucket);
+			assertTrue(highest >= value);
+			assertTrue(highest - value <= value / 16);
+			assertEquals(bucket, LatencyHistogram.getBucket(highest));
+			assertEquals(bucket + 1, LatencyHistogram.getBucket(highest + 1));
+		}
+		assertEquals(0, LatencyHistogram.getBucket(-10));
+		assertEquals(LatencyHistogram.getBucket(Long.MAX_VALUE), LatencyHistogram.getBucket(1L << 41));
+	}
+
+	@Test
+	public void percentiles() {
+		final LatencyHistogram histogram = new LatencyHistogram(1);
+		assertNull(histogram.getValueAtPercentile(50));
+		for (int value = 1; value <= 1000; value++)
+			histogram.record(value);
+		assertEquals(1000, histogram.getTotalCount());
+		assertEquals(1, (long) histogram.getValueAtPercentile(0));
+		checkValue(500, histogram.getValueAtPercentile(50));
+		checkValue(900, histogram.getValueAtPercentile(90));
+		checkValue(990, histogram.getValueAtPercentile(99));
+		checkValue(1000, histogram.getValueAtPercentile(100));
+		checkValue(1000, histogram.getValueAtPercentile(200));
+	}
+
+	/**
+	 * A few slow requests are seen by the high percentiles only
+	 */
+	@Test
+	public void skewedPercentiles() {
+		final LatencyHistogram histogram = new LatencyHistogram(1);
+		for (int i = 0; i < 990; i++)
+			histogram.record(10);
+		for (int i = 0; i < 10; i++)
+			histogram.record(5000);
+		assertEquals(10, (long) histogram.getValueAtPercentile(50));
+		assertEquals(10, (long) histogram.getValueAtPercentile(99));
+		checkValue(5000, histogram.getValueAtPercentile(99.9));
+	}
+
+	private static void checkValue(final long expected, final Long value) {
+		assertTrue(value + " < " + expected, value >= expected);
+		assertTrue(value + " > " + expected, value - expected <= expected / 16);
+	}
+
+	@Test
+	public void concurrentRecords() throws InterruptedException {
+		final LatencyHistogram histogram = new LatencyHistogram(8);
+		final List<Thread> threads = new ArrayList<Thread>();
+		for (int t = 0; t < 8; t++)
+			threads.add(new Thread(() -> {
+				for (int i = 0; i < 10000; i++)
+					histogram.record(i % 100);
+			}));
+		for (Thread thread : threads)
+			thread.start();
+		for (Thread thread : threads)
+			thread.join();
+		assertEquals(80000, histogram.getTotalCount());
+		checkValue(49, histogram.getValueAtPercentile(50));
+	}
+
+	@Test
+	public void mergeAndSave() {
+		final Random random = new Random(1);
+		final LatencyHistogram histogram1 = new LatencyHistogram(4);
+		final LatencyHistogram histogram2 = new LatencyHistogram(4);
+		final LatencyHistogram all = new LatencyHistogram(1);
+		for (int i = 0; i < 10000; i++) {
+			final long value = (long) Math.exp(random.nextDouble() * 12);
+			(i % 3 == 0 ? histogram1 : histogram2).record(value);
+			all.record(value);
+		}
+		histogram1.add(histogram2);
+		assertArrayEquals(all.getBuckets(), histogram1.getBuckets());
+		final LatencyHistogram saved = new LatencyHistogram(all.getBuckets());
+		assertArrayEquals(all.getBuckets(), saved.getBuckets());
+		for (double percentile : new double[] { 0, 10, 50, 90, 99, 99.9, 100 })
+			assertEquals(all.getValueAtPercentile(percentile), saved.getValueAtPercentile(percentile));
+		assertEquals(0, new LatencyHistogram((long[]) null).getTotalCount());
+	}
+}
@@ -0,0 +1,57 @@
+/**
+ * License Agreement for OpenSearchServer
+ * <p>
+ * Copyright (C) 2017 Emmanuel Keller / Jaeksoft
+ * <p>
+ * http://www.open-search-server.com
+ * <p>
+ * This file is part of OpenSearchServer.
+ * <p>
+ * OpenSearchServer is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * <p>
+ * OpenSearchServer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * <p>
+ * You should have received a copy of the GNU General Public License
+ * along with OpenSearchServer.
+ * If not, see <http://www.gnu.org/licenses/>.
+ **/
+
+package com.jaeksoft.searchlib.test;
+
+import com.jaeksoft.searchlib.autocompletion.AutoCompletionSuggesterTest;
+import com.jaeksoft.searchlib.cache.LRUCacheTest;
+import com.jaeksoft.searchlib.classifier.ClassifierQueryIndexTest;
+import com.jaeksoft.searchlib.collapse.CollapseClusterTest;
+import com.jaeksoft.searchlib.facet.FacetTest;
+import com.jaeksoft.searchlib.index.DocTermOrdsTest;
+import com.jaeksoft.searchlib.index.FieldCacheIndexTest;
+import com.jaeksoft.searchlib.index.IndexDirectoryTest;
+import com.jaeksoft.searchlib.index.TermDictionaryTest;
+import com.jaeksoft.searchlib.learning.StandardLearnerModelTest;
+import com.jaeksoft.searchlib.result.ResultSearchMergedTest;
+import com.jaeksoft.searchlib.result.collector.join.JoinUtilsTest;
+import com.jaeksoft.searchlib.sort.SorterAbstractTest;
+import com.jaeksoft.searchlib.spellcheck.SpellCheckDictionaryTest;
+import com.jaeksoft.searchlib.statistics.LatencyHistogramTest;
+import org.junit.runner.RunWith;
+import org.junit.runners.Suite;
+import org.junit.runners.Suite.SuiteClasses;
+
+/**
+ * The tests of the library classes which do not need an instance
+ */
+@RunWith(Suite.class)
+@SuiteClasses({ LRUCacheTest.class, SorterAbstractTest.class, LatencyHistogramTest.class,
+		ResultSearchMergedTest.class, TermDictionaryTest.class, FieldCacheIndexTest.class,
+		AutoCompletionSuggesterTest.class, SpellCheckDictionaryTest.class,
+		ClassifierQueryIndexTest.class, StandardLearnerModelTest.class,
+		DocTermOrdsTest.class, FacetTest.class,
+		JoinUtilsTest.class, CollapseClusterTest.class, IndexDirectoryTest.class })
+public class UnitTest {
+}